@@ -0,0 +1,96 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Keeps a set of styles from being released while something refers to them only by their id. {@code TextStyle} holds
+ * on to interned styles weakly, so a packed cell buffer that stores style ids instead of {@code TextStyle} references
+ * pins every style it writes. To keep the set from growing forever, {@code pin(..)} tells the owner when the number of
+ * pinned styles has doubled since the last time the owner checked; the owner then collects the ids it still uses and
+ * passes them to {@code retainOnly(..)}.
+ * <p>
+ * This class is not thread-safe, it's meant to be guarded by the same lock as the buffer that owns it.
+ * @author Martin
+ */
+public final class PinnedTextStyles {
+    private static final int MINIMUM_RETAIN_THRESHOLD = 256;
+
+    private final Set<TextStyle> styles;
+    private TextStyle lastPinned;
+    private int retainThreshold;
+
+    /**
+     * Creates a new empty set of pinned styles
+     */
+    public PinnedTextStyles() {
+        this.styles = new HashSet<TextStyle>();
+        this.lastPinned = null;
+        this.retainThreshold = MINIMUM_RETAIN_THRESHOLD;
+    }
+
+    /**
+     * Pins a style, so that its id stays valid
+     * @param style Style to pin
+     * @return {@code true} if the owner should now call {@code retainOnly(..)} with the ids it still uses
+     */
+    public boolean pin(TextStyle style) {
+        if(style == lastPinned) {
+            return false;
+        }
+        lastPinned = style;
+        return styles.add(style) && styles.size() > retainThreshold;
+    }
+
+    /**
+     * Pins all styles pinned by another set, used when copying style ids from one buffer to another
+     * @param other Set of styles to pin as well
+     * @return {@code true} if the owner should now call {@code retainOnly(..)} with the ids it still uses
+     */
+    public boolean pinAll(PinnedTextStyles other) {
+        return styles.addAll(other.styles) && styles.size() > retainThreshold;
+    }
+
+    /**
+     * Unpins every style whose id isn't among the ones given, except for the style pinned most recently since its id
+     * may not have been stored yet
+     * @param usedIds Ids of the styles still in use by the owner
+     */
+    public void retainOnly(BitSet usedIds) {
+        for(Iterator<TextStyle> iterator = styles.iterator(); iterator.hasNext(); ) {
+            TextStyle style = iterator.next();
+            if(style != lastPinned && !usedIds.get(style.getId())) {
+                iterator.remove();
+            }
+        }
+        retainThreshold = Math.max(MINIMUM_RETAIN_THRESHOLD, styles.size() * 2);
+    }
+
+    /**
+     * Returns the number of pinned styles
+     * @return Number of pinned styles
+     */
+    public int size() {
+        return styles.size();
+    }
+}
@@ -97,6 +97,10 @@ public class TerminalTextUtils {
      *
      */
     public static boolean isCharCJK(final char c) {
+        if(c < 0x1100) {
+            //Below the first of the blocks checked (Hangul Jamo), skip the expensive block lookup
+            return false;
+        }
         Character.UnicodeBlock unicodeBlock = Character.UnicodeBlock.of(c);
         return (unicodeBlock == Character.UnicodeBlock.HIRAGANA)
                 || (unicodeBlock == Character.UnicodeBlock.KATAKANA)
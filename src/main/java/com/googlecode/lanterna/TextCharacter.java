@@ -24,7 +24,10 @@ import java.util.EnumSet;
 
 /**
  * Represents a single character with additional metadata such as colors and modifiers. This class is immutable and
- * cannot be modified after creation.
+ * cannot be modified after creation. The colors and modifiers are kept as an interned {@code TextStyle}, so creating
+ * a modified copy through the {@code with...} methods doesn't copy any modifier sets, and comparing two
+ * TextCharacter:s is a comparison of the character and a reference. For printable ASCII characters, the
+ * {@code with...} methods will return shared instances from a cache in the style instead of creating new objects.
  * @author Martin
  */
 public class TextCharacter {
@@ -40,9 +43,7 @@ public class TextCharacter {
     public static final TextCharacter DEFAULT_CHARACTER = new TextCharacter(' ', TextColor.ANSI.DEFAULT, TextColor.ANSI.DEFAULT);
 
     private final char character;
-    private final TextColor foregroundColor;
-    private final TextColor backgroundColor;
-    private final EnumSet<SGR> modifiers;  //This isn't immutable, but we should treat it as such and not expose it!
+    private final TextStyle style;
 
     /**
      * Creates a {@code ScreenCharacter} based on a supplied character, with default colors and no extra modifiers.
@@ -96,6 +97,15 @@ public class TextCharacter {
             TextColor backgroundColor,
             EnumSet<SGR> modifiers) {
 
+        this(character, TextStyle.of(foregroundColor, backgroundColor, modifiers));
+    }
+
+    /**
+     * Creates a new {@code TextCharacter} from an already interned style, used by {@code TextStyle}
+     * @param character Physical character to refer to
+     * @param style Style to take colors and modifiers from
+     */
+    TextCharacter(char character, TextStyle style) {
         // Don't allow creating a TextCharacter containing a control character
         // For backward-compatibility, do allow tab for now
         // TODO: In lanterna 3.1, don't allow tab
@@ -103,17 +113,8 @@ public class TextCharacter {
             throw new IllegalArgumentException("Cannot create a TextCharacter from a control character (0x" + Integer.toHexString(character) + ")");
         }
 
-        if(foregroundColor == null) {
-            foregroundColor = TextColor.ANSI.DEFAULT;
-        }
-        if(backgroundColor == null) {
-            backgroundColor = TextColor.ANSI.DEFAULT;
-        }
-
         this.character = character;
-        this.foregroundColor = foregroundColor;
-        this.backgroundColor = backgroundColor;
-        this.modifiers = EnumSet.copyOf(modifiers);
+        this.style = style;
     }
 
     /**
@@ -129,7 +130,7 @@ public class TextCharacter {
      * @return Foreground color of this TextCharacter
      */
     public TextColor getForegroundColor() {
-        return foregroundColor;
+        return style.getForegroundColor();
     }
 
     /**
@@ -137,7 +138,7 @@ public class TextCharacter {
      * @return Background color of this TextCharacter
      */
     public TextColor getBackgroundColor() {
-        return backgroundColor;
+        return style.getBackgroundColor();
     }
 
     /**
@@ -145,7 +146,25 @@ public class TextCharacter {
      * @return Set of active SGR codes
      */
     public EnumSet<SGR> getModifiers() {
-        return EnumSet.copyOf(modifiers);
+        return style.getModifiers();
+    }
+
+    /**
+     * Returns the interned style (colors and modifiers) of this TextCharacter
+     * @return Style of this TextCharacter
+     */
+    public TextStyle getStyle() {
+        return style;
+    }
+
+    /**
+     * Returns true if this TextCharacter has a particular modifier active. Unlike {@code getModifiers()}, this method
+     * doesn't create a copy of the modifier set.
+     * @param modifier Modifier to check for
+     * @return {@code true} if this TextCharacter has the modifier active
+     */
+    public boolean hasModifier(SGR modifier) {
+        return style.hasModifier(modifier);
     }
 
     /**
@@ -153,7 +172,7 @@ public class TextCharacter {
      * @return {@code true} if this TextCharacter has the bold modifier active
      */
     public boolean isBold() {
-        return modifiers.contains(SGR.BOLD);
+        return style.hasModifier(SGR.BOLD);
     }
 
     /**
@@ -161,7 +180,7 @@ public class TextCharacter {
      * @return {@code true} if this TextCharacter has the reverse modifier active
      */
     public boolean isReversed() {
-        return modifiers.contains(SGR.REVERSE);
+        return style.hasModifier(SGR.REVERSE);
     }
 
     /**
@@ -169,7 +188,7 @@ public class TextCharacter {
      * @return {@code true} if this TextCharacter has the underline modifier active
      */
     public boolean isUnderlined() {
-        return modifiers.contains(SGR.UNDERLINE);
+        return style.hasModifier(SGR.UNDERLINE);
     }
 
     /**
@@ -177,7 +196,7 @@ public class TextCharacter {
      * @return {@code true} if this TextCharacter has the blink modifier active
      */
     public boolean isBlinking() {
-        return modifiers.contains(SGR.BLINK);
+        return style.hasModifier(SGR.BLINK);
     }
 
     /**
@@ -185,7 +204,7 @@ public class TextCharacter {
      * @return {@code true} if this TextCharacter has the bordered modifier active
      */
     public boolean isBordered() {
-        return modifiers.contains(SGR.BORDERED);
+        return style.hasModifier(SGR.BORDERED);
     }
 
     /**
@@ -193,7 +212,7 @@ public class TextCharacter {
      * @return {@code true} if this TextCharacter has the crossed-out modifier active
      */
     public boolean isCrossedOut() {
-        return modifiers.contains(SGR.CROSSED_OUT);
+        return style.hasModifier(SGR.CROSSED_OUT);
     }
 
     /**
@@ -201,7 +220,7 @@ public class TextCharacter {
      * @return {@code true} if this TextCharacter has the italic modifier active
      */
     public boolean isItalic() {
-        return modifiers.contains(SGR.ITALIC);
+        return style.hasModifier(SGR.ITALIC);
     }
 
     /**
@@ -214,7 +233,7 @@ public class TextCharacter {
         if(this.character == character) {
             return this;
         }
-        return new TextCharacter(character, foregroundColor, backgroundColor, modifiers);
+        return style.toTextCharacter(character);
     }
 
     /**
@@ -223,10 +242,7 @@ public class TextCharacter {
      * @return Copy of the TextCharacter with a different foreground color
      */
     public TextCharacter withForegroundColor(TextColor foregroundColor) {
-        if(this.foregroundColor == foregroundColor || this.foregroundColor.equals(foregroundColor)) {
-            return this;
-        }
-        return new TextCharacter(character, foregroundColor, backgroundColor, modifiers);
+        return withStyle(style.withForegroundColor(foregroundColor));
     }
 
     /**
@@ -235,10 +251,7 @@ public class TextCharacter {
      * @return Copy of the TextCharacter with a different background color
      */
     public TextCharacter withBackgroundColor(TextColor backgroundColor) {
-        if(this.backgroundColor == backgroundColor || this.backgroundColor.equals(backgroundColor)) {
-            return this;
-        }
-        return new TextCharacter(character, foregroundColor, backgroundColor, modifiers);
+        return withStyle(style.withBackgroundColor(backgroundColor));
     }
 
     /**
@@ -248,11 +261,7 @@ public class TextCharacter {
      * @return Copy of the TextCharacter with a different set of SGR modifiers
      */
     public TextCharacter withModifiers(Collection<SGR> modifiers) {
-        EnumSet<SGR> newSet = EnumSet.copyOf(modifiers);
-        if(modifiers.equals(newSet)) {
-            return this;
-        }
-        return new TextCharacter(character, foregroundColor, backgroundColor, newSet);
+        return withStyle(style.withModifiers(EnumSet.copyOf(modifiers)));
     }
 
     /**
@@ -262,12 +271,7 @@ public class TextCharacter {
      * @return Copy of the TextCharacter with a new SGR modifier
      */
     public TextCharacter withModifier(SGR modifier) {
-        if(modifiers.contains(modifier)) {
-            return this;
-        }
-        EnumSet<SGR> newSet = EnumSet.copyOf(this.modifiers);
-        newSet.add(modifier);
-        return new TextCharacter(character, foregroundColor, backgroundColor, newSet);
+        return withStyle(style.withModifier(modifier));
     }
 
     /**
@@ -278,21 +282,33 @@ public class TextCharacter {
      * @return Copy of the TextCharacter without the SGR modifier
      */
     public TextCharacter withoutModifier(SGR modifier) {
-        if(!modifiers.contains(modifier)) {
+        return withStyle(style.withoutModifier(modifier));
+    }
+
+    /**
+     * Returns a copy of this TextCharacter with the same underlying character but a different style
+     * @param style Style the copy should have
+     * @return Copy of the TextCharacter with a different style
+     */
+    public TextCharacter withStyle(TextStyle style) {
+        if(style == null) {
+            throw new IllegalArgumentException("Cannot call TextCharacter.withStyle(..) with null style");
+        }
+        if(this.style == style) {
             return this;
         }
-        EnumSet<SGR> newSet = EnumSet.copyOf(this.modifiers);
-        newSet.remove(modifier);
-        return new TextCharacter(character, foregroundColor, backgroundColor, newSet);
+        return style.toTextCharacter(character);
     }
 
     public boolean isDoubleWidth() {
         return TerminalTextUtils.isCharDoubleWidth(character);
     }
 
-    @SuppressWarnings("SimplifiableIfStatement")
     @Override
     public boolean equals(Object obj) {
+        if(this == obj) {
+            return true;
+        }
         if(obj == null) {
             return false;
         }
@@ -300,30 +316,20 @@ public class TextCharacter {
             return false;
         }
         final TextCharacter other = (TextCharacter) obj;
-        if(this.character != other.character) {
-            return false;
-        }
-        if(this.foregroundColor != other.foregroundColor && (this.foregroundColor == null || !this.foregroundColor.equals(other.foregroundColor))) {
-            return false;
-        }
-        if(this.backgroundColor != other.backgroundColor && (this.backgroundColor == null || !this.backgroundColor.equals(other.backgroundColor))) {
-            return false;
-        }
-        return !(this.modifiers != other.modifiers && (this.modifiers == null || !this.modifiers.equals(other.modifiers)));
+        //Styles are interned so we can compare them by reference
+        return this.character == other.character && this.style == other.style;
     }
 
     @Override
     public int hashCode() {
         int hash = 7;
         hash = 37 * hash + this.character;
-        hash = 37 * hash + (this.foregroundColor != null ? this.foregroundColor.hashCode() : 0);
-        hash = 37 * hash + (this.backgroundColor != null ? this.backgroundColor.hashCode() : 0);
-        hash = 37 * hash + (this.modifiers != null ? this.modifiers.hashCode() : 0);
+        hash = 37 * hash + this.style.hashCode();
         return hash;
     }
 
     @Override
     public String toString() {
-        return "TextCharacter{" + "character=" + character + ", foregroundColor=" + foregroundColor + ", backgroundColor=" + backgroundColor + ", modifiers=" + modifiers + '}';
+        return "TextCharacter{" + "character=" + character + ", foregroundColor=" + getForegroundColor() + ", backgroundColor=" + getBackgroundColor() + ", modifiers=" + style.getModifiers() + '}';
     }
 }
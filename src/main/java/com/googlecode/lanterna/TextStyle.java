@@ -0,0 +1,373 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.EnumSet;
+import java.util.WeakHashMap;
+
+/**
+ * The combination of foreground color, background color and SGR modifiers that can be applied to a character. Styles
+ * are interned; there is only ever one {@code TextStyle} instance for each combination, so two styles can be compared
+ * with {@code ==}, and each style is assigned a small integer id that can be used to refer to it from primitive arrays.
+ * This class is immutable.
+ * <p>
+ * Each style also works as a flyweight factory for {@code TextCharacter}:s; {@code toTextCharacter(..)} returns shared
+ * instances for the printable ASCII characters so that repeatedly drawing text in the same style doesn't create new
+ * objects.
+ * <p>
+ * Interned styles are only held weakly, a style that is no longer referenced anywhere is released and its id is given
+ * to a style created later on. Code that keeps style ids around instead of {@code TextStyle} references must make sure
+ * the styles stay referenced, see {@link PinnedTextStyles}.
+ * @author Martin
+ */
+public final class TextStyle {
+    private static final WeakHashMap<TextStyle, StyleReference> INTERNED_STYLES = new WeakHashMap<TextStyle, StyleReference>();
+    private static final ReferenceQueue<TextStyle> RELEASED_STYLES = new ReferenceQueue<TextStyle>();
+    private static final SGR[] SGR_VALUES = SGR.values();
+    private static final char FIRST_CACHED_CHARACTER = ' ';
+    private static final char LAST_CACHED_CHARACTER = '~';
+    //Only written to while holding the lock on INTERNED_STYLES, looking up a style by id doesn't need to lock
+    private static volatile StyleReference[] stylesById = new StyleReference[16];
+    private static int styleCount = 0;
+    private static int[] releasedIds = new int[16];
+    private static int releasedIdCount = 0;
+
+    /**
+     * Style with default foreground and background color and no modifiers, this style always has id 0
+     */
+    public static final TextStyle DEFAULT = of(TextColor.ANSI.DEFAULT, TextColor.ANSI.DEFAULT, EnumSet.noneOf(SGR.class));
+
+    private final TextColor foregroundColor;
+    private final TextColor backgroundColor;
+    private final EnumSet<SGR> modifiers;  //This isn't immutable, but we should treat it as such and not expose it!
+    private final int id;
+    private final int hash;
+    //These caches are created and filled lazily, it's fine if two threads race since the values are immutable and
+    //interned
+    private TextCharacter[] characterCache;
+    private TextStyle[] withModifierCache;
+    private TextStyle[] withoutModifierCache;
+
+    private TextStyle(TextColor foregroundColor, TextColor backgroundColor, EnumSet<SGR> modifiers, int id) {
+        this.foregroundColor = foregroundColor;
+        this.backgroundColor = backgroundColor;
+        this.modifiers = modifiers;
+        this.id = id;
+        this.hash = calculateHashCode(foregroundColor, backgroundColor, modifiers);
+        this.characterCache = null;
+        this.withModifierCache = null;
+        this.withoutModifierCache = null;
+    }
+
+    /**
+     * Returns the shared {@code TextStyle} instance for a combination of colors and modifiers, creating it if it's the
+     * first time the combination is requested.
+     * @param foregroundColor Foreground color of the style, {@code null} means the default color
+     * @param backgroundColor Background color of the style, {@code null} means the default color
+     * @param modifiers Modifiers of the style, the set is copied and not retained
+     * @return Interned {@code TextStyle} for the combination
+     */
+    public static TextStyle of(TextColor foregroundColor, TextColor backgroundColor, EnumSet<SGR> modifiers) {
+        if(foregroundColor == null) {
+            foregroundColor = TextColor.ANSI.DEFAULT;
+        }
+        if(backgroundColor == null) {
+            backgroundColor = TextColor.ANSI.DEFAULT;
+        }
+        TextStyle lookup = new TextStyle(foregroundColor, backgroundColor, modifiers, -1);
+        synchronized(INTERNED_STYLES) {
+            StyleReference reference = INTERNED_STYLES.get(lookup);
+            TextStyle style = reference != null ? reference.get() : null;
+            if(style == null) {
+                style = new TextStyle(foregroundColor, backgroundColor, EnumSet.copyOf(modifiers), nextId());
+                StyleReference[] styles = stylesById;
+                if(style.id == styles.length) {
+                    styles = new StyleReference[styles.length * 2];
+                    System.arraycopy(stylesById, 0, styles, 0, stylesById.length);
+                }
+                reference = new StyleReference(style);
+                styles[style.id] = reference;
+                //Make the style available by id before anyone else can get hold of it
+                stylesById = styles;
+                INTERNED_STYLES.put(style, reference);
+            }
+            return style;
+        }
+    }
+
+    /**
+     * Picks the id for a new style, reusing the id of a style that has been released if there is one. Must be called
+     * while holding the lock on {@code INTERNED_STYLES}.
+     */
+    private static int nextId() {
+        StyleReference released;
+        while((released = (StyleReference)RELEASED_STYLES.poll()) != null) {
+            if(stylesById[released.id] == released) {
+                stylesById[released.id] = null;
+                if(releasedIdCount == releasedIds.length) {
+                    int[] newReleasedIds = new int[releasedIds.length * 2];
+                    System.arraycopy(releasedIds, 0, newReleasedIds, 0, releasedIdCount);
+                    releasedIds = newReleasedIds;
+                }
+                releasedIds[releasedIdCount++] = released.id;
+            }
+        }
+        if(releasedIdCount > 0) {
+            return releasedIds[--releasedIdCount];
+        }
+        return styleCount++;
+    }
+
+    /**
+     * Returns a previously interned style by its id
+     * @param id Id of the style, as returned by {@code getId()}
+     * @return The {@code TextStyle} with the specified id
+     * @throws IllegalArgumentException If no style has been assigned this id
+     */
+    public static TextStyle getById(int id) {
+        StyleReference[] styles = stylesById;
+        TextStyle style = id >= 0 && id < styles.length && styles[id] != null ? styles[id].get() : null;
+        if(style == null) {
+            throw new IllegalArgumentException("No TextStyle with id " + id);
+        }
+        return style;
+    }
+
+    /**
+     * Returns the id of this style, which is unique among all interned styles currently in use. Once a style has been
+     * released, its id can be given to another style.
+     * @return Id of this style
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Foreground color of this style
+     * @return Foreground color of this style
+     */
+    public TextColor getForegroundColor() {
+        return foregroundColor;
+    }
+
+    /**
+     * Background color of this style
+     * @return Background color of this style
+     */
+    public TextColor getBackgroundColor() {
+        return backgroundColor;
+    }
+
+    /**
+     * Returns a copy of the set of active modifiers in this style
+     * @return Set of active SGR codes
+     */
+    public EnumSet<SGR> getModifiers() {
+        return EnumSet.copyOf(modifiers);
+    }
+
+    /**
+     * Returns true if this style has a particular modifier active
+     * @param modifier Modifier to check for
+     * @return {@code true} if this style has the modifier active
+     */
+    public boolean hasModifier(SGR modifier) {
+        return modifiers.contains(modifier);
+    }
+
+    /**
+     * Returns true if this style has any modifier active at all
+     * @return {@code true} if at least one modifier is active, {@code false} if the style is only colors
+     */
+    public boolean hasModifiers() {
+        return !modifiers.isEmpty();
+    }
+
+    /**
+     * Returns the style with the same background color and modifiers as this one, but a different foreground color
+     * @param foregroundColor Foreground color of the style to return
+     * @return Interned style with the new foreground color
+     */
+    public TextStyle withForegroundColor(TextColor foregroundColor) {
+        if(this.foregroundColor == foregroundColor || this.foregroundColor.equals(foregroundColor)) {
+            return this;
+        }
+        return of(foregroundColor, backgroundColor, modifiers);
+    }
+
+    /**
+     * Returns the style with the same foreground color and modifiers as this one, but a different background color
+     * @param backgroundColor Background color of the style to return
+     * @return Interned style with the new background color
+     */
+    public TextStyle withBackgroundColor(TextColor backgroundColor) {
+        if(this.backgroundColor == backgroundColor || this.backgroundColor.equals(backgroundColor)) {
+            return this;
+        }
+        return of(foregroundColor, backgroundColor, modifiers);
+    }
+
+    /**
+     * Returns the style with the same colors as this one but a different set of modifiers
+     * @param modifiers Modifiers of the style to return
+     * @return Interned style with the new modifiers
+     */
+    public TextStyle withModifiers(EnumSet<SGR> modifiers) {
+        if(this.modifiers.equals(modifiers)) {
+            return this;
+        }
+        return of(foregroundColor, backgroundColor, modifiers);
+    }
+
+    /**
+     * Returns the style with the same colors and modifiers as this one plus one additional modifier
+     * @param modifier Modifier to add
+     * @return Interned style with the additional modifier
+     */
+    public TextStyle withModifier(SGR modifier) {
+        if(modifiers.contains(modifier)) {
+            return this;
+        }
+        TextStyle[] cache = withModifierCache;
+        if(cache == null) {
+            cache = new TextStyle[SGR_VALUES.length];
+            withModifierCache = cache;
+        }
+        TextStyle style = cache[modifier.ordinal()];
+        if(style == null) {
+            EnumSet<SGR> newSet = EnumSet.copyOf(modifiers);
+            newSet.add(modifier);
+            style = of(foregroundColor, backgroundColor, newSet);
+            cache[modifier.ordinal()] = style;
+        }
+        return style;
+    }
+
+    /**
+     * Returns the style with the same colors and modifiers as this one except for one modifier
+     * @param modifier Modifier to remove
+     * @return Interned style without the modifier
+     */
+    public TextStyle withoutModifier(SGR modifier) {
+        if(!modifiers.contains(modifier)) {
+            return this;
+        }
+        TextStyle[] cache = withoutModifierCache;
+        if(cache == null) {
+            cache = new TextStyle[SGR_VALUES.length];
+            withoutModifierCache = cache;
+        }
+        TextStyle style = cache[modifier.ordinal()];
+        if(style == null) {
+            EnumSet<SGR> newSet = EnumSet.copyOf(modifiers);
+            newSet.remove(modifier);
+            style = of(foregroundColor, backgroundColor, newSet);
+            cache[modifier.ordinal()] = style;
+        }
+        return style;
+    }
+
+    /**
+     * Checks if this style has the specified colors and modifiers, without looking up the interned style for them
+     * @param foregroundColor Foreground color to compare with, {@code null} means the default color
+     * @param backgroundColor Background color to compare with, {@code null} means the default color
+     * @param modifiers Modifiers to compare with
+     * @return {@code true} if the colors and modifiers are the same as in this style
+     */
+    public boolean matches(TextColor foregroundColor, TextColor backgroundColor, EnumSet<SGR> modifiers) {
+        if(foregroundColor == null) {
+            foregroundColor = TextColor.ANSI.DEFAULT;
+        }
+        if(backgroundColor == null) {
+            backgroundColor = TextColor.ANSI.DEFAULT;
+        }
+        return (this.foregroundColor == foregroundColor || this.foregroundColor.equals(foregroundColor)) &&
+                (this.backgroundColor == backgroundColor || this.backgroundColor.equals(backgroundColor)) &&
+                this.modifiers.equals(modifiers);
+    }
+
+    /**
+     * Returns a {@code TextCharacter} using this style. For printable ASCII characters, the same instance is returned
+     * every time.
+     * @param character Physical character to use
+     * @return {@code TextCharacter} with the supplied character and the colors and modifiers of this style
+     */
+    public TextCharacter toTextCharacter(char character) {
+        if(character < FIRST_CACHED_CHARACTER || character > LAST_CACHED_CHARACTER) {
+            return new TextCharacter(character, this);
+        }
+        TextCharacter[] cache = characterCache;
+        if(cache == null) {
+            cache = new TextCharacter[LAST_CACHED_CHARACTER - FIRST_CACHED_CHARACTER + 1];
+            characterCache = cache;
+        }
+        TextCharacter textCharacter = cache[character - FIRST_CACHED_CHARACTER];
+        if(textCharacter == null) {
+            textCharacter = new TextCharacter(character, this);
+            cache[character - FIRST_CACHED_CHARACTER] = textCharacter;
+        }
+        return textCharacter;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(this == obj) {
+            return true;
+        }
+        if(obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        TextStyle other = (TextStyle) obj;
+        return foregroundColor.equals(other.foregroundColor) &&
+                backgroundColor.equals(other.backgroundColor) &&
+                modifiers.equals(other.modifiers);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    private static int calculateHashCode(TextColor foregroundColor, TextColor backgroundColor, EnumSet<SGR> modifiers) {
+        int hash = 7;
+        hash = 37 * hash + foregroundColor.hashCode();
+        hash = 37 * hash + backgroundColor.hashCode();
+        hash = 37 * hash + modifiers.hashCode();
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "TextStyle{" + "foregroundColor=" + foregroundColor + ", backgroundColor=" + backgroundColor + ", modifiers=" + modifiers + '}';
+    }
+
+    /**
+     * Entry in the id table, which remembers the id so it can be freed once the style has been released
+     */
+    private static class StyleReference extends WeakReference<TextStyle> {
+        private final int id;
+
+        StyleReference(TextStyle style) {
+            super(style, RELEASED_STYLES);
+            this.id = style.id;
+        }
+    }
+}
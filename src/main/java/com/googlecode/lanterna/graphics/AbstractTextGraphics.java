@@ -36,6 +36,7 @@ public abstract class AbstractTextGraphics implements TextGraphics {
     protected TabBehaviour tabBehaviour;
     protected final EnumSet<SGR> activeModifiers;
     private final ShapeRenderer shapeRenderer;
+    private TextStyle currentStyle;
 
     protected AbstractTextGraphics() {
         this.activeModifiers = EnumSet.noneOf(SGR.class);
@@ -47,9 +48,29 @@ public abstract class AbstractTextGraphics implements TextGraphics {
             public void onPoint(int column, int row, TextCharacter character) {
                 setCharacter(column, row, character);
             }
+
+            @Override
+            public void onSpan(int row, int fromColumn, int toColumn, TextCharacter character) {
+                fillSpan(row, fromColumn, toColumn, character);
+            }
         });
     }
 
+    /**
+     * Fills a horizontal run of cells on one row with the same character. The shape drawing and filling methods go
+     * through here for every row segment they cover. The default implementation calls {@code setCharacter} for each
+     * column in the span; implementations that can fill a whole row segment at once should override this.
+     * @param row Row to fill
+     * @param fromColumn First column of the span
+     * @param toColumn Last column of the span (inclusive), never less than {@code fromColumn}
+     * @param character Character to fill the span with
+     */
+    protected void fillSpan(int row, int fromColumn, int toColumn, TextCharacter character) {
+        for(int column = fromColumn; column <= toColumn; column++) {
+            setCharacter(column, row, character);
+        }
+    }
+
     @Override
     public TextColor getBackgroundColor() {
         return backgroundColor;
@@ -265,14 +286,7 @@ public abstract class AbstractTextGraphics implements TextGraphics {
 
     @Override
     public TextGraphics putString(int column, int row, String string) {
-        string = prepareStringForPut(column, string);
-        int offset = 0;
-        for(int i = 0; i < string.length(); i++) {
-            char character = string.charAt(i);
-            setCharacter(column + offset, row, newTextCharacter(character));
-            offset += getOffsetToNextCharacter(character);
-        }
-        return this;
+        return putString(column, row, string, 0, string.length(), getCurrentStyle());
     }
 
     @Override
@@ -302,6 +316,71 @@ public abstract class AbstractTextGraphics implements TextGraphics {
         return this;
     }
 
+    /**
+     * Puts a part of a character sequence on the screen at the specified position, using the style given instead of
+     * the current colors and modifiers of this TextGraphics. Like the other {@code putString} methods, tabs are
+     * expanded and the text stops at the first newline (\r or \n). Nothing is copied out of {@code text} and the
+     * TextGraphics state is left untouched, so this is the cheapest way to draw text that is already kept in a larger
+     * buffer, or many strings in the same style.
+     * <p>
+     * This method is not part of the {@link TextGraphics} interface, so that implementations outside of lanterna keep
+     * compiling; check for {@code AbstractTextGraphics} before calling it on a {@code TextGraphics} you didn't create.
+     * @param column What column to put the text at
+     * @param row What row to put the text at
+     * @param text Character sequence to take the text from
+     * @param start Index of the first character in {@code text} to put
+     * @param end Index after the last character in {@code text} to put
+     * @param style Style to give the text
+     * @return Itself
+     */
+    public TextGraphics putString(int column, int row, CharSequence text, int start, int end, TextStyle style) {
+        if(start < 0 || end > text.length() || start > end) {
+            throw new IndexOutOfBoundsException("Cannot put characters " + start + " to " + end + " of a sequence with length " + text.length());
+        }
+        boolean hasTabs = false;
+        for(int i = start; i < end; i++) {
+            char character = text.charAt(i);
+            if(character == '\n' || character == '\r') {
+                end = i;
+                break;
+            }
+            else if(character == '\t') {
+                hasTabs = true;
+            }
+            else if(TerminalTextUtils.isControlCharacter(character)) {
+                //Fail like the TextCharacter constructor would, but before anything has been written
+                throw new IllegalArgumentException("Cannot put a control character (0x" + Integer.toHexString(character) + ") on a TextGraphics");
+            }
+        }
+        if(hasTabs) {
+            text = tabBehaviour.replaceTabs(text.subSequence(start, end).toString(), column);
+            start = 0;
+            end = text.length();
+        }
+        putStringSpan(column, row, text, start, end, style);
+        return this;
+    }
+
+    /**
+     * Writes a run of characters onto one row, with tabs already expanded and newlines removed. All the
+     * {@code putString} methods end up here. The default implementation calls {@code setCharacter} for each character,
+     * advancing two columns after double width characters; implementations that can write a whole row segment at once
+     * should override this.
+     * @param column Column of the first character
+     * @param row Row to write to
+     * @param text Character sequence to take the characters from
+     * @param start Index of the first character in {@code text} to write
+     * @param end Index after the last character in {@code text} to write
+     * @param style Style to give the characters
+     */
+    protected void putStringSpan(int column, int row, CharSequence text, int start, int end, TextStyle style) {
+        for(int i = start; i < end; i++) {
+            char character = text.charAt(i);
+            setCharacter(column, row, style.toTextCharacter(character));
+            column += getOffsetToNextCharacter(character);
+        }
+    }
+
     @Override
     public synchronized TextGraphics putCSIStyledString(int column, int row, String string) {
         StyleSet.Set original = new StyleSet.Set(this);
@@ -351,7 +430,18 @@ public abstract class AbstractTextGraphics implements TextGraphics {
     }
 
     private TextCharacter newTextCharacter(char character) {
-        return new TextCharacter(character, foregroundColor, backgroundColor, activeModifiers);
+        return getCurrentStyle().toTextCharacter(character);
+    }
+
+    private TextStyle getCurrentStyle() {
+        //The color and modifier fields can be changed directly by subclasses, so check that the cached style still
+        //matches instead of trying to invalidate it
+        TextStyle style = currentStyle;
+        if(style == null || !style.matches(foregroundColor, backgroundColor, activeModifiers)) {
+            style = TextStyle.of(foregroundColor, backgroundColor, activeModifiers);
+            currentStyle = style;
+        }
+        return style;
     }
 
     private String prepareStringForPut(int column, String string) {
@@ -22,8 +22,10 @@ import java.util.Arrays;
 
 import com.googlecode.lanterna.TerminalPosition;
 import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TerminalTextUtils;
 import com.googlecode.lanterna.TextCharacter;
 import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.TextStyle;
 
 /**
  * Simple implementation of TextImage that keeps the content as a two-dimensional TextCharacter array. Copy operations
@@ -152,6 +154,82 @@ public class BasicTextImage implements TextImage {
         }
     }
 
+    /**
+     * Fills a horizontal run of cells on one row with the same character. The result is the same as calling
+     * {@code setCharacterAt} for each column in the span from left to right, but single width characters are written
+     * with a single {@code Arrays.fill}. Any part of the span that falls outside of the image is ignored.
+     * @param row Row to fill
+     * @param fromColumn First column of the span
+     * @param toColumn Last column of the span (inclusive)
+     * @param character Character to fill the span with
+     */
+    public void fillSpan(int row, int fromColumn, int toColumn, TextCharacter character) {
+        if(character == null) {
+            throw new IllegalArgumentException("Cannot call BasicTextImage.fillSpan(..) with null character");
+        }
+        if(character.isDoubleWidth()) {
+            for(int column = fromColumn; column <= toColumn; column++) {
+                setCharacterAt(column, row, character);
+            }
+            return;
+        }
+        if(row < 0 || row >= buffer.length) {
+            return;
+        }
+        TextCharacter[] line = buffer[row];
+        fromColumn = Math.max(0, fromColumn);
+        toColumn = Math.min(line.length - 1, toColumn);
+        if(fromColumn > toColumn) {
+            return;
+        }
+
+        // Double width character adjustments
+        if(fromColumn > 0 && line[fromColumn - 1].isDoubleWidth()) {
+            line[fromColumn - 1] = line[fromColumn - 1].withCharacter(' ');
+        }
+        Arrays.fill(line, fromColumn, toColumn + 1, character);
+    }
+
+    /**
+     * Writes a run of characters onto one row in a single pass. The result is the same as calling
+     * {@code setCharacterAt} for each character from left to right, moving two columns forward after each double width
+     * character, but the row is only looked up once and the double width neighbour check is only done at the start of
+     * the run. Characters that fall outside of the image are skipped. Control characters are not interpreted.
+     * @param column Column of the first character
+     * @param row Row to write to
+     * @param text Character sequence to take the characters from
+     * @param start Index of the first character in {@code text} to write
+     * @param end Index after the last character in {@code text} to write
+     * @param style Style to give the characters
+     */
+    public void putString(int column, int row, CharSequence text, int start, int end, TextStyle style) {
+        if(row < 0 || row >= buffer.length) {
+            return;
+        }
+        TextCharacter[] line = buffer[row];
+        boolean firstCharacter = true;
+        for(int i = start; i < end && column < line.length; i++) {
+            char character = text.charAt(i);
+            boolean doubleWidth = TerminalTextUtils.isCharDoubleWidth(character);
+            if(column >= 0) {
+                // Double width character adjustments, after the first character the left neighbour is one of ours
+                if(firstCharacter && column > 0 && line[column - 1].isDoubleWidth()) {
+                    line[column - 1] = line[column - 1].withCharacter(' ');
+                }
+                firstCharacter = false;
+                line[column] = style.toTextCharacter(character);
+                if(doubleWidth && column + 1 < line.length) {
+                    line[column + 1] = style.toTextCharacter(' ');
+                }
+            }
+            column += doubleWidth ? 2 : 1;
+        }
+    }
+
+    void setRawCharacterAt(int column, int row, TextCharacter character) {
+        buffer[row][column] = character;
+    }
+
     @Override
     public TextCharacter getCharacterAt(TerminalPosition position) {
         if(position == null) {
@@ -229,6 +307,20 @@ public class BasicTextImage implements TextImage {
                 System.arraycopy(buffer[y], startColumnIndex, ((BasicTextImage)destination).buffer[targetRow++], destinationColumnOffset, columns);
             }
         }
+        else if(destination instanceof PackedTextImage) {
+            //Copy without the double width character adjustments, the source is already consistent
+            PackedTextImage packedDestination = (PackedTextImage)destination;
+            for(int y = startRowIndex; y < startRowIndex + rows; y++) {
+                for(int x = startColumnIndex; x < startColumnIndex + columns; x++) {
+                    TextCharacter character = buffer[y][x];
+                    packedDestination.setRawCharacterAt(
+                            x - startColumnIndex + destinationColumnOffset,
+                            y - startRowIndex + destinationRowOffset,
+                            character.getCharacter(),
+                            character.getStyle());
+                }
+            }
+        }
         else {
             //Manually copy character by character
             for(int y = startRowIndex; y < startRowIndex + rows; y++) {
@@ -251,6 +343,16 @@ public class BasicTextImage implements TextImage {
                 return this;
             }
 
+            @Override
+            protected void fillSpan(int row, int fromColumn, int toColumn, TextCharacter character) {
+                BasicTextImage.this.fillSpan(row, fromColumn, toColumn, character);
+            }
+
+            @Override
+            protected void putStringSpan(int column, int row, CharSequence text, int start, int end, TextStyle style) {
+                BasicTextImage.this.putString(column, row, text, start, end, style);
+            }
+
             @Override
             public TextCharacter getCharacter(int column, int row) {
                 return BasicTextImage.this.getCharacterAt(column, row);
@@ -22,9 +22,6 @@ import com.googlecode.lanterna.TerminalPosition;
 import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.TextCharacter;
 
-import java.util.Arrays;
-import java.util.Comparator;
-
 /**
  * Default implementation of ShapeRenderer. This class (and the interface) is mostly here to make the code cleaner in
  * {@code AbstractTextGraphics}.
@@ -33,6 +30,17 @@ import java.util.Comparator;
 class DefaultShapeRenderer implements ShapeRenderer {
     interface Callback {
         void onPoint(int column, int row, TextCharacter character);
+
+        /**
+         * Called when the renderer wants to fill a horizontal run of cells on one row with the same character. This
+         * must give the same result as calling {@code onPoint} for each column from {@code fromColumn} to
+         * {@code toColumn}, in that order.
+         * @param row Row to fill
+         * @param fromColumn First column of the span
+         * @param toColumn Last column of the span (inclusive), never less than {@code fromColumn}
+         * @param character Character to fill the span with
+         */
+        void onSpan(int row, int fromColumn, int toColumn, TextCharacter character);
     }
 
     private final Callback callback;
@@ -51,6 +59,10 @@ class DefaultShapeRenderer implements ShapeRenderer {
             p1 = p2;
             p2 = temp;
         }
+        if(p1.getRow() == p2.getRow()) {
+            drawHorizontalLine(p1.getRow(), p1.getColumn(), p2.getColumn(), character);
+            return;
+        }
         int deltaX = p2.getColumn() - p1.getColumn();
         int deltaY = p2.getRow() - p1.getRow();
         if(deltaX > 0) {
@@ -134,63 +146,74 @@ class DefaultShapeRenderer implements ShapeRenderer {
     public void fillTriangle(TerminalPosition p1, TerminalPosition p2, TerminalPosition p3, TextCharacter character) {
         //I've used the algorithm described here:
         //http://www-users.mat.uni.torun.pl/~wrona/3d_tutor/tri_fillers.html
-        TerminalPosition[] points = new TerminalPosition[]{p1, p2, p3};
-        Arrays.sort(points, new Comparator<TerminalPosition>() {
-            @Override
-            public int compare(TerminalPosition o1, TerminalPosition o2) {
-                return (o1.getRow() < o2.getRow()) ? -1 : ((o1.getRow() == o2.getRow()) ? 0 : 1);
-            }
-        });
-
-        float dx1, dx2, dx3;
-        if (points[1].getRow() - points[0].getRow() > 0) {
-            dx1 = (float)(points[1].getColumn() - points[0].getColumn()) / (float)(points[1].getRow() - points[0].getRow());
+        //Sort the points by row without going through an array and a comparator; equal rows keep their order
+        int x1 = p1.getColumn(), y1 = p1.getRow();
+        int x2 = p2.getColumn(), y2 = p2.getRow();
+        int x3 = p3.getColumn(), y3 = p3.getRow();
+        int temp;
+        if(y1 > y2) {
+            temp = x1; x1 = x2; x2 = temp;
+            temp = y1; y1 = y2; y2 = temp;
         }
-        else {
-            dx1 = 0;
+        if(y2 > y3) {
+            temp = x2; x2 = x3; x3 = temp;
+            temp = y2; y2 = y3; y3 = temp;
         }
-        if (points[2].getRow() - points[0].getRow() > 0) {
-            dx2 = (float)(points[2].getColumn() - points[0].getColumn()) / (float)(points[2].getRow() - points[0].getRow());
-        }
-        else {
-            dx2 = 0;
-        }
-        if (points[2].getRow() - points[1].getRow() > 0) {
-            dx3 = (float)(points[2].getColumn() - points[1].getColumn()) / (float)(points[2].getRow() - points[1].getRow());
-        }
-        else {
-            dx3 = 0;
+        if(y1 > y2) {
+            temp = x1; x1 = x2; x2 = temp;
+            temp = y1; y1 = y2; y2 = temp;
         }
 
-        float startX, startY, endX;
-        startX = endX = points[0].getColumn();
-        startY =        points[0].getRow();
+        float dx1 = y2 - y1 > 0 ? (float)(x2 - x1) / (float)(y2 - y1) : 0;
+        float dx2 = y3 - y1 > 0 ? (float)(x3 - x1) / (float)(y3 - y1) : 0;
+        float dx3 = y3 - y2 > 0 ? (float)(x3 - x2) / (float)(y3 - y2) : 0;
+
+        float startX, endX;
+        int row = y1;
+        startX = endX = x1;
         if (dx1 > dx2) {
-            for (; startY <= points[1].getRow(); startY++, startX += dx2, endX += dx1) {
-                drawLine(new TerminalPosition((int)startX, (int)startY), new TerminalPosition((int)endX, (int)startY), character);
+            for (; row <= y2; row++, startX += dx2, endX += dx1) {
+                drawHorizontalLine(row, (int)startX, (int)endX, character);
             }
-            endX = points[1].getColumn();
-            for (; startY <= points[2].getRow(); startY++, startX += dx2, endX += dx3) {
-                drawLine(new TerminalPosition((int)startX, (int)startY), new TerminalPosition((int)endX, (int)startY), character);
+            endX = x2;
+            for (; row <= y3; row++, startX += dx2, endX += dx3) {
+                drawHorizontalLine(row, (int)startX, (int)endX, character);
             }
         } else {
-            for (; startY <= points[1].getRow(); startY++, startX += dx1, endX += dx2) {
-                drawLine(new TerminalPosition((int)startX, (int)startY), new TerminalPosition((int)endX, (int)startY), character);
+            for (; row <= y2; row++, startX += dx1, endX += dx2) {
+                drawHorizontalLine(row, (int)startX, (int)endX, character);
+            }
+            startX = x2;
+            row = y2;
+            for (; row <= y3; row++, startX += dx3, endX += dx2) {
+                drawHorizontalLine(row, (int)startX, (int)endX, character);
             }
-            startX = points[1].getColumn();
-            startY = points[1].getRow();
-            for (; startY <= points[2].getRow(); startY++, startX += dx3, endX += dx2) {
-                drawLine(new TerminalPosition((int)startX, (int)startY), new TerminalPosition((int)endX, (int)startY), character);
+        }
+    }
+
+    private void drawHorizontalLine(int row, int fromColumn, int toColumn, TextCharacter character) {
+        if(fromColumn <= toColumn) {
+            callback.onSpan(row, fromColumn, toColumn, character);
+        }
+        else if(character.isDoubleWidth()) {
+            //Overlapping double width characters depend on the drawing order, so keep going right to left here
+            for(int column = fromColumn; column >= toColumn; column--) {
+                callback.onPoint(column, row, character);
             }
         }
+        else {
+            callback.onSpan(row, toColumn, fromColumn, character);
+        }
     }
 
     @Override
     public void fillRectangle(TerminalPosition topLeft, TerminalSize size, TextCharacter character) {
+        if(size.getColumns() == 0) {
+            return;
+        }
+        int lastColumn = topLeft.getColumn() + size.getColumns() - 1;
         for(int y = 0; y < size.getRows(); y++) {
-            for(int x = 0; x < size.getColumns(); x++) {
-                callback.onPoint(topLeft.getColumn() + x, topLeft.getRow() + y, character);
-            }
+            callback.onSpan(topLeft.getRow() + y, topLeft.getColumn(), lastColumn, character);
         }
     }
 }
@@ -0,0 +1,488 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.graphics;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.googlecode.lanterna.PinnedTextStyles;
+import com.googlecode.lanterna.TerminalPosition;
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TerminalTextUtils;
+import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.TextStyle;
+
+/**
+ * Implementation of TextImage that doesn't keep any TextCharacter objects but stores the content as two flat arrays,
+ * one with the characters and one with the id of the {@code TextStyle} of each character. Since styles are interned,
+ * comparing two cells (even across different images) is reduced to comparing a char and an int, and copy operations
+ * between two PackedTextImage:s are done with System.arraycopy on whole rows. The image pins the styles it stores the
+ * ids of, see {@link PinnedTextStyles}.
+ * <p>
+ * Calling {@code getCharacterAt(..)} on this image will create a new TextCharacter on each call (unless the cell has the
+ * same content as the last one returned), code that inspects a large number of cells should prefer
+ * {@code getRawCharacterAt(..)} and {@code getStyleAt(..)}.
+ * @author Martin
+ */
+public class PackedTextImage implements TextImage {
+    private final TerminalSize size;
+    private final int columns;
+    private final char[] characters;
+    private final int[] styles;
+    private final PinnedTextStyles pinnedStyles;
+    private TextCharacter lastReturnedCharacter;
+
+    /**
+     * Creates a new PackedTextImage with the specified size and fills it initially with space characters using the
+     * default foreground and background color
+     * @param size Size to make the image
+     */
+    public PackedTextImage(TerminalSize size) {
+        this(size, TextCharacter.DEFAULT_CHARACTER);
+    }
+
+    /**
+     * Creates a new PackedTextImage with a given size and a TextCharacter to initially fill it with
+     * @param size Size of the image
+     * @param initialContent What character to set as the initial content
+     */
+    public PackedTextImage(TerminalSize size, TextCharacter initialContent) {
+        if(size == null || initialContent == null) {
+            throw new IllegalArgumentException("Cannot create PackedTextImage with null " +
+                    (size == null ? "size" : "filler"));
+        }
+        this.size = size;
+        this.columns = size.getColumns();
+        this.characters = new char[size.getRows() * columns];
+        this.styles = new int[size.getRows() * columns];
+        this.pinnedStyles = new PinnedTextStyles();
+        this.lastReturnedCharacter = initialContent;
+        Arrays.fill(characters, initialContent.getCharacter());
+        Arrays.fill(styles, initialContent.getStyle().getId());
+        pinStyle(initialContent.getStyle());
+    }
+
+    @Override
+    public TerminalSize getSize() {
+        return size;
+    }
+
+    @Override
+    public void setAll(TextCharacter character) {
+        if(character == null) {
+            throw new IllegalArgumentException("Cannot call PackedTextImage.setAll(..) with null character");
+        }
+        Arrays.fill(characters, character.getCharacter());
+        Arrays.fill(styles, character.getStyle().getId());
+        pinStyle(character.getStyle());
+    }
+
+    @Override
+    public PackedTextImage resize(TerminalSize newSize, TextCharacter filler) {
+        if(newSize == null || filler == null) {
+            throw new IllegalArgumentException("Cannot resize PackedTextImage with null " +
+                    (newSize == null ? "newSize" : "filler"));
+        }
+        if(newSize.equals(size)) {
+            return this;
+        }
+        PackedTextImage resized = new PackedTextImage(newSize, filler);
+        copyTo(resized);
+        return resized;
+    }
+
+    @Override
+    public void setCharacterAt(TerminalPosition position, TextCharacter character) {
+        if(position == null) {
+            throw new IllegalArgumentException("Cannot call PackedTextImage.setCharacterAt(..) with null position");
+        }
+        setCharacterAt(position.getColumn(), position.getRow(), character);
+    }
+
+    @Override
+    public void setCharacterAt(int column, int row, TextCharacter character) {
+        if(character == null) {
+            throw new IllegalArgumentException("Cannot call PackedTextImage.setCharacterAt(..) with null character");
+        }
+        setCharacterAt(column, row, character.getCharacter(), character.getStyle());
+    }
+
+    /**
+     * Sets a character in the image from a raw character and a style, without going through a TextCharacter. Double
+     * width characters are handled the same way as in {@code setCharacterAt(int, int, TextCharacter)}.
+     * @param column Column of the cell to set
+     * @param row Row of the cell to set
+     * @param character Physical character to put in the cell
+     * @param style Style to give the cell
+     */
+    public void setCharacterAt(int column, int row, char character, TextStyle style) {
+        if(column < 0 || row < 0 || row >= size.getRows() || column >= columns) {
+            return;
+        }
+        int index = row * columns + column;
+
+        // Double width character adjustments
+        if(column > 0 && TerminalTextUtils.isCharDoubleWidth(characters[index - 1])) {
+            characters[index - 1] = ' ';
+        }
+
+        // Assign the character at location we specified
+        characters[index] = character;
+        styles[index] = style.getId();
+
+        // Double width character adjustments
+        if(TerminalTextUtils.isCharDoubleWidth(character) && column + 1 < columns) {
+            characters[index + 1] = ' ';
+            styles[index + 1] = styles[index];
+        }
+        pinStyle(style);
+    }
+
+    /**
+     * Fills a horizontal run of cells on one row with the same character. The result is the same as calling
+     * {@code setCharacterAt} for each column in the span from left to right, but single width characters are written
+     * with a single {@code Arrays.fill} on each array. Any part of the span that falls outside of the image is ignored.
+     * @param row Row to fill
+     * @param fromColumn First column of the span
+     * @param toColumn Last column of the span (inclusive)
+     * @param character Character to fill the span with
+     */
+    public void fillSpan(int row, int fromColumn, int toColumn, TextCharacter character) {
+        if(character == null) {
+            throw new IllegalArgumentException("Cannot call PackedTextImage.fillSpan(..) with null character");
+        }
+        char physicalCharacter = character.getCharacter();
+        TextStyle style = character.getStyle();
+        if(TerminalTextUtils.isCharDoubleWidth(physicalCharacter)) {
+            for(int column = fromColumn; column <= toColumn; column++) {
+                setCharacterAt(column, row, physicalCharacter, style);
+            }
+            return;
+        }
+        if(row < 0 || row >= size.getRows()) {
+            return;
+        }
+        fromColumn = Math.max(0, fromColumn);
+        toColumn = Math.min(columns - 1, toColumn);
+        if(fromColumn > toColumn) {
+            return;
+        }
+        int index = row * columns + fromColumn;
+
+        // Double width character adjustments
+        if(fromColumn > 0 && TerminalTextUtils.isCharDoubleWidth(characters[index - 1])) {
+            characters[index - 1] = ' ';
+        }
+        int endIndex = row * columns + toColumn + 1;
+        Arrays.fill(characters, index, endIndex, physicalCharacter);
+        Arrays.fill(styles, index, endIndex, style.getId());
+        pinStyle(style);
+    }
+
+    /**
+     * Writes a run of characters onto one row in a single pass, without creating any TextCharacter objects. The result
+     * is the same as calling {@code setCharacterAt} for each character from left to right, moving two columns forward
+     * after each double width character. Characters that fall outside of the image are skipped. Control characters are
+     * not interpreted.
+     * @param column Column of the first character
+     * @param row Row to write to
+     * @param text Character sequence to take the characters from
+     * @param start Index of the first character in {@code text} to write
+     * @param end Index after the last character in {@code text} to write
+     * @param style Style to give the characters
+     */
+    public void putString(int column, int row, CharSequence text, int start, int end, TextStyle style) {
+        if(row < 0 || row >= size.getRows()) {
+            return;
+        }
+        int rowStart = row * columns;
+        int styleId = style.getId();
+        boolean firstCharacter = true;
+        for(int i = start; i < end && column < columns; i++) {
+            char character = text.charAt(i);
+            boolean doubleWidth = TerminalTextUtils.isCharDoubleWidth(character);
+            if(column >= 0) {
+                int index = rowStart + column;
+                // Double width character adjustments, after the first character the left neighbour is one of ours
+                if(firstCharacter && column > 0 && TerminalTextUtils.isCharDoubleWidth(characters[index - 1])) {
+                    characters[index - 1] = ' ';
+                }
+                firstCharacter = false;
+                characters[index] = character;
+                styles[index] = styleId;
+                if(doubleWidth && column + 1 < columns) {
+                    characters[index + 1] = ' ';
+                    styles[index + 1] = styleId;
+                }
+            }
+            column += doubleWidth ? 2 : 1;
+        }
+        pinStyle(style);
+    }
+
+    void setRawCharacterAt(int column, int row, char character, TextStyle style) {
+        int index = row * columns + column;
+        characters[index] = character;
+        styles[index] = style.getId();
+        pinStyle(style);
+    }
+
+    private void pinStyle(TextStyle style) {
+        if(pinnedStyles.pin(style)) {
+            retainUsedStyles();
+        }
+    }
+
+    /**
+     * Unpins the styles that are no longer used by any cell, so they can be released
+     */
+    private void retainUsedStyles() {
+        BitSet usedIds = new BitSet();
+        for(int styleId: styles) {
+            usedIds.set(styleId);
+        }
+        pinnedStyles.retainOnly(usedIds);
+    }
+
+    @Override
+    public TextCharacter getCharacterAt(TerminalPosition position) {
+        if(position == null) {
+            throw new IllegalArgumentException("Cannot call PackedTextImage.getCharacterAt(..) with null position");
+        }
+        return getCharacterAt(position.getColumn(), position.getRow());
+    }
+
+    @Override
+    public TextCharacter getCharacterAt(int column, int row) {
+        if(column < 0 || row < 0 || row >= size.getRows() || column >= columns) {
+            return null;
+        }
+        int index = row * columns + column;
+        TextCharacter lastReturnedCharacter = this.lastReturnedCharacter;
+        if(lastReturnedCharacter.getCharacter() == characters[index] &&
+                lastReturnedCharacter.getStyle().getId() == styles[index]) {
+            return lastReturnedCharacter;
+        }
+        lastReturnedCharacter = TextStyle.getById(styles[index]).toTextCharacter(characters[index]);
+        this.lastReturnedCharacter = lastReturnedCharacter;
+        return lastReturnedCharacter;
+    }
+
+    /**
+     * Returns the physical character in a cell, without creating a TextCharacter for it
+     * @param column Column of the cell
+     * @param row Row of the cell
+     * @return Character in the cell
+     * @throws ArrayIndexOutOfBoundsException If the position is outside of the image
+     */
+    public char getRawCharacterAt(int column, int row) {
+        return characters[row * columns + column];
+    }
+
+    /**
+     * Returns the style of a cell, without creating a TextCharacter for it
+     * @param column Column of the cell
+     * @param row Row of the cell
+     * @return Style of the cell
+     * @throws ArrayIndexOutOfBoundsException If the position is outside of the image
+     */
+    public TextStyle getStyleAt(int column, int row) {
+        return TextStyle.getById(styles[row * columns + column]);
+    }
+
+    /**
+     * Checks if a cell in this image has the same content as the same cell in another PackedTextImage
+     * @param other Image to compare with
+     * @param column Column of the cell
+     * @param row Row of the cell
+     * @return {@code true} if both the character and the style of the cell are the same in both images
+     * @throws ArrayIndexOutOfBoundsException If the position is outside of either image
+     */
+    public boolean isSameCharacterAt(PackedTextImage other, int column, int row) {
+        int index = row * columns + column;
+        int otherIndex = row * other.columns + column;
+        return characters[index] == other.characters[otherIndex] && styles[index] == other.styles[otherIndex];
+    }
+
+    @Override
+    public void copyTo(TextImage destination) {
+        copyTo(destination, 0, size.getRows(), 0, columns, 0, 0);
+    }
+
+    @Override
+    public void copyTo(
+            TextImage destination,
+            int startRowIndex,
+            int rows,
+            int startColumnIndex,
+            int columns,
+            int destinationRowOffset,
+            int destinationColumnOffset) {
+
+        // If the source image position is negative, offset the whole image
+        if(startColumnIndex < 0) {
+            destinationColumnOffset += -startColumnIndex;
+            columns += startColumnIndex;
+            startColumnIndex = 0;
+        }
+        if(startRowIndex < 0) {
+            destinationRowOffset += -startRowIndex;
+            rows += startRowIndex;
+            startRowIndex = 0;
+        }
+
+        // If the destination offset is negative, adjust the source start indexes
+        if(destinationColumnOffset < 0) {
+            startColumnIndex -= destinationColumnOffset;
+            columns += destinationColumnOffset;
+            destinationColumnOffset = 0;
+        }
+        if(destinationRowOffset < 0) {
+            startRowIndex -= destinationRowOffset;
+            rows += destinationRowOffset;
+            destinationRowOffset = 0;
+        }
+
+        //Make sure we can't copy more than is available
+        rows = Math.min(size.getRows() - startRowIndex, rows);
+        columns = rows>0 ? Math.min(this.columns - startColumnIndex, columns) : 0;
+
+        //Adjust target lengths as well
+        columns = Math.min(destination.getSize().getColumns() - destinationColumnOffset, columns);
+        rows = Math.min(destination.getSize().getRows() - destinationRowOffset, rows);
+
+        if(columns <= 0 || rows <= 0) {
+            return;
+        }
+
+        if(destination instanceof PackedTextImage) {
+            PackedTextImage packedDestination = (PackedTextImage)destination;
+            for(int y = 0; y < rows; y++) {
+                int sourceIndex = (startRowIndex + y) * this.columns + startColumnIndex;
+                int destinationIndex = (destinationRowOffset + y) * packedDestination.columns + destinationColumnOffset;
+                System.arraycopy(characters, sourceIndex, packedDestination.characters, destinationIndex, columns);
+                System.arraycopy(styles, sourceIndex, packedDestination.styles, destinationIndex, columns);
+            }
+            if(packedDestination.pinnedStyles.pinAll(pinnedStyles)) {
+                packedDestination.retainUsedStyles();
+            }
+        }
+        else if(destination instanceof BasicTextImage) {
+            //Copy without the double width character adjustments, the source is already consistent
+            BasicTextImage basicDestination = (BasicTextImage)destination;
+            for(int y = startRowIndex; y < startRowIndex + rows; y++) {
+                for(int x = startColumnIndex; x < startColumnIndex + columns; x++) {
+                    basicDestination.setRawCharacterAt(
+                            x - startColumnIndex + destinationColumnOffset,
+                            y - startRowIndex + destinationRowOffset,
+                            getCharacterAt(x, y));
+                }
+            }
+        }
+        else {
+            //Manually copy character by character
+            for(int y = startRowIndex; y < startRowIndex + rows; y++) {
+                for(int x = startColumnIndex; x < startColumnIndex + columns; x++) {
+                    destination.setCharacterAt(
+                            x - startColumnIndex + destinationColumnOffset,
+                            y - startRowIndex + destinationRowOffset,
+                            getCharacterAt(x, y));
+                }
+            }
+        }
+    }
+
+    @Override
+    public TextGraphics newTextGraphics() {
+        return new AbstractTextGraphics() {
+            @Override
+            public TextGraphics setCharacter(int columnIndex, int rowIndex, TextCharacter textCharacter) {
+                PackedTextImage.this.setCharacterAt(columnIndex, rowIndex, textCharacter);
+                return this;
+            }
+
+            @Override
+            protected void fillSpan(int row, int fromColumn, int toColumn, TextCharacter character) {
+                PackedTextImage.this.fillSpan(row, fromColumn, toColumn, character);
+            }
+
+            @Override
+            protected void putStringSpan(int column, int row, CharSequence text, int start, int end, TextStyle style) {
+                PackedTextImage.this.putString(column, row, text, start, end, style);
+            }
+
+            @Override
+            public TextCharacter getCharacter(int column, int row) {
+                return PackedTextImage.this.getCharacterAt(column, row);
+            }
+
+            @Override
+            public TerminalSize getSize() {
+                return size;
+            }
+        };
+    }
+
+    private void blankLines(int firstLine, int lastLine) {
+        int from = firstLine * columns;
+        int to = (lastLine + 1) * columns;
+        Arrays.fill(characters, from, to, TextCharacter.DEFAULT_CHARACTER.getCharacter());
+        Arrays.fill(styles, from, to, TextCharacter.DEFAULT_CHARACTER.getStyle().getId());
+    }
+
+    @Override
+    public void scrollLines(int firstLine, int lastLine, int distance) {
+        if (firstLine < 0) { firstLine = 0; }
+        if (lastLine >= size.getRows()) { lastLine = size.getRows() - 1; }
+        if (firstLine < lastLine) {
+            if (distance > 0) {
+                // scrolling up: move the lines further "below" up
+                int linesToMove = Math.max(0, lastLine - firstLine + 1 - distance);
+                if (linesToMove > 0) {
+                    System.arraycopy(characters, (firstLine + distance) * columns, characters, firstLine * columns, linesToMove * columns);
+                    System.arraycopy(styles, (firstLine + distance) * columns, styles, firstLine * columns, linesToMove * columns);
+                }
+                // blank out the remaining lines:
+                blankLines(firstLine + linesToMove, lastLine);
+            }
+            else if (distance < 0) {
+                // scrolling down: move the lines further "above" down
+                distance = -distance;
+                int linesToMove = Math.max(0, lastLine - firstLine + 1 - distance);
+                if (linesToMove > 0) {
+                    System.arraycopy(characters, firstLine * columns, characters, (firstLine + distance) * columns, linesToMove * columns);
+                    System.arraycopy(styles, firstLine * columns, styles, (firstLine + distance) * columns, linesToMove * columns);
+                }
+                // blank out the remaining lines:
+                blankLines(firstLine, lastLine - linesToMove);
+            } /* else: distance == 0 => no-op */
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(size.getRows()*(columns+1)+50);
+        sb.append('{').append(columns).append('x').append(size.getRows()).append('}').append('\n');
+        for (int row = 0; row < size.getRows(); row++) {
+            sb.append(characters, row * columns, columns);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
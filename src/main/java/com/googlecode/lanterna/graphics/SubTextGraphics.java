@@ -21,6 +21,8 @@ package com.googlecode.lanterna.graphics;
 import com.googlecode.lanterna.TextCharacter;
 import com.googlecode.lanterna.TerminalPosition;
 import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TerminalTextUtils;
+import com.googlecode.lanterna.TextStyle;
 
 /**
  * This implementation of TextGraphics will take a 'proper' object and composite a view on top of it, by using a
@@ -54,6 +56,59 @@ class SubTextGraphics extends AbstractTextGraphics {
         return this;
     }
 
+    @Override
+    protected void fillSpan(int row, int fromColumn, int toColumn, TextCharacter character) {
+        TerminalSize writableArea = getSize();
+        if(row < 0 || row >= writableArea.getRows()) {
+            return;
+        }
+        fromColumn = Math.max(0, fromColumn);
+        toColumn = Math.min(writableArea.getColumns() - 1, toColumn);
+        if(fromColumn > toColumn) {
+            return;
+        }
+        if(underlyingTextGraphics instanceof AbstractTextGraphics) {
+            ((AbstractTextGraphics)underlyingTextGraphics).fillSpan(
+                    topLeft.getRow() + row,
+                    topLeft.getColumn() + fromColumn,
+                    topLeft.getColumn() + toColumn,
+                    character);
+        }
+        else {
+            super.fillSpan(row, fromColumn, toColumn, character);
+        }
+    }
+
+    @Override
+    protected void putStringSpan(int column, int row, CharSequence text, int start, int end, TextStyle style) {
+        TerminalSize writableArea = getSize();
+        if(row < 0 || row >= writableArea.getRows()) {
+            return;
+        }
+        if(!(underlyingTextGraphics instanceof AbstractTextGraphics)) {
+            super.putStringSpan(column, row, text, start, end, style);
+            return;
+        }
+        //Drop the characters starting outside of the writable area, the rest can go straight to the underlying graphics
+        while(start < end && column < 0) {
+            column += TerminalTextUtils.isCharDoubleWidth(text.charAt(start++)) ? 2 : 1;
+        }
+        int visibleEnd = start;
+        int nextColumn = column;
+        while(visibleEnd < end && nextColumn < writableArea.getColumns()) {
+            nextColumn += TerminalTextUtils.isCharDoubleWidth(text.charAt(visibleEnd++)) ? 2 : 1;
+        }
+        if(start < visibleEnd) {
+            ((AbstractTextGraphics)underlyingTextGraphics).putStringSpan(
+                    topLeft.getColumn() + column,
+                    topLeft.getRow() + row,
+                    text,
+                    start,
+                    visibleEnd,
+                    style);
+        }
+    }
+
     @Override
     public TerminalSize getSize() {
         return writableAreaSize;
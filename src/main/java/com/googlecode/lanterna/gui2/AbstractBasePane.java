@@ -64,6 +64,7 @@ public abstract class AbstractBasePane<T extends BasePane> implements BasePane {
 
         //Propagate
         contentHolder.invalidate();
+        AbstractTextGUIThread.notifyInvalidated(getTextGUI());
     }
 
     @Override
@@ -276,6 +277,7 @@ public abstract class AbstractBasePane<T extends BasePane> implements BasePane {
     @Override
     public synchronized void setTheme(Theme theme) {
         this.theme = theme;
+        invalidate();
     }
 
     protected void addBasePaneListener(BasePaneListener<T> basePaneListener) {
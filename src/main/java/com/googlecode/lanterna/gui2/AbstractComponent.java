@@ -118,6 +118,7 @@ public abstract class AbstractComponent<T extends Component> implements Componen
      */
     public T setRenderer(ComponentRenderer<T> renderer) {
         this.overrideRenderer = renderer;
+        invalidate();
         return self();
     }
 
@@ -155,7 +156,10 @@ public abstract class AbstractComponent<T extends Component> implements Componen
 
     @Override
     public void invalidate() {
-        invalid = true;
+        if(!invalid) {
+            invalid = true;
+            AbstractTextGUIThread.notifyInvalidated(getTextGUI());
+        }
     }
 
     @Override
@@ -182,6 +186,7 @@ public abstract class AbstractComponent<T extends Component> implements Componen
     @Override
     public final synchronized T setPreferredSize(TerminalSize explicitPreferredSize) {
         this.explicitPreferredSize = explicitPreferredSize;
+        invalidate();
         return self();
     }
 
@@ -123,6 +123,7 @@ public abstract class AbstractInteractableComponent<T extends AbstractInteractab
                 basePane.setFocusedInteractable(null);
             }
         }
+        invalidate();
         return self();
     }
 
@@ -0,0 +1,53 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.gui2;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Base class for the built-in layout managers that have settings which can be changed after they have been assigned to
+ * a panel. It keeps track of the panels using the layout manager so that changing a setting can invalidate them, which
+ * tells the GUI that the panels need to be laid out and drawn again.
+ * @author Martin
+ */
+abstract class AbstractLayoutManager implements LayoutManager {
+    private final List<Panel> panels;
+
+    AbstractLayoutManager() {
+        this.panels = new CopyOnWriteArrayList<Panel>();
+    }
+
+    void addPanel(Panel panel) {
+        panels.add(panel);
+    }
+
+    void removePanel(Panel panel) {
+        panels.remove(panel);
+    }
+
+    /**
+     * Invalidates every panel this layout manager is currently assigned to, call this after changing a setting
+     */
+    void invalidatePanels() {
+        for(Panel panel: panels) {
+            panel.invalidate();
+        }
+    }
+}
@@ -25,19 +25,34 @@ import com.googlecode.lanterna.graphics.ThemeDefinition;
 import com.googlecode.lanterna.input.KeyStroke;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 /**
  * Base class for several list box implementations, this will handle things like list of items and the scrollbar.
+ * <p>
+ * The items are normally kept in memory by the list box itself, but a list box can instead be given a
+ * {@link ListItemSource} to load them from as they are needed. Such a list box only keeps a limited number of items
+ * cached and can't be modified through {@code addItem}, {@code removeItem} or {@code clearItems}.
  * @param <T> Should always be itself, see {@code AbstractComponent}
  * @param <V> Type of items this list box contains
  * @author Martin
  */
 public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extends AbstractInteractableComponent<T> {
+    private static final int ITEM_CACHE_SIZE = 1000;
+    private static final int FETCH_SIZE = 100;
+
     private final List<V> items;
     private int selectedIndex;
     private ListItemRenderer<V,T> listItemRenderer;
 
+    // Only used when the items come from an item source
+    private ListItemSource<V> itemSource;
+    private final BlockCache<V> itemCache;
+    private int widestLoadedLabel;
+    private char[] firstCharacterIndex;
+    private BitSet indexedBlocks;
+
     /**
      * This constructor sets up the component so it has no preferred size but will ask to be as big as the list is. If
      * the GUI cannot accommodate this size, scrolling and a vertical scrollbar will be used.
@@ -58,6 +73,27 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
     protected AbstractListBox(TerminalSize size) {
         this.items = new ArrayList<V>();
         this.selectedIndex = -1;
+        this.itemSource = null;
+        this.itemCache = new BlockCache<V>(ITEM_CACHE_SIZE, FETCH_SIZE, "ListItemSource", "item") {
+            @Override
+            protected int getSourceSize() {
+                return itemSource.getItemCount();
+            }
+
+            @Override
+            protected List<V> fetch(int fromIndex, int toIndex) {
+                return itemSource.getItems(fromIndex, toIndex);
+            }
+
+            @Override
+            protected void onFetched(int index, V item) {
+                widestLoadedLabel = Math.max(widestLoadedLabel,
+                        TerminalTextUtils.getColumnWidth(listItemRenderer.getLabel(self(), index, item)));
+            }
+        };
+        this.widestLoadedLabel = 0;
+        this.firstCharacterIndex = null;
+        this.indexedBlocks = null;
         setPreferredSize(size);
         setListItemRenderer(createDefaultListItemRenderer());
     }
@@ -95,6 +131,53 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
             }
         }
         this.listItemRenderer = listItemRenderer;
+        // Labels that were measured with the previous renderer may be different now
+        itemCache.clear();
+        widestLoadedLabel = 0;
+        invalidate();
+        return self();
+    }
+
+    /**
+     * Makes the list box load its items from an item source instead of keeping them itself. Any items previously added
+     * to the list box are removed. Passing {@code null} goes back to an empty list box that keeps its own items.
+     * @param itemSource Source to load the items from, or {@code null}
+     * @return Itself
+     */
+    public synchronized T setItemSource(ListItemSource<V> itemSource) {
+        items.clear();
+        this.itemSource = itemSource;
+        selectedIndex = -1;
+        return refreshItems();
+    }
+
+    /**
+     * Returns the item source this list box loads its items from
+     * @return Item source of the list box, or {@code null} if the list box keeps its items itself
+     */
+    public ListItemSource<V> getItemSource() {
+        return itemSource;
+    }
+
+    /**
+     * Drops all items cached from the item source, so that they will be loaded again when needed. Call this when the
+     * items behind the source have changed. The selection is kept, but moved to the last item if the source now has
+     * fewer items than before. Does nothing except redrawing the list box if it isn't backed by an item source.
+     * @return Itself
+     */
+    public synchronized T refreshItems() {
+        itemCache.clear();
+        widestLoadedLabel = 0;
+        firstCharacterIndex = null;
+        indexedBlocks = null;
+        int itemCount = getItemCount();
+        if(selectedIndex >= itemCount) {
+            selectedIndex = itemCount - 1;
+        }
+        else if(selectedIndex == -1 && itemCount > 0) {
+            selectedIndex = 0;
+        }
+        invalidate();
         return self();
     }
 
@@ -115,14 +198,14 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
                     return Result.MOVE_FOCUS_LEFT;
 
                 case ArrowDown:
-                    if(items.isEmpty() || selectedIndex == items.size() - 1) {
+                    if(isEmpty() || selectedIndex == getItemCount() - 1) {
                         return Result.MOVE_FOCUS_DOWN;
                     }
                     selectedIndex++;
                     return Result.HANDLED;
 
                 case ArrowUp:
-                    if(items.isEmpty() || selectedIndex == 0) {
+                    if(isEmpty() || selectedIndex == 0) {
                         return Result.MOVE_FOCUS_UP;
                     }
                     selectedIndex--;
@@ -133,7 +216,7 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
                     return Result.HANDLED;
 
                 case End:
-                    selectedIndex = items.size() - 1;
+                    selectedIndex = getItemCount() - 1;
                     return Result.HANDLED;
 
                 case PageUp:
@@ -164,6 +247,9 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
 
     private boolean selectByCharacter(Character character) {
 		character = Character.toLowerCase(character);
+		if(itemSource != null) {
+		    return selectByCharacterIndex(character);
+		}
 		
 		int selectedIndex = getSelectedIndex();
 		for (int i = 0; i<getItemCount(); i++) {
@@ -181,10 +267,47 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
 		
 		return false;
     }
+
+    /**
+     * Same as {@code selectByCharacter} but for items from an item source, which are looked up in an index of the first
+     * character of every item. The index is built one block at a time as the search reaches it, so only the items up to
+     * the next match are loaded.
+     */
+    private boolean selectByCharacterIndex(char character) {
+        int itemCount = itemSource.getItemCount();
+        if(firstCharacterIndex == null || firstCharacterIndex.length != itemCount) {
+            firstCharacterIndex = new char[itemCount];
+            indexedBlocks = new BitSet();
+        }
+        for(int i = 0; i < itemCount; i++) {
+            int index = (selectedIndex + i + 1) % itemCount;
+            if(!indexedBlocks.get(index / FETCH_SIZE)) {
+                indexBlock(index);
+            }
+            if(firstCharacterIndex[index] == character) {
+                setSelectedIndex(index);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void indexBlock(int index) {
+        int fromIndex = index - (index % FETCH_SIZE);
+        List<V> block = itemCache.fetchBlock(index);
+        for(int i = 0; i < block.size(); i++) {
+            V item = block.get(i);
+            String label = item != null ? item.toString() : null;
+            if(label != null && label.length() > 0) {
+                firstCharacterIndex[fromIndex + i] = Character.toLowerCase(label.charAt(0));
+            }
+        }
+        indexedBlocks.set(index / FETCH_SIZE);
+    }
     
     @Override
     protected synchronized void afterEnterFocus(FocusChangeDirection direction, Interactable previouslyInFocus) {
-        if(items.isEmpty()) {
+        if(isEmpty()) {
             return;
         }
 
@@ -192,7 +315,7 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
             selectedIndex = 0;
         }
         else if(direction == FocusChangeDirection.UP) {
-            selectedIndex = items.size() - 1;
+            selectedIndex = getItemCount() - 1;
         }
     }
 
@@ -200,8 +323,10 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
      * Adds one more item to the list box, at the end.
      * @param item Item to add to the list box
      * @return Itself
+     * @throws UnsupportedOperationException if the list box is backed by an item source
      */
     public synchronized T addItem(V item) {
+        checkModifiable();
         if(item == null) {
             return self();
         }
@@ -220,8 +345,10 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
      * @param index Index of the item to remove
      * @return The item that was removed
      * @throws IndexOutOfBoundsException if the index is out of bounds in regards to the list of items
+     * @throws UnsupportedOperationException if the list box is backed by an item source
      */
     public synchronized V removeItem(int index) {
+        checkModifiable();
         V existing = items.remove(index);
         if(index < selectedIndex) {
             selectedIndex--;
@@ -236,14 +363,22 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
     /**
      * Removes all items from the list box
      * @return Itself
+     * @throws UnsupportedOperationException if the list box is backed by an item source
      */
     public synchronized T clearItems() {
+        checkModifiable();
         items.clear();
         selectedIndex = -1;
         invalidate();
         return self();
     }
 
+    private void checkModifiable() {
+        if(itemSource != null) {
+            throw new UnsupportedOperationException("Cannot modify the items of a list box backed by a ListItemSource");
+        }
+    }
+
     @Override
     public boolean isFocusable() {
         if(isEmpty()) {
@@ -255,12 +390,23 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
 
     /**
      * Looks for the particular item in the list and returns the index within the list (starting from zero) of that item
-     * if it is found, or -1 otherwise
+     * if it is found, or -1 otherwise. If the list box is backed by an item source, this goes through the items from
+     * the source until the item is found.
      * @param item What item to search for in the list box
      * @return Index of the item in the list box or -1 if the list box does not contain the item
      */
     public synchronized int indexOf(V item) {
-        return items.indexOf(item);
+        if(itemSource == null) {
+            return items.indexOf(item);
+        }
+        int itemCount = itemSource.getItemCount();
+        for(int fromIndex = 0; fromIndex < itemCount; fromIndex += ITEM_CACHE_SIZE) {
+            int index = itemSource.getItems(fromIndex, Math.min(itemCount, fromIndex + ITEM_CACHE_SIZE)).indexOf(item);
+            if(index != -1) {
+                return fromIndex + index;
+            }
+        }
+        return -1;
     }
 
     /**
@@ -268,10 +414,24 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
      * @param index Index of the item to fetch
      * @return The item at the specified index
      * @throws IndexOutOfBoundsException If the index is less than zero or equals/greater than the number of items in
-     * the list box
+     * the list box, or if the item source didn't return the item
      */
     public synchronized V getItemAt(int index) {
-        return items.get(index);
+        if(itemSource == null) {
+            return items.get(index);
+        }
+        return itemCache.get(index);
+    }
+
+    /**
+     * Returns the width of the widest label among the items loaded from the item source so far, loading the first
+     * block of items if nothing has been loaded yet
+     */
+    synchronized int getWidestLoadedLabel() {
+        if(widestLoadedLabel == 0 && !isEmpty()) {
+            getItemAt(Math.max(0, selectedIndex));
+        }
+        return widestLoadedLabel;
     }
 
     /**
@@ -279,7 +439,7 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
      * @return {@code true} if the list box has no items, {@code false} otherwise
      */
     public synchronized boolean isEmpty() {
-        return items.isEmpty();
+        return getItemCount() == 0;
     }
 
     /**
@@ -287,14 +447,21 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
      * @return Number of items in the list box
      */
     public synchronized int getItemCount() {
+        if(itemSource != null) {
+            return itemSource.getItemCount();
+        }
         return items.size();
     }
 
     /**
-     * Returns a copy of the items in the list box as a {@code List}
+     * Returns a copy of the items in the list box as a {@code List}. If the list box is backed by an item source, this
+     * fetches every item from the source.
      * @return Copy of all the items in this list box
      */
     public synchronized List<V> getItems() {
+        if(itemSource != null) {
+            return new ArrayList<V>(itemSource.getItems(0, itemSource.getItemCount()));
+        }
         return new ArrayList<V>(items);
     }
 
@@ -310,8 +477,8 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
         if(selectedIndex < 0) {
             selectedIndex = 0;
         }
-        if(selectedIndex > items.size() - 1) {
-            selectedIndex = items.size() - 1;
+        if(selectedIndex > getItemCount() - 1) {
+            selectedIndex = getItemCount() - 1;
         }
         invalidate();
         return self();
@@ -337,7 +504,7 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
         if (selectedIndex == -1) {
             return null;
         } else {
-            return items.get(selectedIndex);
+            return getItemAt(selectedIndex);
         }
     }
 
@@ -374,6 +541,11 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
         @Override
         public TerminalSize getPreferredSize(T listBox) {
             int maxWidth = 5;   //Set it to something...
+            if(listBox.getItemSource() != null) {
+                // Measuring every item would mean loading all of them, settle for the ones loaded so far
+                maxWidth = Math.max(maxWidth, listBox.getWidestLoadedLabel());
+                return new TerminalSize(maxWidth + 1, listBox.getItemCount());
+            }
             int index = 0;
             for (V item : listBox.getItems()) {
                 String itemString = listBox.getListItemRenderer().getLabel(listBox, index++, item);
@@ -392,7 +564,7 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
             int componentHeight = graphics.getSize().getRows();
             //int componentWidth = graphics.getSize().getColumns();
             int selectedIndex = listBox.getSelectedIndex();
-            List<V> items = listBox.getItems();
+            int itemCount = listBox.getItemCount();
             ListItemRenderer<V,T> listItemRenderer = listBox.getListItemRenderer();
 
             if(selectedIndex != -1) {
@@ -405,16 +577,16 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
             //Do we need to recalculate the scroll position?
             //This code would be triggered by resizing the window when the scroll
             //position is at the bottom
-            if(items.size() > componentHeight &&
-                    items.size() - scrollTopIndex < componentHeight) {
-                scrollTopIndex = items.size() - componentHeight;
+            if(itemCount > componentHeight &&
+                    itemCount - scrollTopIndex < componentHeight) {
+                scrollTopIndex = itemCount - componentHeight;
             }
 
             graphics.applyThemeStyle(themeDefinition.getNormal());
             graphics.fill(' ');
 
             TerminalSize itemSize = graphics.getSize().withRows(1);
-            for(int i = scrollTopIndex; i < items.size(); i++) {
+            for(int i = scrollTopIndex; i < itemCount; i++) {
                 if(i - scrollTopIndex >= componentHeight) {
                     break;
                 }
@@ -422,16 +594,16 @@ public abstract class AbstractListBox<V, T extends AbstractListBox<V, T>> extend
                         graphics.newTextGraphics(new TerminalPosition(0, i - scrollTopIndex), itemSize),
                         listBox,
                         i,
-                        items.get(i),
+                        listBox.getItemAt(i),
                         selectedIndex == i,
                         listBox.isFocused());
             }
 
             graphics.applyThemeStyle(themeDefinition.getNormal());
-            if(items.size() > componentHeight) {
+            if(itemCount > componentHeight) {
                 verticalScrollBar.onAdded(listBox.getParent());
                 verticalScrollBar.setViewSize(componentHeight);
-                verticalScrollBar.setScrollMaximum(items.size());
+                verticalScrollBar.setScrollMaximum(itemCount);
                 verticalScrollBar.setScrollPosition(scrollTopIndex);
                 verticalScrollBar.draw(graphics.newTextGraphics(
                         new TerminalPosition(graphics.getSize().getColumns() - 1, 0),
@@ -81,6 +81,14 @@ public abstract class AbstractTextGUI implements TextGUI {
         return screen.pollInput();
     }
 
+    /**
+     * Returns the screen this GUI is drawn on and reads its input from
+     * @return Screen of this GUI
+     */
+    Screen getUnderlyingScreen() {
+        return screen;
+    }
+
     @Override
     public synchronized boolean processInput() throws IOException {
         boolean gotInput = false;
@@ -180,6 +188,15 @@ public abstract class AbstractTextGUI implements TextGUI {
      */
     protected void invalidate() {
         dirty = true;
+        AbstractTextGUIThread.notifyInvalidated(this);
+    }
+
+    /**
+     * Called when this GUI or a component or base pane belonging to it has been invalidated, before the GUI thread is
+     * woken up. The default implementation does nothing, subclasses can use this to know that something needs to be redrawn
+     * without having to look through all their components for it.
+     */
+    void onContentInvalidated() {
     }
 
     /**
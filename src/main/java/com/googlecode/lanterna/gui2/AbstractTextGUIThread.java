@@ -60,6 +60,31 @@ public abstract class AbstractTextGUIThread implements TextGUIThread {
         customTasks.add(runnable);
     }
 
+    /**
+     * Called when the GUI has been changed in a way that may require it to be redrawn, for example when a component was
+     * invalidated. Implementations that sleep while there is nothing to do should wake up and check the GUI when this
+     * is called. The default implementation does nothing.
+     */
+    protected void onInvalidated() {
+    }
+
+    /**
+     * Tells a text GUI and its GUI thread, if there is one, that the GUI has been changed
+     * @param textGUI Text GUI that was changed, can be {@code null}
+     */
+    static void notifyInvalidated(TextGUI textGUI) {
+        if(textGUI == null) {
+            return;
+        }
+        if(textGUI instanceof AbstractTextGUI) {
+            ((AbstractTextGUI)textGUI).onContentInvalidated();
+        }
+        TextGUIThread guiThread = textGUI.getGUIThread();
+        if(guiThread instanceof AbstractTextGUIThread) {
+            ((AbstractTextGUIThread)guiThread).onInvalidated();
+        }
+    }
+
     @Override
     public void setExceptionHandler(ExceptionHandler exceptionHandler) {
         if(exceptionHandler == null) {
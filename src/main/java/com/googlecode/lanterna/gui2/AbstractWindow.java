@@ -117,8 +117,12 @@ public abstract class AbstractWindow extends AbstractBasePane<Window> implements
 
     @Override
     public void setVisible(boolean visible) {
-        this.visible = visible;
+        if(this.visible != visible) {
+            this.visible = visible;
+            invalidate();
+        }
     }
+
     @Override
     public void draw(TextGUIGraphics graphics) {
         if(!graphics.getSize().equals(lastKnownSize)) {
@@ -194,6 +198,7 @@ public abstract class AbstractWindow extends AbstractBasePane<Window> implements
      */
     public void setWindowPostRenderer(WindowPostRenderer windowPostRenderer) {
         this.windowPostRenderer = windowPostRenderer;
+        invalidate();
     }
 
     @Override
@@ -205,6 +210,10 @@ public abstract class AbstractWindow extends AbstractBasePane<Window> implements
     public final void setPosition(TerminalPosition topLeft) {
         TerminalPosition oldPosition = this.lastKnownPosition;
         this.lastKnownPosition = topLeft;
+        if(oldPosition == null || !oldPosition.equals(topLeft)) {
+            // The content doesn't need to be drawn again, but the GUI needs to move it on the screen
+            AbstractTextGUIThread.notifyInvalidated(getTextGUI());
+        }
 
         // Fire listeners
         for(BasePaneListener<?> listener: getBasePaneListeners()) {
@@ -0,0 +1,144 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.gui2;
+
+import com.googlecode.lanterna.terminal.RecentlyUsedMap;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache for components that load their data from a source as it's needed, such as a list box backed by a
+ * {@link ListItemSource} or a table model backed by a data source. Items are fetched in aligned blocks, since a
+ * component asking for one item will most likely want the items next to it too, and only a limited number of the most
+ * recently used items are kept.
+ * <p>
+ * This class is public only so that the components in other packages can use it; it's an implementation detail and not
+ * part of the lanterna API. It's not thread-safe, the owning component is expected to synchronize.
+ * @param <V> Type of the items
+ * @author Martin
+ */
+public abstract class BlockCache<V> {
+    private final Map<Integer, V> cache;
+    private final int blockSize;
+    private final String sourceName;
+    private final String itemName;
+
+    /**
+     * Creates a new, empty, cache
+     * @param capacity Maximum number of items to keep
+     * @param blockSize Number of items to fetch at a time, at most {@code capacity}
+     * @param sourceName Name of the source, used in error messages
+     * @param itemName What the items are called, used in error messages
+     */
+    protected BlockCache(int capacity, int blockSize, String sourceName, String itemName) {
+        if(blockSize < 1 || blockSize > capacity) {
+            throw new IllegalArgumentException("Block size must be between 1 and the capacity " + capacity + ", was " +
+                    blockSize);
+        }
+        this.cache = new RecentlyUsedMap<Integer, V>(capacity);
+        this.blockSize = blockSize;
+        this.sourceName = sourceName;
+        this.itemName = itemName;
+    }
+
+    /**
+     * Returns the number of items in the source
+     * @return Number of items in the source
+     */
+    protected abstract int getSourceSize();
+
+    /**
+     * Fetches a range of items from the source
+     * @param fromIndex Index of the first item to fetch
+     * @param toIndex Index after the last item to fetch
+     * @return Items in the range, in order
+     */
+    protected abstract List<V> fetch(int fromIndex, int toIndex);
+
+    /**
+     * Called for every item that has been fetched from the source, before it's returned. Does nothing by default.
+     * @param index Index of the item
+     * @param item Item that was fetched
+     */
+    protected void onFetched(int index, V item) {
+    }
+
+    /**
+     * Returns the number of items fetched at a time
+     * @return Number of items fetched at a time
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Returns an item, fetching the block it's in from the source if it isn't cached
+     * @param index Index of the item
+     * @return The item at the index
+     * @throws IndexOutOfBoundsException If the index is outside of the source or the source didn't return the item
+     */
+    public V get(int index) {
+        V item = cache.get(index);
+        if(item != null || cache.containsKey(index)) {
+            return item;
+        }
+        return fetchBlock(index).get(index % blockSize);
+    }
+
+    /**
+     * Fetches the whole block an item is in from the source and caches it, whether or not it's already cached
+     * @param index Index of any item in the block
+     * @return All the items of the block that the source returned, the first being the item at
+     * {@code index - index % getBlockSize()}
+     * @throws IndexOutOfBoundsException If the index is outside of the source or the source didn't return the item
+     */
+    public List<V> fetchBlock(int index) {
+        int size = getSourceSize();
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(sourceName + " has " + size + " " + itemName + "s, invalid access " +
+                    "at index " + index);
+        }
+        int fromIndex = index - (index % blockSize);
+        int toIndex = Math.min(size, fromIndex + blockSize);
+        List<V> fetched = fetch(fromIndex, toIndex);
+        if(fetched.size() > toIndex - fromIndex) {
+            fetched = fetched.subList(0, toIndex - fromIndex);
+        }
+        for(int i = 0; i < fetched.size(); i++) {
+            V item = fetched.get(i);
+            cache.put(fromIndex + i, item);
+            onFetched(fromIndex + i, item);
+        }
+        if(index - fromIndex >= fetched.size()) {
+            throw new IndexOutOfBoundsException(sourceName + " returned " + fetched.size() + " " + itemName + "s when " +
+                    "asked for " + itemName + "s " + fromIndex + " to " + toIndex + " out of " + size + ", so " +
+                    itemName + " " + index + " is missing; if the data has changed, the " + itemName + " count must " +
+                    "change with it");
+        }
+        return fetched;
+    }
+
+    /**
+     * Drops all cached items, so that they will be fetched again when needed
+     */
+    public void clear() {
+        cache.clear();
+    }
+}
@@ -25,6 +25,7 @@ import com.googlecode.lanterna.input.KeyStroke;
 import com.googlecode.lanterna.input.KeyType;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -46,7 +47,7 @@ public class CheckBoxList<V> extends AbstractListBox<V, CheckBoxList<V>> {
     }
 
     private final List<Listener> listeners;
-    private final List<Boolean> itemStatus;
+    private final BitSet itemStatus;
 
     /**
      * Creates a new {@code CheckBoxList} that is initially empty and has no hardcoded preferred size, so it will
@@ -64,7 +65,7 @@ public class CheckBoxList<V> extends AbstractListBox<V, CheckBoxList<V>> {
     public CheckBoxList(TerminalSize preferredSize) {
         super(preferredSize);
         this.listeners = new CopyOnWriteArrayList<Listener>();
-        this.itemStatus = new ArrayList<Boolean>();
+        this.itemStatus = new BitSet();
     }
 
     @Override
@@ -74,8 +75,21 @@ public class CheckBoxList<V> extends AbstractListBox<V, CheckBoxList<V>> {
 
     @Override
     public synchronized CheckBoxList<V> clearItems() {
+        super.clearItems();
         itemStatus.clear();
-        return super.clearItems();
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * All items start out unchecked. The checked state is kept by index, so it stays with the same index if the items
+     * in the source change.
+     */
+    @Override
+    public synchronized CheckBoxList<V> setItemSource(ListItemSource<V> itemSource) {
+        itemStatus.clear();
+        return super.setItemSource(itemSource);
     }
 
     @Override
@@ -86,7 +100,15 @@ public class CheckBoxList<V> extends AbstractListBox<V, CheckBoxList<V>> {
     @Override
     public synchronized V removeItem(int index) {
         V item = super.removeItem(index);
-        itemStatus.remove(index);
+        // Move the state of the items after the removed one up one step
+        int length = itemStatus.length();
+        if(index < length) {
+            BitSet following = itemStatus.get(index + 1, Math.max(index + 1, length));
+            itemStatus.clear(index, length);
+            for(int i = following.nextSetBit(0); i >= 0; i = following.nextSetBit(i + 1)) {
+                itemStatus.set(index + i);
+            }
+        }
         return item;
     }
 
@@ -97,8 +119,12 @@ public class CheckBoxList<V> extends AbstractListBox<V, CheckBoxList<V>> {
      * @return Itself
      */
     public synchronized CheckBoxList<V> addItem(V object, boolean checkedState) {
-        itemStatus.add(checkedState);
-        return super.addItem(object);
+        int index = getItemCount();
+        super.addItem(object);
+        if(object != null) {
+            itemStatus.set(index, checkedState);
+        }
+        return this;
     }
 
     /**
@@ -123,7 +149,7 @@ public class CheckBoxList<V> extends AbstractListBox<V, CheckBoxList<V>> {
      * {@code false} depending on checked state of the item at that index
      */
     public synchronized Boolean isChecked(int index) {
-        if(index < 0 || index >= itemStatus.size())
+        if(index < 0 || index >= getItemCount())
             return null;
 
         return itemStatus.get(index);
@@ -161,10 +187,8 @@ public class CheckBoxList<V> extends AbstractListBox<V, CheckBoxList<V>> {
      */
     public synchronized List<V> getCheckedItems() {
         List<V> result = new ArrayList<V>();
-        for(int i = 0; i < itemStatus.size(); i++) {
-            if(itemStatus.get(i)) {
-                result.add(getItemAt(i));
-            }
+        for(int i = itemStatus.nextSetBit(0); i >= 0 && i < getItemCount(); i = itemStatus.nextSetBit(i + 1)) {
+            result.add(getItemAt(i));
         }
         return result;
     }
@@ -219,7 +243,7 @@ public class CheckBoxList<V> extends AbstractListBox<V, CheckBoxList<V>> {
         @Override
         public String getLabel(CheckBoxList<V> listBox, int index, V item) {
             String check = " ";
-            List<Boolean> itemStatus = listBox.itemStatus;
+            BitSet itemStatus = listBox.itemStatus;
             if(itemStatus.get(index))
                 check = "x";
 
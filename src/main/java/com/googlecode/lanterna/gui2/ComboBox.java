@@ -262,6 +262,7 @@ public class ComboBox<V> extends AbstractInteractableComponent<ComboBox<V>> {
         if(readOnly) {
             dropDownFocused = true;
         }
+        invalidate();
         return this;
     }
 
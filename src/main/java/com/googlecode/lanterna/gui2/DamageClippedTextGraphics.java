@@ -0,0 +1,111 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.gui2;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.graphics.AbstractTextGraphics;
+import com.googlecode.lanterna.graphics.TextGraphics;
+import com.googlecode.lanterna.terminal.virtual.DirtyRegion;
+
+/**
+ * TextGraphics used by {@link MultiWindowTextGUI} to run window post-renderers when only a part of the screen is being
+ * redrawn. Characters are passed on to the underlying graphics only where the damage region is dirty, using the same
+ * coordinates, and the bounding box of all characters set is recorded so the GUI can tell how far outside of its window
+ * a post-renderer draws.
+ * @author Martin
+ */
+class DamageClippedTextGraphics extends AbstractTextGraphics {
+    private final TextGraphics underlyingTextGraphics;
+    private final DirtyRegion damage;
+    private int touchedLeft;
+    private int touchedTop;
+    private int touchedRight;
+    private int touchedBottom;
+
+    /**
+     * Creates a new graphics that draws on {@code underlyingTextGraphics} within {@code damage}
+     * @param underlyingTextGraphics Graphics to draw on
+     * @param damage Cells that may be drawn, or {@code null} to only record where characters are set
+     */
+    DamageClippedTextGraphics(TextGraphics underlyingTextGraphics, DirtyRegion damage) {
+        this.underlyingTextGraphics = underlyingTextGraphics;
+        this.damage = damage;
+        this.touchedLeft = Integer.MAX_VALUE;
+        this.touchedTop = Integer.MAX_VALUE;
+        this.touchedRight = Integer.MIN_VALUE;
+        this.touchedBottom = Integer.MIN_VALUE;
+    }
+
+    @Override
+    public TextGraphics setCharacter(int columnIndex, int rowIndex, TextCharacter textCharacter) {
+        touchedLeft = Math.min(touchedLeft, columnIndex);
+        touchedTop = Math.min(touchedTop, rowIndex);
+        touchedRight = Math.max(touchedRight, columnIndex + (textCharacter.isDoubleWidth() ? 2 : 1));
+        touchedBottom = Math.max(touchedBottom, rowIndex + 1);
+        if(damage != null && damage.isDirty(rowIndex, columnIndex)) {
+            underlyingTextGraphics.setCharacter(columnIndex, rowIndex, textCharacter);
+        }
+        return this;
+    }
+
+    @Override
+    public TextCharacter getCharacter(int column, int row) {
+        return underlyingTextGraphics.getCharacter(column, row);
+    }
+
+    @Override
+    public TerminalSize getSize() {
+        return underlyingTextGraphics.getSize();
+    }
+
+    /**
+     * Returns the leftmost column a character has been set on, or {@code Integer.MAX_VALUE} if nothing has been set
+     * @return Leftmost column touched
+     */
+    int getTouchedLeft() {
+        return touchedLeft;
+    }
+
+    /**
+     * Returns the topmost row a character has been set on, or {@code Integer.MAX_VALUE} if nothing has been set
+     * @return Topmost row touched
+     */
+    int getTouchedTop() {
+        return touchedTop;
+    }
+
+    /**
+     * Returns the column after the rightmost cell a character has been set on, or {@code Integer.MIN_VALUE} if nothing
+     * has been set
+     * @return Column after the rightmost one touched
+     */
+    int getTouchedRight() {
+        return touchedRight;
+    }
+
+    /**
+     * Returns the row after the lowest row a character has been set on, or {@code Integer.MIN_VALUE} if nothing has
+     * been set
+     * @return Row after the lowest one touched
+     */
+    int getTouchedBottom() {
+        return touchedBottom;
+    }
+}
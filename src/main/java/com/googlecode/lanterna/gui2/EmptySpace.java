@@ -71,6 +71,7 @@ public class EmptySpace extends AbstractComponent<EmptySpace> {
      */
     public void setColor(TextColor color) {
         this.color = color;
+        invalidate();
     }
 
     /**
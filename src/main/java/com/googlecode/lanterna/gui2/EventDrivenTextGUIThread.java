@@ -0,0 +1,285 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.gui2;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.input.InputDecoder;
+import com.googlecode.lanterna.screen.Screen;
+import com.googlecode.lanterna.screen.TerminalScreen;
+import com.googlecode.lanterna.screen.VirtualScreen;
+import com.googlecode.lanterna.terminal.Terminal;
+import com.googlecode.lanterna.terminal.TerminalResizeListener;
+import com.googlecode.lanterna.terminal.ansi.NIOTelnetTerminalServer;
+import com.googlecode.lanterna.terminal.ansi.StreamBasedTerminal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Implementation of TextGUIThread that, like {@link SeparateTextGUIThread}, runs the GUI event processing on a
+ * dedicated thread, but instead of checking the GUI continuously it sleeps until there is something to do. The GUI
+ * thread is woken up when there is user input, when a task is posted through {@code invokeLater(..)} or
+ * {@code invokeAndWait(..)}, when a component or window is invalidated and when the terminal is resized. The input is
+ * then taken with non-blocking reads on the GUI thread itself, so no other thread is needed.
+ * <p>
+ * Being woken up by input requires a {@link TerminalScreen} (possibly wrapped in a {@link VirtualScreen}) on a
+ * {@link StreamBasedTerminal} whose {@link InputDecoder} has the input pushed into it, like the terminals of
+ * {@link NIOTelnetTerminalServer}. In that case an idle GUI doesn't use any CPU at all, which matters when many GUIs
+ * are running in the same process, for example one per connection on a telnet server. On any other screen, the GUI
+ * thread checks for input every 10 milliseconds while it's idle. Blocking I/O should be left off on the text GUI, or
+ * the GUI thread will block while waiting for input and only be woken up by the next key stroke.
+ * <p>
+ * This thread can only be used with text GUIs that extend {@link AbstractTextGUI}. Resizes are only picked up directly
+ * if the GUI is running on a {@link TerminalScreen}, possibly wrapped in a {@link VirtualScreen}; on other screens they
+ * will be noticed the next time the GUI thread wakes up for another reason.
+ * <p>
+ * Here is an example of how to use this {@code TextGUIThread}:
+ * <pre>
+ *     {@code
+ *     MultiWindowTextGUI textGUI = new MultiWindowTextGUI(new EventDrivenTextGUIThread.Factory(), screen);
+ *     // ... add components ...
+ *     ((AsynchronousTextGUIThread)textGUI.getGUIThread()).start();
+ *     // ... this thread will continue while the GUI runs on a separate thread ...
+ *     }
+ * </pre>
+ * @see TextGUIThread
+ * @see SeparateTextGUIThread
+ * @author Martin
+ */
+public class EventDrivenTextGUIThread extends AbstractTextGUIThread implements AsynchronousTextGUIThread {
+    private static final long INPUT_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private volatile State state;
+    private final AbstractTextGUI abstractTextGUI;
+    private final Thread textGUIThread;
+    private final CountDownLatch waitLatch;
+    private final TerminalResizeListener resizeListener;
+    private final Runnable inputAvailableListener;
+    private final Lock wakeUpLock;
+    private final Condition wakeUpCondition;
+    private boolean wakeUpPending;
+    private Terminal resizeListenerTerminal;
+    private InputDecoder listenedInputDecoder;
+
+    private EventDrivenTextGUIThread(AbstractTextGUI textGUI) {
+        super(textGUI);
+        this.abstractTextGUI = textGUI;
+        this.waitLatch = new CountDownLatch(1);
+        this.wakeUpLock = new ReentrantLock();
+        this.wakeUpCondition = wakeUpLock.newCondition();
+        this.wakeUpPending = false;
+        this.resizeListenerTerminal = null;
+        this.listenedInputDecoder = null;
+        this.resizeListener = new TerminalResizeListener() {
+            @Override
+            public void onResized(Terminal terminal, TerminalSize newSize) {
+                wakeUp();
+            }
+        };
+        this.inputAvailableListener = new Runnable() {
+            @Override
+            public void run() {
+                wakeUp();
+            }
+        };
+        this.textGUIThread = new Thread("LanternaGUI") {
+            @Override
+            public void run() {
+                mainGUILoop();
+            }
+        };
+        state = State.CREATED;
+    }
+
+    @Override
+    public void start() {
+        addListeners();
+        state = State.STARTED;
+        textGUIThread.start();
+    }
+
+    @Override
+    public void stop() {
+        if(state != State.STARTED) {
+            return;
+        }
+
+        state = State.STOPPING;
+        wakeUp();
+    }
+
+    @Override
+    public void waitForStop() throws InterruptedException {
+        waitLatch.await();
+    }
+
+    @Override
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public Thread getThread() {
+        return textGUIThread;
+    }
+
+    @Override
+    public void invokeLater(Runnable runnable) throws IllegalStateException {
+        if(state != State.STARTED) {
+            throw new IllegalStateException("Cannot schedule " + runnable + " for execution on the TextGUIThread " +
+                    "because the thread is in " + state + " state");
+        }
+        super.invokeLater(runnable);
+        wakeUp();
+    }
+
+    @Override
+    protected void onInvalidated() {
+        wakeUp();
+    }
+
+    private void wakeUp() {
+        wakeUpLock.lock();
+        try {
+            wakeUpPending = true;
+            wakeUpCondition.signal();
+        }
+        finally {
+            wakeUpLock.unlock();
+        }
+    }
+
+    private void waitForWakeUp() {
+        wakeUpLock.lock();
+        try {
+            long pollNanos = INPUT_POLL_INTERVAL_NANOS;
+            while(!wakeUpPending && state == State.STARTED) {
+                if(listenedInputDecoder != null) {
+                    wakeUpCondition.awaitUninterruptibly();
+                }
+                else {
+                    //Nothing will tell us about new input, so we have to go and check for it regularly
+                    try {
+                        pollNanos = wakeUpCondition.awaitNanos(pollNanos);
+                    }
+                    catch(InterruptedException e) {
+                        //Ignored like awaitUninterruptibly() does, the input will be checked now anyway
+                        pollNanos = 0;
+                    }
+                    if(pollNanos <= 0) {
+                        break;
+                    }
+                }
+            }
+            wakeUpPending = false;
+        }
+        finally {
+            wakeUpLock.unlock();
+        }
+    }
+
+    private void addListeners() {
+        Screen screen = abstractTextGUI.getUnderlyingScreen();
+        if(screen instanceof VirtualScreen) {
+            screen = ((VirtualScreen)screen).getRealScreen();
+        }
+        if(screen instanceof TerminalScreen) {
+            resizeListenerTerminal = ((TerminalScreen)screen).getTerminal();
+            resizeListenerTerminal.addResizeListener(resizeListener);
+            if(resizeListenerTerminal instanceof StreamBasedTerminal) {
+                InputDecoder inputDecoder = ((StreamBasedTerminal)resizeListenerTerminal).getInputDecoder();
+                if(!inputDecoder.hasSource()) {
+                    listenedInputDecoder = inputDecoder;
+                    listenedInputDecoder.setInputAvailableListener(inputAvailableListener);
+                }
+            }
+        }
+    }
+
+    private void removeListeners() {
+        if(resizeListenerTerminal != null) {
+            resizeListenerTerminal.removeResizeListener(resizeListener);
+            resizeListenerTerminal = null;
+        }
+        if(listenedInputDecoder != null) {
+            listenedInputDecoder.setInputAvailableListener(null);
+        }
+    }
+
+    private void mainGUILoop() {
+        try {
+            //Draw initial screen, after this only draw when the GUI is marked as invalid
+            try {
+                textGUI.updateScreen();
+            }
+            catch(IOException e) {
+                exceptionHandler.onIOException(e);
+            }
+            catch(RuntimeException e) {
+                exceptionHandler.onRuntimeException(e);
+            }
+            while(state == State.STARTED) {
+                try {
+                    processEventsAndUpdate();
+                    waitForWakeUp();
+                }
+                catch(EOFException e) {
+                    stop();
+                    break; //Break out quickly from the main loop
+                }
+                catch(IOException e) {
+                    if(exceptionHandler.onIOException(e)) {
+                        stop();
+                        break;
+                    }
+                }
+                catch(RuntimeException e) {
+                    if(exceptionHandler.onRuntimeException(e)) {
+                        stop();
+                        break;
+                    }
+                }
+            }
+        }
+        finally {
+            removeListeners();
+            state = State.STOPPED;
+            waitLatch.countDown();
+        }
+    }
+
+    /**
+     * Factory class for creating EventDrivenTextGUIThread objects
+     */
+    public static class Factory implements TextGUIThreadFactory {
+        @Override
+        public TextGUIThread createTextGUIThread(TextGUI textGUI) {
+            if(!(textGUI instanceof AbstractTextGUI)) {
+                throw new IllegalArgumentException("EventDrivenTextGUIThread can only be used with text GUIs " +
+                        "extending AbstractTextGUI");
+            }
+            return new EventDrivenTextGUIThread((AbstractTextGUI)textGUI);
+        }
+    }
+}
@@ -34,7 +34,7 @@ import java.util.*;
  * ({@code createLayoutData(..)}). You can set components to span both rows and columns, as well as defining how to
  * distribute the available space.
  */
-public class GridLayout implements LayoutManager {
+public class GridLayout extends AbstractLayoutManager {
     /**
      * The enum is used to specify where in a grid cell a component should be placed, in the case that the preferred
      * size of the component is smaller than the space in the cell. This class will generally use two alignments, one
@@ -251,6 +251,7 @@ public class GridLayout implements LayoutManager {
         }
         this.horizontalSpacing = horizontalSpacing;
         this.changed = true;
+        invalidatePanels();
         return this;
     }
 
@@ -273,6 +274,7 @@ public class GridLayout implements LayoutManager {
         }
         this.verticalSpacing = verticalSpacing;
         this.changed = true;
+        invalidatePanels();
         return this;
     }
 
@@ -295,6 +297,7 @@ public class GridLayout implements LayoutManager {
         }
         this.topMarginSize = topMarginSize;
         this.changed = true;
+        invalidatePanels();
         return this;
     }
 
@@ -317,6 +320,7 @@ public class GridLayout implements LayoutManager {
         }
         this.bottomMarginSize = bottomMarginSize;
         this.changed = true;
+        invalidatePanels();
         return this;
     }
 
@@ -339,6 +343,7 @@ public class GridLayout implements LayoutManager {
         }
         this.leftMarginSize = leftMarginSize;
         this.changed = true;
+        invalidatePanels();
         return this;
     }
 
@@ -361,6 +366,7 @@ public class GridLayout implements LayoutManager {
         }
         this.rightMarginSize = rightMarginSize;
         this.changed = true;
+        invalidatePanels();
         return this;
     }
 
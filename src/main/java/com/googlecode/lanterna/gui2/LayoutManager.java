@@ -53,7 +53,9 @@ public interface LayoutManager {
 
     /**
      * Returns true if the internal state of this LayoutManager has changed since the last call to doLayout. This will
-     * tell the container that it needs to call doLayout again.
+     * tell the container that it needs to call doLayout again. Note that the GUI isn't told about the change by this
+     * alone, so a layout manager that can be changed after it has been assigned should also invalidate the panels using
+     * it; the built-in layout managers do this.
      * @return {@code true} if this layout manager's internal state has changed since the last call to {@code doLayout}
      */
     boolean hasChanged();
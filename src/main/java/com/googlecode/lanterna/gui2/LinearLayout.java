@@ -31,7 +31,7 @@ import java.util.Map;
 /**
  * Simple layout manager the puts all components on a single line, either horizontally or vertically.
  */
-public class LinearLayout implements LayoutManager {
+public class LinearLayout extends AbstractLayoutManager {
     /**
      * This enum type will decide the alignment of a component on the counter-axis, meaning the horizontal alignment on
      * vertical {@code LinearLayout}s and vertical alignment on horizontal {@code LinearLayout}s.
@@ -107,6 +107,7 @@ public class LinearLayout implements LayoutManager {
     public LinearLayout setSpacing(int spacing) {
         this.spacing = spacing;
         this.changed = true;
+        invalidatePanels();
         return this;
     }
 
@@ -0,0 +1,49 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.gui2;
+
+import java.util.List;
+
+/**
+ * Source of items for an {@link AbstractListBox} that doesn't keep all of its items in memory. The list box asks for
+ * blocks of items as they are needed and keeps a limited number of them cached, so a list box over a very large number
+ * of items only ever loads the ones around what's being shown.
+ * <p>
+ * Item sources are read-only as far as the list box is concerned. If the items change, call
+ * {@link AbstractListBox#refreshItems()} so the list box drops what it has cached.
+ *
+ * @param <V> Type of items in the list box
+ * @author Martin
+ */
+public interface ListItemSource<V> {
+    /**
+     * Returns the number of items available. This is called often (several times per key stroke and redraw) so it
+     * should be cheap.
+     * @return Number of items in the source
+     */
+    int getItemCount();
+
+    /**
+     * Fetches a range of items from the source
+     * @param fromIndex Index of the first item to fetch
+     * @param toIndex Index after the last item to fetch
+     * @return Items in the range, in order
+     */
+    List<V> getItems(int fromIndex, int toIndex);
+}
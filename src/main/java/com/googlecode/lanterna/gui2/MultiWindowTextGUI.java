@@ -20,6 +20,7 @@ package com.googlecode.lanterna.gui2;
 
 import com.googlecode.lanterna.graphics.BasicTextImage;
 import com.googlecode.lanterna.graphics.TextImage;
+import com.googlecode.lanterna.graphics.Theme;
 import com.googlecode.lanterna.input.KeyStroke;
 import com.googlecode.lanterna.input.KeyType;
 import com.googlecode.lanterna.screen.Screen;
@@ -27,6 +28,7 @@ import com.googlecode.lanterna.TerminalPosition;
 import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.TextColor;
 import com.googlecode.lanterna.screen.VirtualScreen;
+import com.googlecode.lanterna.terminal.virtual.DirtyRegion;
 
 import java.io.EOFException;
 import java.io.IOException;
@@ -36,6 +38,13 @@ import java.util.*;
  * This is the main Text GUI implementation built into Lanterna, supporting multiple tiled windows and a dynamic
  * background area that can be fully customized. If you want to create a text-based GUI with windows and controls,
  * it's very likely this is what you want to use.
+ * <p>
+ * Windows are drawn into off-screen buffers that are kept between updates, and only windows that have been invalidated
+ * are drawn again. The parts of the screen covered by those windows (including anything their post-renderer draws,
+ * like a shadow) are then composited from the background and the window buffers, the rest of the screen is left as it
+ * was. Changes have to be reported for this to work: components, windows and the built-in layout managers invalidate
+ * themselves when they change and a window reports it when it's moved, {@link #isPendingUpdate()} doesn't go looking
+ * through the windows for changes.
  *
  * @author Martin
  */
@@ -45,9 +54,16 @@ public class MultiWindowTextGUI extends AbstractTextGUI implements WindowBasedTe
     private final BasePane backgroundPane;
     private final List<Window> windows;
     private final IdentityHashMap<Window, TextImage> windowRenderBufferCache;
+    private final IdentityHashMap<Window, WindowFootprint> windowFootprints;
+    private final DirtyRegion damage;
     private final WindowPostRenderer postRenderer;
 
     private Window activeWindow;
+    private Window lastDrawnActiveWindow;
+    private List<Window> lastDrawnWindows;
+    private TextImage backgroundRenderBuffer;
+    private Theme lastDrawnTheme;
+    private volatile boolean damageReported;
     private boolean hadWindowAtSomePoint;
     private boolean eofWhenNoWindows;
 
@@ -185,6 +201,10 @@ public class MultiWindowTextGUI extends AbstractTextGUI implements WindowBasedTe
         this.backgroundPane.setComponent(background);
         this.windows = new LinkedList<Window>();
         this.windowRenderBufferCache = new IdentityHashMap<Window, TextImage>();
+        this.windowFootprints = new IdentityHashMap<Window, WindowFootprint>();
+        this.damage = new DirtyRegion();
+        this.lastDrawnWindows = Collections.emptyList();
+        this.damageReported = false;
         this.postRenderer = postRenderer;
         this.eofWhenNoWindows = false;
         this.hadWindowAtSomePoint = false;
@@ -192,12 +212,12 @@ public class MultiWindowTextGUI extends AbstractTextGUI implements WindowBasedTe
 
     @Override
     public synchronized boolean isPendingUpdate() {
-        for(Window window: windows) {
-            if(window.isVisible() && window.isInvalid()) {
-                return true;
-            }
-        }
-        return super.isPendingUpdate() || backgroundPane.isInvalid() || windowManager.isInvalid();
+        return damageReported || super.isPendingUpdate() || windowManager.isInvalid();
+    }
+
+    @Override
+    void onContentInvalidated() {
+        damageReported = true;
     }
 
     @Override
@@ -239,51 +259,235 @@ public class MultiWindowTextGUI extends AbstractTextGUI implements WindowBasedTe
 
     @Override
     protected synchronized void drawGUI(TextGUIGraphics graphics) {
-        drawBackgroundPane(graphics);
+        // Anything invalidated from here on is picked up by the check at the end
+        damageReported = false;
+        TerminalSize screenSize = graphics.getSize();
+        boolean redrawAll = backgroundRenderBuffer == null ||
+                !backgroundRenderBuffer.getSize().equals(screenSize) ||
+                getTheme() != lastDrawnTheme;
+        if(redrawAll) {
+            // Nothing on the screen or in the window buffers can be reused
+            damage.markAll();
+            lastDrawnTheme = getTheme();
+        }
+        drawBackgroundPane(screenSize);
         getWindowManager().prepareWindows(this, Collections.unmodifiableList(windows), graphics.getSize());
-        for(Window window: windows) {
-            if (window.isVisible()) {
-                // First draw windows to a buffer, then copy it to the real destination. This is to make physical off-screen
-                // drawing work better. Store the buffers in a cache so we don't have to re-create them every time.
-                TextImage textImage = windowRenderBufferCache.get(window);
-                if (textImage == null || !textImage.getSize().equals(window.getDecoratedSize())) {
-                    textImage = new BasicTextImage(window.getDecoratedSize());
-                    windowRenderBufferCache.put(window, textImage);
-                }
-                TextGUIGraphics windowGraphics = new DefaultTextGUIGraphics(this, textImage.newTextGraphics());
-                TerminalPosition contentOffset = TerminalPosition.TOP_LEFT_CORNER;
-                if (!window.getHints().contains(Window.Hint.NO_DECORATIONS)) {
-                    WindowDecorationRenderer decorationRenderer = getWindowManager().getWindowDecorationRenderer(window);
-                    windowGraphics = decorationRenderer.draw(this, windowGraphics, window);
-                    contentOffset = decorationRenderer.getOffset(window);
-                }
 
-                window.draw(windowGraphics);
-                window.setContentOffset(contentOffset);
-                Borders.joinLinesWithFrame(windowGraphics);
+        List<Window> visibleWindows = new ArrayList<Window>(windows.size());
+        for(Window window: windows) {
+            if(window.isVisible()) {
+                visibleWindows.add(window);
+            }
+        }
 
-                graphics.drawImage(window.getPosition(), textImage);
+        // Windows that were closed or hidden leave a hole where they used to be
+        for(Window window: lastDrawnWindows) {
+            if(!visibleWindows.contains(window)) {
+                markDamaged(windowFootprints.remove(window), screenSize);
+            }
+        }
+        Window firstRestackedWindow = findFirstRestackedWindow(visibleWindows);
+        boolean restacked = false;
+
+        for(Window window: visibleWindows) {
+            TextImage textImage = windowRenderBufferCache.get(window);
+            boolean render = redrawAll ||
+                    window.isInvalid() ||
+                    textImage == null ||
+                    !textImage.getSize().equals(window.getDecoratedSize()) ||
+                    // The decorations of the active window are drawn differently
+                    (activeWindow != lastDrawnActiveWindow && (window == activeWindow || window == lastDrawnActiveWindow));
+            if(render) {
+                drawWindow(window);
+            }
+            restacked = restacked || window == firstRestackedWindow;
+            WindowFootprint footprint = windowFootprints.get(window);
+            if(render || restacked || footprint == null || !footprint.position.equals(window.getPosition())) {
+                markDamaged(footprint, screenSize);
+                footprint = measureFootprint(graphics, window);
+                windowFootprints.put(window, footprint);
+                markDamaged(footprint, screenSize);
+            }
+        }
 
-                if(!window.getHints().contains(Window.Hint.NO_POST_RENDERING)) {
-                    if (window.getPostRenderer() != null) {
-                        window.getPostRenderer().postRender(graphics, this, window);
-                    }
-                    else if (postRenderer != null) {
-                        postRenderer.postRender(graphics, this, window);
-                    }
-                    else if (getTheme().getWindowPostRenderer() != null) {
-                        getTheme().getWindowPostRenderer().postRender(graphics, this, window);
+        if(damage.isAllDirty()) {
+            graphics.drawImage(TerminalPosition.TOP_LEFT_CORNER, backgroundRenderBuffer);
+            for(Window window: visibleWindows) {
+                graphics.drawImage(window.getPosition(), windowRenderBufferCache.get(window));
+                WindowPostRenderer windowPostRenderer = findPostRenderer(window);
+                if(windowPostRenderer != null) {
+                    windowPostRenderer.postRender(graphics, this, window);
+                }
+            }
+        }
+        else if(!damage.isEmpty()) {
+            drawDamagedRows(graphics, TerminalPosition.TOP_LEFT_CORNER, backgroundRenderBuffer);
+            TextGUIGraphics clippedGraphics = null;
+            for(Window window: visibleWindows) {
+                if(!windowFootprints.get(window).isDamaged(damage)) {
+                    continue;
+                }
+                drawDamagedRows(graphics, window.getPosition(), windowRenderBufferCache.get(window));
+                WindowPostRenderer windowPostRenderer = findPostRenderer(window);
+                if(windowPostRenderer != null) {
+                    if(clippedGraphics == null) {
+                        clippedGraphics = new DefaultTextGUIGraphics(this, new DamageClippedTextGraphics(graphics, damage));
                     }
+                    windowPostRenderer.postRender(clippedGraphics, this, window);
                 }
             }
         }
+        damage.clear();
+        lastDrawnWindows = visibleWindows;
+        lastDrawnActiveWindow = activeWindow;
 
         // Purge the render buffer cache from windows that have been removed
         windowRenderBufferCache.keySet().retainAll(windows);
+        windowFootprints.keySet().retainAll(visibleWindows);
+
+        // Components that invalidated themselves while being drawn have already been drawn, so don't redraw for them
+        if(damageReported) {
+            damageReported = false;
+            if(backgroundPane.isInvalid()) {
+                damageReported = true;
+            }
+            for(Window window: visibleWindows) {
+                if(window.isInvalid()) {
+                    damageReported = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    private void drawBackgroundPane(TerminalSize screenSize) {
+        if(backgroundRenderBuffer == null || !backgroundRenderBuffer.getSize().equals(screenSize)) {
+            backgroundRenderBuffer = new BasicTextImage(screenSize);
+        }
+        else if(!damage.isAllDirty() && !backgroundPane.isInvalid()) {
+            return;
+        }
+        backgroundPane.draw(new DefaultTextGUIGraphics(this, backgroundRenderBuffer.newTextGraphics()));
+        damage.markAll();
     }
 
-    private void drawBackgroundPane(TextGUIGraphics graphics) {
-        backgroundPane.draw(new DefaultTextGUIGraphics(this, graphics));
+    private void drawWindow(Window window) {
+        // First draw windows to a buffer, then copy it to the real destination. This is to make physical off-screen
+        // drawing work better and to be able to copy only the parts that need to be redrawn. Store the buffers in a
+        // cache so we don't have to re-create or re-draw them every time.
+        TextImage textImage = windowRenderBufferCache.get(window);
+        if (textImage == null || !textImage.getSize().equals(window.getDecoratedSize())) {
+            textImage = new BasicTextImage(window.getDecoratedSize());
+            windowRenderBufferCache.put(window, textImage);
+        }
+        TextGUIGraphics windowGraphics = new DefaultTextGUIGraphics(this, textImage.newTextGraphics());
+        TerminalPosition contentOffset = TerminalPosition.TOP_LEFT_CORNER;
+        if (!window.getHints().contains(Window.Hint.NO_DECORATIONS)) {
+            WindowDecorationRenderer decorationRenderer = getWindowManager().getWindowDecorationRenderer(window);
+            windowGraphics = decorationRenderer.draw(this, windowGraphics, window);
+            contentOffset = decorationRenderer.getOffset(window);
+        }
+
+        window.draw(windowGraphics);
+        window.setContentOffset(contentOffset);
+        Borders.joinLinesWithFrame(windowGraphics);
+    }
+
+    private WindowPostRenderer findPostRenderer(Window window) {
+        if(window.getHints().contains(Window.Hint.NO_POST_RENDERING)) {
+            return null;
+        }
+        else if(window.getPostRenderer() != null) {
+            return window.getPostRenderer();
+        }
+        else if(postRenderer != null) {
+            return postRenderer;
+        }
+        return getTheme().getWindowPostRenderer();
+    }
+
+    /**
+     * Works out the area of the screen a window covers, by running its post-renderer without letting it draw anything
+     */
+    private WindowFootprint measureFootprint(TextGUIGraphics graphics, Window window) {
+        TerminalPosition position = window.getPosition();
+        TerminalSize decoratedSize = window.getDecoratedSize();
+        int left = position.getColumn();
+        int top = position.getRow();
+        int right = left + decoratedSize.getColumns();
+        int bottom = top + decoratedSize.getRows();
+        WindowPostRenderer windowPostRenderer = findPostRenderer(window);
+        if(windowPostRenderer != null) {
+            DamageClippedTextGraphics dryRunGraphics = new DamageClippedTextGraphics(graphics, null);
+            windowPostRenderer.postRender(new DefaultTextGUIGraphics(this, dryRunGraphics), this, window);
+            left = Math.min(left, dryRunGraphics.getTouchedLeft());
+            top = Math.min(top, dryRunGraphics.getTouchedTop());
+            right = Math.max(right, dryRunGraphics.getTouchedRight());
+            bottom = Math.max(bottom, dryRunGraphics.getTouchedBottom());
+        }
+        return new WindowFootprint(position, left, top, right, bottom);
+    }
+
+    /**
+     * Finds the first window (in the order they are drawn) that has changed its place in the stack since the last time
+     * the GUI was drawn, ignoring windows that were added or removed. This window and every window drawn after it may
+     * overlap differently than before.
+     */
+    private Window findFirstRestackedWindow(List<Window> visibleWindows) {
+        Iterator<Window> lastDrawnIterator = lastDrawnWindows.iterator();
+        for(Window window: visibleWindows) {
+            if(!lastDrawnWindows.contains(window)) {
+                continue;
+            }
+            Window lastDrawnWindow = null;
+            while(lastDrawnIterator.hasNext() && !visibleWindows.contains(lastDrawnWindow = lastDrawnIterator.next())) {
+                lastDrawnWindow = null;
+            }
+            if(lastDrawnWindow != window) {
+                return window;
+            }
+        }
+        return null;
+    }
+
+    private void markDamaged(WindowFootprint footprint, TerminalSize screenSize) {
+        if(footprint == null || damage.isAllDirty()) {
+            return;
+        }
+        int fromColumn = Math.max(0, footprint.left);
+        int toColumn = Math.min(screenSize.getColumns(), footprint.right);
+        for(int row = Math.max(0, footprint.top); row < Math.min(screenSize.getRows(), footprint.bottom); row++) {
+            damage.mark(row, fromColumn, toColumn);
+        }
+    }
+
+    /**
+     * Copies the damaged part of each row of an image to the screen
+     */
+    private void drawDamagedRows(TextGUIGraphics graphics, TerminalPosition topLeft, TextImage image) {
+        int imageColumns = image.getSize().getColumns();
+        int untilRow = topLeft.getRow() + image.getSize().getRows();
+        for(int row = damage.getNextDirtyRow(Math.max(0, topLeft.getRow()));
+                row != -1 && row < untilRow;
+                row = damage.getNextDirtyRow(row + 1)) {
+
+            int fromColumn = Math.max(damage.getDirtyStart(row), topLeft.getColumn());
+            int toColumn = Math.min(damage.getDirtyEnd(row), topLeft.getColumn() + imageColumns);
+            if(fromColumn >= toColumn) {
+                continue;
+            }
+            int imageRow = row - topLeft.getRow();
+            // Don't start copying in the middle of a double-width character
+            if(fromColumn > topLeft.getColumn() &&
+                    image.getCharacterAt(fromColumn - topLeft.getColumn() - 1, imageRow).isDoubleWidth()) {
+                fromColumn--;
+            }
+            graphics.drawImage(
+                    new TerminalPosition(fromColumn, row),
+                    image,
+                    new TerminalPosition(fromColumn - topLeft.getColumn(), imageRow),
+                    new TerminalSize(toColumn - fromColumn, 1));
+        }
     }
 
     @Override
@@ -331,12 +535,13 @@ public class MultiWindowTextGUI extends AbstractTextGUI implements WindowBasedTe
     @Override
     public synchronized boolean handleInput(KeyStroke keyStroke) {
         Window activeWindow = getActiveWindow();
-        if(activeWindow != null) {
-            return activeWindow.handleInput(keyStroke);
-        }
-        else {
-            return backgroundPane.handleInput(keyStroke);
+        BasePane inputPane = activeWindow != null ? activeWindow : backgroundPane;
+        boolean handled = inputPane.handleInput(keyStroke);
+        if(handled) {
+            // Components don't always invalidate themselves when input changes how they look, so draw the whole pane
+            inputPane.invalidate();
         }
+        return handled;
     }
 
     @Override
@@ -529,4 +734,36 @@ public class MultiWindowTextGUI extends AbstractTextGUI implements WindowBasedTe
         }
         return windows.get(index);
     }
+
+    /**
+     * The area of the screen a window covered the last time it was drawn, including what its post-renderer drew, and
+     * the position of the window at the time
+     */
+    private static class WindowFootprint {
+        private final TerminalPosition position;
+        private final int left;
+        private final int top;
+        private final int right;
+        private final int bottom;
+
+        WindowFootprint(TerminalPosition position, int left, int top, int right, int bottom) {
+            this.position = position;
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+
+        boolean isDamaged(DirtyRegion damage) {
+            for(int row = damage.getNextDirtyRow(Math.max(0, top));
+                    row != -1 && row < bottom;
+                    row = damage.getNextDirtyRow(row + 1)) {
+
+                if(damage.getDirtyStart(row) < right && damage.getDirtyEnd(row) > left) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 }
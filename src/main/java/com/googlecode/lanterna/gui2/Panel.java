@@ -56,6 +56,9 @@ public class Panel extends AbstractComponent<Panel> implements Container {
         this.components = new ArrayList<Component>();
         this.layoutManager = layoutManager;
         this.cachedPreferredSize = null;
+        if(layoutManager instanceof AbstractLayoutManager) {
+            ((AbstractLayoutManager)layoutManager).addPanel(this);
+        }
     }
 
     /**
@@ -170,6 +173,12 @@ public class Panel extends AbstractComponent<Panel> implements Container {
         if(layoutManager == null) {
             layoutManager = new AbsoluteLayout();
         }
+        if(this.layoutManager instanceof AbstractLayoutManager) {
+            ((AbstractLayoutManager)this.layoutManager).removePanel(this);
+        }
+        if(layoutManager instanceof AbstractLayoutManager) {
+            ((AbstractLayoutManager)layoutManager).addPanel(this);
+        }
         this.layoutManager = layoutManager;
         invalidate();
         return this;
@@ -192,6 +201,7 @@ public class Panel extends AbstractComponent<Panel> implements Container {
      */
     public void setFillColorOverride(TextColor fillColor) {
         this.fillColorOverride = fillColorOverride;
+        invalidate();
     }
 
     /**
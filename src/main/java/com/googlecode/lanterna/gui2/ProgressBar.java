@@ -187,6 +187,7 @@ public class ProgressBar extends AbstractComponent<ProgressBar> {
      */
     public void setPreferredWidth(int preferredWidth) {
         this.preferredWidth = preferredWidth;
+        invalidate();
     }
 
     /**
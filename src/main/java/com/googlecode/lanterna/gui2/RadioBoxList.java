@@ -99,6 +99,17 @@ public class RadioBoxList<V> extends AbstractListBox<V, RadioBoxList<V>> {
         return item;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * No item is checked in the new source to begin with.
+     */
+    @Override
+    public synchronized RadioBoxList<V> setItemSource(ListItemSource<V> itemSource) {
+        setCheckedIndex(-1);
+        return super.setItemSource(itemSource);
+    }
+
     @Override
     public synchronized RadioBoxList<V> clearItems() {
         setCheckedIndex(-1);
@@ -39,6 +39,7 @@ import java.util.concurrent.CountDownLatch;
  * </pre>
  * @see TextGUIThread
  * @see SameTextGUIThread
+ * @see EventDrivenTextGUIThread
  * @author Martin
  */
 public class SeparateTextGUIThread extends AbstractTextGUIThread implements AsynchronousTextGUIThread {
@@ -24,8 +24,11 @@ import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.graphics.ThemeDefinition;
 import com.googlecode.lanterna.input.KeyStroke;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.regex.Pattern;
 
 /**
@@ -35,8 +38,13 @@ import java.util.regex.Pattern;
  * <p>
  * Size-wise, a {@code TextBox} should be hard-coded to a particular size, it's not good at guessing how large it should
  * be. You can do this through the constructor.
+ * <p>
+ * A multi-line {@code TextBox} can also be used as a read-only viewer of a file that's too large to be held in memory,
+ * see {@link #setFile(File, Charset)}.
  */
 public class TextBox extends AbstractInteractableComponent<TextBox> {
+    private static final long FILE_INDEXING_SLICE = 16 * 1024 * 1024;
+    private static final long FILE_POLL_INTERVAL = 500;
 
     /**
      * Enum value to force a {@code TextBox} to be either single line or multi line. This is usually auto-detected if
@@ -54,7 +62,11 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
         ;
     }
 
-    private final List<String> lines;
+    private TextBoxDocument document;
+    private TextBoxFile file;
+    private Timer fileTimer;
+    private boolean fileShown;
+    private boolean followingTail;
     private final Style style;
 
     private TerminalPosition caretPosition;
@@ -63,7 +75,6 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
     private boolean horizontalFocusSwitching;
     private boolean verticalFocusSwitching;
     private final int maxLineLength;
-    private int longestRow;
     private Character mask;
     private Pattern validationPattern;
 
@@ -127,7 +138,11 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
      * @param style Style to use for this {@code TextBox}, instead of auto-detecting
      */
     public TextBox(TerminalSize preferredSize, String initialContent, Style style) {
-        this.lines = new ArrayList<String>();
+        this.document = new TextBoxDocument("");
+        this.file = null;
+        this.fileTimer = null;
+        this.fileShown = false;
+        this.followingTail = false;
         this.style = style;
         this.readOnly = false;
         this.caretWarp = false;
@@ -135,16 +150,15 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
         this.horizontalFocusSwitching = (style == Style.SINGLE_LINE);
         this.caretPosition = TerminalPosition.TOP_LEFT_CORNER;
         this.maxLineLength = -1;
-        this.longestRow = 1;    //To fit the cursor
         this.mask = null;
         this.validationPattern = null;
         setText(initialContent);
 
         // Re-adjust caret position
-        this.caretPosition = TerminalPosition.TOP_LEFT_CORNER.withColumn(getLine(0).length());
+        this.caretPosition = TerminalPosition.TOP_LEFT_CORNER.withColumn(document.getLineLength(0));
 
         if (preferredSize == null) {
-            preferredSize = new TerminalSize(Math.max(10, longestRow), lines.size());
+            preferredSize = new TerminalSize(Math.max(10, getLongestRow()), document.getLineCount());
         }
         setPreferredSize(preferredSize);
     }
@@ -160,7 +174,8 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
      */
     public synchronized TextBox setValidationPattern(Pattern validationPattern) {
         if(validationPattern != null) {
-            for(String line: lines) {
+            for(int i = 0; i < document.getLineCount(); i++) {
+                String line = document.getLine(i);
                 if(!validated(line)) {
                     throw new IllegalStateException("TextBox validation pattern " + validationPattern + " does not match existing content");
                 }
@@ -180,21 +195,224 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
         if (split.length == 0) {
             split = new String[] { "" };
         }
-        lines.clear();
-        longestRow = 1;
-        for(String line : split) {
-            addLine(line);
+        StringBuilder content = new StringBuilder();
+        for(int i = 0; i < split.length; i++) {
+            if(i > 0) {
+                content.append('\n');
+            }
+            appendLine(content, split[i]);
         }
-        if(caretPosition.getRow() > lines.size() - 1) {
-            caretPosition = caretPosition.withRow(lines.size() - 1);
+        releaseFile();
+        document = new TextBoxDocument(content.toString());
+        if(caretPosition.getRow() > document.getLineCount() - 1) {
+            caretPosition = caretPosition.withRow(document.getLineCount() - 1);
         }
-        if(caretPosition.getColumn() > lines.get(caretPosition.getRow()).length()) {
-            caretPosition = caretPosition.withColumn(lines.get(caretPosition.getRow()).length());
+        if(caretPosition.getColumn() > document.getLineLength(caretPosition.getRow())) {
+            caretPosition = caretPosition.withColumn(document.getLineLength(caretPosition.getRow()));
         }
         invalidate();
         return this;
     }
 
+    /**
+     * Shows the content of a file in this {@code TextBox} without reading the whole file into memory. The file is
+     * memory-mapped and only the lines that are drawn get decoded, so opening a file takes the same short time no
+     * matter how large it is. Where each line starts is worked out in the background after opening, so for a very large
+     * file the line count keeps growing for a little while. The file keeps being checked for new content after that,
+     * which is picked up automatically; see {@link #setFollowingTail(boolean)} for keeping the end of it in view.
+     * <p>
+     * The {@code TextBox} must be in multi-line mode and is put into read-only mode, it cannot be made editable while
+     * showing a file. Calling {@code setText(..)} or {@link #closeFile()} stops showing the file and closes it. While
+     * the {@code TextBox} is removed from its container or its window is closed, the file is closed and no longer
+     * watched; it's opened again the next time the {@code TextBox} is drawn or its content is asked for.
+     * @param file File to show
+     * @param charset Character set the file is encoded in. Line breaks must be encoded as a single {@code '\n'} byte,
+     *                like in UTF-8 or ISO-8859-1
+     * @return Itself
+     * @throws IOException If the file could not be opened
+     * @throws IllegalStateException If this {@code TextBox} is not in multi-line mode
+     * @throws IllegalArgumentException If the charset doesn't encode line breaks as a single byte
+     */
+    public synchronized TextBox setFile(File file, Charset charset) throws IOException {
+        if(style != Style.MULTI_LINE) {
+            throw new IllegalStateException("Only a multi-line TextBox can show a file");
+        }
+        TextBoxFile textBoxFile = new TextBoxFile(file, charset);
+        try {
+            textBoxFile.update(FILE_INDEXING_SLICE);
+        }
+        catch(IOException e) {
+            textBoxFile.close();
+            throw e;
+        }
+        releaseFile();
+        this.document = new TextBoxDocument("");
+        this.file = textBoxFile;
+        this.readOnly = true;
+        this.caretPosition = TerminalPosition.TOP_LEFT_CORNER;
+        getRenderer().setViewTopLeft(TerminalPosition.TOP_LEFT_CORNER.withRow(followingTail ? textBoxFile.getLineCount() : 0));
+        startFileTimer();
+        invalidate();
+        return this;
+    }
+
+    /**
+     * Stops showing the file set through {@link #setFile(File, Charset)} and closes it, leaving the {@code TextBox}
+     * empty. Does nothing if no file is shown.
+     * @return Itself
+     */
+    public synchronized TextBox closeFile() {
+        if(file != null) {
+            releaseFile();
+            document = new TextBoxDocument("");
+            caretPosition = TerminalPosition.TOP_LEFT_CORNER;
+            invalidate();
+        }
+        return this;
+    }
+
+    /**
+     * Returns the file this {@code TextBox} is showing, if any
+     * @return File this {@code TextBox} is showing or {@code null} if it's showing text set through {@code setText(..)}
+     */
+    public synchronized File getFile() {
+        return file != null ? file.getFile() : null;
+    }
+
+    /**
+     * Returns {@code true} if this {@code TextBox} scrolls down as lines are appended to the file it's showing
+     * @return {@code true} if the end of the file is kept in view
+     */
+    public synchronized boolean isFollowingTail() {
+        return followingTail;
+    }
+
+    /**
+     * When showing a file, this makes the {@code TextBox} scroll down as lines are appended to the file so that the
+     * last line stays in view, like {@code tail -f} would. Scrolling up stops following the end until the view is
+     * scrolled all the way down again. Turning this on scrolls to the end right away.
+     * @param followingTail If {@code true}, keep the end of the file in view
+     * @return Itself
+     */
+    public synchronized TextBox setFollowingTail(boolean followingTail) {
+        this.followingTail = followingTail;
+        if(followingTail) {
+            getRenderer().setViewTopLeft(getRenderer().getViewTopLeft().withRow(getLineCount()));
+            invalidate();
+        }
+        return this;
+    }
+
+    private void startFileTimer() {
+        final Timer timer = new Timer("LanternaTextBoxFile", true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                // Index the file in slices and pause in between, so the GUI thread gets to draw what's new
+                while(updateFile(timer)) {
+                    try {
+                        Thread.sleep(10);
+                    }
+                    catch(InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, 0, FILE_POLL_INTERVAL);
+        fileTimer = timer;
+        fileShown = false;
+    }
+
+    /**
+     * Indexes a slice of the file if the timer is still the one watching it, scrolling to the end if the view is
+     * following it
+     * @return {@code true} if there's more to index right away
+     */
+    private synchronized boolean updateFile(Timer timer) {
+        if(fileTimer != timer) {
+            return false;
+        }
+        if(fileShown && getTextGUI() == null) {
+            // The window was closed, stop watching the file until the TextBox is drawn again
+            suspendFile();
+            invalidate();
+            return false;
+        }
+        TerminalPosition viewTopLeft = getRenderer().getViewTopLeft();
+        boolean atEnd = viewTopLeft.getRow() + getSize().getRows() >= file.getLineCount();
+        try {
+            if(!file.update(FILE_INDEXING_SLICE)) {
+                return false;
+            }
+        }
+        catch(IOException e) {
+            // Keep showing what could be read, but stop looking at the file
+            fileTimer.cancel();
+            fileTimer = null;
+            return false;
+        }
+        if(followingTail && atEnd) {
+            // The renderer pulls this back so the last line ends up at the bottom
+            getRenderer().setViewTopLeft(viewTopLeft.withRow(file.getLineCount()));
+        }
+        invalidate();
+        return !file.isFullyIndexed();
+    }
+
+    /**
+     * Stops watching the file and closes it, the index is kept so the file can be opened again quickly
+     */
+    private void suspendFile() {
+        if(fileTimer != null) {
+            fileTimer.cancel();
+            fileTimer = null;
+        }
+        try {
+            file.close();
+        }
+        catch(IOException ignored) {}
+    }
+
+    /**
+     * Opens the file again if it was suspended, or stops showing it if it can't be opened any more
+     */
+    private void resumeFile() {
+        if(file == null || file.isOpen()) {
+            return;
+        }
+        try {
+            file.open();
+            file.update(FILE_INDEXING_SLICE);
+            startFileTimer();
+        }
+        catch(IOException e) {
+            closeFile();
+        }
+    }
+
+    private void releaseFile() {
+        if(file == null) {
+            return;
+        }
+        suspendFile();
+        file = null;
+    }
+
+    @Override
+    public synchronized void onRemoved(Container container) {
+        super.onRemoved(container);
+        if(file != null) {
+            suspendFile();
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onBeforeDrawing() {
+        resumeFile();
+        fileShown = true;
+    }
+
     @Override
     public TextBoxRenderer getRenderer() {
         return (TextBoxRenderer)super.getRenderer();
@@ -206,36 +424,39 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
      * @return Itself
      */
     public synchronized TextBox addLine(String line) {
-        StringBuilder bob = new StringBuilder();
+        if(file != null) {
+            throw new IllegalStateException("Cannot add lines to a TextBox that is showing a file");
+        }
+        StringBuilder content = new StringBuilder("\n");
+        appendLine(content, line);
+        int lastLine = document.getLineCount() - 1;
+        document.insert(lastLine, document.getLineLength(lastLine), content.toString());
+        invalidate();
+        return this;
+    }
+
+    /**
+     * Appends a line to the content being built up, leaving out control characters. In multi-line mode, any line
+     * breaks in the line are kept and it becomes several lines.
+     */
+    private void appendLine(StringBuilder content, String line) {
+        int lineStart = content.length();
         for(int i = 0; i < line.length(); i++) {
             char c = line.charAt(i);
             if(c == '\n' && style == Style.MULTI_LINE) {
-                String string = bob.toString();
-                int lineWidth = TerminalTextUtils.getColumnWidth(string);
-                lines.add(string);
-                if(longestRow < lineWidth + 1) {
-                    longestRow = lineWidth + 1;
-                }
-                addLine(line.substring(i + 1));
-                return this;
+                content.append(c);
+                lineStart = content.length();
+                continue;
             }
             else if(Character.isISOControl(c)) {
                 continue;
             }
 
-            bob.append(c);
+            content.append(c);
         }
-        String string = bob.toString();
-        if(!validated(string)) {
+        if(!validated(content.substring(lineStart))) {
             throw new IllegalStateException("TextBox validation pattern " + validationPattern + " does not match the supplied text");
         }
-        int lineWidth = TerminalTextUtils.getColumnWidth(string);
-        lines.add(string);
-        if(longestRow < lineWidth + 1) {
-            longestRow = lineWidth + 1;
-        }
-        invalidate();
-        return this;
     }
 
     /**
@@ -292,14 +513,14 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
         if(line < 0) {
             line = 0;
         }
-        else if(line >= lines.size()) {
-            line = lines.size() - 1;
+        else if(line >= getLineCount()) {
+            line = getLineCount() - 1;
         }
         if(column < 0) {
             column = 0;
         }
-        else if(column > lines.get(line).length()) {
-            column = lines.get(line).length();
+        else if(column > getLine(line).length()) {
+            column = getLine(line).length();
         }
         caretPosition = caretPosition.withRow(line).withColumn(column);
         return this;
@@ -311,11 +532,11 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
      * @return The text inside this {@code TextBox}
      */
     public synchronized String getText() {
-        StringBuilder bob = new StringBuilder(lines.get(0));
-        for(int i = 1; i < lines.size(); i++) {
-            bob.append("\n").append(lines.get(i));
+        resumeFile();
+        if(file != null) {
+            return file.getText();
         }
-        return bob.toString();
+        return document.getText();
     }
 
     /**
@@ -370,8 +591,12 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
      * prevented. The user can still focus and scroll through the text in this mode.
      * @param readOnly If {@code true} then the {@code TextBox} will switch to read-only mode
      * @return Itself
+     * @throws IllegalStateException If trying to turn off read-only mode while showing a file
      */
-    public TextBox setReadOnly(boolean readOnly) {
+    public synchronized TextBox setReadOnly(boolean readOnly) {
+        if(!readOnly && file != null) {
+            throw new IllegalStateException("A TextBox that is showing a file is always read-only");
+        }
         this.readOnly = readOnly;
         invalidate();
         return this;
@@ -432,7 +657,11 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
      * @throws IndexOutOfBoundsException if the row index is less than zero or too large
      */
     public synchronized String getLine(int index) {
-        return lines.get(index);
+        resumeFile();
+        if(file != null) {
+            return file.getLine(index);
+        }
+        return document.getLine(index);
     }
 
     /**
@@ -440,7 +669,22 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
      * @return Number of lines of text currently in this TextBox
      */
     public synchronized int getLineCount() {
-        return lines.size();
+        resumeFile();
+        if(file != null) {
+            return file.getLineCount();
+        }
+        return document.getLineCount();
+    }
+
+    /**
+     * Returns the number of columns needed to show the longest line, with the caret placed after it
+     */
+    private synchronized int getLongestRow() {
+        resumeFile();
+        if(file != null) {
+            return file.getLongestLineWidth() + 1;
+        }
+        return document.getLongestLineWidth() + 1;
     }
 
     @Override
@@ -453,67 +697,63 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
         if(readOnly) {
             return handleKeyStrokeReadOnly(keyStroke);
         }
-        String line = lines.get(caretPosition.getRow());
+        int row = caretPosition.getRow();
+        int column = caretPosition.getColumn();
+        int lineLength = document.getLineLength(row);
         switch(keyStroke.getKeyType()) {
             case Character:
-                if(maxLineLength == -1 || maxLineLength > line.length() + 1) {
-                    line = line.substring(0, caretPosition.getColumn()) + keyStroke.getCharacter() + line.substring(caretPosition.getColumn());
-                    if(validated(line)) {
-                        lines.set(caretPosition.getRow(), line);
+                if(maxLineLength == -1 || maxLineLength > lineLength + 1) {
+                    String character = String.valueOf(keyStroke.getCharacter());
+                    if(validatedEdit(row, column, 0, character)) {
+                        document.insert(row, column, character);
                         caretPosition = caretPosition.withRelativeColumn(1);
                     }
                 }
                 return Result.HANDLED;
             case Backspace:
-                if(caretPosition.getColumn() > 0) {
-                    line = line.substring(0, caretPosition.getColumn() - 1) + line.substring(caretPosition.getColumn());
-                    if(validated(line)) {
-                        lines.set(caretPosition.getRow(), line);
+                if(column > 0) {
+                    if(validatedEdit(row, column - 1, 1, "")) {
+                        document.delete(row, column - 1, 1);
                         caretPosition = caretPosition.withRelativeColumn(-1);
                     }
                 }
-                else if(style == Style.MULTI_LINE && caretPosition.getRow() > 0) {
-                    String concatenatedLines = lines.get(caretPosition.getRow() - 1) + line;
-                    if(validated(concatenatedLines)) {
-                        lines.remove(caretPosition.getRow());
+                else if(style == Style.MULTI_LINE && row > 0) {
+                    if(validationPattern == null || validated(document.getLine(row - 1) + document.getLine(row))) {
                         caretPosition = caretPosition.withRelativeRow(-1);
-                        caretPosition = caretPosition.withColumn(lines.get(caretPosition.getRow()).length());
-                        lines.set(caretPosition.getRow(), concatenatedLines);
+                        caretPosition = caretPosition.withColumn(document.getLineLength(row - 1));
+                        document.joinWithNext(row - 1);
                     }
                 }
                 return Result.HANDLED;
             case Delete:
-                if(caretPosition.getColumn() < line.length()) {
-                    line = line.substring(0, caretPosition.getColumn()) + line.substring(caretPosition.getColumn() + 1);
-                    if(validated(line)) {
-                        lines.set(caretPosition.getRow(), line);
+                if(column < lineLength) {
+                    if(validatedEdit(row, column, 1, "")) {
+                        document.delete(row, column, 1);
                     }
                 }
-                else if(style == Style.MULTI_LINE && caretPosition.getRow() < lines.size() - 1) {
-                    String concatenatedLines = line + lines.get(caretPosition.getRow() + 1);
-                    if(validated(concatenatedLines)) {
-                        lines.set(caretPosition.getRow(), concatenatedLines);
-                        lines.remove(caretPosition.getRow() + 1);
+                else if(style == Style.MULTI_LINE && row < document.getLineCount() - 1) {
+                    if(validationPattern == null || validated(document.getLine(row) + document.getLine(row + 1))) {
+                        document.joinWithNext(row);
                     }
                 }
                 return Result.HANDLED;
             case ArrowLeft:
-                if(caretPosition.getColumn() > 0) {
+                if(column > 0) {
                     caretPosition = caretPosition.withRelativeColumn(-1);
                 }
-                else if(style == Style.MULTI_LINE && caretWarp && caretPosition.getRow() > 0) {
+                else if(style == Style.MULTI_LINE && caretWarp && row > 0) {
                     caretPosition = caretPosition.withRelativeRow(-1);
-                    caretPosition = caretPosition.withColumn(lines.get(caretPosition.getRow()).length());
+                    caretPosition = caretPosition.withColumn(document.getLineLength(caretPosition.getRow()));
                 }
                 else if(horizontalFocusSwitching) {
                     return Result.MOVE_FOCUS_LEFT;
                 }
                 return Result.HANDLED;
             case ArrowRight:
-                if(caretPosition.getColumn() < lines.get(caretPosition.getRow()).length()) {
+                if(column < lineLength) {
                     caretPosition = caretPosition.withRelativeColumn(1);
                 }
-                else if(style == Style.MULTI_LINE && caretWarp && caretPosition.getRow() < lines.size() - 1) {
+                else if(style == Style.MULTI_LINE && caretWarp && row < document.getLineCount() - 1) {
                     caretPosition = caretPosition.withRelativeRow(1);
                     caretPosition = caretPosition.withColumn(0);
                 }
@@ -522,10 +762,10 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
                 }
                 return Result.HANDLED;
             case ArrowUp:
-                if(caretPosition.getRow() > 0) {
-                    int trueColumnPosition = TerminalTextUtils.getColumnIndex(lines.get(caretPosition.getRow()), caretPosition.getColumn());
+                if(row > 0) {
+                    int trueColumnPosition = TerminalTextUtils.getColumnIndex(document.getLine(row), column);
                     caretPosition = caretPosition.withRelativeRow(-1);
-                    line = lines.get(caretPosition.getRow());
+                    String line = document.getLine(caretPosition.getRow());
                     if(trueColumnPosition > TerminalTextUtils.getColumnWidth(line)) {
                         caretPosition = caretPosition.withColumn(line.length());
                     }
@@ -538,10 +778,10 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
                 }
                 return Result.HANDLED;
             case ArrowDown:
-                if(caretPosition.getRow() < lines.size() - 1) {
-                    int trueColumnPosition = TerminalTextUtils.getColumnIndex(lines.get(caretPosition.getRow()), caretPosition.getColumn());
+                if(row < document.getLineCount() - 1) {
+                    int trueColumnPosition = TerminalTextUtils.getColumnIndex(document.getLine(row), column);
                     caretPosition = caretPosition.withRelativeRow(1);
-                    line = lines.get(caretPosition.getRow());
+                    String line = document.getLine(caretPosition.getRow());
                     if(trueColumnPosition > TerminalTextUtils.getColumnWidth(line)) {
                         caretPosition = caretPosition.withColumn(line.length());
                     }
@@ -554,17 +794,15 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
                 }
                 return Result.HANDLED;
             case End:
-                caretPosition = caretPosition.withColumn(line.length());
+                caretPosition = caretPosition.withColumn(lineLength);
                 return Result.HANDLED;
             case Enter:
                 if(style == Style.SINGLE_LINE) {
                     return Result.MOVE_FOCUS_NEXT;
                 }
-                String newLine = line.substring(caretPosition.getColumn());
-                String oldLine = line.substring(0, caretPosition.getColumn());
-                if(validated(newLine) && validated(oldLine)) {
-                    lines.set(caretPosition.getRow(), oldLine);
-                    lines.add(caretPosition.getRow() + 1, newLine);
+                if(validationPattern == null ||
+                        (validated(document.getLine(row).substring(column)) && validated(document.getLine(row).substring(0, column)))) {
+                    document.insert(row, column, "\n");
                     caretPosition = caretPosition.withColumn(0).withRelativeRow(1);
                 }
                 return Result.HANDLED;
@@ -573,11 +811,11 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
                 return Result.HANDLED;
             case PageDown:
                 caretPosition = caretPosition.withRelativeRow(getSize().getRows());
-                if(caretPosition.getRow() > lines.size() - 1) {
-                    caretPosition = caretPosition.withRow(lines.size() - 1);
+                if(caretPosition.getRow() > document.getLineCount() - 1) {
+                    caretPosition = caretPosition.withRow(document.getLineCount() - 1);
                 }
-                if(lines.get(caretPosition.getRow()).length() < caretPosition.getColumn()) {
-                    caretPosition = caretPosition.withColumn(lines.get(caretPosition.getRow()).length());
+                if(document.getLineLength(caretPosition.getRow()) < caretPosition.getColumn()) {
+                    caretPosition = caretPosition.withColumn(document.getLineLength(caretPosition.getRow()));
                 }
                 return Result.HANDLED;
             case PageUp:
@@ -585,8 +823,8 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
                 if(caretPosition.getRow() < 0) {
                     caretPosition = caretPosition.withRow(0);
                 }
-                if(lines.get(caretPosition.getRow()).length() < caretPosition.getColumn()) {
-                    caretPosition = caretPosition.withColumn(lines.get(caretPosition.getRow()).length());
+                if(document.getLineLength(caretPosition.getRow()) < caretPosition.getColumn()) {
+                    caretPosition = caretPosition.withColumn(document.getLineLength(caretPosition.getRow()));
                 }
                 return Result.HANDLED;
             default:
@@ -594,6 +832,18 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
         return super.handleKeyStroke(keyStroke);
     }
 
+    /**
+     * Checks if a line would still be valid after replacing part of it, only putting together the new line if there is
+     * a validation pattern to check it against
+     */
+    private boolean validatedEdit(int row, int column, int removedCharacters, String insertion) {
+        if(validationPattern == null) {
+            return true;
+        }
+        String line = document.getLine(row);
+        return validated(line.substring(0, column) + insertion + line.substring(column + removedCharacters));
+    }
+
     private boolean validated(String line) {
         return validationPattern == null || line.isEmpty() || validationPattern.matcher(line).matches();
     }
@@ -607,7 +857,7 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
                 getRenderer().setViewTopLeft(getRenderer().getViewTopLeft().withRelativeColumn(-1));
                 return Result.HANDLED;
             case ArrowRight:
-                if(getRenderer().getViewTopLeft().getColumn() + getSize().getColumns() == longestRow && horizontalFocusSwitching) {
+                if(getRenderer().getViewTopLeft().getColumn() + getSize().getColumns() == getLongestRow() && horizontalFocusSwitching) {
                     return Result.MOVE_FOCUS_RIGHT;
                 }
                 getRenderer().setViewTopLeft(getRenderer().getViewTopLeft().withRelativeColumn(1));
@@ -619,7 +869,7 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
                 getRenderer().setViewTopLeft(getRenderer().getViewTopLeft().withRelativeRow(-1));
                 return Result.HANDLED;
             case ArrowDown:
-                if(getRenderer().getViewTopLeft().getRow() + getSize().getRows() == lines.size() && verticalFocusSwitching) {
+                if(getRenderer().getViewTopLeft().getRow() + getSize().getRows() == getLineCount() && verticalFocusSwitching) {
                     return Result.MOVE_FOCUS_DOWN;
                 }
                 getRenderer().setViewTopLeft(getRenderer().getViewTopLeft().withRelativeRow(1));
@@ -720,7 +970,7 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
 
         @Override
         public TerminalSize getPreferredSize(TextBox component) {
-            return new TerminalSize(component.longestRow, component.lines.size());
+            return new TerminalSize(component.getLongestRow(), component.getLineCount());
         }
 
         /**
@@ -746,7 +996,7 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
                 realTextArea = realTextArea.withRelativeColumns(-1);
                 drawVerticalScrollBar = true;
             }
-            if(!hideScrollBars && component.longestRow > realTextArea.getColumns() && realTextArea.getRows() > 1) {
+            if(!hideScrollBars && component.getLongestRow() > realTextArea.getColumns() && realTextArea.getRows() > 1) {
                 realTextArea = realTextArea.withRelativeRows(-1);
                 drawHorizontalScrollBar = true;
                 if(textBoxLineCount > realTextArea.getRows() && !drawVerticalScrollBar) {
@@ -770,7 +1020,7 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
             if(drawHorizontalScrollBar) {
                 horizontalScrollBar.onAdded(component.getParent());
                 horizontalScrollBar.setViewSize(realTextArea.getColumns());
-                horizontalScrollBar.setScrollMaximum(component.longestRow - 1);
+                horizontalScrollBar.setScrollMaximum(component.getLongestRow() - 1);
                 horizontalScrollBar.setScrollPosition(viewTopLeft.getColumn());
                 horizontalScrollBar.draw(graphics.newTextGraphics(
                         new TerminalPosition(0, graphics.getSize().getRows() - 1),
@@ -780,8 +1030,8 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
 
         private void drawTextArea(TextGUIGraphics graphics, TextBox component) {
             TerminalSize textAreaSize = graphics.getSize();
-            if(viewTopLeft.getColumn() + textAreaSize.getColumns() > component.longestRow) {
-                viewTopLeft = viewTopLeft.withColumn(component.longestRow - textAreaSize.getColumns());
+            if(viewTopLeft.getColumn() + textAreaSize.getColumns() > component.getLongestRow()) {
+                viewTopLeft = viewTopLeft.withColumn(component.getLongestRow() - textAreaSize.getColumns());
                 if(viewTopLeft.getColumn() < 0) {
                     viewTopLeft = viewTopLeft.withColumn(0);
                 }
@@ -848,10 +1098,10 @@ public class TextBox extends AbstractInteractableComponent<TextBox> {
 
             for (int row = 0; row < textAreaSize.getRows(); row++) {
                 int rowIndex = row + viewTopLeft.getRow();
-                if(rowIndex >= component.lines.size()) {
+                if(rowIndex >= component.getLineCount()) {
                     continue;
                 }
-                String line = component.lines.get(rowIndex);
+                String line = component.getLine(rowIndex);
                 if(component.getMask() != null) {
                     StringBuilder builder = new StringBuilder();
                     for(int i = 0; i < line.length(); i++) {
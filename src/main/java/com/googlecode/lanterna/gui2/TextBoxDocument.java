@@ -0,0 +1,515 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.gui2;
+
+import com.googlecode.lanterna.TerminalTextUtils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Text content of a {@link TextBox}, stored as a piece table. The text the document is created with is never copied or
+ * modified, everything inserted after that is appended to a second buffer and the content is described by a sequence
+ * of pieces pointing into one buffer or the other. The pieces are kept in a balanced tree which also counts the line
+ * breaks in each subtree, so looking up a line and inserting or deleting text takes O(log n) time no matter how large
+ * the text is. A second tree keeps the column width of every line, so the width of the longest line is always known.
+ * <p>
+ * Lines are separated by {@code '\n'}, the document always has at least one (possibly empty) line. Positions are given
+ * as a line index and a character index within that line, just like the caret position in {@code TextBox}.
+ * @author Martin
+ */
+final class TextBoxDocument {
+    private final String original;
+    private final int[] originalLineBreaks;
+    private final StringBuilder added;
+    private int[] addedLineBreaks;
+    private int addedLineBreakCount;
+    private final Random random;
+    private Piece pieces;
+    private LineWidth lineWidths;
+    private String cachedText;
+
+    TextBoxDocument(String text) {
+        this.original = text;
+        this.added = new StringBuilder();
+        this.addedLineBreaks = new int[16];
+        this.addedLineBreakCount = 0;
+        this.random = new Random();
+        this.cachedText = text;
+
+        int lineBreakCount = 0;
+        for(int i = 0; i < text.length(); i++) {
+            if(text.charAt(i) == '\n') {
+                lineBreakCount++;
+            }
+        }
+        originalLineBreaks = new int[lineBreakCount];
+        int[] widths = new int[lineBreakCount + 1];
+        int lineStart = 0;
+        for(int i = 0, line = 0; i <= text.length(); i++) {
+            if(i == text.length() || text.charAt(i) == '\n') {
+                widths[line] = TerminalTextUtils.getColumnWidth(text.substring(lineStart, i));
+                if(i < text.length()) {
+                    originalLineBreaks[line] = i;
+                }
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        pieces = text.isEmpty() ? null : new Piece(true, 0, text.length(), lineBreakCount);
+        lineWidths = buildLineWidths(widths, 0, widths.length);
+    }
+
+    int getLineCount() {
+        return lineBreaks(pieces) + 1;
+    }
+
+    int getLength() {
+        return length(pieces);
+    }
+
+    /**
+     * Returns the number of characters on a line, not counting the line break
+     */
+    int getLineLength(int line) {
+        return getLineEnd(line) - getLineStart(line);
+    }
+
+    String getLine(int line) {
+        return getText(getLineStart(line), getLineEnd(line));
+    }
+
+    /**
+     * Returns how many columns a line takes up when printed to a terminal
+     */
+    int getLineWidth(int line) {
+        checkLine(line);
+        LineWidth node = lineWidths;
+        while(true) {
+            int leftCount = count(node.left);
+            if(line < leftCount) {
+                node = node.left;
+            }
+            else if(line == leftCount) {
+                return node.width;
+            }
+            else {
+                line -= leftCount + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Returns how many columns the widest line takes up when printed to a terminal
+     */
+    int getLongestLineWidth() {
+        return lineWidths.max;
+    }
+
+    /**
+     * Returns the whole text, with lines separated by {@code '\n'}. The text is only put together again after the
+     * document has been modified.
+     */
+    String getText() {
+        if(cachedText == null) {
+            cachedText = getText(0, getLength());
+        }
+        return cachedText;
+    }
+
+    /**
+     * Inserts text at a position, the text may contain line breaks
+     */
+    void insert(int line, int column, String text) {
+        int lineLength = getLineLength(line);
+        checkColumn(line, column, lineLength);
+        int lineWidth = getLineWidth(line);
+        int lineStart = getLineStart(line);
+        int lineBreak = text.indexOf('\n');
+        if(lineBreak == -1) {
+            lineWidths = setLineWidth(lineWidths, line, lineWidth + TerminalTextUtils.getColumnWidth(text));
+        }
+        else {
+            // The line is split in two around the inserted text, measure whichever part is shorter
+            int prefixWidth;
+            if(column <= lineLength / 2) {
+                prefixWidth = TerminalTextUtils.getColumnWidth(getText(lineStart, lineStart + column));
+            }
+            else {
+                prefixWidth = lineWidth - TerminalTextUtils.getColumnWidth(getText(lineStart + column, lineStart + lineLength));
+            }
+            lineWidths = setLineWidth(lineWidths, line, prefixWidth + TerminalTextUtils.getColumnWidth(text.substring(0, lineBreak)));
+            int segmentStart = lineBreak + 1;
+            for(lineBreak = text.indexOf('\n', segmentStart); lineBreak != -1; lineBreak = text.indexOf('\n', segmentStart)) {
+                insertLineWidth(++line, TerminalTextUtils.getColumnWidth(text.substring(segmentStart, lineBreak)));
+                segmentStart = lineBreak + 1;
+            }
+            insertLineWidth(++line, TerminalTextUtils.getColumnWidth(text.substring(segmentStart)) + lineWidth - prefixWidth);
+        }
+        insertText(lineStart + column, text);
+    }
+
+    /**
+     * Deletes characters from a line, this can't be used to delete line breaks
+     */
+    void delete(int line, int column, int length) {
+        int lineLength = getLineLength(line);
+        checkColumn(line, column, lineLength);
+        checkColumn(line, column + length, lineLength);
+        int lineStart = getLineStart(line);
+        String deleted = getText(lineStart + column, lineStart + column + length);
+        lineWidths = setLineWidth(lineWidths, line, getLineWidth(line) - TerminalTextUtils.getColumnWidth(deleted));
+        deleteText(lineStart + column, length);
+    }
+
+    /**
+     * Removes the line break at the end of a line, so that the next line is appended to it
+     */
+    void joinWithNext(int line) {
+        checkLine(line + 1);
+        int width = getLineWidth(line) + getLineWidth(line + 1);
+        deleteText(getLineEnd(line), 1);
+        lineWidths = setLineWidth(lineWidths, line, width);
+        LineWidth[] parts = split(lineWidths, line + 1);
+        lineWidths = merge(parts[0], split(parts[1], 1)[1]);
+    }
+
+    private void checkLine(int line) {
+        if(line < 0 || line >= getLineCount()) {
+            throw new IndexOutOfBoundsException("Line " + line + " is outside of the text, which has " + getLineCount() + " lines");
+        }
+    }
+
+    private void checkColumn(int line, int column, int lineLength) {
+        if(column < 0 || column > lineLength) {
+            throw new IndexOutOfBoundsException("Column " + column + " is outside of line " + line + ", which has " + lineLength + " characters");
+        }
+    }
+
+    private int getLineStart(int line) {
+        checkLine(line);
+        if(line == 0) {
+            return 0;
+        }
+        // Find the line break ending the line before
+        int remaining = line;
+        int offset = 0;
+        Piece node = pieces;
+        while(true) {
+            if(remaining <= lineBreaks(node.left)) {
+                node = node.left;
+                continue;
+            }
+            remaining -= lineBreaks(node.left);
+            offset += length(node.left);
+            if(remaining <= node.lineBreaks) {
+                int lineBreak = getLineBreak(node.inOriginal, getLineBreaksBefore(node.inOriginal, node.start) + remaining - 1);
+                return offset + lineBreak - node.start + 1;
+            }
+            remaining -= node.lineBreaks;
+            offset += node.length;
+            node = node.right;
+        }
+    }
+
+    private int getLineEnd(int line) {
+        if(line + 1 == getLineCount()) {
+            checkLine(line);
+            return getLength();
+        }
+        return getLineStart(line + 1) - 1;
+    }
+
+    private String getText(int from, int to) {
+        StringBuilder builder = new StringBuilder(to - from);
+        appendText(builder, pieces, 0, from, to);
+        return builder.toString();
+    }
+
+    private void appendText(StringBuilder builder, Piece node, int nodeOffset, int from, int to) {
+        if(node == null) {
+            return;
+        }
+        int pieceOffset = nodeOffset + length(node.left);
+        int pieceEnd = pieceOffset + node.length;
+        if(from < pieceOffset) {
+            appendText(builder, node.left, nodeOffset, from, Math.min(to, pieceOffset));
+        }
+        if(from < pieceEnd && to > pieceOffset) {
+            builder.append(node.inOriginal ? original : added,
+                    node.start + Math.max(from, pieceOffset) - pieceOffset,
+                    node.start + Math.min(to, pieceEnd) - pieceOffset);
+        }
+        if(to > pieceEnd) {
+            appendText(builder, node.right, pieceEnd, Math.max(from, pieceEnd), to);
+        }
+    }
+
+    private void insertText(int offset, String text) {
+        int start = added.length();
+        added.append(text);
+        for(int i = 0; i < text.length(); i++) {
+            if(text.charAt(i) == '\n') {
+                if(addedLineBreakCount == addedLineBreaks.length) {
+                    addedLineBreaks = Arrays.copyOf(addedLineBreaks, addedLineBreakCount * 2);
+                }
+                addedLineBreaks[addedLineBreakCount++] = start + i;
+            }
+        }
+        Piece[] parts = split(pieces, offset);
+        // When typing, the new text usually continues right where the piece before it ends
+        if(!extendLastPiece(parts[0], start, text.length())) {
+            parts[0] = merge(parts[0], new Piece(false, start, text.length(), countLineBreaks(false, start, text.length())));
+        }
+        pieces = merge(parts[0], parts[1]);
+        cachedText = null;
+    }
+
+    private void deleteText(int offset, int length) {
+        Piece[] parts = split(pieces, offset);
+        pieces = merge(parts[0], split(parts[1], length)[1]);
+        cachedText = null;
+    }
+
+    private boolean extendLastPiece(Piece node, int start, int length) {
+        if(node == null) {
+            return false;
+        }
+        boolean extended;
+        if(node.right != null) {
+            extended = extendLastPiece(node.right, start, length);
+        }
+        else if(!node.inOriginal && node.start + node.length == start) {
+            node.length += length;
+            node.lineBreaks = countLineBreaks(false, node.start, node.length);
+            extended = true;
+        }
+        else {
+            extended = false;
+        }
+        if(extended) {
+            node.update();
+        }
+        return extended;
+    }
+
+    private int countLineBreaks(boolean inOriginal, int start, int length) {
+        return getLineBreaksBefore(inOriginal, start + length) - getLineBreaksBefore(inOriginal, start);
+    }
+
+    private int getLineBreaksBefore(boolean inOriginal, int position) {
+        int index = inOriginal ?
+                Arrays.binarySearch(originalLineBreaks, position) :
+                Arrays.binarySearch(addedLineBreaks, 0, addedLineBreakCount, position);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private int getLineBreak(boolean inOriginal, int index) {
+        return inOriginal ? originalLineBreaks[index] : addedLineBreaks[index];
+    }
+
+    /**
+     * Splits the pieces so that the first part holds exactly {@code offset} characters, cutting a piece in two if
+     * necessary
+     */
+    private Piece[] split(Piece node, int offset) {
+        if(node == null) {
+            return new Piece[] { null, null };
+        }
+        int leftLength = length(node.left);
+        if(offset <= leftLength) {
+            Piece[] parts = split(node.left, offset);
+            node.left = parts[1];
+            node.update();
+            return new Piece[] { parts[0], node };
+        }
+        else if(offset >= leftLength + node.length) {
+            Piece[] parts = split(node.right, offset - leftLength - node.length);
+            node.right = parts[0];
+            node.update();
+            return new Piece[] { node, parts[1] };
+        }
+        int cut = offset - leftLength;
+        Piece head = new Piece(node.inOriginal, node.start, cut, countLineBreaks(node.inOriginal, node.start, cut));
+        Piece tail = new Piece(node.inOriginal, node.start + cut, node.length - cut, node.lineBreaks - head.lineBreaks);
+        head.left = node.left;
+        head.update();
+        tail.right = node.right;
+        tail.update();
+        return new Piece[] { head, tail };
+    }
+
+    private Piece merge(Piece first, Piece second) {
+        if(first == null) {
+            return second;
+        }
+        else if(second == null) {
+            return first;
+        }
+        // Picking the root at random, weighted by the size of each side, keeps the tree balanced on average
+        if(random.nextInt(first.count + second.count) < first.count) {
+            first.right = merge(first.right, second);
+            first.update();
+            return first;
+        }
+        else {
+            second.left = merge(first, second.left);
+            second.update();
+            return second;
+        }
+    }
+
+    private void insertLineWidth(int line, int width) {
+        LineWidth[] parts = split(lineWidths, line);
+        lineWidths = merge(merge(parts[0], new LineWidth(width)), parts[1]);
+    }
+
+    private LineWidth setLineWidth(LineWidth node, int line, int width) {
+        int leftCount = count(node.left);
+        if(line < leftCount) {
+            node.left = setLineWidth(node.left, line, width);
+        }
+        else if(line == leftCount) {
+            node.width = width;
+        }
+        else {
+            node.right = setLineWidth(node.right, line - leftCount - 1, width);
+        }
+        node.update();
+        return node;
+    }
+
+    private LineWidth buildLineWidths(int[] widths, int from, int to) {
+        if(from >= to) {
+            return null;
+        }
+        int middle = (from + to) / 2;
+        LineWidth node = new LineWidth(widths[middle]);
+        node.left = buildLineWidths(widths, from, middle);
+        node.right = buildLineWidths(widths, middle + 1, to);
+        node.update();
+        return node;
+    }
+
+    private LineWidth[] split(LineWidth node, int count) {
+        if(node == null) {
+            return new LineWidth[] { null, null };
+        }
+        if(count <= count(node.left)) {
+            LineWidth[] parts = split(node.left, count);
+            node.left = parts[1];
+            node.update();
+            return new LineWidth[] { parts[0], node };
+        }
+        LineWidth[] parts = split(node.right, count - count(node.left) - 1);
+        node.right = parts[0];
+        node.update();
+        return new LineWidth[] { node, parts[1] };
+    }
+
+    private LineWidth merge(LineWidth first, LineWidth second) {
+        if(first == null) {
+            return second;
+        }
+        else if(second == null) {
+            return first;
+        }
+        if(random.nextInt(first.count + second.count) < first.count) {
+            first.right = merge(first.right, second);
+            first.update();
+            return first;
+        }
+        else {
+            second.left = merge(first, second.left);
+            second.update();
+            return second;
+        }
+    }
+
+    private static int length(Piece node) {
+        return node != null ? node.totalLength : 0;
+    }
+
+    private static int lineBreaks(Piece node) {
+        return node != null ? node.totalLineBreaks : 0;
+    }
+
+    private static int count(Piece node) {
+        return node != null ? node.count : 0;
+    }
+
+    private static int count(LineWidth node) {
+        return node != null ? node.count : 0;
+    }
+
+    private static int max(LineWidth node) {
+        return node != null ? node.max : 0;
+    }
+
+    /**
+     * A run of text from one of the buffers, as a node in the tree of pieces
+     */
+    private static final class Piece {
+        private final boolean inOriginal;
+        private final int start;
+        private int length;
+        private int lineBreaks;
+        private Piece left;
+        private Piece right;
+        private int count;
+        private int totalLength;
+        private int totalLineBreaks;
+
+        Piece(boolean inOriginal, int start, int length, int lineBreaks) {
+            this.inOriginal = inOriginal;
+            this.start = start;
+            this.length = length;
+            this.lineBreaks = lineBreaks;
+            update();
+        }
+
+        void update() {
+            count = 1 + TextBoxDocument.count(left) + TextBoxDocument.count(right);
+            totalLength = length + length(left) + length(right);
+            totalLineBreaks = lineBreaks + lineBreaks(left) + lineBreaks(right);
+        }
+    }
+
+    /**
+     * Column width of one line, as a node in the tree of lines
+     */
+    private static final class LineWidth {
+        private int width;
+        private LineWidth left;
+        private LineWidth right;
+        private int count;
+        private int max;
+
+        LineWidth(int width) {
+            this.width = width;
+            update();
+        }
+
+        void update() {
+            count = 1 + TextBoxDocument.count(left) + TextBoxDocument.count(right);
+            max = Math.max(width, Math.max(TextBoxDocument.max(left), TextBoxDocument.max(right)));
+        }
+    }
+}
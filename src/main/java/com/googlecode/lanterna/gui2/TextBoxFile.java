@@ -0,0 +1,429 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.gui2;
+
+import com.googlecode.lanterna.terminal.RecentlyUsedMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Read-only text content of a {@link TextBox}, read straight from a memory-mapped file. Nothing of the file is kept on
+ * the heap except for a sparse index holding where every {@value #CHECKPOINT_INTERVAL}th line starts, and the lines that
+ * were decoded most recently. Looking up a line means starting at the closest checkpoint before it and scanning
+ * forward for line breaks, so only the lines actually shown are ever decoded.
+ * <p>
+ * The index is built incrementally by calling {@link #update(long)}, which also picks up content that was appended to
+ * the file since the last call. Until the whole file has been indexed, the line count only covers the part that has.
+ * If the file is truncated, or replaced by different content, the index is thrown away and built again from the
+ * start. To tell an append from a file that was truncated and has grown again since it was last looked at, the first
+ * and the last few bytes of the indexed part are kept and compared.
+ * <p>
+ * The file can be closed and opened again later, keeping the index as long as the content still matches.
+ * <p>
+ * Lines are separated by {@code '\n'}, a {@code '\r'} before it and any other control characters are left out, just
+ * like {@code TextBox} does with text that is given to it. The charset needs to encode {@code '\n'} as the single byte
+ * 0x0A, which is the case for UTF-8, ASCII and the ISO-8859 family among others.
+ * @author Martin
+ */
+final class TextBoxFile {
+    private static final int CHECKPOINT_INTERVAL = 1024;
+    private static final int REGION_SIZE = 64 * 1024 * 1024;
+    private static final int MAPPED_REGIONS = 4;
+    private static final int LINE_CACHE_SIZE = 512;
+    private static final int MAX_LINE_LENGTH = 1024 * 1024;
+    private static final int FINGERPRINT_LENGTH = 64;
+
+    private final File file;
+    private final int regionSize;
+    private final CharsetDecoder decoder;
+    private final Map<Long, MappedByteBuffer> regions;
+    private final Map<Integer, String> lineCache;
+    private final byte[] headFingerprint;
+    private final byte[] tailFingerprint;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+
+    private long fileSize;
+    private long indexedLength;
+    private long[] checkpoints;
+    private int lineCount;
+    private long lastLineStart;
+    private int longestLineLength;
+    private int nextLine;
+    private long nextLineStart;
+    private int headFingerprintLength;
+    private int tailFingerprintLength;
+
+    TextBoxFile(File file, Charset charset) throws IOException {
+        this(file, charset, REGION_SIZE);
+    }
+
+    TextBoxFile(File file, Charset charset, int regionSize) throws IOException {
+        byte[] lineBreak = "\n".getBytes(charset);
+        if(lineBreak.length != 1 || lineBreak[0] != '\n') {
+            throw new IllegalArgumentException("Cannot show a file encoded in " + charset + " in a TextBox, line breaks " +
+                    "need to be encoded as a single byte");
+        }
+        this.file = file;
+        this.regionSize = regionSize;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // A mapping that is dropped from here is released when the buffer is garbage collected
+        this.regions = new RecentlyUsedMap<Long, MappedByteBuffer>(MAPPED_REGIONS);
+        this.lineCache = new RecentlyUsedMap<Integer, String>(LINE_CACHE_SIZE);
+        this.headFingerprint = new byte[FINGERPRINT_LENGTH];
+        this.tailFingerprint = new byte[FINGERPRINT_LENGTH];
+        resetIndex();
+        open();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Opens the file again after {@link #close()}. The index is kept, the next call to {@link #update(long)} checks if
+     * it still matches the content of the file.
+     * @throws IOException If the file could not be opened
+     */
+    void open() throws IOException {
+        if(randomAccessFile == null) {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            channel = randomAccessFile.getChannel();
+        }
+    }
+
+    boolean isOpen() {
+        return randomAccessFile != null;
+    }
+
+    /**
+     * Closes the file and drops everything read from it except for the index
+     * @throws IOException If closing the file failed
+     */
+    void close() throws IOException {
+        regions.clear();
+        lineCache.clear();
+        if(randomAccessFile != null) {
+            RandomAccessFile toClose = randomAccessFile;
+            randomAccessFile = null;
+            channel = null;
+            toClose.close();
+        }
+    }
+
+    /**
+     * Indexes up to {@code maxBytes} more of the file, first checking if the file has grown or been truncated since
+     * the last call. A file that shrank, or that has different content in the part that was already indexed, is
+     * assumed to have been replaced and is indexed again from the start.
+     * @param maxBytes How many bytes to scan for line breaks at most
+     * @return {@code true} if the content changed, meaning more of it was indexed or it was truncated
+     * @throws IOException If the file could not be read
+     */
+    boolean update(long maxBytes) throws IOException {
+        long size = channel.size();
+        boolean changed = false;
+        if(size < fileSize || !isFingerprintMatching()) {
+            resetIndex();
+            changed = true;
+        }
+        fileSize = size;
+        if(indexedLength == fileSize) {
+            return changed;
+        }
+
+        // The last line may have been cut short the last time it was read
+        lineCache.remove(lineCount - 1);
+        long end = indexedLength + Math.min(maxBytes, fileSize - indexedLength);
+        long position = indexedLength;
+        try {
+            while(position < end) {
+                ByteBuffer region = getRegion(position);
+                int offset = (int)(position % regionSize);
+                int until = (int)Math.min(region.limit(), offset + end - position);
+                for(int i = offset; i < until; i++) {
+                    if(region.get(i) == '\n') {
+                        long lineBreak = position + i - offset;
+                        longestLineLength = Math.max(longestLineLength, lineLength(lastLineStart, lineBreak));
+                        lastLineStart = lineBreak + 1;
+                        if(lineCount % CHECKPOINT_INTERVAL == 0) {
+                            if(lineCount / CHECKPOINT_INTERVAL == checkpoints.length) {
+                                checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+                            }
+                            checkpoints[lineCount / CHECKPOINT_INTERVAL] = lastLineStart;
+                        }
+                        lineCount++;
+                    }
+                }
+                position += until - offset;
+            }
+        }
+        catch(InternalError e) {
+            // Reading a mapping past the end of a file that was truncated while scanning it
+            resetIndex();
+            return true;
+        }
+        indexedLength = end;
+        longestLineLength = Math.max(longestLineLength, lineLength(lastLineStart, indexedLength));
+        recordFingerprint();
+        return true;
+    }
+
+    boolean isFullyIndexed() {
+        return indexedLength == fileSize;
+    }
+
+    int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Returns the number of bytes in the longest line indexed so far. For the charsets this class supports, no
+     * character takes up more columns than it has bytes, so this is an upper bound on the width of the longest line.
+     */
+    int getLongestLineWidth() {
+        return longestLineLength;
+    }
+
+    /**
+     * Returns a line of the file. If the file turns out to have been truncated, the index is reset and an empty string
+     * is returned; the lines come back once {@link #update(long)} has indexed the file again.
+     */
+    String getLine(int index) {
+        if(index < 0 || index >= lineCount) {
+            throw new IndexOutOfBoundsException("Line " + index + " is outside of the file, which has " + lineCount + " lines indexed");
+        }
+        String line = lineCache.get(index);
+        if(line != null) {
+            return line;
+        }
+        if(isTruncated()) {
+            resetIndex();
+            return "";
+        }
+        try {
+            // Lines are mostly asked for in order, so carry on from the last one if it's closer than the checkpoint
+            int checkpointLine = index - index % CHECKPOINT_INTERVAL;
+            long start = checkpoints[index / CHECKPOINT_INTERVAL];
+            int skip = index - checkpointLine;
+            if(nextLine > checkpointLine && nextLine <= index) {
+                start = nextLineStart;
+                skip = index - nextLine;
+            }
+            for(; skip > 0; skip--) {
+                start = findLineEnd(start) + 1;
+            }
+            long end = findLineEnd(start);
+            line = decodeLine(start, end);
+            lineCache.put(index, line);
+            if(end < indexedLength) {
+                nextLine = index + 1;
+                nextLineStart = end + 1;
+            }
+            return line;
+        }
+        catch(InternalError e) {
+            // The file was truncated after checking its size
+            resetIndex();
+            return "";
+        }
+    }
+
+    /**
+     * Decodes all indexed lines and returns them joined together with {@code '\n'}
+     */
+    String getText() {
+        if(isTruncated()) {
+            resetIndex();
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        try {
+            long start = 0;
+            for(int i = 0; i < lineCount; i++) {
+                long end = findLineEnd(start);
+                if(i > 0) {
+                    builder.append('\n');
+                }
+                builder.append(decodeLine(start, end));
+                start = end + 1;
+            }
+        }
+        catch(InternalError e) {
+            resetIndex();
+            return "";
+        }
+        return builder.toString();
+    }
+
+    private void resetIndex() {
+        fileSize = 0;
+        indexedLength = 0;
+        checkpoints = new long[16];
+        lineCount = 1;
+        lastLineStart = 0;
+        longestLineLength = 0;
+        nextLine = 0;
+        nextLineStart = 0;
+        headFingerprintLength = 0;
+        tailFingerprintLength = 0;
+        regions.clear();
+        lineCache.clear();
+    }
+
+    /**
+     * Checks if the file is now shorter than the part that was indexed, reading from the mapping there would fail
+     */
+    private boolean isTruncated() {
+        try {
+            return channel.size() < indexedLength;
+        }
+        catch(IOException e) {
+            return true;
+        }
+    }
+
+    private void recordFingerprint() throws IOException {
+        headFingerprintLength = read(0, headFingerprint, (int)Math.min(FINGERPRINT_LENGTH, indexedLength));
+        tailFingerprintLength = read(getTailFingerprintPosition(), tailFingerprint, (int)Math.min(FINGERPRINT_LENGTH, indexedLength));
+    }
+
+    private boolean isFingerprintMatching() throws IOException {
+        return isMatching(0, headFingerprint, headFingerprintLength) &&
+                isMatching(getTailFingerprintPosition(), tailFingerprint, tailFingerprintLength);
+    }
+
+    private long getTailFingerprintPosition() {
+        return Math.max(0, indexedLength - FINGERPRINT_LENGTH);
+    }
+
+    private boolean isMatching(long position, byte[] expected, int length) throws IOException {
+        byte[] actual = new byte[length];
+        return read(position, actual, length) == length && Arrays.equals(actual, Arrays.copyOf(expected, length));
+    }
+
+    /**
+     * Reads bytes from the file without going through a mapping, so this is safe to do even if it has been truncated
+     */
+    private int read(long position, byte[] target, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(target, 0, length);
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.position();
+    }
+
+    private static int lineLength(long start, long end) {
+        return (int)Math.min(MAX_LINE_LENGTH, end - start);
+    }
+
+    /**
+     * Returns the position of the line break ending the line starting at {@code start}, or the end of the indexed part
+     * of the file if it's the last line
+     */
+    private long findLineEnd(long start) {
+        long position = start;
+        while(position < indexedLength) {
+            ByteBuffer region = getRegion(position);
+            int offset = (int)(position % regionSize);
+            int until = (int)Math.min(region.limit(), offset + indexedLength - position);
+            for(int i = offset; i < until; i++) {
+                if(region.get(i) == '\n') {
+                    return position + i - offset;
+                }
+            }
+            position += until - offset;
+        }
+        return indexedLength;
+    }
+
+    private String decodeLine(long start, long end) {
+        int length = lineLength(start, end);
+        ByteBuffer bytes;
+        ByteBuffer region = getRegion(start);
+        int offset = (int)(start % regionSize);
+        if(offset + length <= region.limit()) {
+            bytes = region.duplicate();
+            bytes.limit(offset + length).position(offset);
+        }
+        else {
+            // The line crosses into the next region
+            byte[] copy = new byte[length];
+            for(int copied = 0; copied < length; ) {
+                ByteBuffer source = getRegion(start + copied).duplicate();
+                source.position((int)((start + copied) % regionSize));
+                int count = Math.min(source.remaining(), length - copied);
+                source.get(copy, copied, count);
+                copied += count;
+            }
+            bytes = ByteBuffer.wrap(copy);
+        }
+        String decoded;
+        try {
+            decoded = decoder.decode(bytes).toString();
+        }
+        catch(CharacterCodingException e) {
+            // Can't happen when replacing malformed input
+            throw new IllegalStateException(e);
+        }
+        StringBuilder line = null;
+        for(int i = 0; i < decoded.length(); i++) {
+            char c = decoded.charAt(i);
+            if(Character.isISOControl(c)) {
+                if(line == null) {
+                    line = new StringBuilder(decoded.length()).append(decoded, 0, i);
+                }
+            }
+            else if(line != null) {
+                line.append(c);
+            }
+        }
+        return line != null ? line.toString() : decoded;
+    }
+
+    private ByteBuffer getRegion(long position) {
+        long regionStart = position - position % regionSize;
+        int regionLength = (int)Math.min(regionSize, fileSize - regionStart);
+        MappedByteBuffer region = regions.get(regionStart);
+        if(region == null || region.limit() < regionLength) {
+            try {
+                region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionLength);
+            }
+            catch(IOException e) {
+                throw new RuntimeException("Unable to map " + file + " into memory", e);
+            }
+            regions.put(regionStart, region);
+        }
+        return region;
+    }
+}
@@ -26,6 +26,7 @@ import com.googlecode.lanterna.gui2.ScrollBar;
 import com.googlecode.lanterna.gui2.TextGUIGraphics;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -53,10 +54,25 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
     //So that we don't have to recalculate the size every time. This still isn't optimal but shouganai.
     private TerminalSize cachedSize;
     private final List<Integer> preferredColumnSizes;
-    private final List<Integer> preferredRowSizes;
     private final Set<Integer> expandableColumns;
+    private final List<Integer> fixedColumnSizes;
+    private int columnSizeSampleRows;
     private int headerSizeInRows;
 
+    // Sizes of every cell in an in-memory table model, kept up to date from the model's events so that a change only
+    // costs re-measuring the cells that changed. The pending changes and the remeasureAll flag are guarded by the
+    // lock of the model being measured, since the listener is always called while the model holds it.
+    private final TableModel.Listener<V> modelListener;
+    private final List<Runnable> pendingModelChanges;
+    private boolean remeasureAll;
+    private TableModel<V> measuredModel;
+    private TableCellRenderer<V> measuredCellRenderer;
+    private TableHeaderRenderer<V> measuredHeaderRenderer;
+    private final List<MeasuredRow> measuredRows;
+    private final List<ColumnWidths> columnWidths;
+    private int firstDirtyRow;
+    private int dirtyRowCount;
+
     /**
      * Default constructor
      */
@@ -76,9 +92,78 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
         cachedSize = null;
 
         preferredColumnSizes = new ArrayList<Integer>();
-        preferredRowSizes = new ArrayList<Integer>();
         expandableColumns = new TreeSet<Integer>();
+        fixedColumnSizes = new ArrayList<Integer>();
+        columnSizeSampleRows = 100;
         headerSizeInRows = 0;
+
+        modelListener = new TableModel.Listener<V>() {
+            @Override
+            public void onRowAdded(TableModel<V> model, final int index) {
+                queueModelChange(model, new Runnable() {
+                    @Override
+                    public void run() {
+                        // New rows start out dirty
+                        measuredRows.add(index, new MeasuredRow(columnWidths.size()));
+                        dirtyRowCount++;
+                        firstDirtyRow = Math.min(firstDirtyRow, index);
+                    }
+                });
+            }
+
+            @Override
+            public void onRowRemoved(TableModel<V> model, final int index, List<V> oldRow) {
+                queueModelChange(model, new Runnable() {
+                    @Override
+                    public void run() {
+                        MeasuredRow row = measuredRows.remove(index);
+                        for(int columnIndex = 0; columnIndex < columnWidths.size(); columnIndex++) {
+                            columnWidths.get(columnIndex).remove(row.cellWidths[columnIndex]);
+                        }
+                        if(row.dirty) {
+                            dirtyRowCount--;
+                        }
+                        if(index < firstDirtyRow) {
+                            firstDirtyRow--;
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onColumnAdded(TableModel<V> model, int index) {
+                remeasureAll = true;
+                pendingModelChanges.clear();
+            }
+
+            @Override
+            public void onColumnRemoved(TableModel<V> model, int index, String oldHeader, List<V> oldColumn) {
+                remeasureAll = true;
+                pendingModelChanges.clear();
+            }
+
+            @Override
+            public void onCellChanged(TableModel<V> model, final int row, final int column, V oldValue, V newValue) {
+                queueModelChange(model, new Runnable() {
+                    @Override
+                    public void run() {
+                        MeasuredRow measuredRow = measuredRows.get(row);
+                        columnWidths.get(column).remove(measuredRow.cellWidths[column]);
+                        measuredRow.cellWidths[column] = -1;
+                        markDirty(row);
+                    }
+                });
+            }
+        };
+        pendingModelChanges = new ArrayList<Runnable>();
+        remeasureAll = true;
+        measuredModel = null;
+        measuredCellRenderer = null;
+        measuredHeaderRenderer = null;
+        measuredRows = new ArrayList<MeasuredRow>();
+        columnWidths = new ArrayList<ColumnWidths>();
+        firstDirtyRow = 0;
+        dirtyRowCount = 0;
     }
 
     /**
@@ -131,6 +216,27 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
         this.expandableColumns.addAll(expandableColumns);
     }
 
+    /**
+     * Declares the width of columns up front, so that they don't have to be measured. The first element is the width
+     * of the first column and so on, a {@code null} element or a column past the end of the list is measured as usual.
+     * @param fixedColumnSizes Widths of the columns, or {@code null} for columns that should be measured
+     */
+    public synchronized void setFixedColumnSizes(Integer... fixedColumnSizes) {
+        this.fixedColumnSizes.clear();
+        this.fixedColumnSizes.addAll(Arrays.asList(fixedColumnSizes));
+    }
+
+    /**
+     * Sets how many rows from the top of a table are measured to decide the width of its columns, when the table's
+     * model is backed by a {@link TableDataSource}. The rows currently in view are measured too, so columns may get
+     * wider as the table is scrolled. Tables keeping all their rows in memory always measure every row. The default is
+     * 100.
+     * @param columnSizeSampleRows Number of rows to measure
+     */
+    public synchronized void setColumnSizeSampleRows(int columnSizeSampleRows) {
+        this.columnSizeSampleRows = columnSizeSampleRows;
+    }
+
     private boolean isHorizontallySpaced() {
         return headerHorizontalBorderStyle != TableCellBorderStyle.None ||
                 cellHorizontalBorderStyle != TableCellBorderStyle.None;
@@ -180,7 +286,9 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
         int visibleRows = table.getVisibleRows();
         int selectedRow = table.getSelectedRow();
         int selectedColumn = table.getSelectedColumn();
-        List<List<V>> rows = tableModel.getRows();
+        int rowCount = tableModel.getRowCount();
+        // Rows coming from a data source are only sampled, so that the cost doesn't depend on how much data there is
+        boolean sampled = tableModel.getDataSource() != null;
         List<String> columnHeaders = tableModel.getColumnLabels();
         TableHeaderRenderer<V> tableHeaderRenderer = table.getTableHeaderRenderer();
         TableCellRenderer<V> tableCellRenderer = table.getTableCellRenderer();
@@ -189,11 +297,10 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
             visibleColumns = tableModel.getColumnCount();
         }
         if(visibleRows == 0) {
-            visibleRows = tableModel.getRowCount();
+            visibleRows = rowCount;
         }
 
         preferredColumnSizes.clear();
-        preferredRowSizes.clear();
 
         if(tableModel.getColumnCount() == 0) {
             return TerminalSize.ZERO;
@@ -214,40 +321,33 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
             viewTopRow = Math.max(0, selectedRow - visibleRows + 1);
         }
 
-        // If there are no rows, base the column sizes off of the column labels
-        if(rows.size() == 0) {
-            for(int columnIndex = 0; columnIndex < columnHeaders.size(); columnIndex++) {
-                int columnSize = tableHeaderRenderer.getPreferredSize(table, columnHeaders.get(columnIndex), columnIndex).getColumns();
-                if(preferredColumnSizes.size() == columnIndex) {
-                    preferredColumnSizes.add(columnSize);
-                }
-                else {
-                    if(preferredColumnSizes.get(columnIndex) < columnSize) {
-                        preferredColumnSizes.set(columnIndex, columnSize);
-                    }
-                }
+        if(sampled) {
+            if(measuredModel != null) {
+                // Stop tracking the previous model, there's nothing to keep up to date for one that's only sampled
+                measuredModel.removeListener(modelListener);
+                measuredModel = null;
             }
-        }
-
-        for(int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
-            List<V> row = rows.get(rowIndex);
-            for(int columnIndex = 0; columnIndex < row.size(); columnIndex++) {
-                V cell = row.get(columnIndex);
-                int columnSize = tableCellRenderer.getPreferredSize(table, cell, columnIndex, rowIndex).getColumns();
-                if(preferredColumnSizes.size() == columnIndex) {
-                    preferredColumnSizes.add(columnSize);
-                }
-                else {
-                    if(preferredColumnSizes.get(columnIndex) < columnSize) {
-                        preferredColumnSizes.set(columnIndex, columnSize);
+            List<List<V>> rows = tableModel.getRows(0, Math.min(rowCount, columnSizeSampleRows));
+            // If there are no rows, base the column sizes off of the column labels
+            if(rows.size() == 0) {
+                for(int columnIndex = 0; columnIndex < columnHeaders.size(); columnIndex++) {
+                    int columnSize = tableHeaderRenderer.getPreferredSize(table, columnHeaders.get(columnIndex), columnIndex).getColumns();
+                    if(preferredColumnSizes.size() == columnIndex) {
+                        preferredColumnSizes.add(columnSize);
+                    }
+                    else {
+                        if(preferredColumnSizes.get(columnIndex) < columnSize) {
+                            preferredColumnSizes.set(columnIndex, columnSize);
+                        }
                     }
                 }
             }
 
-            //Do the headers too, on the first iteration
-            if(rowIndex == 0) {
+            for(int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+                List<V> row = rows.get(rowIndex);
                 for(int columnIndex = 0; columnIndex < row.size(); columnIndex++) {
-                    int columnSize = tableHeaderRenderer.getPreferredSize(table, columnHeaders.get(columnIndex), columnIndex).getColumns();
+                    V cell = row.get(columnIndex);
+                    int columnSize = tableCellRenderer.getPreferredSize(table, cell, columnIndex, rowIndex).getColumns();
                     if(preferredColumnSizes.size() == columnIndex) {
                         preferredColumnSizes.add(columnSize);
                     }
@@ -257,23 +357,49 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
                         }
                     }
                 }
-            }
-        }
 
-        for(int columnIndex = 0; columnIndex < columnHeaders.size(); columnIndex++) {
-            for(int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
-                V cell = rows.get(rowIndex).get(columnIndex);
-                int rowSize = tableCellRenderer.getPreferredSize(table, cell, columnIndex, rowIndex).getRows();
-                if(preferredRowSizes.size() == rowIndex) {
-                    preferredRowSizes.add(rowSize);
+                //Do the headers too, on the first iteration
+                if(rowIndex == 0) {
+                    for(int columnIndex = 0; columnIndex < row.size(); columnIndex++) {
+                        int columnSize = tableHeaderRenderer.getPreferredSize(table, columnHeaders.get(columnIndex), columnIndex).getColumns();
+                        if(preferredColumnSizes.size() == columnIndex) {
+                            preferredColumnSizes.add(columnSize);
+                        }
+                        else {
+                            if(preferredColumnSizes.get(columnIndex) < columnSize) {
+                                preferredColumnSizes.set(columnIndex, columnSize);
+                            }
+                        }
+                    }
                 }
-                else {
-                    if(preferredRowSizes.get(rowIndex) < rowSize) {
-                        preferredRowSizes.set(rowIndex, rowSize);
+            }
+
+            // Also measure the rows in view so that what's being shown fits
+            int fromRow = Math.max(rows.size(), viewTopRow);
+            int toRow = Math.min(rowCount, viewTopRow + (table.getVisibleRows() > 0 ? visibleRows : visibleRowsOnLastDraw));
+            List<List<V>> rowsInView = tableModel.getRows(fromRow, Math.max(fromRow, toRow));
+            for(int i = 0; i < rowsInView.size(); i++) {
+                List<V> row = rowsInView.get(i);
+                for(int columnIndex = 0; columnIndex < Math.min(row.size(), preferredColumnSizes.size()); columnIndex++) {
+                    int columnSize = tableCellRenderer.getPreferredSize(table, row.get(columnIndex), columnIndex, fromRow + i).getColumns();
+                    if(preferredColumnSizes.get(columnIndex) < columnSize) {
+                        preferredColumnSizes.set(columnIndex, columnSize);
                     }
                 }
             }
         }
+        else {
+            updateMeasurements(table);
+            for(ColumnWidths widths: columnWidths) {
+                preferredColumnSizes.add(widths.getMax());
+            }
+        }
+
+        for(int columnIndex = 0; columnIndex < Math.min(fixedColumnSizes.size(), preferredColumnSizes.size()); columnIndex++) {
+            if(fixedColumnSizes.get(columnIndex) != null) {
+                preferredColumnSizes.set(columnIndex, fixedColumnSizes.get(columnIndex));
+            }
+        }
 
         int preferredRowSize = 0;
         int preferredColumnSize = 0;
@@ -288,14 +414,18 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
             }
         }
 
-        if (table.getVisibleRows() == 0) {
-            for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
-                preferredRowSize += preferredRowSizes.get(rowIndex);
+        if (table.getVisibleRows() == 0 && sampled) {
+            // Assume single-line rows rather than measuring all of them
+            preferredRowSize += rowCount;
+        }
+        else if (table.getVisibleRows() == 0) {
+            for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
+                preferredRowSize += getRowSize(table, rowIndex);
             }
         }
         else {
-            for (int rowIndex = viewTopRow; rowIndex < Math.min(rows.size(), viewTopRow + visibleRows); rowIndex++) {
-                preferredRowSize += preferredRowSizes.get(rowIndex);
+            for (int rowIndex = viewTopRow; rowIndex < Math.min(rowCount, viewTopRow + visibleRows); rowIndex++) {
+                preferredRowSize += getRowSize(table, rowIndex);
             }
         }
 
@@ -312,8 +442,8 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
             preferredRowSize++;    //Spacing between header and body
         }
         if(cellVerticalBorderStyle != TableCellBorderStyle.None) {
-            if(!rows.isEmpty()) {
-                preferredRowSize += Math.min(rows.size(), visibleRows) - 1; //Vertical space between cells
+            if(rowCount > 0) {
+                preferredRowSize += Math.min(rowCount, visibleRows) - 1; //Vertical space between cells
             }
         }
         if(isHorizontallySpaced()) {
@@ -335,6 +465,137 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
         return cachedSize;
     }
 
+    /**
+     * Brings the measured cell sizes up to date with the table model, by applying the changes the model has reported
+     * since last time and measuring the cells that changed. Everything is measured again if the model, the renderers or
+     * the columns changed.
+     */
+    private void updateMeasurements(Table<V> table) {
+        TableModel<V> tableModel = table.getTableModel();
+        TableCellRenderer<V> tableCellRenderer = table.getTableCellRenderer();
+        TableHeaderRenderer<V> tableHeaderRenderer = table.getTableHeaderRenderer();
+        if(tableModel != measuredModel) {
+            if(measuredModel != null) {
+                measuredModel.removeListener(modelListener);
+            }
+            measuredModel = tableModel;
+            synchronized(tableModel) {
+                tableModel.addListener(modelListener);
+                remeasureAll = true;
+            }
+        }
+        synchronized(tableModel) {
+            if(remeasureAll || tableCellRenderer != measuredCellRenderer || tableHeaderRenderer != measuredHeaderRenderer) {
+                remeasureAll = false;
+                pendingModelChanges.clear();
+                measuredCellRenderer = tableCellRenderer;
+                measuredHeaderRenderer = tableHeaderRenderer;
+                measuredRows.clear();
+                columnWidths.clear();
+                for(int columnIndex = 0; columnIndex < tableModel.getColumnCount(); columnIndex++) {
+                    columnWidths.add(new ColumnWidths());
+                }
+                for(int rowIndex = 0; rowIndex < tableModel.getRowCount(); rowIndex++) {
+                    measuredRows.add(new MeasuredRow(columnWidths.size()));
+                }
+                firstDirtyRow = 0;
+                dirtyRowCount = measuredRows.size();
+            }
+            else {
+                for(Runnable change: pendingModelChanges) {
+                    change.run();
+                }
+                pendingModelChanges.clear();
+            }
+
+            // Header labels can change without the model reporting it, but there are few of them
+            for(int columnIndex = 0; columnIndex < columnWidths.size(); columnIndex++) {
+                String label = tableModel.getColumnLabel(columnIndex);
+                columnWidths.get(columnIndex).setHeaderWidth(
+                        tableHeaderRenderer.getPreferredSize(table, label, columnIndex).getColumns());
+            }
+
+            for(int rowIndex = firstDirtyRow; dirtyRowCount > 0; rowIndex++) {
+                MeasuredRow measuredRow = measuredRows.get(rowIndex);
+                if(!measuredRow.dirty) {
+                    continue;
+                }
+                List<V> row = tableModel.getRow(rowIndex);
+                for(int columnIndex = 0; columnIndex < columnWidths.size(); columnIndex++) {
+                    if(measuredRow.cellWidths[columnIndex] == -1) {
+                        // Cells past the end of a short row aren't drawn and take no space
+                        TerminalSize cellSize = columnIndex < row.size() ?
+                                tableCellRenderer.getPreferredSize(table, row.get(columnIndex), columnIndex, rowIndex) :
+                                TerminalSize.ZERO;
+                        measuredRow.cellWidths[columnIndex] = cellSize.getColumns();
+                        measuredRow.cellHeights[columnIndex] = cellSize.getRows();
+                        columnWidths.get(columnIndex).add(cellSize.getColumns());
+                    }
+                }
+                measuredRow.updateHeight();
+                measuredRow.dirty = false;
+                dirtyRowCount--;
+            }
+            firstDirtyRow = measuredRows.size();
+        }
+    }
+
+    /**
+     * Stops keeping the cell sizes up to date with the table model and forgets them, called by the table when this
+     * renderer is no longer the one drawing it
+     */
+    synchronized void stopMeasuring() {
+        if(measuredModel == null) {
+            return;
+        }
+        synchronized(measuredModel) {
+            measuredModel.removeListener(modelListener);
+            pendingModelChanges.clear();
+            remeasureAll = true;
+        }
+        measuredModel = null;
+        measuredRows.clear();
+        columnWidths.clear();
+    }
+
+    private void queueModelChange(TableModel<V> model, Runnable change) {
+        if(remeasureAll) {
+            return;
+        }
+        // When lots of the model has changed, measuring it all again is cheaper than replaying the changes one by one
+        if(pendingModelChanges.size() > model.getRowCount()) {
+            remeasureAll = true;
+            pendingModelChanges.clear();
+            return;
+        }
+        pendingModelChanges.add(change);
+    }
+
+    private void markDirty(int rowIndex) {
+        MeasuredRow measuredRow = measuredRows.get(rowIndex);
+        if(!measuredRow.dirty) {
+            measuredRow.dirty = true;
+            dirtyRowCount++;
+        }
+        firstDirtyRow = Math.min(firstDirtyRow, rowIndex);
+    }
+
+    private int getRowSize(Table<V> table, int rowIndex) {
+        if(table.getTableModel() == measuredModel && rowIndex < measuredRows.size() && !measuredRows.get(rowIndex).dirty) {
+            return measuredRows.get(rowIndex).height;
+        }
+        // Sampled row or one that was added since the sizes were calculated, measure it now
+        TableCellRenderer<V> tableCellRenderer = table.getTableCellRenderer();
+        List<V> row = table.getTableModel().getRow(rowIndex);
+        int columnCount = table.getTableModel().getColumnCount();
+        int rowSize = 0;
+        for(int columnIndex = 0; columnIndex < columnCount; columnIndex++) {
+            V cell = columnIndex < row.size() ? row.get(columnIndex) : null;
+            rowSize = Math.max(rowSize, tableCellRenderer.getPreferredSize(table, cell, columnIndex, rowIndex).getRows());
+        }
+        return rowSize;
+    }
+
     @Override
     public TerminalPosition getCursorLocation(Table<V> component) {
         return null;
@@ -377,7 +638,7 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
             preferredVisibleColumns = table.getTableModel().getColumnCount();
         }
 
-        int visibleRows = calculateVisibleRows(areaWithoutScrollBars, viewTopRow, preferredVisibleRows);
+        int visibleRows = calculateVisibleRows(table, areaWithoutScrollBars, viewTopRow, preferredVisibleRows);
         boolean needVerticalScrollBar = visibleRows < table.getTableModel().getRowCount();
         if(needVerticalScrollBar) {
             areaWithoutScrollBars = areaWithoutScrollBars.withRelativeColumns(-verticalScrollBar.getPreferredSize().getColumns());
@@ -388,7 +649,7 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
             areaWithoutScrollBars = areaWithoutScrollBars.withRelativeRows(-horizontalScrollBar.getPreferredSize().getRows());
 
             // As we have now a horizontal scrollbar, we need to re-evaluate how many rows are visible
-            visibleRows = calculateVisibleRows(areaWithoutScrollBars, viewTopRow, preferredVisibleRows);
+            visibleRows = calculateVisibleRows(table, areaWithoutScrollBars, viewTopRow, preferredVisibleRows);
             if(!needVerticalScrollBar && visibleRows < table.getTableModel().getRowCount()) {
                 // Previously we didn't need a scrollbar but now we do because the horizontal scrollbar took one row
                 needVerticalScrollBar = true;
@@ -406,7 +667,7 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
         }
         while(viewTopRow <= selectedRow - visibleRows) {
             viewTopRow = Math.max(0, selectedRow - visibleRows + 1);
-            visibleRows = calculateVisibleRows(areaWithoutScrollBars, viewTopRow, preferredVisibleRows);
+            visibleRows = calculateVisibleRows(table, areaWithoutScrollBars, viewTopRow, preferredVisibleRows);
         }
 
         List<Integer> columnSizes = fitColumnsInAvailableSpace(table, areaWithoutScrollBars, visibleColumns);
@@ -425,15 +686,16 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
         visibleRowsOnLastDraw = visibleRows;
     }
 
-    private int calculateVisibleRows(TerminalSize area, int viewTopRow, int preferredVisibleRows) {
+    private int calculateVisibleRows(Table<V> table, TerminalSize area, int viewTopRow, int preferredVisibleRows) {
         int remainingVerticalSpace = area.getRows();
         int visibleRows = 0;
         int borderAdjustment = cellVerticalBorderStyle.getSize();
-        for (int row = viewTopRow; row < preferredRowSizes.size(); row++) {
+        int rowCount = table.getTableModel().getRowCount();
+        for (int row = viewTopRow; row < rowCount; row++) {
             if (preferredVisibleRows == visibleRows) {
                 break;
             }
-            int rowSize = preferredRowSizes.get(row) + borderAdjustment;
+            int rowSize = getRowSize(table, row) + borderAdjustment;
             if (remainingVerticalSpace < rowSize) {
                 break;
             }
@@ -552,9 +814,11 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
         TerminalSize area = graphics.getSize();
         TableCellRenderer<V> tableCellRenderer = table.getTableCellRenderer();
         TableModel<V> tableModel = table.getTableModel();
-        List<List<V>> rows = tableModel.getRows();
+        int rowCount = tableModel.getRowCount();
         int viewTopRow = table.getViewTopRow();
         int viewLeftColumn = table.getViewLeftColumn();
+        // Only fetch the rows that will be drawn
+        List<List<V>> rows = tableModel.getRows(Math.min(viewTopRow, rowCount), Math.min(viewTopRow + visibleRows, rowCount));
 
         //Draw scrollbars (if needed)
         if(needVerticalScrollBar) {
@@ -565,7 +829,7 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
             }
             verticalScrollBar.setPosition(new TerminalPosition(graphics.getSize().getColumns() - verticalScrollBarPreferredSize.getColumns(), 0));
             verticalScrollBar.setSize(verticalScrollBarPreferredSize.withRows(scrollBarHeight));
-            verticalScrollBar.setScrollMaximum(rows.size());
+            verticalScrollBar.setScrollMaximum(rowCount);
             verticalScrollBar.setViewSize(visibleRows);
             verticalScrollBar.setScrollPosition(viewTopRow);
 
@@ -612,9 +876,9 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
         }
 
         int topPosition = 0;
-        for(int rowIndex = viewTopRow; rowIndex < Math.min(viewTopRow + visibleRows, rows.size()); rowIndex++) {
+        for(int rowIndex = viewTopRow; rowIndex < Math.min(viewTopRow + visibleRows, rowCount); rowIndex++) {
             int leftPosition = 0;
-            List<V> row = rows.get(rowIndex);
+            List<V> row = rows.get(rowIndex - viewTopRow);
             for(int columnIndex = viewLeftColumn; columnIndex < Math.min(viewLeftColumn + visibleColumns, row.size()); columnIndex++) {
                 if(columnIndex > viewLeftColumn) {
                     if(table.getSelectedRow() == rowIndex && !table.isCellSelection()) {
@@ -633,7 +897,7 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
                 }
                 V cell = row.get(columnIndex);
                 TerminalPosition cellPosition = new TerminalPosition(leftPosition, topPosition);
-                TerminalSize cellArea = new TerminalSize(columnSizes.get(columnIndex), preferredRowSizes.get(rowIndex));
+                TerminalSize cellArea = new TerminalSize(columnSizes.get(columnIndex), getRowSize(table, rowIndex));
                 tableCellRenderer.drawCell(table, cell, columnIndex, rowIndex, graphics.newTextGraphics(cellPosition, cellArea));
                 leftPosition += cellArea.getColumns();
 
@@ -654,7 +918,7 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
                     break;
                 }
             }
-            topPosition += preferredRowSizes.get(rowIndex);
+            topPosition += getRowSize(table, rowIndex);
             if(cellVerticalBorderStyle != TableCellBorderStyle.None) {
                 leftPosition = 0;
                 graphics.applyThemeStyle(themeDefinition.getNormal());
@@ -782,4 +1046,75 @@ public class DefaultTableRenderer<V> implements TableRenderer<V> {
             return ' ';
         }
     }
+
+    /**
+     * Measured size of each cell in a row, where a width of -1 means the cell needs to be measured
+     */
+    private static class MeasuredRow {
+        private final int[] cellWidths;
+        private final int[] cellHeights;
+        private int height;
+        private boolean dirty;
+
+        MeasuredRow(int columnCount) {
+            cellWidths = new int[columnCount];
+            cellHeights = new int[columnCount];
+            Arrays.fill(cellWidths, -1);
+            height = 0;
+            dirty = true;
+        }
+
+        void updateHeight() {
+            height = 0;
+            for(int cellHeight: cellHeights) {
+                height = Math.max(height, cellHeight);
+            }
+        }
+    }
+
+    /**
+     * Counts how many cells in a column have each width, so that the widest one is known without looking through the
+     * whole column again when a cell is removed
+     */
+    private static class ColumnWidths {
+        private int[] countByWidth;
+        private int headerWidth;
+        private int max;
+
+        ColumnWidths() {
+            countByWidth = new int[16];
+            headerWidth = -1;
+            max = 0;
+        }
+
+        void add(int width) {
+            if(width >= countByWidth.length) {
+                countByWidth = Arrays.copyOf(countByWidth, Math.max(width + 1, countByWidth.length * 2));
+            }
+            countByWidth[width]++;
+            max = Math.max(max, width);
+        }
+
+        void remove(int width) {
+            if(width < 0) {
+                return;
+            }
+            countByWidth[width]--;
+            while(max > 0 && countByWidth[max] == 0) {
+                max--;
+            }
+        }
+
+        void setHeaderWidth(int width) {
+            if(width != headerWidth) {
+                remove(headerWidth);
+                add(width);
+                headerWidth = width;
+            }
+        }
+
+        int getMax() {
+            return max;
+        }
+    }
 }
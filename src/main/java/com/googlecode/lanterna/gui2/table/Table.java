@@ -43,6 +43,7 @@ public class Table<V> extends AbstractInteractableComponent<Table<V>> {
     private int selectedRow;
     private int selectedColumn;
     private boolean escapeByArrowKey;
+    private TableRenderer<V> lastRenderer;    // To tell the renderer when it has been replaced
 
     /**
      * Creates a new {@code Table} with the number of columns as specified by the array of labels
@@ -260,6 +261,7 @@ public class Table<V> extends AbstractInteractableComponent<Table<V>> {
     public synchronized Table<V> setSelectedColumn(int selectedColumn) {
         if(cellSelection) {
             this.selectedColumn = selectedColumn;
+            invalidate();
         }
         return this;
     }
@@ -279,6 +281,7 @@ public class Table<V> extends AbstractInteractableComponent<Table<V>> {
      */
     public synchronized Table<V> setSelectedRow(int selectedRow) {
         this.selectedRow = selectedRow;
+        invalidate();
         return this;
     }
 
@@ -296,6 +299,7 @@ public class Table<V> extends AbstractInteractableComponent<Table<V>> {
         else if(!cellSelection) {
             selectedColumn = -1;
         }
+        invalidate();
         return this;
     }
 
@@ -348,8 +352,16 @@ public class Table<V> extends AbstractInteractableComponent<Table<V>> {
     }
 
     @Override
-    public TableRenderer<V> getRenderer() {
-        return (TableRenderer<V>)super.getRenderer();
+    public synchronized TableRenderer<V> getRenderer() {
+        TableRenderer<V> renderer = (TableRenderer<V>)super.getRenderer();
+        if(renderer != lastRenderer) {
+            // The renderer was replaced, either through setRenderer(..) or by a new theme
+            if(lastRenderer instanceof DefaultTableRenderer) {
+                ((DefaultTableRenderer<V>)lastRenderer).stopMeasuring();
+            }
+            lastRenderer = renderer;
+        }
+        return renderer;
     }
 
     @Override
@@ -0,0 +1,49 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.gui2.table;
+
+import java.util.List;
+
+/**
+ * Source of rows for a {@link TableModel} that doesn't keep all of its data in memory. The model asks for blocks of
+ * rows as the table needs them and keeps a limited number of them cached, so a table over a very large data set only
+ * ever loads the rows around what's being shown.
+ * <p>
+ * Data sources are read-only as far as the table model is concerned. If the underlying data changes, call
+ * {@link TableModel#refresh()} so the model drops the rows it has cached.
+ *
+ * @param <V> Type of data in the table cells
+ * @author Martin
+ */
+public interface TableDataSource<V> {
+    /**
+     * Returns the number of rows available. This is called often (at least once per redraw) so it should be cheap.
+     * @return Number of rows in the data source
+     */
+    int getRowCount();
+
+    /**
+     * Fetches a range of rows from the data source. Each row is a list of cell values in column order, rows shorter
+     * than the number of columns in the model are treated as if the missing cells were {@code null}.
+     * @param fromRow Index of the first row to fetch
+     * @param toRow Index after the last row to fetch
+     * @return Rows in the range, in order
+     */
+    List<List<V>> getRows(int fromRow, int toRow);
+}
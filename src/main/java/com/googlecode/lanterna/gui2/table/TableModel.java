@@ -18,11 +18,17 @@
  */
 package com.googlecode.lanterna.gui2.table;
 
+import com.googlecode.lanterna.gui2.BlockCache;
+
 import java.util.*;
 
 /**
  * A {@code TableModel} contains the data model behind a table, here is where all the action cell values and header
  * labels are stored.
+ * <p>
+ * A model can also be created on top of a {@link TableDataSource}, in which case the rows are fetched from the data
+ * source in blocks when they are needed and only a limited number of them are kept in memory. Such a model can't be
+ * modified through the model itself, only its column labels can be changed.
  *
  * @author Martin
  */
@@ -74,9 +80,18 @@ public class TableModel<V> {
         void onCellChanged(TableModel<V> model, int row, int column, V oldValue, V newValue);
     }
 
+    /**
+     * Default number of rows kept in memory by a model backed by a {@link TableDataSource}
+     */
+    public static final int DEFAULT_ROW_CACHE_SIZE = 1000;
+
+    private static final int FETCH_SIZE = 100;
+
     private final List<String> columns;
     private final List<List<V>> rows;
     private final List<Listener<V>> listeners;
+    private final TableDataSource<V> dataSource;
+    private final BlockCache<List<V>> rowCache;
 
     /**
      * Default constructor, creates a new model with same number of columns as labels supplied
@@ -86,6 +101,70 @@ public class TableModel<V> {
         this.columns = new ArrayList<String>(Arrays.asList(columnLabels));
         this.rows = new ArrayList<List<V>>();
         this.listeners = new ArrayList<Listener<V>>();
+        this.dataSource = null;
+        this.rowCache = null;
+    }
+
+    /**
+     * Creates a new model that fetches its rows from a data source, keeping up to {@link #DEFAULT_ROW_CACHE_SIZE}
+     * rows in memory
+     * @param dataSource Data source to fetch the rows from
+     * @param columnLabels Labels for the column headers
+     */
+    public TableModel(TableDataSource<V> dataSource, String... columnLabels) {
+        this(dataSource, DEFAULT_ROW_CACHE_SIZE, columnLabels);
+    }
+
+    /**
+     * Creates a new model that fetches its rows from a data source
+     * @param dataSource Data source to fetch the rows from
+     * @param rowCacheSize Maximum number of rows to keep in memory
+     * @param columnLabels Labels for the column headers
+     */
+    public TableModel(final TableDataSource<V> dataSource, int rowCacheSize, String... columnLabels) {
+        if(dataSource == null) {
+            throw new IllegalArgumentException("Cannot create a TableModel with a null TableDataSource");
+        }
+        if(rowCacheSize < 1) {
+            throw new IllegalArgumentException("Row cache size must be at least 1, was " + rowCacheSize);
+        }
+        this.columns = new ArrayList<String>(Arrays.asList(columnLabels));
+        this.rows = null;
+        this.listeners = new ArrayList<Listener<V>>();
+        this.dataSource = dataSource;
+        int fetchSize = Math.min(FETCH_SIZE, rowCacheSize);
+        this.rowCache = new BlockCache<List<V>>(rowCacheSize, fetchSize, "TableDataSource", "row") {
+            @Override
+            protected int getSourceSize() {
+                return dataSource.getRowCount();
+            }
+
+            @Override
+            protected List<List<V>> fetch(int fromIndex, int toIndex) {
+                return dataSource.getRows(fromIndex, toIndex);
+            }
+        };
+    }
+
+    /**
+     * Returns the data source this model fetches its rows from
+     * @return Data source of the model, or {@code null} if the model keeps all its rows in memory
+     */
+    public TableDataSource<V> getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Drops all rows cached from the data source, so that they will be fetched again when needed. Call this when the
+     * data behind the data source has changed, then invalidate the table to have it redrawn. Does nothing if the model
+     * isn't backed by a data source.
+     * @return Itself
+     */
+    public synchronized TableModel<V> refresh() {
+        if(rowCache != null) {
+            rowCache.clear();
+        }
+        return this;
     }
 
     /**
@@ -101,17 +180,31 @@ public class TableModel<V> {
      * @return Number of rows in the model
      */
     public synchronized int getRowCount() {
+        if(dataSource != null) {
+            return dataSource.getRowCount();
+        }
         return rows.size();
     }
 
     /**
-     * Returns all rows in the model as a list of lists containing the data as elements
+     * Returns all rows in the model as a list of lists containing the data as elements. For a model backed by a data
+     * source, this will fetch every row from it.
      * @return All rows in the model as a list of lists containing the data as elements
      */
     public synchronized List<List<V>> getRows() {
-        List<List<V>> copy = new ArrayList<List<V>>();
-        for(List<V> row: rows) {
-            copy.add(new ArrayList<V>(row));
+        return getRows(0, getRowCount());
+    }
+
+    /**
+     * Returns a range of rows in the model as a list of lists containing the data as elements
+     * @param fromRow Index of the first row to return
+     * @param toRow Index after the last row to return
+     * @return Rows in the range as a list of lists containing the data as elements
+     */
+    public synchronized List<List<V>> getRows(int fromRow, int toRow) {
+        List<List<V>> copy = new ArrayList<List<V>>(Math.max(0, toRow - fromRow));
+        for(int index = fromRow; index < toRow; index++) {
+            copy.add(new ArrayList<V>(getRowData(index)));
         }
         return copy;
     }
@@ -130,7 +223,20 @@ public class TableModel<V> {
      * @return Row from the table as a list of the cell data
      */
     public synchronized List<V> getRow(int index) {
-        return new ArrayList<V>(rows.get(index));
+        return new ArrayList<V>(getRowData(index));
+    }
+
+    private List<V> getRowData(int index) {
+        if(dataSource == null) {
+            return rows.get(index);
+        }
+        return rowCache.get(index);
+    }
+
+    private void checkModifiable() {
+        if(dataSource != null) {
+            throw new UnsupportedOperationException("Cannot modify the rows of a TableModel backed by a TableDataSource");
+        }
     }
 
     /**
@@ -161,6 +267,7 @@ public class TableModel<V> {
      * @return Itself
      */
     public synchronized TableModel<V> insertRow(int index, Collection<V> values) {
+        checkModifiable();
         ArrayList<V> list = new ArrayList<V>(values);
         rows.add(index, list);
         for(Listener<V> listener: listeners) {
@@ -175,6 +282,7 @@ public class TableModel<V> {
      * @return Itself
      */
     public synchronized TableModel<V> removeRow(int index) {
+        checkModifiable();
         List<V> removedRow = rows.remove(index);
         for(Listener<V> listener: listeners) {
             listener.onRowRemoved(this, index, removedRow);
@@ -187,6 +295,7 @@ public class TableModel<V> {
      * @return Itself
      */
     public synchronized TableModel<V> clear() {
+        checkModifiable();
         while (rows.size() > 0) {
             removeRow(0);
         }
@@ -235,6 +344,7 @@ public class TableModel<V> {
      * @return Itself
      */
     public synchronized TableModel<V> insertColumn(int index, String label, V[] newColumnValues) {
+        checkModifiable();
         columns.add(index, label);
         for(int i = 0; i < rows.size(); i++) {
             List<V> row = rows.get(i);
@@ -264,6 +374,7 @@ public class TableModel<V> {
      * @return Itself
      */
     public synchronized TableModel<V> removeColumn(int index) {
+        checkModifiable();
         String removedColumnHeader = columns.remove(index);
         List<V> removedColumn = new ArrayList<V>();
         for(List<V> row : rows) {
@@ -291,7 +402,11 @@ public class TableModel<V> {
         if(columnIndex >= getColumnCount()) {
             throw new IndexOutOfBoundsException("TableModel has " + columnIndex + " columns, invalid access at columnIndex " + columnIndex);
         }
-        return rows.get(rowIndex).get(columnIndex);
+        if(dataSource == null) {
+            return rows.get(rowIndex).get(columnIndex);
+        }
+        List<V> row = getRowData(rowIndex);
+        return columnIndex < row.size() ? row.get(columnIndex) : null;
     }
 
     /**
@@ -302,6 +417,7 @@ public class TableModel<V> {
      * @return Itself
      */
     public synchronized TableModel<V> setCell(int columnIndex, int rowIndex, V value) {
+        checkModifiable();
         getCell(columnIndex, rowIndex);
         List<V> row = rows.get(rowIndex);
 
@@ -25,21 +25,25 @@ import java.util.List;
  * 
  * @author Martin, Andreas
  */
-public class AltAndCharacterPattern implements CharacterPattern {
+public class AltAndCharacterPattern implements PrimitiveCharacterPattern {
 
     @Override
     public Matching match(List<Character> seq) {
-        int size = seq.size();
-        if (size > 2 || seq.get(0) != KeyDecodingProfile.ESC_CODE) {
+        return match(CharacterRingBuffer.of(seq), seq.size());
+    }
+
+    @Override
+    public Matching match(CharacterRingBuffer seq, int size) {
+        if (size > 2 || seq.charAt(0) != KeyDecodingProfile.ESC_CODE) {
             return null; // nope
         }
         if (size == 1) {
             return Matching.NOT_YET; // maybe later
         }
-        if ( Character.isISOControl(seq.get(1)) ) {
+        if ( Character.isISOControl(seq.charAt(1)) ) {
             return null; // nope
         }
-        KeyStroke ks = new KeyStroke(seq.get(1), false, true);
+        KeyStroke ks = new KeyStroke(seq.charAt(1), false, true);
         return new Matching( ks ); // yep
     }
 }
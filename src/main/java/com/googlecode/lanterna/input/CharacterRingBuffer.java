@@ -0,0 +1,137 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.input;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Growable ring buffer of primitive characters, used by {@code InputDecoder} to hold characters that have been read but
+ * not yet decoded into key strokes. Characters are added at the end and removed from the start, without shifting the
+ * remaining content and without boxing.
+ * <p>
+ * This class is not thread-safe.
+ * @author Martin
+ */
+final class CharacterRingBuffer {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private char[] buffer;
+    private int start;
+    private int size;
+
+    CharacterRingBuffer() {
+        this.buffer = new char[INITIAL_CAPACITY];
+        this.start = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Creates a ring buffer holding the characters from a list, used to run the primitive matching code of the
+     * built-in patterns when they are called through {@code CharacterPattern.match(List)}
+     * @param characters Characters to copy into the new buffer
+     * @return New buffer with the characters
+     */
+    static CharacterRingBuffer of(List<Character> characters) {
+        CharacterRingBuffer ringBuffer = new CharacterRingBuffer();
+        for(Character character: characters) {
+            ringBuffer.add(character);
+        }
+        return ringBuffer;
+    }
+
+    /**
+     * Returns the number of characters in the buffer
+     * @return Number of characters in the buffer
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if there are no characters in the buffer
+     * @return {@code true} if the buffer is empty
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a character from the buffer, counted from the oldest character still in the buffer
+     * @param index Index of the character, 0 is the oldest character
+     * @return The character at the index
+     */
+    char charAt(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of the buffer, size is " + size);
+        }
+        return buffer[(start + index) & (buffer.length - 1)];
+    }
+
+    /**
+     * Adds a character at the end of the buffer
+     * @param character Character to add
+     */
+    void add(char character) {
+        if(size == buffer.length) {
+            char[] newBuffer = new char[buffer.length * 2];
+            for(int i = 0; i < size; i++) {
+                newBuffer[i] = charAt(i);
+            }
+            buffer = newBuffer;
+            start = 0;
+        }
+        buffer[(start + size) & (buffer.length - 1)] = character;
+        size++;
+    }
+
+    /**
+     * Removes a number of characters from the start of the buffer
+     * @param count Number of characters to remove
+     */
+    void removeFirst(int count) {
+        if(count >= size) {
+            clear();
+            return;
+        }
+        start = (start + count) & (buffer.length - 1);
+        size -= count;
+    }
+
+    /**
+     * Removes all characters from the buffer
+     */
+    void clear() {
+        start = 0;
+        size = 0;
+    }
+
+    /**
+     * Copies the first characters of the buffer into a list, for patterns that can only match on lists
+     * @param length Number of characters to copy
+     * @return List with the characters
+     */
+    List<Character> toList(int length) {
+        List<Character> list = new ArrayList<Character>(length);
+        for(int i = 0; i < length; i++) {
+            list.add(charAt(i));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.input;
+
+import com.googlecode.lanterna.input.CharacterPattern.Matching;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The patterns of an {@code InputDecoder}, compiled into a form that is fast to match against. All fixed sequences
+ * ({@code BasicCharacterPattern}) are merged into a single trie so that checking them costs one step per character no
+ * matter how many there are. The built-in patterns that need to look at parameters (escape sequences, mouse events,
+ * control characters and so on) run their state machines directly on the decoder's ring buffer. Any other pattern,
+ * including subclasses of the built-in patterns that override {@code match(List)}, is called the same way as before
+ * with a list of characters.
+ * <p>
+ * The result is the same as asking every pattern in order: if more than one pattern matches the sequence fully, the
+ * one that was added last wins.
+ * @author Martin
+ */
+final class CompiledPatterns {
+    private static final Matching NO_MATCH = new Matching(false, null);
+
+    private final TrieNode root;
+    private final PrimitiveCharacterPattern[] primitivePatterns;
+    private final int[] primitivePatternIndexes;
+    private final CharacterPattern[] otherPatterns;
+    private final int[] otherPatternIndexes;
+
+    /**
+     * Compiles a list of patterns
+     * @param patterns Patterns to compile, in the order they were added to the decoder
+     */
+    CompiledPatterns(List<CharacterPattern> patterns) {
+        this.root = new TrieNode();
+        List<PrimitiveCharacterPattern> primitive = new ArrayList<PrimitiveCharacterPattern>();
+        List<Integer> primitiveIndexes = new ArrayList<Integer>();
+        List<CharacterPattern> other = new ArrayList<CharacterPattern>();
+        List<Integer> otherIndexes = new ArrayList<Integer>();
+        for(int index = 0; index < patterns.size(); index++) {
+            CharacterPattern pattern = patterns.get(index);
+            if(pattern instanceof BasicCharacterPattern && usesBuiltInMatch(pattern, BasicCharacterPattern.class)) {
+                BasicCharacterPattern basicPattern = (BasicCharacterPattern)pattern;
+                char[] sequence = basicPattern.getPattern();
+                if(sequence.length == 0) {
+                    //An empty pattern can never fully match, but it will always say it's a partial match
+                    other.add(pattern);
+                    otherIndexes.add(index);
+                }
+                else {
+                    root.add(sequence, basicPattern.getResult(), index);
+                }
+            }
+            else if(pattern instanceof PrimitiveCharacterPattern && usesBuiltInMatch(pattern, null)) {
+                primitive.add((PrimitiveCharacterPattern)pattern);
+                primitiveIndexes.add(index);
+            }
+            else {
+                other.add(pattern);
+                otherIndexes.add(index);
+            }
+        }
+        this.primitivePatterns = primitive.toArray(new PrimitiveCharacterPattern[primitive.size()]);
+        this.primitivePatternIndexes = toArray(primitiveIndexes);
+        this.otherPatterns = other.toArray(new CharacterPattern[other.size()]);
+        this.otherPatternIndexes = toArray(otherIndexes);
+    }
+
+    /**
+     * Matches the first {@code length} characters of the buffer against all patterns
+     * @param sequence Buffer holding the characters to match
+     * @param length Number of characters to match, counted from the start of the buffer
+     * @return The combined result of all patterns, never {@code null}
+     */
+    Matching match(CharacterRingBuffer sequence, int length) {
+        boolean partialMatch = false;
+        KeyStroke bestMatch = null;
+        int bestMatchIndex = -1;
+
+        TrieNode node = root;
+        for(int i = 0; i < length && node != null; i++) {
+            node = node.getChild(sequence.charAt(i));
+        }
+        if(node != null) {
+            partialMatch = node.hasChildren();
+            if(node.result != null) {
+                bestMatch = node.result;
+                bestMatchIndex = node.resultIndex;
+            }
+        }
+
+        for(int i = 0; i < primitivePatterns.length; i++) {
+            Matching res = primitivePatterns[i].match(sequence, length);
+            if(res != null) {
+                if(res.partialMatch) { partialMatch = true; }
+                if(res.fullMatch != null && primitivePatternIndexes[i] > bestMatchIndex) {
+                    bestMatch = res.fullMatch;
+                    bestMatchIndex = primitivePatternIndexes[i];
+                }
+            }
+        }
+
+        if(otherPatterns.length > 0) {
+            List<Character> characterList = sequence.toList(length);
+            for(int i = 0; i < otherPatterns.length; i++) {
+                Matching res = otherPatterns[i].match(characterList);
+                if(res != null) {
+                    if(res.partialMatch) { partialMatch = true; }
+                    if(res.fullMatch != null && otherPatternIndexes[i] > bestMatchIndex) {
+                        bestMatch = res.fullMatch;
+                        bestMatchIndex = otherPatternIndexes[i];
+                    }
+                }
+            }
+        }
+
+        if(bestMatch == null) {
+            return partialMatch ? Matching.NOT_YET : NO_MATCH;
+        }
+        return new Matching(partialMatch, bestMatch);
+    }
+
+    /**
+     * Checks that the pattern hasn't overridden {@code match(List)}, in which case the overriding method must be called
+     * instead of the compiled matching.
+     */
+    private static boolean usesBuiltInMatch(CharacterPattern pattern, Class<?> expectedDeclaringClass) {
+        try {
+            Class<?> declaringClass = pattern.getClass().getMethod("match", List.class).getDeclaringClass();
+            if(expectedDeclaringClass != null) {
+                return declaringClass == expectedDeclaringClass;
+            }
+            return Arrays.asList(declaringClass.getInterfaces()).contains(PrimitiveCharacterPattern.class);
+        }
+        catch(NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for(int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private static class TrieNode {
+        private char[] keys;
+        private TrieNode[] children;
+        private int childCount;
+        private KeyStroke result;
+        private int resultIndex;
+
+        TrieNode() {
+            this.keys = new char[0];
+            this.children = new TrieNode[0];
+            this.childCount = 0;
+            this.result = null;
+            this.resultIndex = -1;
+        }
+
+        void add(char[] sequence, KeyStroke result, int index) {
+            TrieNode node = this;
+            for(char c: sequence) {
+                TrieNode child = node.getChild(c);
+                if(child == null) {
+                    child = node.addChild(c);
+                }
+                node = child;
+            }
+            node.result = result;
+            node.resultIndex = index;
+        }
+
+        boolean hasChildren() {
+            return childCount > 0;
+        }
+
+        TrieNode getChild(char c) {
+            int position = Arrays.binarySearch(keys, 0, childCount, c);
+            return position >= 0 ? children[position] : null;
+        }
+
+        private TrieNode addChild(char c) {
+            if(childCount == keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(4, childCount * 2));
+                children = Arrays.copyOf(children, keys.length);
+            }
+            //Keep the keys sorted so we can binary search them
+            int position = -(Arrays.binarySearch(keys, 0, childCount, c) + 1);
+            System.arraycopy(keys, position, keys, position + 1, childCount - position);
+            System.arraycopy(children, position, children, position + 1, childCount - position);
+            TrieNode child = new TrieNode();
+            keys[position] = c;
+            children[position] = child;
+            childCount++;
+            return child;
+        }
+    }
+}
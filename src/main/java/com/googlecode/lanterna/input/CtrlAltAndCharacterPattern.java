@@ -25,18 +25,22 @@ import java.util.List;
  * 
  * @author Martin, Andreas
  */
-public class CtrlAltAndCharacterPattern implements CharacterPattern {
+public class CtrlAltAndCharacterPattern implements PrimitiveCharacterPattern {
 
     @Override
     public Matching match(List<Character> seq) {
-        int size = seq.size();
-        if (size > 2 || seq.get(0) != KeyDecodingProfile.ESC_CODE) {
+        return match(CharacterRingBuffer.of(seq), seq.size());
+    }
+
+    @Override
+    public Matching match(CharacterRingBuffer seq, int size) {
+        if (size > 2 || seq.charAt(0) != KeyDecodingProfile.ESC_CODE) {
             return null; // nope
         }
         if (size == 1) {
             return Matching.NOT_YET; // maybe later
         }
-        char ch = seq.get(1);
+        char ch = seq.charAt(1);
         if (ch < 32 && ch != 0x08) {
             // Control-chars: exclude Esc(^[), but still include ^\, ^], ^^ and ^_
             char ctrlCode;
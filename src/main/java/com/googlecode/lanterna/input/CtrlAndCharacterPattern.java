@@ -25,10 +25,15 @@ import java.util.List;
  * 
  * @author Martin, Andreas
  */
-public class CtrlAndCharacterPattern implements CharacterPattern {
+public class CtrlAndCharacterPattern implements PrimitiveCharacterPattern {
     @Override
     public Matching match(List<Character> seq) {
-        int size = seq.size(); char ch = seq.get(0);
+        return match(CharacterRingBuffer.of(seq), seq.size());
+    }
+
+    @Override
+    public Matching match(CharacterRingBuffer seq, int size) {
+        char ch = seq.charAt(0);
         if (size != 1) {
             return null; // nope
         }
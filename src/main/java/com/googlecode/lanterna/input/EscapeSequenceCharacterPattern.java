@@ -54,7 +54,7 @@ import java.util.Map;
  * @author Andreas
  *
  */
-public class EscapeSequenceCharacterPattern implements CharacterPattern {
+public class EscapeSequenceCharacterPattern implements PrimitiveCharacterPattern {
     // state machine used to match key sequence:
     private enum State {
         START, INTRO, NUM1, NUM2, DONE
@@ -187,12 +187,18 @@ public class EscapeSequenceCharacterPattern implements CharacterPattern {
 
     @Override
     public Matching match(List<Character> cur) {
+        return match(CharacterRingBuffer.of(cur), cur.size());
+    }
+
+    @Override
+    public Matching match(CharacterRingBuffer cur, int length) {
         State state = State.START;
         int num1 = 0, num2 = 0;
         char first = '\0', last = '\0';
         boolean bEsc = false;
 
-        for (char ch : cur) {
+        for (int i = 0; i < length; i++) {
+            char ch = cur.charAt(i);
             switch (state) {
             case START:
                 if (ch != ESC_CODE) {
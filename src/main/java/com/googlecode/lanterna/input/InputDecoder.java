@@ -20,33 +20,86 @@ package com.googlecode.lanterna.input;
 
 import com.googlecode.lanterna.input.CharacterPattern.Matching;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Used to read the input stream character by character and generate {@code Key} objects to be put in the input queue.
+ * Characters that have been read but not yet decoded are kept in a primitive ring buffer and the patterns are compiled
+ * into a trie (for fixed sequences) plus the state machines of the parameterized patterns, which is rebuilt whenever
+ * the set of patterns changes.
+ * <p>
+ * The source is only read while a caller is asking for input, one character at a time, so nothing is taken from it
+ * that wasn't asked for. This matters for terminals on {@code System.in}, which should be left usable for whoever
+ * takes over once the terminal is closed. A blocking call reads from the source directly, a non-blocking call only
+ * reads what {@code Reader.ready()} says is available and a call with a timeout, like waiting for the rest of an
+ * escape sequence, checks the source every millisecond until the timeout expires.
+ * <p>
+ * A decoder can also be created without a source, in which case the input is instead pushed in with
+ * {@code addInput(..)} and {@code endOfInput()} and waiting for input is done on a condition rather than by checking.
+ * This is used by terminals that are driven by an event loop.
  *
  * @author Martin, Andreas
  */
 public class InputDecoder {
+    private static final int MAX_QUEUED_CHARACTERS = 65536;
+    private static final long SOURCE_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long WAIT_FOREVER = -1;
+    private static final int NO_INPUT = -2;
+    private static final int END_OF_INPUT = -1;
+
     private final Reader source;
     private final List<CharacterPattern> bytePatterns;
-    private final List<Character> currentMatching;
+    private final CharacterRingBuffer currentMatching;
+    private CompiledPatterns compiledPatterns;
     private boolean seenEOF;
-    private int timeoutUnits;
+    private volatile int timeoutMillis;
+
+    // Input added through addInput(..), guarded by inputLock
+    private final Lock inputLock;
+    private final Condition inputAvailable;
+    private final CharacterRingBuffer inputQueue;
+    private boolean inputEnded;
+    private IOException inputException;
+    private volatile boolean shutDown;
+    private boolean inputQueueFull;
+    private Runnable inputSpaceListener;
+    private Runnable inputAvailableListener;
+
+    /**
+     * Creates a new input decoder without a source, the input has to be passed in through {@code addInput(..)}
+     */
+    public InputDecoder() {
+        this((Reader)null);
+    }
 
     /**
      * Creates a new input decoder using a specified Reader as the source to read characters from
-     * @param source Reader to read characters from, will be wrapped by a BufferedReader
+     * @param source Reader to read characters from, or {@code null} if the input will be passed in through
+     *               {@code addInput(..)}
      */
     public InputDecoder(final Reader source) {
-        this.source = new BufferedReader(source);
+        this.source = source;
         this.bytePatterns = new ArrayList<CharacterPattern>();
-        this.currentMatching = new ArrayList<Character>();
+        this.currentMatching = new CharacterRingBuffer();
+        this.compiledPatterns = null;
         this.seenEOF = false;
-        this.timeoutUnits = 0; // default is no wait at all
+        this.timeoutMillis = 0; // default is no wait at all
+        this.inputLock = new ReentrantLock();
+        this.inputAvailable = inputLock.newCondition();
+        this.inputQueue = new CharacterRingBuffer();
+        this.inputEnded = false;
+        this.inputException = null;
+        this.shutDown = false;
+        this.inputQueueFull = false;
+        this.inputSpaceListener = null;
+        this.inputAvailableListener = null;
     }
 
     /**
@@ -60,6 +113,7 @@ public class InputDecoder {
                 //If an equivalent pattern already exists, remove it first
                 bytePatterns.remove(pattern);
                 bytePatterns.add(pattern);
+                compiledPatterns = null;
             }
         }
     }
@@ -81,6 +135,7 @@ public class InputDecoder {
      */
     public boolean removePattern(CharacterPattern pattern) {
         synchronized(bytePatterns) {
+            compiledPatterns = null;
             return bytePatterns.remove(pattern);
         }
     }
@@ -92,18 +147,185 @@ public class InputDecoder {
      * Negative numbers are mapped to 0 (no wait at all), and unreasonably high
      * values are mapped to a maximum of 240 (1 minute).
      * @param units New timeout to use, in 250ms units
+     * @see #setTimeoutMillis(int)
      */
     public void setTimeoutUnits(int units) {
-        timeoutUnits = (units < 0) ? 0 :
-                       (units > 240) ? 240 :
-                        units;
+        setTimeoutMillis((units < 0) ? 0 :
+                        (units > 240) ? 240 * 250 :
+                        units * 250);
     }
+
     /**
      * queries the current timeoutUnits value. One unit is 1/4 second.
      * @return The timeout this InputDecoder will use when waiting for additional input, in units of 1/4 seconds
+     * (rounded up)
      */
     public int getTimeoutUnits() {
-        return timeoutUnits;
+        return (timeoutMillis + 249) / 250;
+    }
+
+    /**
+     * Sets how many milliseconds to wait for further input to complete an escape-sequence for a special Key, before
+     * deciding on the shorter match. This is what makes it possible to tell a single Escape key from the start of an
+     * escape sequence; a few tens of milliseconds is usually enough for local terminals.
+     *
+     * Negative numbers are mapped to 0 (no wait at all), and unreasonably high values are mapped to a maximum of one
+     * minute.
+     * @param millis New timeout to use, in milliseconds
+     */
+    public void setTimeoutMillis(int millis) {
+        timeoutMillis = (millis < 0) ? 0 :
+                        (millis > 60000) ? 60000 :
+                        millis;
+    }
+
+    /**
+     * Returns how many milliseconds this InputDecoder waits for additional input to complete an escape-sequence
+     * @return Timeout in milliseconds
+     */
+    public int getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Adds characters to the input of a decoder that was created without a source. This never blocks; if the decoder
+     * is already holding as many undecoded characters as it should, the characters are still added but {@code false}
+     * is returned. The caller should then stop adding input until the listener set through
+     * {@code setInputSpaceListener(..)} is called.
+     * @param characters Array holding the characters to add
+     * @param offset Index of the first character to add
+     * @param length Number of characters to add
+     * @return {@code true} if the decoder can take more input, {@code false} if the caller should hold back
+     */
+    public boolean addInput(char[] characters, int offset, int length) {
+        checkNoSource();
+        Runnable listenerToCall;
+        boolean canTakeMore;
+        inputLock.lock();
+        try {
+            if(shutDown) {
+                return true;
+            }
+            for(int i = offset; i < offset + length; i++) {
+                inputQueue.add(characters[i]);
+            }
+            inputAvailable.signalAll();
+            if(inputQueue.size() >= MAX_QUEUED_CHARACTERS) {
+                inputQueueFull = true;
+            }
+            canTakeMore = !inputQueueFull;
+            listenerToCall = inputAvailableListener;
+        }
+        finally {
+            inputLock.unlock();
+        }
+        if(listenerToCall != null) {
+            listenerToCall.run();
+        }
+        return canTakeMore;
+    }
+
+    /**
+     * Marks the end of the input for a decoder that was created without a source. Once all characters added before
+     * have been decoded, the decoder will return an EOF key stroke.
+     */
+    public void endOfInput() {
+        endOfInput(null);
+    }
+
+    /**
+     * Marks the end of the input for a decoder that was created without a source, because of an error. The exception
+     * will be thrown to whoever tries to read a key stroke once all characters added before have been decoded.
+     * @param cause Error that ended the input, or {@code null} if the input ended normally
+     */
+    public void endOfInput(IOException cause) {
+        checkNoSource();
+        Runnable listenerToCall;
+        inputLock.lock();
+        try {
+            if(cause != null) {
+                inputException = cause;
+            }
+            else {
+                inputEnded = true;
+            }
+            inputAvailable.signalAll();
+            listenerToCall = inputAvailableListener;
+        }
+        finally {
+            inputLock.unlock();
+        }
+        if(listenerToCall != null) {
+            listenerToCall.run();
+        }
+    }
+
+    /**
+     * Sets a listener that is called when a decoder created without a source has been holding too much input, as
+     * signalled by {@code addInput(..)} returning {@code false}, and has now decoded enough of it to take more. The
+     * listener is called on the thread reading key strokes, so it should return quickly.
+     * @param inputSpaceListener Listener to call, or {@code null} to remove it
+     */
+    public void setInputSpaceListener(Runnable inputSpaceListener) {
+        inputLock.lock();
+        try {
+            this.inputSpaceListener = inputSpaceListener;
+        }
+        finally {
+            inputLock.unlock();
+        }
+    }
+
+    /**
+     * Sets a listener that is called when input has been added to a decoder created without a source, through
+     * {@code addInput(..)} or {@code endOfInput(..)}. This lets whoever reads the key strokes sleep until there is
+     * something to read and then take it with non-blocking calls. The listener is called on the thread adding the
+     * input, so it should return quickly. Decoders that read from a source never call the listener, since they only
+     * read when asked to; see {@link #hasSource()}.
+     * @param inputAvailableListener Listener to call, or {@code null} to remove it
+     */
+    public void setInputAvailableListener(Runnable inputAvailableListener) {
+        inputLock.lock();
+        try {
+            this.inputAvailableListener = inputAvailableListener;
+        }
+        finally {
+            inputLock.unlock();
+        }
+    }
+
+    /**
+     * Returns {@code true} if this decoder reads its input from a source, {@code false} if the input is passed in
+     * through {@code addInput(..)}
+     * @return {@code true} if this decoder reads its input from a source
+     */
+    public boolean hasSource() {
+        return source != null;
+    }
+
+    /**
+     * Stops the decoder from reading any more input. Characters that haven't been decoded yet are dropped and
+     * whoever is waiting for a key stroke, or tries to read one later, gets EOF. A caller that is already blocked
+     * reading from the source still gets the character it is waiting for. The source itself is not closed, that is up
+     * to whoever created it, and anything in it that hasn't been asked for yet stays there.
+     */
+    public void shutdown() {
+        inputLock.lock();
+        try {
+            shutDown = true;
+            inputEnded = true;
+            inputQueue.clear();
+            inputAvailable.signalAll();
+        }
+        finally {
+            inputLock.unlock();
+        }
+    }
+
+    private void checkNoSource() {
+        if(source != null) {
+            throw new IllegalStateException("This InputDecoder reads its input from a source, input can't be added");
+        }
     }
 
     /**
@@ -113,6 +335,45 @@ public class InputDecoder {
      * @throws IOException If there was an I/O error when reading from the input stream
      */
     public synchronized KeyStroke getNextCharacter(boolean blockingIO) throws IOException {
+        return getNextCharacter(blockingIO ? WAIT_FOREVER : 0);
+    }
+
+    /**
+     * Reads and decodes the next key stroke from the input stream, waiting for a limited time for input to arrive
+     * @param timeout How long to wait for input before giving up
+     * @param timeoutUnit Unit of {@code timeout}
+     * @return Key stroke read from the input stream, or {@code null} if there was none within the timeout
+     * @throws IOException If there was an I/O error when reading from the input stream
+     */
+    public synchronized KeyStroke getNextCharacter(long timeout, TimeUnit timeoutUnit) throws IOException {
+        return getNextCharacter(Math.max(0, timeoutUnit.toNanos(timeout)));
+    }
+
+    /**
+     * Waits for input to arrive and then returns all characters that have been read but not yet decoded, without
+     * matching them against any pattern. This is meant for responses from the terminal that are not key strokes, for
+     * example the answer-back message to an ENQ.
+     * @param timeout How long to wait for input before giving up
+     * @param timeoutUnit Unit of {@code timeout}
+     * @return All characters available, or an empty string if nothing arrived within the timeout
+     * @throws IOException If there was an I/O error when reading from the input stream
+     */
+    public synchronized String readRawInput(long timeout, TimeUnit timeoutUnit) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < currentMatching.size(); i++) {
+            builder.append(currentMatching.charAt(i));
+        }
+        currentMatching.clear();
+        long waitNanos = builder.length() > 0 ? 0 : Math.max(0, timeoutUnit.toNanos(timeout));
+        int character = readCharacter(waitNanos);
+        while(character >= 0) {
+            builder.append((char)character);
+            character = readCharacter(0);
+        }
+        return builder.toString();
+    }
+
+    private KeyStroke getNextCharacter(long firstCharacterTimeoutNanos) throws IOException {
 
         KeyStroke bestMatch = null;
         int bestLen = 0;
@@ -126,32 +387,21 @@ public class InputDecoder {
             }
             else {
                 // If we already have a bestMatch but a chance for a longer match
-                //   then we poll for the configured number of timeout units:
-                // It would be much better, if we could just read with a timeout,
-                //   but lacking that, we wait 1/4s units and check for readiness.
-                if (bestMatch != null) {
-                    int timeout = getTimeoutUnits();
-                    while (timeout > 0 && ! source.ready() ) {
-                        try {
-                            timeout--; Thread.sleep(250);
-                        } catch (InterruptedException e) { timeout = 0; }
-                    }
-                }
-                // if input is available, we can just read a char without waiting,
+                //   then we wait for the configured timeout for more input to arrive,
                 // otherwise, for readInput() with no bestMatch found yet,
-                //  we have to wait blocking for more input:
-                if ( source.ready() || ( blockingIO && bestMatch == null ) ) {
-                    int readChar = source.read();
-                    if (readChar == -1) {
-                        seenEOF = true;
-                        if(currentMatching.isEmpty()) {
-                            return new KeyStroke(KeyType.EOF);
-                        }
-                        break;
+                //   we wait as long as the caller asked for
+                long waitNanos = bestMatch != null ?
+                        TimeUnit.MILLISECONDS.toNanos(timeoutMillis) :
+                        firstCharacterTimeoutNanos;
+                int readChar = readCharacter(waitNanos);
+                if (readChar == END_OF_INPUT) {
+                    seenEOF = true;
+                    if(currentMatching.isEmpty()) {
+                        return new KeyStroke(KeyType.EOF);
                     }
-                    currentMatching.add( (char)readChar );
-                    curLen++;
-                } else { // no more available input at this time.
+                    break;
+                }
+                else if (readChar == NO_INPUT) { // no more available input at this time.
                     // already found something:
                     if (bestMatch != null) {
                         break; // it's something...
@@ -159,10 +409,11 @@ public class InputDecoder {
                     // otherwise: no KeyStroke yet
                     return null;
                 }
+                currentMatching.add( (char)readChar );
+                curLen++;
             }
 
-            List<Character> curSub = currentMatching.subList(0, curLen);
-            Matching matching = getBestMatch( curSub );
+            Matching matching = getBestMatch(curLen);
 
             // fullMatch found...
             if (matching.fullMatch != null) {
@@ -191,7 +442,7 @@ public class InputDecoder {
                     break;
                 } else { // invalid input!
                     // remove the whole fail and re-try finding a KeyStroke...
-                    curSub.clear(); // or just 1 char?  currentMatching.remove(0);
+                    currentMatching.removeFirst(curLen); // or just 1 char?
                     curLen = 0;
                     //noinspection UnnecessaryContinue
                     continue;
@@ -208,23 +459,91 @@ public class InputDecoder {
             return null;
         }
 
-        List<Character> bestSub = currentMatching.subList(0, bestLen );
-        bestSub.clear(); // remove matched characters from input
+        currentMatching.removeFirst(bestLen); // remove matched characters from input
         return bestMatch;
     }
 
-    private Matching getBestMatch(List<Character> characterSequence) {
-        boolean partialMatch = false;
-        KeyStroke bestMatch = null;
-        synchronized(bytePatterns) {
-            for(CharacterPattern pattern : bytePatterns) {
-                Matching res = pattern.match(characterSequence);
-                if (res != null) {
-                    if (res.partialMatch) { partialMatch = true; }
-                    if (res.fullMatch != null) { bestMatch = res.fullMatch; }
+    /**
+     * Takes the next character from the source, or from the characters added through {@code addInput(..)}, waiting
+     * for it if there is none yet
+     * @param waitNanos How long to wait if there is no character available, {@code WAIT_FOREVER} to wait until one
+     *                  arrives or the input ends
+     * @return The character, {@code END_OF_INPUT} if the input has ended or {@code NO_INPUT} if nothing arrived in time
+     */
+    private int readCharacter(long waitNanos) throws IOException {
+        if(source != null) {
+            return readSourceCharacter(waitNanos);
+        }
+        Runnable listenerToCall = null;
+        inputLock.lock();
+        try {
+            while(inputQueue.isEmpty()) {
+                if(inputException != null) {
+                    throw inputException;
+                }
+                if(inputEnded) {
+                    return END_OF_INPUT;
                 }
+                if(waitNanos == WAIT_FOREVER) {
+                    // Same as a blocking read on the source, don't give up if interrupted
+                    inputAvailable.awaitUninterruptibly();
+                }
+                else if(waitNanos > 0) {
+                    try {
+                        waitNanos = inputAvailable.awaitNanos(waitNanos);
+                    }
+                    catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        waitNanos = 0;
+                    }
+                }
+                else {
+                    return NO_INPUT;
+                }
+            }
+            char character = inputQueue.charAt(0);
+            inputQueue.removeFirst(1);
+            if(inputQueueFull && inputQueue.size() <= MAX_QUEUED_CHARACTERS / 2) {
+                inputQueueFull = false;
+                listenerToCall = inputSpaceListener;
+            }
+            return character;
+        }
+        finally {
+            inputLock.unlock();
+            if(listenerToCall != null) {
+                listenerToCall.run();
+            }
+        }
+    }
+
+    private int readSourceCharacter(long waitNanos) throws IOException {
+        if(shutDown) {
+            return END_OF_INPUT;
+        }
+        if(waitNanos == WAIT_FOREVER || source.ready()) {
+            return source.read();
+        }
+        long deadline = System.nanoTime() + waitNanos;
+        while(waitNanos > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(Math.min(waitNanos, SOURCE_CHECK_INTERVAL_NANOS));
+            if(shutDown) {
+                return END_OF_INPUT;
+            }
+            if(source.ready()) {
+                return source.read();
+            }
+            waitNanos = deadline - System.nanoTime();
+        }
+        return NO_INPUT;
+    }
+
+    private Matching getBestMatch(int length) {
+        synchronized(bytePatterns) {
+            if(compiledPatterns == null) {
+                compiledPatterns = new CompiledPatterns(bytePatterns);
             }
+            return compiledPatterns.match(currentMatching, length);
         }
-        return new Matching(partialMatch, bestMatch);
     }
 }
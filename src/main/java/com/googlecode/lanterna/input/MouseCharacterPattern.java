@@ -28,12 +28,16 @@ import java.util.List;
  * 
  * @author Martin, Andreas
  */
-public class MouseCharacterPattern implements CharacterPattern {
+public class MouseCharacterPattern implements PrimitiveCharacterPattern {
     private static final char[] PATTERN = { KeyDecodingProfile.ESC_CODE, '[', 'M' };
 
     @Override
     public Matching match(List<Character> seq) {
-        int size = seq.size();
+        return match(CharacterRingBuffer.of(seq), seq.size());
+    }
+
+    @Override
+    public Matching match(CharacterRingBuffer seq, int size) {
         if (size > 6) {
             return null; // nope
         }
@@ -42,7 +46,7 @@ public class MouseCharacterPattern implements CharacterPattern {
             if ( i >= size ) {
                 return Matching.NOT_YET; // maybe later
             }
-            if ( seq.get(i) != PATTERN[i] ) {
+            if ( seq.charAt(i) != PATTERN[i] ) {
                 return null; // nope
             }
         }
@@ -50,12 +54,12 @@ public class MouseCharacterPattern implements CharacterPattern {
             return Matching.NOT_YET; // maybe later
         }
         MouseActionType actionType = null;
-        int button = (seq.get(3) & 0x3) + 1;
+        int button = (seq.charAt(3) & 0x3) + 1;
         if(button == 4) {
             //If last two bits are both set, it means button click release
             button = 0;
         }
-        int actionCode = (seq.get(3) & 0x60) >> 5;
+        int actionCode = (seq.charAt(3) & 0x60) >> 5;
         switch(actionCode) {
             case(1):
                 if(button > 0) {
@@ -84,7 +88,7 @@ public class MouseCharacterPattern implements CharacterPattern {
                 }
                 break;
         }
-        TerminalPosition pos = new TerminalPosition( seq.get(4) - 33, seq.get(5) - 33 );
+        TerminalPosition pos = new TerminalPosition( seq.charAt(4) - 33, seq.charAt(5) - 33 );
 
         MouseAction ma = new MouseAction(actionType, button, pos );
         return new Matching( ma ); // yep
@@ -25,13 +25,18 @@ import java.util.List;
  * 
  * @author Martin, Andreas
  */
-public class NormalCharacterPattern implements CharacterPattern {
+public class NormalCharacterPattern implements PrimitiveCharacterPattern {
     @Override
     public Matching match(List<Character> seq) {
-        if (seq.size() != 1) {
+        return match(CharacterRingBuffer.of(seq), seq.size());
+    }
+
+    @Override
+    public Matching match(CharacterRingBuffer seq, int size) {
+        if (size != 1) {
             return null; // nope
         }
-        char ch = seq.get(0);
+        char ch = seq.charAt(0);
         if (isPrintableChar(ch)) {
             KeyStroke ks = new KeyStroke(ch, false, false);
             return new Matching( ks );
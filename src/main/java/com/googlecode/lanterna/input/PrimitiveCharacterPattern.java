@@ -0,0 +1,34 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.input;
+
+/**
+ * Implemented by the built-in patterns that can match directly on the characters in the {@code InputDecoder}'s ring
+ * buffer, so the decoder doesn't need to create a boxed list for each attempt.
+ * @author Martin
+ */
+interface PrimitiveCharacterPattern extends CharacterPattern {
+    /**
+     * Same as {@code match(List)}, but for the first {@code length} characters of a ring buffer
+     * @param sequence Buffer holding the characters to check
+     * @param length Number of characters, counted from the start of the buffer, to check
+     * @return see {@code Matching}
+     */
+    Matching match(CharacterRingBuffer sequence, int length);
+}
@@ -21,6 +21,7 @@ package com.googlecode.lanterna.screen;
 import com.googlecode.lanterna.TerminalTextUtils;
 import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.TextStyle;
 import com.googlecode.lanterna.graphics.TextGraphics;
 import com.googlecode.lanterna.TerminalPosition;
 import com.googlecode.lanterna.graphics.TextImage;
@@ -133,6 +134,16 @@ public abstract class AbstractScreen implements Screen {
                 backBuffer.copyFrom(image, sourceImageTopLeft.getRow(), sourceImageSize.getRows(), sourceImageTopLeft.getColumn(), sourceImageSize.getColumns(), topLeft.getRow(), topLeft.getColumn());
                 return this;
             }
+
+            @Override
+            protected void fillSpan(int row, int fromColumn, int toColumn, TextCharacter character) {
+                fillBackBufferSpan(row, fromColumn, toColumn, character);
+            }
+
+            @Override
+            protected void putStringSpan(int column, int row, CharSequence text, int start, int end, TextStyle style) {
+                putBackBufferString(column, row, text, start, end, style);
+            }
         };
     }
 
@@ -154,6 +165,23 @@ public abstract class AbstractScreen implements Screen {
         }
     }
 
+    private synchronized void fillBackBufferSpan(int row, int fromColumn, int toColumn, TextCharacter character) {
+        if(character.getCharacter() == '\t') {
+            //Tabs expand differently depending on the column, so let setCharacter deal with them one by one
+            for(int column = fromColumn; column <= toColumn; column++) {
+                setCharacter(column, row, character);
+            }
+        }
+        else {
+            backBuffer.fillSpan(row, fromColumn, toColumn, character);
+        }
+    }
+
+    private synchronized void putBackBufferString(int column, int row, CharSequence text, int start, int end, TextStyle style) {
+        //Tabs have already been expanded by the TextGraphics at this point
+        backBuffer.putString(column, row, text, start, end, style);
+    }
+
     @Override
     public synchronized TextCharacter getFrontCharacter(TerminalPosition position) {
         return getFrontCharacter(position.getColumn(), position.getRow());
@@ -0,0 +1,254 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.screen;
+
+import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.TextStyle;
+import com.googlecode.lanterna.graphics.TextImage;
+import com.googlecode.lanterna.terminal.CursorMovable;
+import com.googlecode.lanterna.terminal.Terminal;
+
+import java.io.IOException;
+
+/**
+ * Cursor movement optimizer that, similar to what ncurses does, calculates how many bytes each possible way of moving
+ * the cursor would take and picks the cheapest one. The alternatives considered are absolute positioning, relative
+ * moves (up/down/forward/backward), carriage return and line feed followed by a relative move, and re-printing the
+ * characters between the current position and the target. Blank cells are erased with ECH or EL when that is shorter
+ * than printing spaces, but only in the default background color unless the terminal has background color erase. The
+ * costs are calculated for ANSI escape sequences; on terminals that don't implement {@code CursorMovable}, this
+ * optimizer always uses absolute positioning and never erases.
+ * <p>
+ * The optimizer keeps count of how many bytes it has written and how many bytes it has saved compared to only using
+ * absolute positioning and printing every blank cell, which can be useful for tuning and benchmarking.
+ *
+ * @author Martin
+ */
+public class CostBasedCursorMovementOptimizer implements CursorMovementOptimizer {
+    private static final int ABSOLUTE = 0;
+    private static final int RELATIVE = 1;
+    private static final int CARRIAGE_RETURN = 2;
+    private static final int REWRITE = 3;
+
+    private long bytesWritten;
+    private long bytesSaved;
+
+    /**
+     * Creates a new cost-based cursor movement optimizer with its statistics set to zero
+     */
+    public CostBasedCursorMovementOptimizer() {
+        resetStatistics();
+    }
+
+    @Override
+    public void moveCursor(
+            Terminal terminal,
+            TextImage content,
+            TextStyle currentStyle,
+            int fromColumn,
+            int fromRow,
+            int toColumn,
+            int toRow) throws IOException {
+
+        if(fromColumn == toColumn && fromRow == toRow) {
+            return;
+        }
+        int absoluteCost = getAbsoluteCost(toColumn, toRow);
+        if(fromColumn < 0 || fromRow < 0 || !(terminal instanceof CursorMovable)) {
+            terminal.setCursorPosition(toColumn, toRow);
+            bytesWritten += absoluteCost;
+            return;
+        }
+
+        int bestMethod = ABSOLUTE;
+        int bestCost = absoluteCost;
+
+        int relativeCost = getVerticalCost(fromRow, toRow) + getHorizontalCost(fromColumn, toColumn);
+        if(relativeCost < bestCost) {
+            bestMethod = RELATIVE;
+            bestCost = relativeCost;
+        }
+
+        int carriageReturnCost = 1 + (toRow == fromRow + 1 ? 1 : getVerticalCost(fromRow, toRow)) + getHorizontalCost(0, toColumn);
+        if(carriageReturnCost < bestCost) {
+            bestMethod = CARRIAGE_RETURN;
+            bestCost = carriageReturnCost;
+        }
+
+        if(fromRow == toRow && toColumn > fromColumn && toColumn - fromColumn < bestCost &&
+                canRewrite(content, currentStyle, fromColumn, toColumn, toRow)) {
+            bestMethod = REWRITE;
+            bestCost = toColumn - fromColumn;
+        }
+
+        CursorMovable movable = (CursorMovable)terminal;
+        switch(bestMethod) {
+            case RELATIVE:
+                moveVertically(movable, fromRow, toRow);
+                moveHorizontally(movable, fromColumn, toColumn);
+                break;
+            case CARRIAGE_RETURN:
+                movable.carriageReturn();
+                if(toRow == fromRow + 1) {
+                    movable.lineFeed();
+                }
+                else {
+                    moveVertically(movable, fromRow, toRow);
+                }
+                moveHorizontally(movable, 0, toColumn);
+                break;
+            case REWRITE:
+                for(int column = fromColumn; column < toColumn; column++) {
+                    terminal.putCharacter(content.getCharacterAt(column, toRow).getCharacter());
+                }
+                break;
+            default:
+                terminal.setCursorPosition(toColumn, toRow);
+        }
+        bytesWritten += bestCost;
+        bytesSaved += absoluteCost - bestCost;
+    }
+
+    @Override
+    public int eraseBlankCells(
+            Terminal terminal,
+            TextStyle currentStyle,
+            int column,
+            int row,
+            int count,
+            int terminalColumns) throws IOException {
+
+        if(!(terminal instanceof CursorMovable)) {
+            return -1;
+        }
+        CursorMovable movable = (CursorMovable)terminal;
+        if(currentStyle.getBackgroundColor() != TextColor.ANSI.DEFAULT && !movable.isBackgroundColorErase()) {
+            //The erased cells would get the default background color instead
+            return -1;
+        }
+        if(column + count >= terminalColumns) {
+            int eraseCost = 3;
+            if(eraseCost >= count) {
+                return -1;
+            }
+            movable.eraseToEndOfLine();
+            bytesWritten += eraseCost;
+            bytesSaved += count - eraseCost;
+            return column;
+        }
+        else {
+            //ECH doesn't move the cursor so we'll need to skip past the erased cells afterwards
+            int eraseCost = 2 * getSequenceCost(count);
+            if(eraseCost >= count) {
+                return -1;
+            }
+            movable.eraseCharacters(count);
+            movable.moveCursorForward(count);
+            bytesWritten += eraseCost;
+            bytesSaved += count - eraseCost;
+            return column + count;
+        }
+    }
+
+    /**
+     * Returns the number of bytes this optimizer has written to move the cursor and erase cells, since it was created
+     * or the statistics were last reset
+     * @return Number of bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Returns how many fewer bytes this optimizer has written compared to moving the cursor with absolute positioning
+     * and printing all blank cells, since it was created or the statistics were last reset
+     * @return Number of bytes saved
+     */
+    public long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * Sets the number of bytes written and saved back to zero
+     */
+    public void resetStatistics() {
+        bytesWritten = 0;
+        bytesSaved = 0;
+    }
+
+    private boolean canRewrite(TextImage content, TextStyle currentStyle, int fromColumn, int toColumn, int row) {
+        for(int column = fromColumn; column < toColumn; column++) {
+            TextCharacter character = content.getCharacterAt(column, row);
+            //Only take characters that we know are encoded as a single byte and are drawn the same way as before
+            if(character == null ||
+                    character.getCharacter() < ' ' ||
+                    character.getCharacter() > '~' ||
+                    character.getStyle() != currentStyle) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void moveVertically(CursorMovable movable, int fromRow, int toRow) throws IOException {
+        if(toRow < fromRow) {
+            movable.moveCursorUp(fromRow - toRow);
+        }
+        else if(toRow > fromRow) {
+            movable.moveCursorDown(toRow - fromRow);
+        }
+    }
+
+    private static void moveHorizontally(CursorMovable movable, int fromColumn, int toColumn) throws IOException {
+        if(toColumn < fromColumn) {
+            movable.moveCursorBackward(fromColumn - toColumn);
+        }
+        else if(toColumn > fromColumn) {
+            movable.moveCursorForward(toColumn - fromColumn);
+        }
+    }
+
+    private static int getAbsoluteCost(int column, int row) {
+        // ESC [ row ; column H
+        return 4 + getDigits(row + 1) + getDigits(column + 1);
+    }
+
+    private static int getVerticalCost(int fromRow, int toRow) {
+        return fromRow == toRow ? 0 : getSequenceCost(Math.abs(toRow - fromRow));
+    }
+
+    private static int getHorizontalCost(int fromColumn, int toColumn) {
+        return fromColumn == toColumn ? 0 : getSequenceCost(Math.abs(toColumn - fromColumn));
+    }
+
+    private static int getSequenceCost(int number) {
+        // ESC [ number command
+        return 3 + getDigits(number);
+    }
+
+    private static int getDigits(int number) {
+        int digits = 1;
+        while(number >= 10) {
+            number /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
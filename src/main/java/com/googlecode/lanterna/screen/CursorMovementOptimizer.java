@@ -0,0 +1,80 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.screen;
+
+import com.googlecode.lanterna.TextStyle;
+import com.googlecode.lanterna.graphics.TextImage;
+import com.googlecode.lanterna.terminal.Terminal;
+
+import java.io.IOException;
+
+/**
+ * Decides how {@code TerminalScreen} moves the cursor between the parts of the screen that needs to be updated during a
+ * delta refresh, and how blank areas are cleared. The simplest implementation just calls
+ * {@code Terminal.setCursorPosition(..)}, more advanced implementations can pick whatever way of getting the cursor to
+ * the target is cheapest on the particular terminal.
+ *
+ * @see CostBasedCursorMovementOptimizer
+ * @author Martin
+ */
+public interface CursorMovementOptimizer {
+    /**
+     * Moves the terminal cursor to a new position. If the current position is known, the cells between the two
+     * positions can be re-printed instead of moving the cursor, the content of these cells should then be taken from
+     * {@code content}.
+     * @param terminal Terminal to move the cursor on
+     * @param content What is on the screen (or will be, once the refresh is done) at the cells the cursor passes
+     * @param currentStyle Colors and modifiers currently active on the terminal
+     * @param fromColumn Column the cursor is currently in, or {@code -1} if not known
+     * @param fromRow Row the cursor is currently on, or {@code -1} if not known
+     * @param toColumn Column to move the cursor to
+     * @param toRow Row to move the cursor to
+     * @throws IOException If there was an underlying I/O error
+     */
+    void moveCursor(
+            Terminal terminal,
+            TextImage content,
+            TextStyle currentStyle,
+            int fromColumn,
+            int fromRow,
+            int toColumn,
+            int toRow) throws IOException;
+
+    /**
+     * Called when a sequence of blank cells (spaces without any modifiers, in the currently active colors) is about to
+     * be printed, starting at the cursor. The optimizer can choose to erase the cells instead of printing spaces, as
+     * long as the erased cells come out in the same background color.
+     * @param terminal Terminal to erase the cells on
+     * @param currentStyle Colors and modifiers currently active on the terminal
+     * @param column Column the cursor is in and where the blank cells start
+     * @param row Row the cursor is on
+     * @param count Number of blank cells
+     * @param terminalColumns Number of columns of the terminal
+     * @return Column the cursor is in after the cells were erased, or {@code -1} if nothing was done and the caller
+     * should print the spaces itself
+     * @throws IOException If there was an underlying I/O error
+     */
+    int eraseBlankCells(
+            Terminal terminal,
+            TextStyle currentStyle,
+            int column,
+            int row,
+            int count,
+            int terminalColumns) throws IOException;
+}
@@ -0,0 +1,243 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.screen;
+
+import com.googlecode.lanterna.SGR;
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TerminalTextUtils;
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.TextStyle;
+import com.googlecode.lanterna.terminal.Terminal;
+
+import java.io.IOException;
+
+/**
+ * Calculates and draws the difference between the back buffer and the front buffer of a {@code TerminalScreen}. The
+ * buffers are compared row by row and every sequence of changed characters is recorded as a run (row, first column,
+ * end column) in primitive arrays that are kept and reused between refreshes, so a delta refresh doesn't create any
+ * objects per changed character. The content of the runs is read directly as characters and interned styles from the
+ * back buffer. The runs are drawn in the order they were found, the engine keeps track of where the cursor is and leaves
+ * it to a {@code CursorMovementOptimizer} to decide how to get from the end of one run to the start of the next, and
+ * whether sequences of blank cells should be erased rather than printed.
+ * <p>
+ * This class is not thread-safe, {@code TerminalScreen} calls it while holding its own lock.
+ * @author Martin
+ */
+class DeltaRefreshEngine {
+    private static final SGR[] SGR_VALUES = SGR.values();
+    private static final int INITIAL_RUN_CAPACITY = 64;
+
+    private int[] runRows;
+    private int[] runStartColumns;
+    private int[] runEndColumns;
+    private int runCount;
+    private CursorMovementOptimizer cursorMovementOptimizer;
+
+    DeltaRefreshEngine(CursorMovementOptimizer cursorMovementOptimizer) {
+        this.cursorMovementOptimizer = cursorMovementOptimizer;
+        this.runRows = new int[INITIAL_RUN_CAPACITY];
+        this.runStartColumns = new int[INITIAL_RUN_CAPACITY];
+        this.runEndColumns = new int[INITIAL_RUN_CAPACITY];
+        this.runCount = 0;
+    }
+
+    /**
+     * Returns the optimizer used for moving the cursor between runs
+     * @return Cursor movement optimizer of this engine
+     */
+    CursorMovementOptimizer getCursorMovementOptimizer() {
+        return cursorMovementOptimizer;
+    }
+
+    /**
+     * Changes the optimizer used for moving the cursor between runs
+     * @param cursorMovementOptimizer New cursor movement optimizer
+     */
+    void setCursorMovementOptimizer(CursorMovementOptimizer cursorMovementOptimizer) {
+        this.cursorMovementOptimizer = cursorMovementOptimizer;
+    }
+
+    /**
+     * Compares the back buffer against the front buffer and records all changed characters as runs. Any runs from a
+     * previous call are discarded.
+     * @param backBuffer Buffer with the content we want to have on the terminal
+     * @param frontBuffer Buffer with the content that is currently on the terminal
+     * @return Number of runs found, {@code 0} means there is nothing to update
+     */
+    int findRuns(ScreenBuffer backBuffer, ScreenBuffer frontBuffer) {
+        runCount = 0;
+        TerminalSize size = backBuffer.getSize();
+        int rows = size.getRows();
+        int columns = size.getColumns();
+        for(int y = 0; y < rows; y++) {
+            int runStart = -1;
+            int x = 0;
+            for(; x < columns; x++) {
+                if(!backBuffer.isSameCharacterAt(frontBuffer, x, y)) {
+                    if(runStart == -1) {
+                        runStart = x;
+                    }
+                }
+                else if(runStart != -1) {
+                    addRun(y, runStart, x);
+                    runStart = -1;
+                }
+                if(TerminalTextUtils.isCharCJK(backBuffer.getRawCharacterAt(x, y))) {
+                    x++;    //Skip the trailing padding
+                }
+            }
+            if(runStart != -1) {
+                addRun(y, runStart, x);
+            }
+        }
+        return runCount;
+    }
+
+    /**
+     * Returns the number of runs found by the last call to {@code findRuns(..)}
+     * @return Number of runs
+     */
+    int getRunCount() {
+        return runCount;
+    }
+
+    /**
+     * Draws the runs found by the last call to {@code findRuns(..)} to the terminal, taking the content from the
+     * back buffer. The cursor is moved and colors and modifiers are switched only when needed. When this method returns,
+     * the position of the terminal cursor is undefined.
+     * @param backBuffer Buffer to take the new content from, this must be the same buffer as passed to
+     *                   {@code findRuns(..)}
+     * @param terminal Terminal to draw to
+     * @throws IOException If there was an underlying I/O error
+     */
+    void drawRuns(ScreenBuffer backBuffer, Terminal terminal) throws IOException {
+        if(runCount == 0) {
+            return;
+        }
+
+        int terminalColumns = backBuffer.getSize().getColumns();
+        TextStyle currentStyle = backBuffer.getStyleAt(runStartColumns[0], runRows[0]);
+        cursorMovementOptimizer.moveCursor(terminal, backBuffer, currentStyle, -1, -1, runStartColumns[0], runRows[0]);
+        terminal.resetColorAndSGR();
+        for(SGR sgr: SGR_VALUES) {
+            if(currentStyle.hasModifier(sgr)) {
+                terminal.enableSGR(sgr);
+            }
+        }
+        terminal.setForegroundColor(currentStyle.getForegroundColor());
+        terminal.setBackgroundColor(currentStyle.getBackgroundColor());
+
+        //-1 means we don't know where the cursor is
+        int cursorColumn = runStartColumns[0];
+        int cursorRow = runRows[0];
+        for(int run = 0; run < runCount; run++) {
+            int row = runRows[run];
+            int column = runStartColumns[run];
+            int endColumn = runEndColumns[run];
+            while(column < endColumn) {
+                if(column != cursorColumn || row != cursorRow) {
+                    cursorMovementOptimizer.moveCursor(terminal, backBuffer, currentStyle, cursorColumn, cursorRow, column, row);
+                    cursorColumn = column;
+                    cursorRow = row;
+                }
+                TextStyle newStyle = backBuffer.getStyleAt(column, row);
+                if(newStyle != currentStyle) {
+                    //Styles are interned, so only look at the individual attributes when the style has changed
+                    switchStyle(terminal, currentStyle, newStyle);
+                    currentStyle = newStyle;
+                }
+                char character = backBuffer.getRawCharacterAt(column, row);
+                if(character == ' ' && !currentStyle.hasModifiers()) {
+                    int blankEndColumn = findBlankEnd(backBuffer, currentStyle, column, endColumn, row);
+                    if(blankEndColumn - column > 1) {
+                        int newCursorColumn = cursorMovementOptimizer.eraseBlankCells(
+                                terminal, currentStyle, column, row, blankEndColumn - column, terminalColumns);
+                        if(newCursorColumn == -1) {
+                            for(int i = column; i < blankEndColumn; i++) {
+                                terminal.putCharacter(' ');
+                            }
+                            newCursorColumn = blankEndColumn;
+                        }
+                        column = blankEndColumn;
+                        cursorColumn = newCursorColumn < terminalColumns ? newCursorColumn : -1;
+                        continue;
+                    }
+                }
+                terminal.putCharacter(character);
+                if(TerminalTextUtils.isCharCJK(character)) {
+                    //CJK characters advances two columns
+                    column += 2;
+                }
+                else {
+                    //Normal characters advances one column
+                    column += 1;
+                }
+                //When writing to the last column, terminals differ in where they leave the cursor
+                cursorColumn = column < terminalColumns ? column : -1;
+            }
+        }
+    }
+
+    private static int findBlankEnd(ScreenBuffer backBuffer, TextStyle style, int column, int endColumn, int row) {
+        while(column < endColumn &&
+                backBuffer.getRawCharacterAt(column, row) == ' ' &&
+                backBuffer.getStyleAt(column, row) == style) {
+            column++;
+        }
+        return column;
+    }
+
+    private static void switchStyle(Terminal terminal, TextStyle currentStyle, TextStyle newStyle) throws IOException {
+        TextColor foregroundColor = newStyle.getForegroundColor();
+        if(!currentStyle.getForegroundColor().equals(foregroundColor)) {
+            terminal.setForegroundColor(foregroundColor);
+        }
+        TextColor backgroundColor = newStyle.getBackgroundColor();
+        if(!currentStyle.getBackgroundColor().equals(backgroundColor)) {
+            terminal.setBackgroundColor(backgroundColor);
+        }
+        for(SGR sgr: SGR_VALUES) {
+            if(currentStyle.hasModifier(sgr) && !newStyle.hasModifier(sgr)) {
+                terminal.disableSGR(sgr);
+            }
+            else if(!currentStyle.hasModifier(sgr) && newStyle.hasModifier(sgr)) {
+                terminal.enableSGR(sgr);
+            }
+        }
+    }
+
+    private void addRun(int row, int startColumn, int endColumn) {
+        if(runCount == runRows.length) {
+            int newCapacity = runRows.length * 2;
+            runRows = grow(runRows, newCapacity);
+            runStartColumns = grow(runStartColumns, newCapacity);
+            runEndColumns = grow(runEndColumns, newCapacity);
+        }
+        runRows[runCount] = row;
+        runStartColumns[runCount] = startColumn;
+        runEndColumns[runCount] = endColumn;
+        runCount++;
+    }
+
+    private static int[] grow(int[] array, int newCapacity) {
+        int[] newArray = new int[newCapacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+}
@@ -21,18 +21,20 @@ package com.googlecode.lanterna.screen;
 import com.googlecode.lanterna.TerminalPosition;
 import com.googlecode.lanterna.TextCharacter;
 import com.googlecode.lanterna.TerminalSize;
-import com.googlecode.lanterna.graphics.BasicTextImage;
+import com.googlecode.lanterna.TextStyle;
+import com.googlecode.lanterna.graphics.PackedTextImage;
 import com.googlecode.lanterna.graphics.TextGraphics;
 import com.googlecode.lanterna.graphics.TextImage;
 
 /**
  * Defines a buffer used by AbstractScreen and its subclasses to keep its state of what's currently displayed and what 
  * the edit buffer looks like. A ScreenBuffer is essentially a two-dimensional array of TextCharacter with some utility
- * methods to inspect and manipulate it in a safe way.
+ * methods to inspect and manipulate it in a safe way. Internally the content is kept in a {@code PackedTextImage}, so
+ * comparing two buffers doesn't need to look at any TextCharacter objects.
  * @author martin
  */
 public class ScreenBuffer implements TextImage {    
-    private final BasicTextImage backend;
+    private final PackedTextImage backend;
     
     /**
      * Creates a new ScreenBuffer with a given size and a TextCharacter to initially fill it with
@@ -40,16 +42,16 @@ public class ScreenBuffer implements TextImage {
      * @param filler What character to set as the initial content of the buffer
      */
     public ScreenBuffer(TerminalSize size, TextCharacter filler) {
-        this(new BasicTextImage(size, filler));
+        this(new PackedTextImage(size, filler));
     }
     
-    private ScreenBuffer(BasicTextImage backend) {
+    private ScreenBuffer(PackedTextImage backend) {
         this.backend = backend;
     }
     
     @Override
     public ScreenBuffer resize(TerminalSize newSize, TextCharacter filler) {
-        BasicTextImage resizedBackend = backend.resize(newSize, filler);
+        PackedTextImage resizedBackend = backend.resize(newSize, filler);
         return new ScreenBuffer(resizedBackend);
     }
     
@@ -61,7 +63,7 @@ public class ScreenBuffer implements TextImage {
         int differences = 0;
         for(int y = 0; y < getSize().getRows(); y++) {
             for(int x = 0; x < getSize().getColumns(); x++) {
-                if(!getCharacterAt(x, y).equals(other.getCharacterAt(x, y))) {
+                if(!backend.isSameCharacterAt(other.backend, x, y)) {
                     if(++differences >= threshold) {
                         return true;
                     }
@@ -71,8 +73,28 @@ public class ScreenBuffer implements TextImage {
         return false;
     }
 
+    boolean isSameCharacterAt(ScreenBuffer other, int column, int row) {
+        return backend.isSameCharacterAt(other.backend, column, row);
+    }
+
+    char getRawCharacterAt(int column, int row) {
+        return backend.getRawCharacterAt(column, row);
+    }
+
+    TextStyle getStyleAt(int column, int row) {
+        return backend.getStyleAt(column, row);
+    }
+
+    void fillSpan(int row, int fromColumn, int toColumn, TextCharacter character) {
+        backend.fillSpan(row, fromColumn, toColumn, character);
+    }
+
+    void putString(int column, int row, CharSequence text, int start, int end, TextStyle style) {
+        backend.putString(column, row, text, start, end, style);
+    }
+
     ///////////////////////////////////////////////////////////////////////////////
-    //  Delegate all TextImage calls (except resize) to the backend BasicTextImage
+    //  Delegate all TextImage calls (except resize) to the backend PackedTextImage
     @Override
     public TerminalSize getSize() {
         return backend.getSize();
@@ -111,7 +133,7 @@ public class ScreenBuffer implements TextImage {
     @Override
     public void copyTo(TextImage destination) {
         if(destination instanceof ScreenBuffer) {
-            //This will allow the BasicTextImage's copy method to use System.arraycopy (micro-optimization?)
+            //This will allow the PackedTextImage's copy method to use System.arraycopy
             destination = ((ScreenBuffer)destination).backend;
         }
         backend.copyTo(destination);
@@ -120,7 +142,7 @@ public class ScreenBuffer implements TextImage {
     @Override
     public void copyTo(TextImage destination, int startRowIndex, int rows, int startColumnIndex, int columns, int destinationRowOffset, int destinationColumnOffset) {
         if(destination instanceof ScreenBuffer) {
-            //This will allow the BasicTextImage's copy method to use System.arraycopy (micro-optimization?)
+            //This will allow the PackedTextImage's copy method to use System.arraycopy
             destination = ((ScreenBuffer)destination).backend;
         }
         backend.copyTo(destination, startRowIndex, rows, startColumnIndex, columns, destinationRowOffset, destinationColumnOffset);
@@ -26,10 +26,7 @@ import com.googlecode.lanterna.terminal.Terminal;
 import com.googlecode.lanterna.terminal.TerminalResizeListener;
 
 import java.io.IOException;
-import java.util.Comparator;
 import java.util.EnumSet;
-import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * This is the default concrete implementation of the Screen interface, a buffered layer sitting on top of a Terminal.
@@ -40,6 +37,7 @@ import java.util.TreeMap;
  */
 public class TerminalScreen extends AbstractScreen {
     private final Terminal terminal;
+    private final DeltaRefreshEngine deltaRefreshEngine;
     private boolean isStarted;
     private boolean fullRedrawHint;
     private ScrollHint scrollHint;
@@ -76,6 +74,7 @@ public class TerminalScreen extends AbstractScreen {
     public TerminalScreen(Terminal terminal, TextCharacter defaultCharacter) throws IOException {
         super(terminal.getTerminalSize(), defaultCharacter);
         this.terminal = terminal;
+        this.deltaRefreshEngine = new DeltaRefreshEngine(new CostBasedCursorMovementOptimizer());
         this.terminal.addResizeListener(new TerminalScreenResizeListener());
         this.isStarted = false;
         this.fullRedrawHint = true;
@@ -181,73 +180,10 @@ public class TerminalScreen extends AbstractScreen {
     }
 
     private void refreshByDelta() throws IOException {
-        Map<TerminalPosition, TextCharacter> updateMap = new TreeMap<TerminalPosition, TextCharacter>(new ScreenPointComparator());
-        TerminalSize terminalSize = getTerminalSize();
-
         useScrollHint();
 
-        for(int y = 0; y < terminalSize.getRows(); y++) {
-            for(int x = 0; x < terminalSize.getColumns(); x++) {
-                TextCharacter backBufferCharacter = getBackBuffer().getCharacterAt(x, y);
-                if(!backBufferCharacter.equals(getFrontBuffer().getCharacterAt(x, y))) {
-                    updateMap.put(new TerminalPosition(x, y), backBufferCharacter);
-                }
-                if(TerminalTextUtils.isCharCJK(backBufferCharacter.getCharacter())) {
-                    x++;    //Skip the trailing padding
-                }
-            }
-        }
-
-        if(updateMap.isEmpty()) {
-            return;
-        }
-        TerminalPosition currentPosition = updateMap.keySet().iterator().next();
-        getTerminal().setCursorPosition(currentPosition.getColumn(), currentPosition.getRow());
-
-        TextCharacter firstScreenCharacterToUpdate = updateMap.values().iterator().next();
-        EnumSet<SGR> currentSGR = firstScreenCharacterToUpdate.getModifiers();
-        getTerminal().resetColorAndSGR();
-        for(SGR sgr: currentSGR) {
-            getTerminal().enableSGR(sgr);
-        }
-        TextColor currentForegroundColor = firstScreenCharacterToUpdate.getForegroundColor();
-        TextColor currentBackgroundColor = firstScreenCharacterToUpdate.getBackgroundColor();
-        getTerminal().setForegroundColor(currentForegroundColor);
-        getTerminal().setBackgroundColor(currentBackgroundColor);
-        for(TerminalPosition position: updateMap.keySet()) {
-            if(!position.equals(currentPosition)) {
-                getTerminal().setCursorPosition(position.getColumn(), position.getRow());
-                currentPosition = position;
-            }
-            TextCharacter newCharacter = updateMap.get(position);
-            if(!currentForegroundColor.equals(newCharacter.getForegroundColor())) {
-                getTerminal().setForegroundColor(newCharacter.getForegroundColor());
-                currentForegroundColor = newCharacter.getForegroundColor();
-            }
-            if(!currentBackgroundColor.equals(newCharacter.getBackgroundColor())) {
-                getTerminal().setBackgroundColor(newCharacter.getBackgroundColor());
-                currentBackgroundColor = newCharacter.getBackgroundColor();
-            }
-            for(SGR sgr: SGR.values()) {
-                if(currentSGR.contains(sgr) && !newCharacter.getModifiers().contains(sgr)) {
-                    getTerminal().disableSGR(sgr);
-                    currentSGR.remove(sgr);
-                }
-                else if(!currentSGR.contains(sgr) && newCharacter.getModifiers().contains(sgr)) {
-                    getTerminal().enableSGR(sgr);
-                    currentSGR.add(sgr);
-                }
-            }
-            getTerminal().putCharacter(newCharacter.getCharacter());
-            if(TerminalTextUtils.isCharCJK(newCharacter.getCharacter())) {
-                //CJK characters advances two columns
-                currentPosition = currentPosition.withRelativeColumn(2);
-            }
-            else {
-                //Normal characters advances one column
-                currentPosition = currentPosition.withRelativeColumn(1);
-            }
-        }
+        deltaRefreshEngine.findRuns(getBackBuffer(), getFrontBuffer());
+        deltaRefreshEngine.drawRuns(getBackBuffer(), getTerminal());
     }
 
     private void refreshFull() throws IOException {
@@ -320,6 +256,27 @@ public class TerminalScreen extends AbstractScreen {
         return terminal;
     }
 
+    /**
+     * Returns the optimizer that decides how the cursor is moved between changed areas during a delta refresh. By
+     * default this is a {@code CostBasedCursorMovementOptimizer}, which also keeps statistics on the number of bytes
+     * written and saved.
+     * @return Cursor movement optimizer used by this screen
+     */
+    public synchronized CursorMovementOptimizer getCursorMovementOptimizer() {
+        return deltaRefreshEngine.getCursorMovementOptimizer();
+    }
+
+    /**
+     * Changes the optimizer that decides how the cursor is moved between changed areas during a delta refresh
+     * @param cursorMovementOptimizer Cursor movement optimizer this screen should use from now on
+     */
+    public synchronized void setCursorMovementOptimizer(CursorMovementOptimizer cursorMovementOptimizer) {
+        if(cursorMovementOptimizer == null) {
+            throw new IllegalArgumentException("Cannot call TerminalScreen.setCursorMovementOptimizer(..) with null");
+        }
+        deltaRefreshEngine.setCursorMovementOptimizer(cursorMovementOptimizer);
+    }
+
     @Override
     public KeyStroke readInput() throws IOException {
         return terminal.readInput();
@@ -382,21 +339,6 @@ public class TerminalScreen extends AbstractScreen {
         }
     }
 
-    private static class ScreenPointComparator implements Comparator<TerminalPosition> {
-        @Override
-        public int compare(TerminalPosition o1, TerminalPosition o2) {
-            if(o1.getRow() == o2.getRow()) {
-                if(o1.getColumn() == o2.getColumn()) {
-                    return 0;
-                } else {
-                    return new Integer(o1.getColumn()).compareTo(o2.getColumn());
-                }
-            } else {
-                return new Integer(o1.getRow()).compareTo(o2.getRow());
-            }
-        }
-    }
-
     private static class ScrollHint {
         public static final ScrollHint INVALID = new ScrollHint(-1,-1,0);
         public final int firstLine;
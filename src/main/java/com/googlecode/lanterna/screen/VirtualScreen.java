@@ -83,6 +83,14 @@ public class VirtualScreen extends AbstractScreen {
         return minimumSize;
     }
 
+    /**
+     * Returns the real screen that this virtual screen is wrapping
+     * @return Screen that the virtual screen is drawn on
+     */
+    public Screen getRealScreen() {
+        return realScreen;
+    }
+
     /**
      * Returns the current size of the viewport. This will generally match the dimensions of the underlying terminal.
      * @return Viewport size for this {@link VirtualScreen}
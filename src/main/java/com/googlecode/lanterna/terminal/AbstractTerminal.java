@@ -34,7 +34,7 @@ import java.util.List;
 public abstract class AbstractTerminal implements Terminal {
 
     private final List<TerminalResizeListener> resizeListeners;
-    private TerminalSize lastKnownSize;
+    private volatile TerminalSize lastKnownSize;
 
     protected AbstractTerminal() {
         this.resizeListeners = new ArrayList<TerminalResizeListener>();
@@ -81,6 +81,15 @@ public abstract class AbstractTerminal implements Terminal {
         }
     }
 
+    /**
+     * Returns the size passed in to the last call to {@code onResized(..)} that changed the size, without querying the
+     * terminal
+     * @return Last known size of the terminal, or {@code null} if the size isn't known yet
+     */
+    protected TerminalSize getLastKnownSize() {
+        return lastKnownSize;
+    }
+
     @Override
     public TextGraphics newTextGraphics() throws IOException {
         return new TerminalTextGraphics(this);
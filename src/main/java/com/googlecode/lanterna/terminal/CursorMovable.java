@@ -0,0 +1,97 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal;
+
+import java.io.IOException;
+
+/**
+ * Describes a terminal that, in addition to absolute cursor positioning, can move the cursor relative to where it is
+ * and erase parts of a line. These operations are usually much shorter than the absolute alternatives and are used by
+ * {@code TerminalScreen} (through its {@code CursorMovementOptimizer}) to reduce the amount of data sent on a refresh.
+ * Apart from {@code lineFeed()}, which scrolls the terminal when the cursor is on the last row, none of the methods
+ * here will scroll the terminal or wrap the cursor to another line; moving beyond the edge of the terminal will stop
+ * the cursor at the edge.
+ *
+ * @author Martin
+ */
+public interface CursorMovable {
+    /**
+     * Moves the cursor to the first column of the current row (CR)
+     * @throws IOException If there was an underlying I/O error
+     */
+    void carriageReturn() throws IOException;
+
+    /**
+     * Moves the cursor down one row (LF). Depending on how the terminal is configured, this may also move the cursor to
+     * the first column, so it's only safe to use right after {@code carriageReturn()}. This will scroll the terminal if
+     * the cursor is already on the last row.
+     * @throws IOException If there was an underlying I/O error
+     */
+    void lineFeed() throws IOException;
+
+    /**
+     * Moves the cursor up a number of rows, staying in the same column (CUU)
+     * @param rows Number of rows to move
+     * @throws IOException If there was an underlying I/O error
+     */
+    void moveCursorUp(int rows) throws IOException;
+
+    /**
+     * Moves the cursor down a number of rows, staying in the same column (CUD)
+     * @param rows Number of rows to move
+     * @throws IOException If there was an underlying I/O error
+     */
+    void moveCursorDown(int rows) throws IOException;
+
+    /**
+     * Moves the cursor right a number of columns, staying on the same row (CUF)
+     * @param columns Number of columns to move
+     * @throws IOException If there was an underlying I/O error
+     */
+    void moveCursorForward(int columns) throws IOException;
+
+    /**
+     * Moves the cursor left a number of columns, staying on the same row (CUB)
+     * @param columns Number of columns to move
+     * @throws IOException If there was an underlying I/O error
+     */
+    void moveCursorBackward(int columns) throws IOException;
+
+    /**
+     * Returns {@code true} if the terminal fills erased cells with the current background color (bce, "background
+     * color erase"). Terminals without it, like GNU screen and tmux, always erase to the default background color.
+     * @return {@code true} if erased cells get the current background color
+     */
+    boolean isBackgroundColorErase();
+
+    /**
+     * Blanks out a number of cells starting at the cursor, using the current background color if the terminal has
+     * background color erase, otherwise the default background color. The cursor doesn't move (ECH).
+     * @param count Number of cells to erase
+     * @throws IOException If there was an underlying I/O error
+     */
+    void eraseCharacters(int count) throws IOException;
+
+    /**
+     * Blanks out all cells from the cursor to the end of the row, using the current background color if the terminal
+     * has background color erase, otherwise the default background color. The cursor doesn't move (EL).
+     * @throws IOException If there was an underlying I/O error
+     */
+    void eraseToEndOfLine() throws IOException;
+}
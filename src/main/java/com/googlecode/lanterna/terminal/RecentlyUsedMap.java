@@ -0,0 +1,64 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Map that holds at most a fixed number of entries and drops the least recently used one when a new entry would go
+ * over that limit. The terminal implementations and the GUI components use this to put a bound on their caches. Just
+ * like {@link LinkedHashMap}, this map is not thread-safe, so callers sharing it between threads must synchronize.
+ * <p>
+ * <b>Internal:</b> this class is public because it's used from several lanterna packages, not because it's meant for
+ * applications. It may change or go away in any release.
+ * @param <K> Type of the keys
+ * @param <V> Type of the values
+ * @author Martin
+ */
+public class RecentlyUsedMap<K, V> extends LinkedHashMap<K, V> {
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+
+    /**
+     * Creates a new, empty, map that will hold up to {@code capacity} entries
+     * @param capacity Maximum number of entries to keep before the least recently used ones are dropped
+     */
+    public RecentlyUsedMap(int capacity) {
+        super(16, 0.75f, true);
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, got " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the maximum number of entries this map will hold
+     * @return Maximum number of entries this map will hold
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > capacity;
+    }
+}
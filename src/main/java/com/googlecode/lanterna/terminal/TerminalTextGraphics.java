@@ -23,6 +23,7 @@ import com.googlecode.lanterna.TerminalPosition;
 import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.graphics.AbstractTextGraphics;
 import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.TextStyle;
 import com.googlecode.lanterna.graphics.TextGraphics;
 
 import java.io.IOException;
@@ -189,6 +190,17 @@ class TerminalTextGraphics extends AbstractTextGraphics {
         }
     }
 
+    @Override
+    public synchronized TextGraphics putString(int column, int row, CharSequence text, int start, int end, TextStyle style) {
+        try {
+            enterAtomic();
+            return super.putString(column, row, text, start, end, style);
+        }
+        finally {
+            leaveAtomic();
+        }
+    }
+
     /**
      * It's tricky with this implementation because we can't rely on any state in between two calls to setCharacter
      * since the caller might modify the terminal's state outside of this writer. However, many calls inside
@@ -23,6 +23,7 @@ import com.googlecode.lanterna.TerminalPosition;
 import com.googlecode.lanterna.input.*;
 import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.terminal.CursorMovable;
 import com.googlecode.lanterna.terminal.ExtendedTerminal;
 import com.googlecode.lanterna.terminal.MouseCaptureMode;
 
@@ -30,19 +31,37 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class containing graphics code for ANSI compliant text terminals and terminal emulators. All the methods inside of
- * this class uses ANSI escape codes written to the underlying output stream.
+ * this class uses ANSI escape codes written to the underlying output stream. The sequences for changing colors and
+ * moving the cursor are taken from a cache of pre-encoded bytes, since these are written for almost every change
+ * during a screen refresh.
  *
  * @see <a href="http://en.wikipedia.org/wiki/ANSI_escape_code">Wikipedia</a>
  * @author Martin
  */
-public abstract class ANSITerminal extends StreamBasedTerminal implements ExtendedTerminal {
+public abstract class ANSITerminal extends StreamBasedTerminal implements ExtendedTerminal, CursorMovable {
 
+    private final EscapeSequenceCache escapeSequenceCache;
+    private final byte[] cursorPositionSequence;
     private MouseCaptureMode requestedMouseCaptureMode;
     private MouseCaptureMode mouseCaptureMode;
     private boolean inPrivateMode;
+    private volatile boolean backgroundColorErase;
+
+    // Asynchronous size tracking, see setAsynchronousSizeTracking(..); the fields below are guarded by sizeQueryMonitor
+    private final Object sizeQueryMonitor;
+    private volatile boolean asynchronousSizeTracking;
+    private boolean sizeQueryInFlight;
+    private boolean sizeQueryRepeat;
+    private boolean positionQueryInFlight;
+    private long sizeQueryDeadline;
+    private ThreadPoolExecutor resizeNotifier;
 
     @SuppressWarnings("WeakerAccess")
     protected ANSITerminal(
@@ -51,9 +70,42 @@ public abstract class ANSITerminal extends StreamBasedTerminal implements Extend
             Charset terminalCharset) {
 
         super(terminalInput, terminalOutput, terminalCharset);
+        this.escapeSequenceCache = new EscapeSequenceCache();
+        this.cursorPositionSequence = new byte[32];
         this.inPrivateMode = false;
+        this.backgroundColorErase = false;
         this.requestedMouseCaptureMode = null;
         this.mouseCaptureMode = null;
+        this.sizeQueryMonitor = new Object();
+        this.asynchronousSizeTracking = false;
+        this.sizeQueryInFlight = false;
+        this.positionQueryInFlight = false;
+        this.resizeNotifier = null;
+        getInputDecoder().addProfile(getDefaultKeyDecodingProfile());
+    }
+
+    /**
+     * Creates an ANSI terminal that gets its input added to a decoder instead of reading it from a stream
+     * @param inputDecoder Decoder, created without a source, that the input will be added to
+     * @param terminalOutput Stream to write the terminal output to
+     * @param terminalCharset Character set of the terminal
+     */
+    protected ANSITerminal(
+            InputDecoder inputDecoder,
+            OutputStream terminalOutput,
+            Charset terminalCharset) {
+
+        super(inputDecoder, terminalOutput, terminalCharset);
+        this.escapeSequenceCache = new EscapeSequenceCache();
+        this.cursorPositionSequence = new byte[32];
+        this.inPrivateMode = false;
+        this.requestedMouseCaptureMode = null;
+        this.mouseCaptureMode = null;
+        this.sizeQueryMonitor = new Object();
+        this.asynchronousSizeTracking = false;
+        this.sizeQueryInFlight = false;
+        this.positionQueryInFlight = false;
+        this.resizeNotifier = null;
         getInputDecoder().addProfile(getDefaultKeyDecodingProfile());
     }
 
@@ -73,15 +125,6 @@ public abstract class ANSITerminal extends StreamBasedTerminal implements Extend
         writeToTerminal(completeSequence);
     }
 
-    private void writeSGRSequenceToTerminal(byte... sgrParameters) throws IOException {
-        byte[] completeSequence = new byte[sgrParameters.length + 3];
-        completeSequence[0] = (byte)0x1b;
-        completeSequence[1] = (byte)'[';
-        completeSequence[completeSequence.length - 1] = (byte)'m';
-        System.arraycopy(sgrParameters, 0, completeSequence, 2, sgrParameters.length);
-        writeToTerminal(completeSequence);
-    }
-
     private void writeOSCSequenceToTerminal(byte... tail) throws IOException {
         byte[] completeSequence = new byte[tail.length + 2];
         completeSequence[0] = (byte)0x1b;
@@ -92,19 +135,180 @@ public abstract class ANSITerminal extends StreamBasedTerminal implements Extend
 
     // Final because we handle the onResized logic here; extending classes should override #findTerminalSize instead
     @Override
-    public final synchronized TerminalSize getTerminalSize() throws IOException {
-        TerminalSize size = findTerminalSize();
-        onResized(size);
-        return size;
+    public final TerminalSize getTerminalSize() throws IOException {
+        if(asynchronousSizeTracking) {
+            TerminalSize size = getLastKnownSize();
+            if(size != null) {
+                return size;
+            }
+        }
+        synchronized(this) {
+            TerminalSize size = findTerminalSize();
+            onResized(size);
+            return size;
+        }
+    }
+
+    /**
+     * Turns asynchronous size tracking on or off. It is off by default, which means every call to
+     * {@link #getTerminalSize()} asks the terminal for its size and waits for the answer, for up to 5 seconds. With
+     * asynchronous size tracking on, {@link #getTerminalSize()} returns the last known size right away and the size is
+     * instead kept up to date in the background, through {@link #requestTerminalSizeUpdate()} (which is called on
+     * resize signals where those are available) and resize notifications sent by the terminal itself. Resize listeners
+     * are notified on a separate thread, so whoever reads the answer from the input isn't held up by them.
+     * <p>
+     * Please note that the answers to size requests come in through the input stream, so they are picked up when the
+     * input is read.
+     * @param enabled {@code true} to track the size asynchronously, {@code false} to query it on every call
+     * @throws IOException If there was an I/O error when requesting the current size
+     */
+    public void setAsynchronousSizeTracking(boolean enabled) throws IOException {
+        asynchronousSizeTracking = enabled;
+        if(enabled) {
+            requestTerminalSizeUpdate();
+        }
+    }
+
+    /**
+     * Returns {@code true} if asynchronous size tracking is on, see {@link #setAsynchronousSizeTracking(boolean)}
+     * @return {@code true} if asynchronous size tracking is on
+     */
+    public boolean isAsynchronousSizeTracking() {
+        return asynchronousSizeTracking;
+    }
+
+    /**
+     * Asks the terminal for its size without waiting for the answer. When the answer is read from the input, the
+     * resize listeners will be notified if the size has changed. If a request is already waiting for its answer, this
+     * only makes sure another request is sent once that answer has arrived, so calling this many times in a row (for
+     * example when the user is dragging the window border) doesn't flood the terminal. The same goes while a cursor
+     * position is being asked for through {@link #getCursorPosition()}, since the answers can't be told apart.
+     * @throws IOException If there was an I/O error when writing the request
+     */
+    public void requestTerminalSizeUpdate() throws IOException {
+        synchronized(sizeQueryMonitor) {
+            if(positionQueryInFlight || (sizeQueryInFlight && System.currentTimeMillis() < sizeQueryDeadline)) {
+                sizeQueryRepeat = true;
+                return;
+            }
+            sizeQueryInFlight = true;
+            sizeQueryRepeat = false;
+            sizeQueryDeadline = System.currentTimeMillis() + 5000;
+
+            // Same request as findTerminalSize() but written in one go, bypassing the synchronized cursor methods
+            writeToTerminal("\u001b[s\u001b[5000;5000H\u001b[6n\u001b[u".getBytes(getCharset()));
+            flush();
+        }
+    }
+
+    @Override
+    boolean adoptRequestedCursorPositionReport(TerminalPosition position) {
+        boolean repeat;
+        synchronized(sizeQueryMonitor) {
+            if(!sizeQueryInFlight) {
+                return false;
+            }
+            sizeQueryInFlight = false;
+            if(System.currentTimeMillis() > sizeQueryDeadline) {
+                // The terminal never answered, this report is for someone else
+                return false;
+            }
+            repeat = sizeQueryRepeat;
+            notifyResized(new TerminalSize(position.getColumn(), position.getRow()));
+        }
+        if(repeat) {
+            try {
+                requestTerminalSizeUpdate();
+            }
+            catch(IOException ignore) {
+                // We'll get another chance on the next resize
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Asks the terminal where the cursor is and waits for the answer. An asynchronous size request that is still
+     * waiting for its answer is let through first, and new ones are held back until this answer has arrived, so only
+     * one report is expected at any time and it can't be mistaken for the answer to another request.
+     * @param querySize If {@code true}, moves the cursor to the bottom-right corner for the report, which then gives
+     *                  the size of the terminal
+     * @return Position reported by the terminal, 1-indexed, or {@code null} if it didn't answer in time
+     */
+    private synchronized TerminalPosition queryCursorPosition(boolean querySize) throws IOException {
+        awaitSizeQueryAnswer();
+        try {
+            if(querySize) {
+                saveCursorPosition();
+                setCursorPosition(5000, 5000);
+            }
+            resetMemorizedCursorPosition();
+            reportPosition();
+            if(querySize) {
+                restoreCursorPosition();
+            }
+            return waitForCursorPositionReport();
+        }
+        finally {
+            boolean repeat;
+            synchronized(sizeQueryMonitor) {
+                positionQueryInFlight = false;
+                repeat = sizeQueryRepeat;
+            }
+            if(repeat) {
+                requestTerminalSizeUpdate();
+            }
+        }
+    }
+
+    private void awaitSizeQueryAnswer() throws IOException {
+        while(true) {
+            long deadline;
+            synchronized(sizeQueryMonitor) {
+                if(!sizeQueryInFlight || System.currentTimeMillis() >= sizeQueryDeadline) {
+                    break;
+                }
+                deadline = sizeQueryDeadline;
+            }
+            if(!readInputForReports(deadline)) {
+                break;
+            }
+        }
+        synchronized(sizeQueryMonitor) {
+            // If the size request was never answered and its answer shows up late, it can't be told apart from ours
+            sizeQueryInFlight = false;
+            positionQueryInFlight = true;
+        }
+    }
+
+    private void notifyResized(final TerminalSize size) {
+        // Size reports can be read on any thread that reads input, so the notifier must be created and fed under the
+        // lock rather than relying on every caller holding it; this also keeps the notifications in order
+        synchronized(sizeQueryMonitor) {
+            if(resizeNotifier == null) {
+                // A single thread that goes away when there's nothing to do
+                ThreadFactory threadFactory = new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "LanternaResizeNotifier");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                };
+                resizeNotifier = new ThreadPoolExecutor(
+                        0, 1, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+            }
+            resizeNotifier.execute(new Runnable() {
+                @Override
+                public void run() {
+                    onResized(size);
+                }
+            });
+        }
     }
 
     protected TerminalSize findTerminalSize() throws IOException {
-        saveCursorPosition();
-        setCursorPosition(5000, 5000);
-        resetMemorizedCursorPosition();
-        reportPosition();
-        restoreCursorPosition();
-        TerminalPosition terminalPosition = waitForCursorPositionReport();
+        TerminalPosition terminalPosition = queryCursorPosition(true);
         if (terminalPosition == null) {
             terminalPosition = new TerminalPosition(80,24);
         }
@@ -129,12 +333,12 @@ public abstract class ANSITerminal extends StreamBasedTerminal implements Extend
 
     @Override
     public void setForegroundColor(TextColor color) throws IOException {
-        writeSGRSequenceToTerminal(color.getForegroundSGRSequence());
+        writeToTerminal(escapeSequenceCache.getForegroundSequence(color));
     }
 
     @Override
     public void setBackgroundColor(TextColor color) throws IOException {
-        writeSGRSequenceToTerminal(color.getBackgroundSGRSequence());
+        writeToTerminal(escapeSequenceCache.getBackgroundSequence(color));
     }
 
     @Override
@@ -253,7 +457,15 @@ public abstract class ANSITerminal extends StreamBasedTerminal implements Extend
 
     @Override
     public void setCursorPosition(int x, int y) throws IOException {
-        writeCSISequenceToTerminal(((y + 1) + ";" + (x + 1) + "H").getBytes());
+        synchronized(cursorPositionSequence) {
+            cursorPositionSequence[0] = (byte)0x1b;
+            cursorPositionSequence[1] = (byte)'[';
+            int length = EscapeSequenceCache.writeNumber(y + 1, cursorPositionSequence, 2);
+            cursorPositionSequence[length++] = (byte)';';
+            length = EscapeSequenceCache.writeNumber(x + 1, cursorPositionSequence, length);
+            cursorPositionSequence[length++] = (byte)'H';
+            writeToTerminal(cursorPositionSequence, 0, length);
+        }
     }
 
     @Override
@@ -262,12 +474,77 @@ public abstract class ANSITerminal extends StreamBasedTerminal implements Extend
     }
 
     @Override
-    public synchronized TerminalPosition getCursorPosition() throws IOException {
-        resetMemorizedCursorPosition();
-        reportPosition();
+    public void carriageReturn() throws IOException {
+        writeToTerminal((byte)'\r');
+    }
+
+    @Override
+    public void lineFeed() throws IOException {
+        writeToTerminal((byte)'\n');
+    }
+
+    @Override
+    public void moveCursorUp(int rows) throws IOException {
+        writeCSISequenceWithNumberToTerminal(rows, (byte)'A');
+    }
+
+    @Override
+    public void moveCursorDown(int rows) throws IOException {
+        writeCSISequenceWithNumberToTerminal(rows, (byte)'B');
+    }
+
+    @Override
+    public void moveCursorForward(int columns) throws IOException {
+        writeCSISequenceWithNumberToTerminal(columns, (byte)'C');
+    }
+
+    @Override
+    public void moveCursorBackward(int columns) throws IOException {
+        writeCSISequenceWithNumberToTerminal(columns, (byte)'D');
+    }
+
+    /**
+     * Tells this terminal whether the terminal emulator on the other end fills erased cells with the current background
+     * color (bce), which xterm and most of its descendants do. This is off by default, since on terminals that don't,
+     * like GNU screen and tmux, erasing cells with a background color set would leave them in the wrong color.
+     * @param backgroundColorErase {@code true} if the terminal emulator has background color erase
+     */
+    public void setBackgroundColorErase(boolean backgroundColorErase) {
+        this.backgroundColorErase = backgroundColorErase;
+    }
+
+    @Override
+    public boolean isBackgroundColorErase() {
+        return backgroundColorErase;
+    }
 
+    @Override
+    public void eraseCharacters(int count) throws IOException {
+        writeCSISequenceWithNumberToTerminal(count, (byte)'X');
+    }
+
+    @Override
+    public void eraseToEndOfLine() throws IOException {
+        writeCSISequenceToTerminal((byte)'K');
+    }
+
+    private void writeCSISequenceWithNumberToTerminal(int number, byte command) throws IOException {
+        if(number <= 0) {
+            return;
+        }
+        synchronized(cursorPositionSequence) {
+            cursorPositionSequence[0] = (byte)0x1b;
+            cursorPositionSequence[1] = (byte)'[';
+            int length = EscapeSequenceCache.writeNumber(number, cursorPositionSequence, 2);
+            cursorPositionSequence[length++] = command;
+            writeToTerminal(cursorPositionSequence, 0, length);
+        }
+    }
+
+    @Override
+    public synchronized TerminalPosition getCursorPosition() throws IOException {
         // ANSI terminal positions are 1-indexed so top-left corner is 1x1 instead of 0x0, that's why we need to adjust it here
-        TerminalPosition terminalPosition = waitForCursorPositionReport();
+        TerminalPosition terminalPosition = queryCursorPosition(false);
         if (terminalPosition == null) {
             terminalPosition = TerminalPosition.OFFSET_1x1;
         }
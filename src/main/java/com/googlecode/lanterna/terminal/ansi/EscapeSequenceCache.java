@@ -0,0 +1,137 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal.ansi;
+
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.terminal.RecentlyUsedMap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache of complete, already encoded ANSI escape sequences that {@code ANSITerminal} writes very often. The SGR
+ * sequences for setting the foreground and background to any of the ANSI colors and the 256 indexed colors are built
+ * once when the class is loaded, RGB colors are built on first use and the most recently used ones are kept. There is
+ * also a table of the decimal digits for the numbers that typically appear in cursor positioning sequences.
+ * <p>
+ * The returned arrays are shared and must not be modified.
+ * @author Martin
+ */
+class EscapeSequenceCache {
+    private static final int RGB_CACHE_SIZE = 256;
+    private static final int NUMBER_CACHE_SIZE = 1000;
+
+    private static final Map<TextColor, byte[]> FOREGROUND_SEQUENCES;
+    private static final Map<TextColor, byte[]> BACKGROUND_SEQUENCES;
+    private static final byte[][] NUMBERS;
+
+    static {
+        FOREGROUND_SEQUENCES = new HashMap<TextColor, byte[]>();
+        BACKGROUND_SEQUENCES = new HashMap<TextColor, byte[]>();
+        for(TextColor.ANSI color: TextColor.ANSI.values()) {
+            FOREGROUND_SEQUENCES.put(color, toSGRSequence(color.getForegroundSGRSequence()));
+            BACKGROUND_SEQUENCES.put(color, toSGRSequence(color.getBackgroundSGRSequence()));
+        }
+        for(int i = 0; i < 256; i++) {
+            TextColor color = new TextColor.Indexed(i);
+            FOREGROUND_SEQUENCES.put(color, toSGRSequence(color.getForegroundSGRSequence()));
+            BACKGROUND_SEQUENCES.put(color, toSGRSequence(color.getBackgroundSGRSequence()));
+        }
+        NUMBERS = new byte[NUMBER_CACHE_SIZE][];
+        for(int i = 0; i < NUMBER_CACHE_SIZE; i++) {
+            NUMBERS[i] = Integer.toString(i).getBytes();
+        }
+    }
+
+    private final Map<TextColor, byte[]> rgbForegroundSequences;
+    private final Map<TextColor, byte[]> rgbBackgroundSequences;
+
+    EscapeSequenceCache() {
+        this.rgbForegroundSequences = new RecentlyUsedMap<TextColor, byte[]>(RGB_CACHE_SIZE);
+        this.rgbBackgroundSequences = new RecentlyUsedMap<TextColor, byte[]>(RGB_CACHE_SIZE);
+    }
+
+    /**
+     * Returns the complete escape sequence (including CSI and the trailing 'm') that sets the foreground color
+     * @param color Color to get the sequence for
+     * @return Escape sequence that sets the foreground color
+     */
+    byte[] getForegroundSequence(TextColor color) {
+        byte[] sequence = FOREGROUND_SEQUENCES.get(color);
+        if(sequence != null) {
+            return sequence;
+        }
+        if(color instanceof TextColor.RGB) {
+            synchronized(rgbForegroundSequences) {
+                sequence = rgbForegroundSequences.get(color);
+                if(sequence == null) {
+                    sequence = toSGRSequence(color.getForegroundSGRSequence());
+                    rgbForegroundSequences.put(color, sequence);
+                }
+                return sequence;
+            }
+        }
+        return toSGRSequence(color.getForegroundSGRSequence());
+    }
+
+    /**
+     * Returns the complete escape sequence (including CSI and the trailing 'm') that sets the background color
+     * @param color Color to get the sequence for
+     * @return Escape sequence that sets the background color
+     */
+    byte[] getBackgroundSequence(TextColor color) {
+        byte[] sequence = BACKGROUND_SEQUENCES.get(color);
+        if(sequence != null) {
+            return sequence;
+        }
+        if(color instanceof TextColor.RGB) {
+            synchronized(rgbBackgroundSequences) {
+                sequence = rgbBackgroundSequences.get(color);
+                if(sequence == null) {
+                    sequence = toSGRSequence(color.getBackgroundSGRSequence());
+                    rgbBackgroundSequences.put(color, sequence);
+                }
+                return sequence;
+            }
+        }
+        return toSGRSequence(color.getBackgroundSGRSequence());
+    }
+
+    /**
+     * Writes the decimal representation of a non-negative number into an array
+     * @param number Number to write
+     * @param target Array to write the digits to
+     * @param offset Index in the array to start writing at
+     * @return Index in the array right after the last digit
+     */
+    static int writeNumber(int number, byte[] target, int offset) {
+        byte[] digits = number >= 0 && number < NUMBER_CACHE_SIZE ? NUMBERS[number] : Integer.toString(number).getBytes();
+        System.arraycopy(digits, 0, target, offset, digits.length);
+        return offset + digits.length;
+    }
+
+    private static byte[] toSGRSequence(byte[] sgrParameters) {
+        byte[] completeSequence = new byte[sgrParameters.length + 3];
+        completeSequence[0] = (byte)0x1b;
+        completeSequence[1] = (byte)'[';
+        completeSequence[completeSequence.length - 1] = (byte)'m';
+        System.arraycopy(sgrParameters, 0, completeSequence, 2, sgrParameters.length);
+        return completeSequence;
+    }
+}
@@ -0,0 +1,704 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal.ansi;
+
+import com.googlecode.lanterna.input.InputDecoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Telnet server that, unlike {@link TelnetTerminalServer}, doesn't need a thread per connected client. All connections
+ * are served by a small pool of event loops using non-blocking channels: the loops accept new clients, read their
+ * input, handle the telnet option negotiation (including NAWS resize notifications), decode the bytes into characters
+ * and write the pending output with gathering writes. What the application sees is the same as with
+ * {@code TelnetTerminalServer}: {@code acceptConnection()} returns a {@code TelnetTerminal} for each new client.
+ * <p>
+ * The terminals don't have any threads of their own; key strokes are decoded from the characters the event loop has
+ * added when the application asks for them. Output is buffered by the terminal until it is flushed, then written
+ * directly if the client can take it and otherwise handed over to the event loop. If a client falls too far behind,
+ * flushing will block until the event loop has caught up. Resize listeners are notified on a separate thread,
+ * "LanternaTelnetEvents", so that slow listeners can't hold up the event loops.
+ * <p>
+ * Errors that aren't tied to a single client, such as a failing {@code select()} or {@code accept()}, don't stop the
+ * event loops; they are reported to the {@link ExceptionHandler}, see {@link #setExceptionHandler(ExceptionHandler)},
+ * and the failing operation is retried after a pause.
+ * <p>
+ * Closing the server closes all connections made through it.
+ * @author Martin
+ * @see TelnetTerminalServer
+ * @see TelnetTerminal
+ */
+@SuppressWarnings("WeakerAccess")
+public class NIOTelnetTerminalServer {
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int MAX_PENDING_OUTPUT = 1024 * 1024;
+    private static final long ERROR_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Charset charset;
+    private final ServerSocketChannel serverSocketChannel;
+    private final EventLoop[] eventLoops;
+    private final ExecutorService eventExecutor;
+    private final Queue<TelnetTerminal> acceptedTerminals;
+    private int nextEventLoop;
+    private volatile ExceptionHandler exceptionHandler;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new NIOTelnetTerminalServer on a specific port, with one event loop per available processor
+     * @param port Port to listen for incoming telnet connections
+     * @throws IOException If there was an underlying I/O exception
+     */
+    public NIOTelnetTerminalServer(int port) throws IOException {
+        this(port, Charset.defaultCharset());
+    }
+
+    /**
+     * Creates a new NIOTelnetTerminalServer on a specific port, using a certain character set, with one event loop per
+     * available processor
+     * @param port Port to listen for incoming telnet connections
+     * @param charset Character set to use
+     * @throws IOException If there was an underlying I/O exception
+     */
+    public NIOTelnetTerminalServer(int port, Charset charset) throws IOException {
+        this(port, charset, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new NIOTelnetTerminalServer on a specific port, using a certain character set and number of event
+     * loops
+     * @param port Port to listen for incoming telnet connections, use 0 to pick any free port
+     * @param charset Character set to use
+     * @param eventLoopCount How many threads to serve the connections with
+     * @throws IOException If there was an underlying I/O exception
+     */
+    public NIOTelnetTerminalServer(int port, Charset charset, int eventLoopCount) throws IOException {
+        if(eventLoopCount < 1) {
+            throw new IllegalArgumentException("NIOTelnetTerminalServer needs at least one event loop");
+        }
+        this.charset = charset;
+        this.acceptedTerminals = new LinkedList<TelnetTerminal>();
+        this.nextEventLoop = 0;
+        this.exceptionHandler = new ExceptionHandler() {
+            @Override
+            public boolean onIOException(IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+
+            @Override
+            public boolean onRuntimeException(RuntimeException e) {
+                e.printStackTrace();
+                return false;
+            }
+        };
+        this.closed = false;
+        this.eventExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "LanternaTelnetEvents");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.configureBlocking(false);
+        serverSocketChannel.socket().bind(new InetSocketAddress(port));
+        this.eventLoops = new EventLoop[eventLoopCount];
+        for(int i = 0; i < eventLoopCount; i++) {
+            eventLoops[i] = new EventLoop(i);
+        }
+        //The first event loop is also accepting the new connections
+        serverSocketChannel.register(eventLoops[0].selector, SelectionKey.OP_ACCEPT);
+        for(EventLoop eventLoop: eventLoops) {
+            eventLoop.thread.start();
+        }
+    }
+
+    /**
+     * Returns the actual server socket channel used by this object. Can be used to tweak settings but be careful!
+     * @return Underlying ServerSocketChannel
+     */
+    public ServerSocketChannel getServerSocketChannel() {
+        return serverSocketChannel;
+    }
+
+    /**
+     * Updates the exception handler used by the event loops. The handler is called on the event loop thread when an
+     * error occurs that isn't tied to a single client connection, such as a failing {@code select()} or
+     * {@code accept()} or a task that threw. Errors on a client connection just close that connection. The default
+     * handler prints the stack trace and keeps the event loop running.
+     * @param exceptionHandler Handler to inspect exceptions
+     */
+    public void setExceptionHandler(ExceptionHandler exceptionHandler) {
+        if(exceptionHandler == null) {
+            throw new IllegalArgumentException("Cannot call setExceptionHandler(null)");
+        }
+        this.exceptionHandler = exceptionHandler;
+    }
+
+    /**
+     * Waits for the next client to connect in to our server and returns a Terminal implementation, TelnetTerminal, that
+     * represents the remote terminal this client is running. The terminal can be used just like any other Terminal, but
+     * keep in mind that all operations are sent over the network.
+     * @return TelnetTerminal for the remote client's terminal
+     * @throws IOException If the server has been closed
+     */
+    public TelnetTerminal acceptConnection() throws IOException {
+        synchronized(acceptedTerminals) {
+            while(acceptedTerminals.isEmpty()) {
+                if(closed) {
+                    throw new ClosedChannelException();
+                }
+                try {
+                    acceptedTerminals.wait();
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for a connection", e);
+                }
+            }
+            return acceptedTerminals.poll();
+        }
+    }
+
+    /**
+     * Closes the server socket and all connections made through this server, then stops the event loops. Any call to
+     * acceptConnection() after this will fail.
+     * @throws IOException If there was an underlying I/O exception
+     */
+    public void close() throws IOException {
+        closed = true;
+        synchronized(acceptedTerminals) {
+            acceptedTerminals.notifyAll();
+        }
+        serverSocketChannel.close();
+        for(EventLoop eventLoop: eventLoops) {
+            eventLoop.stop();
+        }
+        eventExecutor.shutdown();
+    }
+
+    private void onAccepted(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        EventLoop eventLoop = eventLoops[nextEventLoop];
+        nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+        eventLoop.addConnection(channel);
+    }
+
+    private void onTerminalCreated(TelnetTerminal terminal) {
+        synchronized(acceptedTerminals) {
+            acceptedTerminals.add(terminal);
+            acceptedTerminals.notifyAll();
+        }
+    }
+
+    private class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<Runnable> tasks;
+        private final ByteBuffer readBuffer;
+        private final CharBuffer decodeBuffer;
+        private SelectionKey pausedAcceptKey;
+        private long acceptResumeTime;
+        private volatile boolean stopped;
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "LanternaTelnetEventLoop-" + index);
+            this.thread.setDaemon(true);
+            this.tasks = new ConcurrentLinkedQueue<Runnable>();
+            this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            this.decodeBuffer = CharBuffer.allocate(READ_BUFFER_SIZE);
+            this.pausedAcceptKey = null;
+            this.acceptResumeTime = 0;
+            this.stopped = false;
+        }
+
+        /**
+         * Runs a task on the event loop thread, this can be called from any thread
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void stop() {
+            stopped = true;
+            selector.wakeup();
+            LockSupport.unpark(thread);
+        }
+
+        void addConnection(final SocketChannel channel) {
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    Connection connection = new Connection(EventLoop.this, channel);
+                    try {
+                        connection.open();
+                    }
+                    catch(IOException e) {
+                        connection.close(e);
+                        return;
+                    }
+                    onTerminalCreated(connection.terminal);
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            try {
+                while(!stopped) {
+                    try {
+                        select();
+                    }
+                    catch(IOException e) {
+                        if(stopped || exceptionHandler.onIOException(e)) {
+                            break;
+                        }
+                        //Whatever made the selector fail is unlikely to have gone away right away
+                        LockSupport.parkNanos(ERROR_BACKOFF_NANOS);
+                        continue;
+                    }
+                    Runnable task = tasks.poll();
+                    while(task != null && !stopped) {
+                        try {
+                            task.run();
+                        }
+                        catch(RuntimeException e) {
+                            onRuntimeException(e);
+                        }
+                        task = tasks.poll();
+                    }
+                    for(SelectionKey key: selector.selectedKeys()) {
+                        if(stopped) {
+                            break;
+                        }
+                        try {
+                            handleKey(key);
+                        }
+                        catch(RuntimeException e) {
+                            //For example a key that was cancelled while we were looking at it
+                            onRuntimeException(e);
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                }
+            }
+            finally {
+                for(SelectionKey key: selector.keys()) {
+                    if(key.attachment() instanceof Connection) {
+                        ((Connection)key.attachment()).close(null);
+                    }
+                }
+                try {
+                    selector.close();
+                }
+                catch(IOException ignored) {}
+            }
+        }
+
+        private void onRuntimeException(RuntimeException e) {
+            if(exceptionHandler.onRuntimeException(e)) {
+                stopped = true;
+            }
+        }
+
+        /**
+         * Waits for events, but no longer than until accepting should be resumed if it has been paused
+         */
+        private void select() throws IOException {
+            if(pausedAcceptKey == null) {
+                selector.select();
+                return;
+            }
+            long remainingNanos = acceptResumeTime - System.nanoTime();
+            if(remainingNanos > 0) {
+                selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remainingNanos)));
+                remainingNanos = acceptResumeTime - System.nanoTime();
+            }
+            else {
+                selector.selectNow();
+            }
+            if(remainingNanos <= 0) {
+                if(pausedAcceptKey.isValid()) {
+                    pausedAcceptKey.interestOps(SelectionKey.OP_ACCEPT);
+                }
+                pausedAcceptKey = null;
+            }
+        }
+
+        private void handleKey(SelectionKey key) {
+            if(!key.isValid()) {
+                return;
+            }
+            if(key.isAcceptable()) {
+                accept(key);
+                return;
+            }
+            Connection connection = (Connection)key.attachment();
+            try {
+                if(key.isReadable()) {
+                    connection.onReadable(readBuffer, decodeBuffer);
+                }
+                if(key.isValid() && key.isWritable()) {
+                    connection.output.onWritable();
+                }
+            }
+            catch(IOException e) {
+                connection.close(e);
+            }
+            catch(RuntimeException e) {
+                //Most likely a malformed command from the client, drop it rather than the whole event loop
+                connection.close(new IOException("Error while serving telnet client", e));
+            }
+        }
+
+        private void accept(SelectionKey key) {
+            try {
+                SocketChannel channel = serverSocketChannel.accept();
+                while(channel != null) {
+                    onAccepted(channel);
+                    channel = serverSocketChannel.accept();
+                }
+            }
+            catch(IOException e) {
+                if(closed) {
+                    return;
+                }
+                if(exceptionHandler.onIOException(e)) {
+                    stopped = true;
+                    return;
+                }
+                //Typically out of file descriptors; the pending client stays in the backlog and would make every
+                //select() return right away, so stop accepting for a while instead of spinning
+                key.interestOps(0);
+                pausedAcceptKey = key;
+                acceptResumeTime = System.nanoTime() + ERROR_BACKOFF_NANOS;
+            }
+        }
+    }
+
+    /**
+     * State of one client connection, everything here except the output stream is only used on the event loop thread
+     */
+    private class Connection {
+        private final EventLoop eventLoop;
+        private final SocketChannel channel;
+        private final InputDecoder inputDecoder;
+        private final CharsetDecoder charsetDecoder;
+        private final ConnectionOutputStream output;
+        private SelectionKey key;
+        private TelnetTerminal terminal;
+        private byte[] undecodedBytes;
+        private boolean inputPaused;
+
+        Connection(EventLoop eventLoop, SocketChannel channel) {
+            this.eventLoop = eventLoop;
+            this.channel = channel;
+            this.inputDecoder = new InputDecoder();
+            this.charsetDecoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.output = new ConnectionOutputStream(this);
+            this.key = null;
+            this.terminal = null;
+            this.undecodedBytes = new byte[0];
+            this.inputPaused = false;
+        }
+
+        void open() throws IOException {
+            key = channel.register(eventLoop.selector, SelectionKey.OP_READ, this);
+            inputDecoder.setInputSpaceListener(new Runnable() {
+                @Override
+                public void run() {
+                    eventLoop.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            resumeInput();
+                        }
+                    });
+                }
+            });
+            terminal = new TelnetTerminal(channel.socket(), inputDecoder, output, charset, eventExecutor);
+        }
+
+        void onReadable(ByteBuffer readBuffer, CharBuffer decodeBuffer) throws IOException {
+            readBuffer.clear();
+            int readBytes = channel.read(readBuffer);
+            if(readBytes == -1) {
+                decode(ByteBuffer.wrap(undecodedBytes), decodeBuffer, true);
+                close(null);
+                return;
+            }
+            int dataBytes = terminal.getIACParser().parse(readBuffer.array(), 0, readBytes);
+            ByteBuffer data;
+            if(undecodedBytes.length == 0) {
+                data = ByteBuffer.wrap(readBuffer.array(), 0, dataBytes);
+            }
+            else {
+                //A multi-byte character was split between two reads
+                byte[] joined = Arrays.copyOf(undecodedBytes, undecodedBytes.length + dataBytes);
+                System.arraycopy(readBuffer.array(), 0, joined, undecodedBytes.length, dataBytes);
+                data = ByteBuffer.wrap(joined);
+            }
+            decode(data, decodeBuffer, false);
+            undecodedBytes = new byte[data.remaining()];
+            data.get(undecodedBytes);
+        }
+
+        private void decode(ByteBuffer data, CharBuffer decodeBuffer, boolean endOfInput) {
+            CoderResult result;
+            do {
+                decodeBuffer.clear();
+                result = charsetDecoder.decode(data, decodeBuffer, endOfInput);
+                if(endOfInput && !result.isOverflow()) {
+                    result = charsetDecoder.flush(decodeBuffer);
+                }
+                addInput(decodeBuffer);
+            }
+            while(result.isOverflow());
+        }
+
+        private void addInput(CharBuffer decodeBuffer) {
+            decodeBuffer.flip();
+            if(decodeBuffer.hasRemaining() &&
+                    !inputDecoder.addInput(decodeBuffer.array(), 0, decodeBuffer.remaining()) &&
+                    !inputPaused) {
+                //The application isn't keeping up, stop reading from this client until it has caught up
+                inputPaused = true;
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        }
+
+        private void resumeInput() {
+            if(inputPaused && key.isValid()) {
+                inputPaused = false;
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Makes the event loop write the pending output once the client can take it, this can be called from any thread
+         */
+        void requestWrite() {
+            if(Thread.currentThread() == eventLoop.thread) {
+                enableWriteInterest();
+            }
+            else {
+                eventLoop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        enableWriteInterest();
+                    }
+                });
+            }
+        }
+
+        private void enableWriteInterest() {
+            if(key != null && key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+
+        void disableWriteInterest() {
+            if(key != null && key.isValid()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+        }
+
+        void close(IOException cause) {
+            output.close();
+            try {
+                channel.close();
+            }
+            catch(IOException ignored) {}
+            inputDecoder.endOfInput(cause);
+        }
+    }
+
+    /**
+     * This interface defines an exception handler for the event loops of a {@link NIOTelnetTerminalServer}. It's
+     * called on the event loop thread, so it should return quickly.
+     */
+    public interface ExceptionHandler {
+        /**
+         * Will be called when an IOException has occurred on an event loop, outside of any client connection
+         * @param e IOException that occurred
+         * @return If you return {@code true}, the event loop will be stopped and all its connections closed
+         */
+        boolean onIOException(IOException e);
+
+        /**
+         * Will be called when a RuntimeException has occurred on an event loop, outside of any client connection
+         * @param e RuntimeException that occurred
+         * @return If you return {@code true}, the event loop will be stopped and all its connections closed
+         */
+        boolean onRuntimeException(RuntimeException e);
+    }
+
+    /**
+     * Output stream for a connection. Written chunks are queued and sent with gathering writes, first directly by the
+     * thread that flushes and, if the client can't take everything at once, by the event loop when the channel becomes
+     * writable.
+     */
+    private static class ConnectionOutputStream extends OutputStream {
+        private final Connection connection;
+        private final Lock lock;
+        private final Condition drained;
+        private final ArrayDeque<ByteBuffer> pending;
+        private long pendingBytes;
+        private boolean closed;
+
+        ConnectionOutputStream(Connection connection) {
+            this.connection = connection;
+            this.lock = new ReentrantLock();
+            this.drained = lock.newCondition();
+            this.pending = new ArrayDeque<ByteBuffer>();
+            this.pendingBytes = 0;
+            this.closed = false;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte)b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if(len == 0) {
+                return;
+            }
+            lock.lock();
+            try {
+                checkOpen();
+                pending.add(ByteBuffer.wrap(Arrays.copyOfRange(b, off, off + len)));
+                pendingBytes += len;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            lock.lock();
+            try {
+                checkOpen();
+                if(writePending()) {
+                    return;
+                }
+                connection.requestWrite();
+                //The event loop itself must never wait here, it's the one that would drain the queue
+                if(Thread.currentThread() != connection.eventLoop.thread) {
+                    while(pendingBytes > MAX_PENDING_OUTPUT && !closed) {
+                        drained.awaitUninterruptibly();
+                    }
+                    checkOpen();
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                closed = true;
+                pending.clear();
+                pendingBytes = 0;
+                drained.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Called on the event loop when the channel can take more data
+         */
+        void onWritable() throws IOException {
+            lock.lock();
+            try {
+                if(closed || writePending()) {
+                    connection.disableWriteInterest();
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Writes as much of the pending output as the channel will take right now, must be called with the lock held
+         * @return {@code true} if everything was written
+         */
+        private boolean writePending() throws IOException {
+            while(!pending.isEmpty()) {
+                long written = connection.channel.write(pending.toArray(new ByteBuffer[pending.size()]));
+                pendingBytes -= written;
+                while(!pending.isEmpty() && !pending.peek().hasRemaining()) {
+                    pending.poll();
+                }
+                if(written == 0) {
+                    break;
+                }
+            }
+            if(pendingBytes <= MAX_PENDING_OUTPUT) {
+                drained.signalAll();
+            }
+            return pending.isEmpty();
+        }
+
+        private void checkOpen() throws IOException {
+            if(closed) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+}
@@ -34,7 +34,6 @@ import com.googlecode.lanterna.input.ScreenInfoCharacterPattern;
 import com.googlecode.lanterna.terminal.AbstractTerminal;
 import com.googlecode.lanterna.TerminalPosition;
 
-import java.io.ByteArrayOutputStream;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.concurrent.TimeUnit;
@@ -46,25 +45,54 @@ import java.util.concurrent.locks.ReentrantLock;
  * this class if your terminal implementation is using standard input and standard output but not ANSI escape codes (in
  * which case you should extend ANSITerminal). This class also contains some automatic UTF-8 to VT100 character
  * conversion when the terminal is not set to read UTF-8.
+ * <p>
+ * All output is collected in an internal buffer and written to the {@code OutputStream} in one go when the terminal is
+ * flushed (or when the buffer grows large), so remember to call {@code flush()} after drawing.
  *
  * @author Martin
  */
 public abstract class StreamBasedTerminal extends AbstractTerminal {
 
     private static final Charset UTF8_REFERENCE = Charset.forName("UTF-8");
+    // If this much output is pending, write it to the stream even though there's no flush yet
+    private static final int MAX_PENDING_OUTPUT = 65536;
+    private static final byte[] VT100_LINE_DRAWING_START = new byte[] { 27, 40, 48 };
+    private static final byte[] VT100_LINE_DRAWING_END = new byte[] { 27, 40, 66 };
 
     private final InputStream terminalInput;
     private final OutputStream terminalOutput;
     private final Charset terminalCharset;
+    private final TerminalOutputBuffer outputBuffer;
 
     private final InputDecoder inputDecoder;
     private final Queue<KeyStroke> keyQueue;
     private final Lock readLock;
+    private final Object cursorPositionReportMonitor;
 
     private volatile TerminalPosition lastReportedCursorPosition;
     
     @SuppressWarnings("WeakerAccess")
     public StreamBasedTerminal(InputStream terminalInput, OutputStream terminalOutput, Charset terminalCharset) {
+        this(terminalInput, null, terminalOutput, terminalCharset);
+    }
+
+    /**
+     * Creates a terminal that doesn't read its input from a stream; instead the input is passed in to the decoder
+     * through {@code InputDecoder.addInput(..)}, typically by an event loop that is serving many terminals.
+     * @param inputDecoder Decoder, created without a source, that the input will be added to
+     * @param terminalOutput Stream to write the terminal output to
+     * @param terminalCharset Character set of the terminal
+     */
+    protected StreamBasedTerminal(InputDecoder inputDecoder, OutputStream terminalOutput, Charset terminalCharset) {
+        this(null, inputDecoder, terminalOutput, terminalCharset);
+    }
+
+    private StreamBasedTerminal(
+            InputStream terminalInput,
+            InputDecoder inputDecoder,
+            OutputStream terminalOutput,
+            Charset terminalCharset) {
+
         this.terminalInput = terminalInput;
         this.terminalOutput = terminalOutput;
         if(terminalCharset == null) {
@@ -73,9 +101,16 @@ public abstract class StreamBasedTerminal extends AbstractTerminal {
         else {
             this.terminalCharset = terminalCharset;
         }
-        this.inputDecoder = new InputDecoder(new InputStreamReader(this.terminalInput, this.terminalCharset));
+        this.outputBuffer = new TerminalOutputBuffer(this.terminalCharset);
+        if(inputDecoder == null) {
+            this.inputDecoder = new InputDecoder(new InputStreamReader(this.terminalInput, this.terminalCharset));
+        }
+        else {
+            this.inputDecoder = inputDecoder;
+        }
         this.keyQueue = new LinkedList<KeyStroke>();
         this.readLock = new ReentrantLock();
+        this.cursorPositionReportMonitor = new Object();
         this.lastReportedCursorPosition = null;
         //noinspection ConstantConditions
     }
@@ -89,55 +124,90 @@ public abstract class StreamBasedTerminal extends AbstractTerminal {
     @Override
     public void putCharacter(char c) throws IOException {
         if(TerminalTextUtils.isPrintableCharacter(c)) {
-            writeToTerminal(translateCharacter(c));
+            synchronized(terminalOutput) {
+                int vt100Code = getVT100Code(c);
+                if(vt100Code != -1) {
+                    outputBuffer.write(VT100_LINE_DRAWING_START);
+                    outputBuffer.write((byte) vt100Code);
+                    outputBuffer.write(VT100_LINE_DRAWING_END);
+                }
+                else {
+                    outputBuffer.writeCharacter(c);
+                }
+                writePendingOutputIfLarge();
+            }
         }
     }
 
     /**
-     * This method will write a list of bytes directly to the output stream of the terminal.
+     * This method will write a list of bytes to the output buffer of the terminal, they will be sent to the output
+     * stream on the next flush.
      * @param bytes Bytes to write to the terminal (synchronized)
      * @throws java.io.IOException If there was an underlying I/O error
      */
     @SuppressWarnings("WeakerAccess")
     protected void writeToTerminal(byte... bytes) throws IOException {
         synchronized(terminalOutput) {
-            terminalOutput.write(bytes);
+            outputBuffer.write(bytes);
+            writePendingOutputIfLarge();
+        }
+    }
+
+    /**
+     * This method will write a range of bytes from an array to the output buffer of the terminal, they will be sent to
+     * the output stream on the next flush. The bytes are copied, so the array can be reused once this method returns.
+     * @param bytes Array holding the bytes to write to the terminal (synchronized)
+     * @param offset Index of the first byte to write
+     * @param length Number of bytes to write
+     * @throws java.io.IOException If there was an underlying I/O error
+     */
+    @SuppressWarnings("WeakerAccess")
+    protected void writeToTerminal(byte[] bytes, int offset, int length) throws IOException {
+        synchronized(terminalOutput) {
+            outputBuffer.write(bytes, offset, length);
+            writePendingOutputIfLarge();
+        }
+    }
+
+    private void writePendingOutputIfLarge() throws IOException {
+        if(outputBuffer.size() >= MAX_PENDING_OUTPUT) {
+            outputBuffer.writeTo(terminalOutput);
         }
     }
 
     @Override
     public byte[] enquireTerminal(int timeout, TimeUnit timeoutTimeUnit) throws IOException {
         synchronized(terminalOutput) {
-            terminalOutput.write(5);    //ENQ
+            outputBuffer.write((byte)5);    //ENQ
             flush();
         }
         
-        //Wait for input
-        long startTime = System.currentTimeMillis();
-        while(terminalInput.available() == 0) {
-            if(System.currentTimeMillis() - startTime > timeoutTimeUnit.toMillis(timeout)) {
-                return new byte[0];
-            }
-            try { 
-                Thread.sleep(1); 
-            } 
-            catch(InterruptedException e) {
+        //Wait for input, the input stream is read by the decoder so we need to take the answer from there. Waiting for
+        //the lock counts against the same timeout as waiting for the answer.
+        long deadline = System.nanoTime() + timeoutTimeUnit.toNanos(timeout);
+        try {
+            if(!readLock.tryLock(timeout, timeoutTimeUnit)) {
                 return new byte[0];
             }
         }
-        
-        //We have at least one character, read as far as we can and return
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        while(terminalInput.available() > 0) {
-            buffer.write(terminalInput.read());
+        catch(InterruptedException e) {
+            return new byte[0];
+        }
+        try {
+            long timeLeft = Math.max(0, deadline - System.nanoTime());
+            return inputDecoder.readRawInput(timeLeft, TimeUnit.NANOSECONDS).getBytes(terminalCharset);
+        }
+        finally {
+            readLock.unlock();
         }
-        return buffer.toByteArray();
     }
 
     @Override
     public void bell() throws IOException {
-        terminalOutput.write((byte)7);
-        terminalOutput.flush();
+        synchronized(terminalOutput) {
+            outputBuffer.write((byte)7);
+            flush();
+        }
     }
 
     /**
@@ -160,30 +230,93 @@ public abstract class StreamBasedTerminal extends AbstractTerminal {
     /**
      * Waits for up to 5 seconds for a terminal cursor position report to appear in the input stream. If the timeout
      * expires, it will return null. You should have sent the cursor position query already before
-     * calling this method.
+     * calling this method, it will be flushed to the terminal here.
      * @return Current position of the cursor, or null if the terminal didn't report it in time.
      * @throws IOException If there was an I/O error
      */
     synchronized TerminalPosition waitForCursorPositionReport() throws IOException {
-        long startTime = System.currentTimeMillis();
+        flush();
+        long deadline = System.currentTimeMillis() + 5000;
         TerminalPosition cursorPosition = lastReportedCursorPosition;
         while(cursorPosition == null) {
-            if(System.currentTimeMillis() - startTime > 5000) {
+            if(!readInputForReports(deadline)) {
                 //throw new IllegalStateException("Terminal didn't send any position report for 5 seconds, please file a bug with a reproduce!");
                 return null;
             }
-            KeyStroke keyStroke = readInput(false, false);
-            if(keyStroke != null) {
-                keyQueue.add(keyStroke);
-            }
-            else {
-                try { Thread.sleep(1); } catch(InterruptedException ignored) {}
-            }
             cursorPosition = lastReportedCursorPosition;
         }
         return cursorPosition;
     }
 
+    /**
+     * Reads a key stroke from the input so any cursor position report in it is picked up, or if another thread is
+     * reading the input, waits a little while for that thread to pick it up. Key strokes that aren't reports are kept
+     * for the next {@code readInput()}.
+     * @param deadline When to give up, in {@code System.currentTimeMillis()} time
+     * @return {@code false} if the deadline has passed or the thread was interrupted, otherwise {@code true}
+     * @throws IOException If there was an I/O error
+     */
+    boolean readInputForReports(long deadline) throws IOException {
+        long timeLeft = deadline - System.currentTimeMillis();
+        if(timeLeft <= 0) {
+            return false;
+        }
+        if(readLock.tryLock()) {
+            try {
+                KeyStroke keyStroke = inputDecoder.getNextCharacter(timeLeft, TimeUnit.MILLISECONDS);
+                if(keyStroke != null && !adoptCursorPositionReport(keyStroke)) {
+                    keyQueue.add(keyStroke);
+                }
+            }
+            finally {
+                readLock.unlock();
+            }
+        }
+        else {
+            //Another thread is reading input and will pick up the report, but it may also give up the lock
+            //without having seen it, so don't wait too long before checking again
+            synchronized(cursorPositionReportMonitor) {
+                try {
+                    cursorPositionReportMonitor.wait(Math.min(timeLeft, 50));
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Called for every cursor position report read from the input, before it is handed to
+     * {@link #waitForCursorPositionReport()}. Terminals that send position requests without waiting for the answer
+     * can pick up their reports here.
+     * @param position Position that was reported
+     * @return {@code true} if the report was expected and has been taken care of, {@code false} to treat it as usual
+     */
+    boolean adoptRequestedCursorPositionReport(TerminalPosition position) {
+        return false;
+    }
+
+    private boolean adoptCursorPositionReport(KeyStroke keyStroke) {
+        ScreenInfoAction report = ScreenInfoCharacterPattern.tryToAdopt(keyStroke);
+        if(report != null && adoptRequestedCursorPositionReport(report.getPosition())) {
+            synchronized(cursorPositionReportMonitor) {
+                cursorPositionReportMonitor.notifyAll();
+            }
+            return true;
+        }
+        if(lastReportedCursorPosition == null && report != null) {
+            synchronized(cursorPositionReportMonitor) {
+                lastReportedCursorPosition = report.getPosition();
+                cursorPositionReportMonitor.notifyAll();
+            }
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public KeyStroke pollInput() throws IOException {
         return readInput(false, true);
@@ -213,11 +346,7 @@ public abstract class StreamBasedTerminal extends AbstractTerminal {
             }
             try {
                 KeyStroke key = inputDecoder.getNextCharacter(blocking);
-                ScreenInfoAction report = ScreenInfoCharacterPattern.tryToAdopt(key);
-                if (lastReportedCursorPosition == null && report != null) {
-                    lastReportedCursorPosition = report.getPosition();
-                }
-                else {
+                if(!adoptCursorPositionReport(key)) {
                     return key;
                 }
             }
@@ -230,6 +359,7 @@ public abstract class StreamBasedTerminal extends AbstractTerminal {
     @Override
     public void flush() throws IOException {
         synchronized(terminalOutput) {
+            outputBuffer.writeTo(terminalOutput);
             terminalOutput.flush();
         }
     }
@@ -238,7 +368,9 @@ public abstract class StreamBasedTerminal extends AbstractTerminal {
     public void close() throws IOException {
         // Should we close the input/output streams here?
         // If someone uses lanterna just temporarily and want to switch back to using System.out/System.in manually,
-        // they won't be too happy if we closed the streams
+        // they won't be too happy if we closed the streams. The decoder only reads from the stream when asked for a
+        // key stroke, so after this it won't take any input that isn't meant for us any more.
+        inputDecoder.shutdown();
     }
 
     protected Charset getCharset() {
@@ -247,87 +379,106 @@ public abstract class StreamBasedTerminal extends AbstractTerminal {
 
     @SuppressWarnings("WeakerAccess")
     protected byte[] translateCharacter(char input) {
+        int vt100Code = getVT100Code(input);
+        if(vt100Code != -1) {
+            return convertToVT100((char) vt100Code);
+        }
+        return convertToCharset(input);
+    }
+
+    /**
+     * Returns the VT100 line drawing code to use for a character if the terminal isn't using UTF-8 and the character
+     * has a VT100 equivalent
+     * @param input Character to translate
+     * @return VT100 code to output instead of the character, or -1 if the character should be written as-is
+     */
+    private int getVT100Code(char input) {
         if(UTF8_REFERENCE != null && UTF8_REFERENCE == terminalCharset) {
-            return convertToCharset(input);
+            return -1;
         }
         //Convert ACS to ordinary terminal codes
         switch(input) {
             case Symbols.ARROW_DOWN:
-                return convertToVT100('v');
+                return 'v';
             case Symbols.ARROW_LEFT:
-                return convertToVT100('<');
+                return '<';
             case Symbols.ARROW_RIGHT:
-                return convertToVT100('>');
+                return '>';
             case Symbols.ARROW_UP:
-                return convertToVT100('^');
+                return '^';
             case Symbols.BLOCK_DENSE:
             case Symbols.BLOCK_MIDDLE:
             case Symbols.BLOCK_SOLID:
             case Symbols.BLOCK_SPARSE:
-                return convertToVT100((char) 97);
+                return 97;
             case Symbols.HEART:
             case Symbols.CLUB:
             case Symbols.SPADES:
-                return convertToVT100('?');
+                return '?';
             case Symbols.FACE_BLACK:
             case Symbols.FACE_WHITE:
             case Symbols.DIAMOND:
-                return convertToVT100((char) 96);
+                return 96;
             case Symbols.BULLET:
-                return convertToVT100((char) 102);
+                return 102;
             case Symbols.DOUBLE_LINE_CROSS:
             case Symbols.SINGLE_LINE_CROSS:
-                return convertToVT100((char) 110);
+                return 110;
             case Symbols.DOUBLE_LINE_HORIZONTAL:
             case Symbols.SINGLE_LINE_HORIZONTAL:
-                return convertToVT100((char) 113);
+                return 113;
             case Symbols.DOUBLE_LINE_BOTTOM_LEFT_CORNER:
             case Symbols.SINGLE_LINE_BOTTOM_LEFT_CORNER:
-                return convertToVT100((char) 109);
+                return 109;
             case Symbols.DOUBLE_LINE_BOTTOM_RIGHT_CORNER:
             case Symbols.SINGLE_LINE_BOTTOM_RIGHT_CORNER:
-                return convertToVT100((char) 106);
+                return 106;
             case Symbols.DOUBLE_LINE_T_DOWN:
             case Symbols.SINGLE_LINE_T_DOWN:
             case Symbols.DOUBLE_LINE_T_SINGLE_DOWN:
             case Symbols.SINGLE_LINE_T_DOUBLE_DOWN:
-                return convertToVT100((char) 119);
+                return 119;
             case Symbols.DOUBLE_LINE_T_LEFT:
             case Symbols.SINGLE_LINE_T_LEFT:
             case Symbols.DOUBLE_LINE_T_SINGLE_LEFT:
             case Symbols.SINGLE_LINE_T_DOUBLE_LEFT:
-                return convertToVT100((char) 117);
+                return 117;
             case Symbols.DOUBLE_LINE_T_RIGHT:
             case Symbols.SINGLE_LINE_T_RIGHT:
             case Symbols.DOUBLE_LINE_T_SINGLE_RIGHT:
             case Symbols.SINGLE_LINE_T_DOUBLE_RIGHT:
-                return convertToVT100((char) 116);
+                return 116;
             case Symbols.DOUBLE_LINE_T_UP:
             case Symbols.SINGLE_LINE_T_UP:
             case Symbols.DOUBLE_LINE_T_SINGLE_UP:
             case Symbols.SINGLE_LINE_T_DOUBLE_UP:
-                return convertToVT100((char) 118);
+                return 118;
             case Symbols.DOUBLE_LINE_TOP_LEFT_CORNER:
             case Symbols.SINGLE_LINE_TOP_LEFT_CORNER:
-                return convertToVT100((char) 108);
+                return 108;
             case Symbols.DOUBLE_LINE_TOP_RIGHT_CORNER:
             case Symbols.SINGLE_LINE_TOP_RIGHT_CORNER:
-                return convertToVT100((char) 107);
+                return 107;
             case Symbols.DOUBLE_LINE_VERTICAL:
             case Symbols.SINGLE_LINE_VERTICAL:
-                return convertToVT100((char) 120);
+                return 120;
             default:
-                return convertToCharset(input);
+                return -1;
         }
     }
 
     private byte[] convertToVT100(char code) {
         //Warning! This might be terminal type specific!!!!
         //So far it's worked everywhere I've tried it (xterm, gnome-terminal, putty)
-        return new byte[]{27, 40, 48, (byte) code, 27, 40, 66};
+        return new byte[]{
+                VT100_LINE_DRAWING_START[0], VT100_LINE_DRAWING_START[1], VT100_LINE_DRAWING_START[2],
+                (byte) code,
+                VT100_LINE_DRAWING_END[0], VT100_LINE_DRAWING_END[1], VT100_LINE_DRAWING_END[2]};
     }
 
     private byte[] convertToCharset(char input) {
-        return terminalCharset.encode(Character.toString(input)).array();
+        synchronized(terminalOutput) {
+            return outputBuffer.encodeCharacter(input);
+        }
     }
 }
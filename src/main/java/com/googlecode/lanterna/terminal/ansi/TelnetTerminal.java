@@ -19,6 +19,9 @@
 package com.googlecode.lanterna.terminal.ansi;
 
 import static com.googlecode.lanterna.terminal.ansi.TelnetProtocol.*;
+
+import com.googlecode.lanterna.input.InputDecoder;
+
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -29,6 +32,7 @@ import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * This class is used by the {@code TelnetTerminalServer} class when a client has connected in; this class will be the
@@ -46,6 +50,7 @@ public class TelnetTerminal extends ANSITerminal {
     
     private final Socket socket;
     private final NegotiationState negotiationState;
+    private final TelnetClientIACParser iacParser;
 
     TelnetTerminal(Socket socket, Charset terminalCharset) throws IOException {
         this(socket, new TelnetClientIACFilterer(socket.getInputStream()), socket.getOutputStream(), terminalCharset);
@@ -56,6 +61,7 @@ public class TelnetTerminal extends ANSITerminal {
         super(inputStream, outputStream, terminalCharset);
         this.socket = socket;
         this.negotiationState = inputStream.negotiationState;
+        this.iacParser = null;
         inputStream.setEventListener(new TelnetClientEventListener() {
             @Override
             public void onResize(int columns, int rows) {
@@ -65,6 +71,54 @@ public class TelnetTerminal extends ANSITerminal {
             @Override
             public void requestReply(boolean will, byte option) throws IOException {
                 writeToTerminal(COMMAND_IAC, will ? COMMAND_WILL : COMMAND_WONT, option);
+                flush();
+            }
+        });
+        setLineMode0();
+        setEchoOff();
+        setResizeNotificationOn();
+    }
+
+    /**
+     * Creates a telnet terminal for a connection served by {@code NIOTelnetTerminalServer}. This terminal doesn't read
+     * anything by itself, the server's event loop passes the bytes from the client through {@code getIACParser()} and
+     * adds the remaining characters to {@code inputDecoder}.
+     * @param socket Socket of the connection
+     * @param inputDecoder Decoder, created without a source, that the input will be added to
+     * @param outputStream Stream writing to the connection, this must be safe to use from several threads at once since
+     *                     negotiation replies are written to it directly from the event loop
+     * @param terminalCharset Character set of the terminal
+     * @param eventExecutor Executor to notify resize listeners on, so they don't run on the event loop
+     * @throws IOException If there was an I/O error when starting the option negotiation
+     */
+    TelnetTerminal(
+            Socket socket,
+            InputDecoder inputDecoder,
+            final OutputStream outputStream,
+            Charset terminalCharset,
+            final Executor eventExecutor) throws IOException {
+
+        super(inputDecoder, outputStream, terminalCharset);
+        this.socket = socket;
+        this.negotiationState = new NegotiationState();
+        this.iacParser = new TelnetClientIACParser(negotiationState);
+        iacParser.setEventListener(new TelnetClientEventListener() {
+            @Override
+            public void onResize(final int columns, final int rows) {
+                eventExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        TelnetTerminal.this.onResized(columns, rows);
+                    }
+                });
+            }
+
+            @Override
+            public void requestReply(boolean will, byte option) throws IOException {
+                //Bypass the terminal's output buffer, the application may be holding it while waiting for the
+                //event loop to write its output
+                outputStream.write(new byte[] { COMMAND_IAC, will ? COMMAND_WILL : COMMAND_WONT, option });
+                outputStream.flush();
             }
         });
         setLineMode0();
@@ -107,6 +161,15 @@ public class TelnetTerminal extends ANSITerminal {
         return negotiationState;
     }
 
+    /**
+     * Returns the parser that takes the telnet commands out of the data received from the client, only available on
+     * terminals created by {@code NIOTelnetTerminalServer}
+     * @return Parser for the client's input, or {@code null} if this terminal reads its input from the socket itself
+     */
+    TelnetClientIACParser getIACParser() {
+        return iacParser;
+    }
+
     /**
      * Closes the socket to the client, effectively ending the telnet session and the terminal.
      * @throws IOException If there was an underlying I/O error
@@ -200,7 +263,7 @@ public class TelnetTerminal extends ANSITerminal {
         }
     }
     
-    private interface TelnetClientEventListener {
+    interface TelnetClientEventListener {
         void onResize(int columns, int rows);
         void requestReply(boolean will, byte option) throws IOException;
     }
@@ -301,41 +364,7 @@ public class TelnetTerminal extends ANSITerminal {
                 throw new IllegalStateException("State error, we got a command signal from the remote telnet client but "
                         + "not enough characters available in the stream");
             }
-            byte command = buffer[position];
-            byte value = buffer[position + 1];
-            switch(command) {
-                case COMMAND_DO:
-                case COMMAND_DONT:
-                    if(value == OPTION_SUPPRESS_GO_AHEAD) {
-                        negotiationState.suppressGoAhead = (command == COMMAND_DO);
-                        eventListener.requestReply(command == COMMAND_DO, value);
-                    }
-                    else if(value == OPTION_EXTEND_ASCII) {
-                        negotiationState.extendedAscii = (command == COMMAND_DO);
-                        eventListener.requestReply(command == COMMAND_DO, value);
-                    }
-                    else {
-                        negotiationState.onUnsupportedRequestCommand(command == COMMAND_DO, value);
-                    }
-                    break;
-                case COMMAND_WILL:
-                case COMMAND_WONT:
-                    if(value == OPTION_ECHO) {
-                        negotiationState.clientEcho = (command == COMMAND_WILL);
-                    }
-                    else if(value == OPTION_LINEMODE) {
-                        negotiationState.clientLineMode0 = (command == COMMAND_WILL);
-                    }
-                    else if(value == OPTION_NAWS) {
-                       negotiationState.clientResizeNotification = (command == COMMAND_WILL);
-                    }
-                    else {
-                        negotiationState.onUnsupportedStateCommand(command == COMMAND_WILL, value);
-                    }
-                    break;
-                default:
-                    throw new UnsupportedOperationException("No command handler implemented for " + TelnetProtocol.CODE_TO_NAME.get(command));
-            }
+            handleCommand(negotiationState, eventListener, buffer[position], buffer[position + 1]);
         }
         
         private int parseSubNegotiation(byte[] buffer, int position, int max) {
@@ -370,22 +399,187 @@ public class TelnetTerminal extends ANSITerminal {
         }
 
         private void parseSubNegotiation(byte option, byte[] additionalData) {
-            switch(option) {
-                case OPTION_NAWS:
-                    eventListener.onResize(
-                            convertTwoBytesToInt2(additionalData[1], additionalData[0]), 
-                            convertTwoBytesToInt2(additionalData[3], additionalData[2]));
-                    break;
-                case OPTION_LINEMODE:
-                    //We don't parse this, as this is a very complicated command :(
-                    //Let's leave it for now, fingers crossed
-                    break;
-                default:
-                    negotiationState.onUnsupportedSubnegotiation(option, additionalData);
-                    break;
+            handleSubNegotiation(negotiationState, eventListener, option, additionalData);
+        }
+    }
+
+    /**
+     * Incremental parser for the data sent by a telnet client, used when the data arrives in chunks from an event loop
+     * rather than being read from a stream. Commands and subnegotiations are handled the same way as when reading from
+     * the socket directly, but they may be split over any number of chunks.
+     */
+    static class TelnetClientIACParser {
+        private static final int STATE_DATA = 0;
+        private static final int STATE_IAC = 1;
+        private static final int STATE_COMMAND = 2;
+        private static final int STATE_SUBNEGOTIATION = 3;
+        private static final int STATE_SUBNEGOTIATION_IAC = 4;
+        private static final int MAX_SUBNEGOTIATION_LENGTH = 1024;
+
+        private final NegotiationState negotiationState;
+        private final ByteArrayOutputStream subnegotiation;
+        private TelnetClientEventListener eventListener;
+        private int state;
+        private byte command;
+
+        TelnetClientIACParser(NegotiationState negotiationState) {
+            this.negotiationState = negotiationState;
+            this.subnegotiation = new ByteArrayOutputStream();
+            this.eventListener = null;
+            this.state = STATE_DATA;
+            this.command = 0;
+        }
+
+        private void setEventListener(TelnetClientEventListener eventListener) {
+            this.eventListener = eventListener;
+        }
+
+        /**
+         * Takes a chunk of data from the client, handles any telnet commands in it and moves the remaining data bytes
+         * to the start of the chunk
+         * @param buffer Array holding the chunk
+         * @param offset Index of the first byte of the chunk
+         * @param length Number of bytes in the chunk
+         * @return Number of data bytes, which are now placed at {@code offset} in the array
+         * @throws IOException If there was an error replying to the client
+         */
+        int parse(byte[] buffer, int offset, int length) throws IOException {
+            int dataLength = 0;
+            for(int i = offset; i < offset + length; i++) {
+                byte b = buffer[i];
+                switch(state) {
+                    case STATE_DATA:
+                        if(b == COMMAND_IAC) {
+                            state = STATE_IAC;
+                        }
+                        else {
+                            buffer[offset + dataLength++] = b;
+                        }
+                        break;
+                    case STATE_IAC:
+                        if(b == COMMAND_IAC) {   //Double IAC = 255
+                            buffer[offset + dataLength++] = b;
+                            state = STATE_DATA;
+                        }
+                        else if(b == COMMAND_DO || b == COMMAND_DONT || b == COMMAND_WILL || b == COMMAND_WONT) {
+                            command = b;
+                            state = STATE_COMMAND;
+                        }
+                        else if(b == COMMAND_SUBNEGOTIATION) {
+                            subnegotiation.reset();
+                            state = STATE_SUBNEGOTIATION;
+                        }
+                        else {
+                            System.err.println("Unknown Telnet command: " + b);
+                            state = STATE_DATA;
+                        }
+                        break;
+                    case STATE_COMMAND:
+                        handleCommand(negotiationState, eventListener, command, b);
+                        state = STATE_DATA;
+                        break;
+                    case STATE_SUBNEGOTIATION:
+                        if(b == COMMAND_IAC) {
+                            state = STATE_SUBNEGOTIATION_IAC;
+                        }
+                        else {
+                            addToSubnegotiation(b);
+                        }
+                        break;
+                    case STATE_SUBNEGOTIATION_IAC:
+                        if(b == COMMAND_SUBNEGOTIATION_END) {
+                            byte[] subnegotiationData = subnegotiation.toByteArray();
+                            if(subnegotiationData.length > 0) {
+                                handleSubNegotiation(
+                                        negotiationState,
+                                        eventListener,
+                                        subnegotiationData[0],
+                                        Arrays.copyOfRange(subnegotiationData, 1, subnegotiationData.length));
+                            }
+                            state = STATE_DATA;
+                        }
+                        else {
+                            if(b == COMMAND_IAC) {
+                                addToSubnegotiation(b);    //Escaped IAC
+                            }
+                            state = STATE_SUBNEGOTIATION;
+                        }
+                        break;
+                }
+            }
+            return dataLength;
+        }
+
+        private void addToSubnegotiation(byte b) {
+            //Don't let a misbehaving client make us buffer without limit
+            if(subnegotiation.size() < MAX_SUBNEGOTIATION_LENGTH) {
+                subnegotiation.write(b);
             }
         }
     }
+
+    private static void handleCommand(
+            NegotiationState negotiationState,
+            TelnetClientEventListener eventListener,
+            byte command,
+            byte value) throws IOException {
+
+        switch(command) {
+            case COMMAND_DO:
+            case COMMAND_DONT:
+                if(value == OPTION_SUPPRESS_GO_AHEAD) {
+                    negotiationState.suppressGoAhead = (command == COMMAND_DO);
+                    eventListener.requestReply(command == COMMAND_DO, value);
+                }
+                else if(value == OPTION_EXTEND_ASCII) {
+                    negotiationState.extendedAscii = (command == COMMAND_DO);
+                    eventListener.requestReply(command == COMMAND_DO, value);
+                }
+                else {
+                    negotiationState.onUnsupportedRequestCommand(command == COMMAND_DO, value);
+                }
+                break;
+            case COMMAND_WILL:
+            case COMMAND_WONT:
+                if(value == OPTION_ECHO) {
+                    negotiationState.clientEcho = (command == COMMAND_WILL);
+                }
+                else if(value == OPTION_LINEMODE) {
+                    negotiationState.clientLineMode0 = (command == COMMAND_WILL);
+                }
+                else if(value == OPTION_NAWS) {
+                   negotiationState.clientResizeNotification = (command == COMMAND_WILL);
+                }
+                else {
+                    negotiationState.onUnsupportedStateCommand(command == COMMAND_WILL, value);
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException("No command handler implemented for " + TelnetProtocol.CODE_TO_NAME.get(command));
+        }
+    }
+
+    private static void handleSubNegotiation(
+            NegotiationState negotiationState,
+            TelnetClientEventListener eventListener,
+            byte option,
+            byte[] additionalData) {
+
+        switch(option) {
+            case OPTION_NAWS:
+                eventListener.onResize(
+                        convertTwoBytesToInt2(additionalData[1], additionalData[0]),
+                        convertTwoBytesToInt2(additionalData[3], additionalData[2]));
+                break;
+            case OPTION_LINEMODE:
+                //We don't parse this, as this is a very complicated command :(
+                //Let's leave it for now, fingers crossed
+                break;
+            default:
+                negotiationState.onUnsupportedSubnegotiation(option, additionalData);
+                break;
+        }
+    }
     
     private static int convertTwoBytesToInt2(byte b1, byte b2) {
         return ( (b2 & 0xFF) << 8) | (b1 & 0xFF);
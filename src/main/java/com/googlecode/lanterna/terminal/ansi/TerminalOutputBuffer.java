@@ -0,0 +1,171 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal.ansi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Growable byte buffer that collects everything a {@code StreamBasedTerminal} wants to send (text as well as control
+ * sequences) until the terminal is flushed, so the underlying stream sees one large write per flush instead of one
+ * small write per character or escape sequence. Characters are encoded with a single {@code CharsetEncoder} that is
+ * reused for the lifetime of the buffer and, for charsets where it is possible, ASCII characters are copied straight
+ * into the buffer without going through the encoder at all.
+ * <p>
+ * This class is not thread-safe, {@code StreamBasedTerminal} guards it with the same lock as the output stream.
+ * @author Martin
+ */
+class TerminalOutputBuffer {
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final CharsetEncoder encoder;
+    private final boolean asciiCompatible;
+    private final CharBuffer encoderInput;
+    private final ByteBuffer encoderOutput;
+    private byte[] buffer;
+    private int size;
+
+    TerminalOutputBuffer(Charset charset) {
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.encoderInput = CharBuffer.allocate(1);
+        this.encoderOutput = ByteBuffer.allocate((int)Math.ceil(encoder.maxBytesPerChar()) + 16);
+        this.buffer = new byte[INITIAL_CAPACITY];
+        this.size = 0;
+        this.asciiCompatible = isAsciiCompatible();
+    }
+
+    private boolean isAsciiCompatible() {
+        for(char c = 0; c < 0x80; c++) {
+            encode(c);
+            if(encoderOutput.remaining() != 1 || encoderOutput.get(0) != (byte)c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a single byte to the buffer
+     * @param b Byte to add
+     */
+    void write(byte b) {
+        ensureCapacity(1);
+        buffer[size++] = b;
+    }
+
+    /**
+     * Adds a number of bytes to the buffer
+     * @param bytes Array to take the bytes from
+     * @param offset Index of the first byte to add
+     * @param length Number of bytes to add
+     */
+    void write(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+    }
+
+    /**
+     * Adds all bytes from an array to the buffer
+     * @param bytes Bytes to add
+     */
+    void write(byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Encodes a character with the buffer's charset and adds the result to the buffer
+     * @param c Character to add
+     */
+    void writeCharacter(char c) {
+        if(asciiCompatible && c < 0x80) {
+            write((byte)c);
+            return;
+        }
+        encode(c);
+        int length = encoderOutput.remaining();
+        ensureCapacity(length);
+        encoderOutput.get(buffer, size, length);
+        size += length;
+    }
+
+    /**
+     * Encodes a character with the buffer's charset into a new array, without adding it to the buffer
+     * @param c Character to encode
+     * @return Encoded form of the character
+     */
+    byte[] encodeCharacter(char c) {
+        encode(c);
+        byte[] bytes = new byte[encoderOutput.remaining()];
+        encoderOutput.get(bytes);
+        return bytes;
+    }
+
+    private void encode(char c) {
+        encoderInput.clear();
+        encoderInput.put(c);
+        encoderInput.flip();
+        encoderOutput.clear();
+        encoder.reset();
+        encoder.encode(encoderInput, encoderOutput, true);
+        encoder.flush(encoderOutput);
+        encoderOutput.flip();
+    }
+
+    /**
+     * Returns the number of bytes currently in the buffer
+     * @return Number of bytes waiting to be written
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Writes the content of the buffer to a stream with a single call and empties the buffer. This method doesn't
+     * flush the stream.
+     * @param outputStream Stream to write the content to
+     * @throws IOException If there was an underlying I/O error
+     */
+    void writeTo(OutputStream outputStream) throws IOException {
+        if(size == 0) {
+            return;
+        }
+        try {
+            outputStream.write(buffer, 0, size);
+        }
+        finally {
+            size = 0;
+        }
+    }
+
+    private void ensureCapacity(int additionalBytes) {
+        if(size + additionalBytes > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(buffer.length * 2, size + additionalBytes)];
+            System.arraycopy(buffer, 0, newBuffer, 0, size);
+            buffer = newBuffer;
+        }
+    }
+}
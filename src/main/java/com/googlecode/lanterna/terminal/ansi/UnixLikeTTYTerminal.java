@@ -44,8 +44,18 @@ import java.util.List;
 public abstract class UnixLikeTTYTerminal extends UnixLikeTerminal {
 
     private final File ttyDev;
+    private final List<String> pendingSTTYSettings;
     private String sttyStatusToRestore;
 
+    // While acquiring, the settings are collected and applied through a single stty call at the end
+    private boolean deferSTTYSettings;
+    private boolean saveRequested;
+
+    // The modes last applied through stty, null when not known
+    private Boolean keyEcho;
+    private Boolean canonical;
+    private Boolean keyStrokeSignals;
+
     /**
      * Creates a UnixTerminal using a specified input stream, output stream and character set, with a custom size
      * querier instead of using the default one. This way you can override size detection (if you want to force the
@@ -73,6 +83,13 @@ public abstract class UnixLikeTTYTerminal extends UnixLikeTerminal {
                 terminalCtrlCBehaviour);
 
         this.ttyDev = ttyDev;
+        this.pendingSTTYSettings = new ArrayList<String>();
+        this.sttyStatusToRestore = null;
+        this.deferSTTYSettings = false;
+        this.saveRequested = false;
+        this.keyEcho = null;
+        this.canonical = null;
+        this.keyStrokeSignals = null;
 
         // Take ownership of the terminal
         realAcquire();
@@ -84,7 +101,14 @@ public abstract class UnixLikeTTYTerminal extends UnixLikeTerminal {
     }
 
     private void realAcquire() throws IOException {
-        super.acquire();
+        deferSTTYSettings = true;
+        try {
+            super.acquire();
+        }
+        finally {
+            deferSTTYSettings = false;
+        }
+        applySTTYSettings();
     }
 
     @Override
@@ -114,36 +138,103 @@ public abstract class UnixLikeTTYTerminal extends UnixLikeTerminal {
 
     @Override
     protected void saveTerminalSettings() throws IOException {
-        sttyStatusToRestore = exec(getSTTYCommand(), "-g").trim();
+        if(sttyStatusToRestore != null) {
+            // Already saved, what we want to go back to hasn't changed
+            return;
+        }
+        saveRequested = true;
+        if(!deferSTTYSettings) {
+            applySTTYSettings();
+        }
     }
 
     @Override
     protected void restoreTerminalSettings() throws IOException {
         if(sttyStatusToRestore != null) {
+            pendingSTTYSettings.clear();
             exec(getSTTYCommand(), sttyStatusToRestore);
+            keyEcho = null;
+            canonical = null;
+            keyStrokeSignals = null;
         }
     }
 
     @Override
     protected void keyEchoEnabled(boolean enabled) throws IOException {
-        exec(getSTTYCommand(), enabled ? "echo" : "-echo");
+        if(keyEcho != null && keyEcho == enabled) {
+            return;
+        }
+        keyEcho = enabled;
+        changeSTTYSettings(enabled ? "echo" : "-echo");
     }
 
     @Override
     protected void canonicalMode(boolean enabled) throws IOException {
-        exec(getSTTYCommand(), enabled ? "icanon" : "-icanon");
-        if(!enabled) {
-            exec(getSTTYCommand(), "min", "1");
+        if(canonical != null && canonical == enabled) {
+            return;
+        }
+        canonical = enabled;
+        if(enabled) {
+            changeSTTYSettings("icanon");
+        }
+        else {
+            changeSTTYSettings("-icanon", "min", "1");
         }
     }
 
     @Override
     protected void keyStrokeSignalsEnabled(boolean enabled) throws IOException {
+        if(keyStrokeSignals != null && keyStrokeSignals == enabled) {
+            return;
+        }
+        keyStrokeSignals = enabled;
         if(enabled) {
-            exec(getSTTYCommand(), "intr", "^C");
+            changeSTTYSettings("intr", "^C");
         }
         else {
-            exec(getSTTYCommand(), "intr", "undef");
+            changeSTTYSettings("intr", "undef");
+        }
+    }
+
+    private void changeSTTYSettings(String... settings) throws IOException {
+        pendingSTTYSettings.addAll(Arrays.asList(settings));
+        if(!deferSTTYSettings) {
+            applySTTYSettings();
+        }
+    }
+
+    /**
+     * Runs stty once for everything that has been requested since the last call; saving the current settings (which
+     * has to happen before anything is changed) and all the mode changes as arguments to a single stty command.
+     */
+    private void applySTTYSettings() throws IOException {
+        List<String[]> commands = new ArrayList<String[]>(2);
+        if(saveRequested) {
+            commands.add(new String[] { getSTTYCommand(), "-g" });
+        }
+        if(!pendingSTTYSettings.isEmpty()) {
+            List<String> commandLine = new ArrayList<String>(Collections.singletonList(getSTTYCommand()));
+            commandLine.addAll(pendingSTTYSettings);
+            commands.add(commandLine.toArray(new String[commandLine.size()]));
+        }
+        pendingSTTYSettings.clear();
+        if(commands.isEmpty()) {
+            return;
+        }
+        try {
+            String output = exec(commands);
+            if(saveRequested) {
+                saveRequested = false;
+                sttyStatusToRestore = output.trim();
+            }
+        }
+        catch(IOException e) {
+            // We don't know what state the terminal was left in
+            saveRequested = false;
+            keyEcho = null;
+            canonical = null;
+            keyStrokeSignals = null;
+            throw e;
         }
     }
 
@@ -155,16 +246,31 @@ public abstract class UnixLikeTTYTerminal extends UnixLikeTerminal {
     }
 
     protected String exec(String... cmd) throws IOException {
+        return exec(Collections.singletonList(cmd));
+    }
+
+    private String exec(List<String[]> commands) throws IOException {
         if (ttyDev != null) {
             //Here's what we try to do, but that is Java 7+ only:
             // processBuilder.redirectInput(ProcessBuilder.Redirect.from(ttyDev));
             //instead, for Java 6, we join the cmd into a scriptlet with redirection
-            //and replace cmd by a call to sh with the scriptlet:
+            //and replace cmd by a call to sh with the scriptlet. Several commands share the same sh process:
             StringBuilder sb = new StringBuilder();
-            for (String arg : cmd) { sb.append(arg).append(' '); }
-            sb.append("< ").append(ttyDev);
-            cmd = new String[] { "sh", "-c", sb.toString() };
+            for (String[] cmd : commands) {
+                if (sb.length() > 0) { sb.append("&& "); }
+                for (String arg : cmd) { sb.append(arg).append(' '); }
+                sb.append("< ").append(ttyDev).append(' ');
+            }
+            return runProcess("sh", "-c", sb.toString());
+        }
+        StringBuilder output = new StringBuilder();
+        for (String[] cmd : commands) {
+            output.append(runProcess(cmd));
         }
+        return output.toString();
+    }
+
+    private String runProcess(String... cmd) throws IOException {
         ProcessBuilder pb = new ProcessBuilder(cmd);
         Process process = pb.start();
         ByteArrayOutputStream stdoutBuffer = new ByteArrayOutputStream();
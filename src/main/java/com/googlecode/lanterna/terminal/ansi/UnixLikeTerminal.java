@@ -94,7 +94,12 @@ public abstract class UnixLikeTerminal extends ANSITerminal {
             public void run() {
                 // This will trigger a resize notification as the size will be different than before
                 try {
-                    getTerminalSize();
+                    if(isAsynchronousSizeTracking()) {
+                        requestTerminalSizeUpdate();
+                    }
+                    else {
+                        getTerminalSize();
+                    }
                 }
                 catch(IOException ignore) {
                     // Not much to do here, we can't re-throw it
@@ -107,6 +107,11 @@ class AWTTerminalImplementation extends GraphicalTerminalImplementation {
         return component.getWidth();
     }
 
+    @Override
+    protected AWTTerminalFontConfiguration getFontConfiguration() {
+        return fontConfiguration;
+    }
+
     @Override
     protected Font getFontForCharacter(TextCharacter character) {
         return fontConfiguration.getFontForCharacter(character);
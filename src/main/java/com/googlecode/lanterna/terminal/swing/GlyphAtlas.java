@@ -0,0 +1,268 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal.swing;
+
+import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.terminal.RecentlyUsedMap;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Cache of pre-rendered character cells, used to avoid running {@code Graphics.drawString(..)} (and the font fallback
+ * lookup) for every dirty cell on every redraw. Each distinct glyph (character, font, style and cell size) is
+ * rasterized once into a coverage mask and the masks are then turned into colored tiles for each foreground and
+ * background combination that is used. Both masks and tiles are evicted in least-recently-used order once the
+ * capacity is reached. Everything here draws into plain {@link BufferedImage}s, so the atlas works in a headless
+ * environment too.
+ * <p>
+ * Subclasses supply the font configuration, which picks the font for each character and decides whether text is
+ * anti-aliased. A glyph is identified by its character, style and cell size only, so the atlas drops everything it
+ * holds whenever it is handed a different font configuration than the one the cached glyphs were drawn with.
+ * @author Martin
+ */
+abstract class GlyphAtlas {
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private static final int BOLD = 1;
+    private static final int ITALIC = 2;
+    private static final int UNDERLINE = 4;
+    private static final int CROSSED_OUT = 8;
+
+    private final RecentlyUsedMap<Long, byte[]> masks;
+    private final RecentlyUsedMap<TileKey, BufferedImage> tiles;
+    private final TileKey lookupKey;
+    private AWTTerminalFontConfiguration fontConfiguration;
+    private int[] pixels;
+    private BufferedImage scratchImage;
+
+    /**
+     * Creates a new glyph atlas that holds up to 4096 tiles
+     */
+    GlyphAtlas() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new glyph atlas that holds up to {@code capacity} colored tiles and the same number of glyph masks
+     * @param capacity Maximum number of tiles to keep before the least recently used ones are dropped
+     */
+    GlyphAtlas(int capacity) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Glyph atlas capacity must be at least 1, got " + capacity);
+        }
+        this.masks = new RecentlyUsedMap<Long, byte[]>(capacity);
+        this.tiles = new RecentlyUsedMap<TileKey, BufferedImage>(capacity);
+        this.lookupKey = new TileKey();
+        this.fontConfiguration = null;
+        this.pixels = new int[0];
+        this.scratchImage = null;
+    }
+
+    /**
+     * Returns the font configuration that glyphs should currently be drawn with
+     * @return Font configuration to draw the glyphs with
+     */
+    abstract AWTTerminalFontConfiguration getFontConfiguration();
+
+    /**
+     * Returns an image of the character cell fully drawn; background, glyph and any underline or strike-through. The
+     * tile is shared and must not be modified by the caller.
+     * @param character Character to draw
+     * @param foregroundColor Color of the glyph
+     * @param backgroundColor Color of the background
+     * @param characterWidth Width of the cell in pixels (twice the font width for double-width characters)
+     * @param fontHeight Height of the cell in pixels
+     * @return Image of the cell
+     */
+    synchronized BufferedImage getTile(
+            TextCharacter character,
+            Color foregroundColor,
+            Color backgroundColor,
+            int characterWidth,
+            int fontHeight) {
+
+        AWTTerminalFontConfiguration currentFontConfiguration = getFontConfiguration();
+        if(currentFontConfiguration != fontConfiguration) {
+            clear();
+            fontConfiguration = currentFontConfiguration;
+        }
+        long glyphKey = toGlyphKey(character, characterWidth, fontHeight);
+        lookupKey.set(glyphKey, foregroundColor.getRGB(), backgroundColor.getRGB());
+        BufferedImage tile = tiles.get(lookupKey);
+        if(tile == null) {
+            byte[] mask = masks.get(glyphKey);
+            if(mask == null) {
+                mask = rasterize(currentFontConfiguration, character, characterWidth, fontHeight);
+                masks.put(glyphKey, mask);
+            }
+            tile = colorize(mask, foregroundColor.getRGB(), backgroundColor.getRGB(), characterWidth, fontHeight);
+            tiles.put(new TileKey().set(glyphKey, lookupKey.foreground, lookupKey.background), tile);
+        }
+        return tile;
+    }
+
+    /**
+     * Returns how many colored tiles are currently held by the atlas
+     * @return Number of colored tiles in the atlas
+     */
+    synchronized int getTileCount() {
+        return tiles.size();
+    }
+
+    /**
+     * Drops all cached masks and tiles
+     */
+    synchronized void clear() {
+        masks.clear();
+        tiles.clear();
+    }
+
+    private static long toGlyphKey(TextCharacter character, int characterWidth, int fontHeight) {
+        int style = 0;
+        if(character.isBold()) {
+            style |= BOLD;
+        }
+        if(character.isItalic()) {
+            style |= ITALIC;
+        }
+        if(character.isUnderlined()) {
+            style |= UNDERLINE;
+        }
+        if(character.isCrossedOut()) {
+            style |= CROSSED_OUT;
+        }
+        return character.getCharacter() |
+                ((long)style << 16) |
+                ((long)(characterWidth & 0xffff) << 20) |
+                ((long)(fontHeight & 0xffff) << 36);
+    }
+
+    private byte[] rasterize(
+            AWTTerminalFontConfiguration fontConfiguration,
+            TextCharacter character,
+            int characterWidth,
+            int fontHeight) {
+
+        if(scratchImage == null || scratchImage.getWidth() < characterWidth || scratchImage.getHeight() < fontHeight) {
+            int width = scratchImage == null ? characterWidth : Math.max(characterWidth, scratchImage.getWidth());
+            int height = scratchImage == null ? fontHeight : Math.max(fontHeight, scratchImage.getHeight());
+            scratchImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        Graphics2D g = scratchImage.createGraphics();
+        try {
+            if(fontConfiguration.isAntiAliased()) {
+                g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            }
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, scratchImage.getWidth(), scratchImage.getHeight());
+            g.setClip(0, 0, characterWidth, fontHeight);
+            g.setColor(Color.WHITE);
+            g.setFont(fontConfiguration.getFontForCharacter(character));
+            FontMetrics fontMetrics = g.getFontMetrics();
+            int baseline = fontHeight - fontMetrics.getDescent() + 1;
+            g.drawString(Character.toString(character.getCharacter()), 0, baseline);
+            if(character.isCrossedOut()) {
+                g.drawLine(0, fontHeight / 2, characterWidth, fontHeight / 2);
+            }
+            if(character.isUnderlined()) {
+                g.drawLine(0, baseline, characterWidth, baseline);
+            }
+        }
+        finally {
+            g.dispose();
+        }
+
+        int[] rgb = scratchImage.getRGB(0, 0, characterWidth, fontHeight, getPixels(characterWidth * fontHeight), 0, characterWidth);
+        byte[] mask = new byte[characterWidth * fontHeight];
+        for(int i = 0; i < mask.length; i++) {
+            //Text is drawn white on black so any of the channels tells us the coverage
+            mask[i] = (byte)(rgb[i] >> 8);
+        }
+        return mask;
+    }
+
+    private BufferedImage colorize(byte[] mask, int foreground, int background, int characterWidth, int fontHeight) {
+        int[] argb = getPixels(mask.length);
+        int fgAlpha = (foreground >>> 24);
+        int fgRed = (foreground >> 16) & 0xff;
+        int fgGreen = (foreground >> 8) & 0xff;
+        int fgBlue = foreground & 0xff;
+        int bgAlpha = (background >>> 24);
+        int bgRed = (background >> 16) & 0xff;
+        int bgGreen = (background >> 8) & 0xff;
+        int bgBlue = background & 0xff;
+        for(int i = 0; i < mask.length; i++) {
+            int coverage = mask[i] & 0xff;
+            if(coverage == 0) {
+                argb[i] = background;
+            }
+            else if(coverage == 0xff) {
+                argb[i] = foreground;
+            }
+            else {
+                int alpha = bgAlpha + ((fgAlpha - bgAlpha) * coverage + 127) / 255;
+                int red = bgRed + ((fgRed - bgRed) * coverage + 127) / 255;
+                int green = bgGreen + ((fgGreen - bgGreen) * coverage + 127) / 255;
+                int blue = bgBlue + ((fgBlue - bgBlue) * coverage + 127) / 255;
+                argb[i] = (alpha << 24) | (red << 16) | (green << 8) | blue;
+            }
+        }
+        BufferedImage tile = new BufferedImage(characterWidth, fontHeight, BufferedImage.TYPE_INT_ARGB);
+        tile.setRGB(0, 0, characterWidth, fontHeight, argb, 0, characterWidth);
+        return tile;
+    }
+
+    private int[] getPixels(int size) {
+        if(pixels.length < size) {
+            pixels = new int[size];
+        }
+        return pixels;
+    }
+
+    private static class TileKey {
+        private long glyph;
+        private int foreground;
+        private int background;
+
+        TileKey set(long glyph, int foreground, int background) {
+            this.glyph = glyph;
+            this.foreground = foreground;
+            this.background = background;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof TileKey)) {
+                return false;
+            }
+            TileKey other = (TileKey)o;
+            return glyph == other.glyph && foreground == other.foreground && background == other.background;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = (int)(glyph ^ (glyph >>> 32));
+            hash = hash * 31 + foreground;
+            return hash * 31 + background;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import com.googlecode.lanterna.input.KeyType;
 import com.googlecode.lanterna.terminal.IOSafeTerminal;
 import com.googlecode.lanterna.terminal.TerminalResizeListener;
 import com.googlecode.lanterna.terminal.virtual.DefaultVirtualTerminal;
+import com.googlecode.lanterna.terminal.virtual.DirtyRegion;
 import com.googlecode.lanterna.terminal.virtual.VirtualTerminal;
 
 import java.awt.*;
@@ -56,7 +57,8 @@ abstract class GraphicalTerminalImplementation implements IOSafeTerminal {
     private final DefaultVirtualTerminal virtualTerminal;
     private final BlockingQueue<KeyStroke> keyQueue;
     private final TerminalScrollController scrollController;
-    private final DirtyCellsLookupTable dirtyCellsLookupTable;
+    private final DirtyRegion dirtyRegion;
+    private final TerminalCellPainter cellPainter;
 
     private final String enquiryString;
 
@@ -112,7 +114,13 @@ abstract class GraphicalTerminalImplementation implements IOSafeTerminal {
         this.deviceConfiguration = deviceConfiguration;
         this.colorConfiguration = colorConfiguration;
         this.scrollController = scrollController;
-        this.dirtyCellsLookupTable = new DirtyCellsLookupTable();
+        this.dirtyRegion = new DirtyRegion();
+        this.cellPainter = new TerminalCellPainter(deviceConfiguration, colorConfiguration, new GlyphAtlas() {
+            @Override
+            AWTTerminalFontConfiguration getFontConfiguration() {
+                return GraphicalTerminalImplementation.this.getFontConfiguration();
+            }
+        });
 
         this.cursorIsVisible = true;        //Always start with an activate and visible cursor
         this.enableInput = false;           //Start with input disabled and activate it once the window is visible
@@ -174,6 +182,12 @@ abstract class GraphicalTerminalImplementation implements IOSafeTerminal {
      */
     abstract boolean isTextAntiAliased();
 
+    /**
+     * Returns the font configuration the terminal is drawn with
+     * @return Font configuration the terminal is drawn with
+     */
+    abstract AWTTerminalFontConfiguration getFontConfiguration();
+
     /**
      * Called by the {@code GraphicalTerminalImplementation} when it would like the OS to schedule a repaint of the
      * window
@@ -331,7 +345,7 @@ abstract class GraphicalTerminalImplementation implements IOSafeTerminal {
         }
 
         final AtomicBoolean foundBlinkingCharacters = new AtomicBoolean(deviceConfiguration.isCursorBlinking());
-        buildDirtyCellsLookupTable(firstVisibleRowIndex, lastVisibleRowIndex);
+        buildDirtyRegion();
 
         // Detect scrolling
         if(lastBufferUpdateScrollPosition < scrollOffsetFromTopInPixels) {
@@ -342,16 +356,16 @@ abstract class GraphicalTerminalImplementation implements IOSafeTerminal {
                 graphics.drawImage(backbuffer, 0, -gap, null);
                 graphics.dispose();
                 backbufferGraphics.drawImage(copybuffer, 0, 0, getWidth(), getHeight(), 0, 0, getWidth(), getHeight(), null);
-                if(!dirtyCellsLookupTable.isAllDirty()) {
+                if(!dirtyRegion.isAllDirty()) {
                     //Mark bottom rows as dirty so they are repainted
                     int previousLastVisibleRowIndex = (lastBufferUpdateScrollPosition + getHeight()) / fontHeight;
                     for(int row = previousLastVisibleRowIndex; row <= lastVisibleRowIndex; row++) {
-                        dirtyCellsLookupTable.setRowDirty(row);
+                        dirtyRegion.mark(row, 0, viewportSize.getColumns());
                     }
                 }
             }
             else {
-                dirtyCellsLookupTable.setAllDirty();
+                dirtyRegion.markAll();
             }
         }
         else if(lastBufferUpdateScrollPosition > scrollOffsetFromTopInPixels) {
@@ -362,36 +376,36 @@ abstract class GraphicalTerminalImplementation implements IOSafeTerminal {
                 graphics.drawImage(backbuffer, 0, 0, null);
                 graphics.dispose();
                 backbufferGraphics.drawImage(copybuffer, 0, gap, getWidth(), getHeight(), 0, 0, getWidth(), getHeight() - gap, null);
-                if(!dirtyCellsLookupTable.isAllDirty()) {
+                if(!dirtyRegion.isAllDirty()) {
                     //Mark top rows as dirty so they are repainted
                     int previousFirstVisibleRowIndex = lastBufferUpdateScrollPosition / fontHeight;
                     for(int row = firstVisibleRowIndex; row <= previousFirstVisibleRowIndex; row++) {
-                        dirtyCellsLookupTable.setRowDirty(row);
+                        dirtyRegion.mark(row, 0, viewportSize.getColumns());
                     }
                 }
             }
             else {
-                dirtyCellsLookupTable.setAllDirty();
+                dirtyRegion.markAll();
             }
         }
 
         // Detect component resize
         if(lastComponentWidth < getWidth()) {
-            if(!dirtyCellsLookupTable.isAllDirty()) {
+            if(!dirtyRegion.isAllDirty()) {
                 //Mark right columns as dirty so they are repainted
                 int lastVisibleColumnIndex = getWidth() / fontWidth;
                 int previousLastVisibleColumnIndex = lastComponentWidth / fontWidth;
-                for(int column = previousLastVisibleColumnIndex; column <= lastVisibleColumnIndex; column++) {
-                    dirtyCellsLookupTable.setColumnDirty(column);
+                for(int row = firstVisibleRowIndex; row <= lastVisibleRowIndex; row++) {
+                    dirtyRegion.mark(row, previousLastVisibleColumnIndex, lastVisibleColumnIndex + 1);
                 }
             }
         }
         if(lastComponentHeight < getHeight()) {
-            if(!dirtyCellsLookupTable.isAllDirty()) {
+            if(!dirtyRegion.isAllDirty()) {
                 //Mark bottom rows as dirty so they are repainted
                 int previousLastVisibleRowIndex = (scrollOffsetFromTopInPixels + lastComponentHeight) / fontHeight;
                 for(int row = previousLastVisibleRowIndex; row <= lastVisibleRowIndex; row++) {
-                    dirtyCellsLookupTable.setRowDirty(row);
+                    dirtyRegion.mark(row, 0, viewportSize.getColumns());
                 }
             }
         }
@@ -414,10 +428,10 @@ abstract class GraphicalTerminalImplementation implements IOSafeTerminal {
                     if(isBlinking) {
                         foundBlinkingCharacters.set(true);
                     }
-                    if(dirtyCellsLookupTable.isAllDirty() || dirtyCellsLookupTable.isDirty(rowNumber, column) || isBlinking) {
+                    if(dirtyRegion.isDirty(rowNumber, column) || isBlinking) {
                         int characterWidth = fontWidth * (TerminalTextUtils.isCharCJK(textCharacter.getCharacter()) ? 2 : 1);
-                        Color foregroundColor = deriveTrueForegroundColor(textCharacter, atCursorLocation);
-                        Color backgroundColor = deriveTrueBackgroundColor(textCharacter, atCursorLocation);
+                        Color foregroundColor = cellPainter.deriveTrueForegroundColor(textCharacter, atCursorLocation, cursorIsVisible, blinkOn);
+                        Color backgroundColor = cellPainter.deriveTrueBackgroundColor(textCharacter, atCursorLocation, cursorIsVisible, blinkOn);
                         boolean drawCursor = atCursorLocation &&
                                 (!deviceConfiguration.isCursorBlinking() ||     //Always draw if the cursor isn't blinking
                                         (deviceConfiguration.isCursorBlinking() && blinkOn));    //If the cursor is blinking, only draw when blinkOn is true
@@ -429,16 +443,14 @@ abstract class GraphicalTerminalImplementation implements IOSafeTerminal {
                             backgroundColor = temp;
                         }
 
-                        drawCharacter(backbufferGraphics,
+                        cellPainter.drawCharacter(backbufferGraphics,
                                 textCharacter,
-                                column,
-                                rowNumber,
+                                column * fontWidth,
+                                rowNumber * fontHeight - scrollOffsetFromTopInPixels,
                                 foregroundColor,
                                 backgroundColor,
-                                fontWidth,
-                                fontHeight,
                                 characterWidth,
-                                scrollOffsetFromTopInPixels,
+                                fontHeight,
                                 drawCursor);
                     }
                     if(TerminalTextUtils.isCharCJK(textCharacter.getCharacter())) {
@@ -459,31 +471,26 @@ abstract class GraphicalTerminalImplementation implements IOSafeTerminal {
         //System.out.println("Updated backbuffer in " + (System.currentTimeMillis() - startTime) + " ms");
     }
 
-    private void buildDirtyCellsLookupTable(int firstRowOffset, int lastRowOffset) {
+    private void buildDirtyRegion() {
+        dirtyRegion.clear();
         if(virtualTerminal.isWholeBufferDirtyThenReset() || needFullRedraw) {
-            dirtyCellsLookupTable.setAllDirty();
-            return;
+            dirtyRegion.markAll();
         }
 
-        TerminalSize viewportSize = virtualTerminal.getTerminalSize();
         TerminalPosition cursorPosition = virtualTerminal.getCursorBufferPosition();
-
-        dirtyCellsLookupTable.resetAndInitialize(firstRowOffset, lastRowOffset, viewportSize.getColumns());
-        dirtyCellsLookupTable.setDirty(cursorPosition);
+        dirtyRegion.mark(cursorPosition.getRow(), cursorPosition.getColumn());
         if(lastDrawnCursorPosition != null && !lastDrawnCursorPosition.equals(cursorPosition)) {
+            int row = lastDrawnCursorPosition.getRow();
+            int column = lastDrawnCursorPosition.getColumn();
             if(virtualTerminal.getCharacter(lastDrawnCursorPosition).isDoubleWidth()) {
-                dirtyCellsLookupTable.setDirty(lastDrawnCursorPosition.withRelativeColumn(1));
+                dirtyRegion.mark(row, column + 1);
             }
-            if(lastDrawnCursorPosition.getColumn() > 0 && virtualTerminal.getCharacter(lastDrawnCursorPosition.withRelativeColumn(-1)).isDoubleWidth()) {
-                dirtyCellsLookupTable.setDirty(lastDrawnCursorPosition.withRelativeColumn(-1));
+            if(column > 0 && virtualTerminal.getCharacter(lastDrawnCursorPosition.withRelativeColumn(-1)).isDoubleWidth()) {
+                dirtyRegion.mark(row, column - 1);
             }
-            dirtyCellsLookupTable.setDirty(lastDrawnCursorPosition);
-        }
-
-        TreeSet<TerminalPosition> dirtyCells = virtualTerminal.getAndResetDirtyCells();
-        for(TerminalPosition position: dirtyCells) {
-            dirtyCellsLookupTable.setDirty(position);
+            dirtyRegion.mark(row, column);
         }
+        virtualTerminal.getAndResetDirtyRegion(dirtyRegion);
     }
 
     private void ensureGraphicBufferHasRightSize() {
@@ -512,110 +519,6 @@ abstract class GraphicalTerminalImplementation implements IOSafeTerminal {
         }
     }
 
-    private void drawCharacter(
-            Graphics g,
-            TextCharacter character,
-            int columnIndex,
-            int rowIndex,
-            Color foregroundColor,
-            Color backgroundColor,
-            int fontWidth,
-            int fontHeight,
-            int characterWidth,
-            int scrollingOffsetInPixels,
-            boolean drawCursor) {
-
-        int x = columnIndex * fontWidth;
-        int y = rowIndex * fontHeight - scrollingOffsetInPixels;
-        g.setColor(backgroundColor);
-        g.setClip(x, y, characterWidth, fontHeight);
-        g.fillRect(x, y, characterWidth, fontHeight);
-
-        g.setColor(foregroundColor);
-        Font font = getFontForCharacter(character);
-        g.setFont(font);
-        FontMetrics fontMetrics = g.getFontMetrics();
-        g.drawString(Character.toString(character.getCharacter()), x, y + fontHeight - fontMetrics.getDescent() + 1);
-
-        if(character.isCrossedOut()) {
-            //noinspection UnnecessaryLocalVariable
-            int lineStartX = x;
-            int lineStartY = y + (fontHeight / 2);
-            int lineEndX = lineStartX + characterWidth;
-            g.drawLine(lineStartX, lineStartY, lineEndX, lineStartY);
-        }
-        if(character.isUnderlined()) {
-            //noinspection UnnecessaryLocalVariable
-            int lineStartX = x;
-            int lineStartY = y + fontHeight - fontMetrics.getDescent() + 1;
-            int lineEndX = lineStartX + characterWidth;
-            g.drawLine(lineStartX, lineStartY, lineEndX, lineStartY);
-        }
-
-        if(drawCursor) {
-            if(deviceConfiguration.getCursorColor() == null) {
-                g.setColor(foregroundColor);
-            }
-            else {
-                g.setColor(colorConfiguration.toAWTColor(deviceConfiguration.getCursorColor(), false, false));
-            }
-            if(deviceConfiguration.getCursorStyle() == TerminalEmulatorDeviceConfiguration.CursorStyle.UNDER_BAR) {
-                g.fillRect(x, y + fontHeight - 3, characterWidth, 2);
-            }
-            else if(deviceConfiguration.getCursorStyle() == TerminalEmulatorDeviceConfiguration.CursorStyle.VERTICAL_BAR) {
-                g.fillRect(x, y + 1, 2, fontHeight - 2);
-            }
-        }
-    }
-
-
-    private Color deriveTrueForegroundColor(TextCharacter character, boolean atCursorLocation) {
-        TextColor foregroundColor = character.getForegroundColor();
-        TextColor backgroundColor = character.getBackgroundColor();
-        boolean reverse = character.isReversed();
-        boolean blink = character.isBlinking();
-
-        if(cursorIsVisible && atCursorLocation) {
-            if(deviceConfiguration.getCursorStyle() == TerminalEmulatorDeviceConfiguration.CursorStyle.REVERSED &&
-                    (!deviceConfiguration.isCursorBlinking() || !blinkOn)) {
-                reverse = true;
-            }
-        }
-
-        if(reverse && (!blink || !blinkOn)) {
-            return colorConfiguration.toAWTColor(backgroundColor, backgroundColor != TextColor.ANSI.DEFAULT, character.isBold());
-        }
-        else if(!reverse && blink && blinkOn) {
-            return colorConfiguration.toAWTColor(backgroundColor, false, character.isBold());
-        }
-        else {
-            return colorConfiguration.toAWTColor(foregroundColor, true, character.isBold());
-        }
-    }
-
-    private Color deriveTrueBackgroundColor(TextCharacter character, boolean atCursorLocation) {
-        TextColor foregroundColor = character.getForegroundColor();
-        TextColor backgroundColor = character.getBackgroundColor();
-        boolean reverse = character.isReversed();
-
-        if(cursorIsVisible && atCursorLocation) {
-            if(deviceConfiguration.getCursorStyle() == TerminalEmulatorDeviceConfiguration.CursorStyle.REVERSED &&
-                    (!deviceConfiguration.isCursorBlinking() || !blinkOn)) {
-                reverse = true;
-            }
-            else if(deviceConfiguration.getCursorStyle() == TerminalEmulatorDeviceConfiguration.CursorStyle.FIXED_BACKGROUND) {
-                backgroundColor = deviceConfiguration.getCursorColor();
-            }
-        }
-
-        if(reverse) {
-            return colorConfiguration.toAWTColor(foregroundColor, backgroundColor == TextColor.ANSI.DEFAULT, character.isBold());
-        }
-        else {
-            return colorConfiguration.toAWTColor(backgroundColor, false, false);
-        }
-    }
-
     void addInput(KeyStroke keyStroke) {
         keyQueue.add(keyStroke);
     }
@@ -998,81 +901,4 @@ abstract class GraphicalTerminalImplementation implements IOSafeTerminal {
         catch(IOException ignore) {
         }
     }
-
-    private static class DirtyCellsLookupTable {
-        private final List<BitSet> table;
-        private int firstRowIndex;
-        private boolean allDirty;
-
-        DirtyCellsLookupTable() {
-            table = new ArrayList<BitSet>();
-            firstRowIndex = -1;
-            allDirty = false;
-        }
-
-        void resetAndInitialize(int firstRowIndex, int lastRowIndex, int columns) {
-            this.firstRowIndex = firstRowIndex;
-            this.allDirty = false;
-            int rows = lastRowIndex - firstRowIndex + 1;
-            while(table.size() < rows) {
-                table.add(new BitSet(columns));
-            }
-            while(table.size() > rows) {
-                table.remove(table.size() - 1);
-            }
-            for(int index = 0; index < table.size(); index++) {
-                if(table.get(index).size() != columns) {
-                    table.set(index, new BitSet(columns));
-                }
-                else {
-                    table.get(index).clear();
-                }
-            }
-        }
-
-        void setAllDirty() {
-            allDirty = true;
-        }
-
-        boolean isAllDirty() {
-            return allDirty;
-        }
-
-        void setDirty(TerminalPosition position) {
-            if(position.getRow() < firstRowIndex ||
-                    position.getRow() >= firstRowIndex + table.size()) {
-                return;
-            }
-            BitSet tableRow = table.get(position.getRow() - firstRowIndex);
-            if(position.getColumn() < tableRow.size()) {
-                tableRow.set(position.getColumn());
-            }
-        }
-
-        void setRowDirty(int rowNumber) {
-            BitSet row = table.get(rowNumber - firstRowIndex);
-            row.set(0, row.size());
-        }
-
-        void setColumnDirty(int column) {
-            for(BitSet row: table) {
-                if(column < row.size()) {
-                    row.set(column);
-                }
-            }
-        }
-
-        boolean isDirty(int row, int column) {
-            if(row < firstRowIndex || row >= firstRowIndex + table.size()) {
-                return false;
-            }
-            BitSet tableRow = table.get(row - firstRowIndex);
-            if(column < tableRow.size()) {
-                return tableRow.get(column);
-            }
-            else {
-                return false;
-            }
-        }
-    }
-}
\ No newline at end of file
+}
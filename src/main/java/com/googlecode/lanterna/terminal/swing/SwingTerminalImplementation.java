@@ -94,6 +94,7 @@ class SwingTerminalImplementation extends GraphicalTerminalImplementation {
      * Returns the current font configuration. Note that it is immutable and cannot be changed.
      * @return This SwingTerminal's current font configuration
      */
+    @Override
     public SwingTerminalFontConfiguration getFontConfiguration() {
         return fontConfiguration;
     }
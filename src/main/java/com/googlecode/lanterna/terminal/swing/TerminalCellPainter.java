@@ -0,0 +1,152 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal.swing;
+
+import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.TextColor;
+
+import java.awt.*;
+
+/**
+ * Draws single terminal cells, including the cursor, according to a device and color configuration. This is the part
+ * of the drawing that is shared between the terminal emulator components and {@link VirtualTerminalRenderer}; the
+ * glyphs themselves come from a {@link GlyphAtlas}.
+ * @author Martin
+ */
+class TerminalCellPainter {
+    private final TerminalEmulatorDeviceConfiguration deviceConfiguration;
+    private final TerminalEmulatorColorConfiguration colorConfiguration;
+    private final GlyphAtlas glyphAtlas;
+
+    TerminalCellPainter(
+            TerminalEmulatorDeviceConfiguration deviceConfiguration,
+            TerminalEmulatorColorConfiguration colorConfiguration,
+            GlyphAtlas glyphAtlas) {
+
+        this.deviceConfiguration = deviceConfiguration;
+        this.colorConfiguration = colorConfiguration;
+        this.glyphAtlas = glyphAtlas;
+    }
+
+    /**
+     * Draws a character cell at a pixel location
+     * @param g Graphics to draw on
+     * @param character Character to draw
+     * @param x Left edge of the cell in pixels
+     * @param y Top edge of the cell in pixels
+     * @param foregroundColor Color of the character
+     * @param backgroundColor Color of the background
+     * @param characterWidth Width of the cell in pixels (two font widths for double-width characters)
+     * @param fontHeight Height of the cell in pixels
+     * @param drawCursor If {@code true}, the cursor is drawn on top of the cell unless the cursor style is expressed
+     *                   through the colors alone
+     */
+    void drawCharacter(
+            Graphics g,
+            TextCharacter character,
+            int x,
+            int y,
+            Color foregroundColor,
+            Color backgroundColor,
+            int characterWidth,
+            int fontHeight,
+            boolean drawCursor) {
+
+        g.drawImage(glyphAtlas.getTile(character, foregroundColor, backgroundColor, characterWidth, fontHeight), x, y, null);
+
+        if(drawCursor) {
+            if(deviceConfiguration.getCursorColor() == null) {
+                g.setColor(foregroundColor);
+            }
+            else {
+                g.setColor(colorConfiguration.toAWTColor(deviceConfiguration.getCursorColor(), false, false));
+            }
+            if(deviceConfiguration.getCursorStyle() == TerminalEmulatorDeviceConfiguration.CursorStyle.UNDER_BAR) {
+                g.fillRect(x, y + fontHeight - 3, characterWidth, 2);
+            }
+            else if(deviceConfiguration.getCursorStyle() == TerminalEmulatorDeviceConfiguration.CursorStyle.VERTICAL_BAR) {
+                g.fillRect(x, y + 1, 2, fontHeight - 2);
+            }
+        }
+    }
+
+    /**
+     * Works out the AWT color to draw a character with, taking reverse, blinking and the cursor into account
+     * @param character Character to be drawn
+     * @param atCursorLocation {@code true} if the character is under the cursor
+     * @param cursorIsVisible {@code true} if the cursor is currently visible
+     * @param blinkOn {@code true} if blinking text and cursor are currently in their "on" phase
+     * @return Color to draw the character with
+     */
+    Color deriveTrueForegroundColor(TextCharacter character, boolean atCursorLocation, boolean cursorIsVisible, boolean blinkOn) {
+        TextColor foregroundColor = character.getForegroundColor();
+        TextColor backgroundColor = character.getBackgroundColor();
+        boolean reverse = character.isReversed();
+        boolean blink = character.isBlinking();
+
+        if(cursorIsVisible && atCursorLocation) {
+            if(deviceConfiguration.getCursorStyle() == TerminalEmulatorDeviceConfiguration.CursorStyle.REVERSED &&
+                    (!deviceConfiguration.isCursorBlinking() || !blinkOn)) {
+                reverse = true;
+            }
+        }
+
+        if(reverse && (!blink || !blinkOn)) {
+            return colorConfiguration.toAWTColor(backgroundColor, backgroundColor != TextColor.ANSI.DEFAULT, character.isBold());
+        }
+        else if(!reverse && blink && blinkOn) {
+            return colorConfiguration.toAWTColor(backgroundColor, false, character.isBold());
+        }
+        else {
+            return colorConfiguration.toAWTColor(foregroundColor, true, character.isBold());
+        }
+    }
+
+    /**
+     * Works out the AWT color to fill the background of a character cell with, taking reverse and the cursor into
+     * account
+     * @param character Character to be drawn
+     * @param atCursorLocation {@code true} if the character is under the cursor
+     * @param cursorIsVisible {@code true} if the cursor is currently visible
+     * @param blinkOn {@code true} if blinking text and cursor are currently in their "on" phase
+     * @return Color to fill the cell background with
+     */
+    Color deriveTrueBackgroundColor(TextCharacter character, boolean atCursorLocation, boolean cursorIsVisible, boolean blinkOn) {
+        TextColor foregroundColor = character.getForegroundColor();
+        TextColor backgroundColor = character.getBackgroundColor();
+        boolean reverse = character.isReversed();
+
+        if(cursorIsVisible && atCursorLocation) {
+            if(deviceConfiguration.getCursorStyle() == TerminalEmulatorDeviceConfiguration.CursorStyle.REVERSED &&
+                    (!deviceConfiguration.isCursorBlinking() || !blinkOn)) {
+                reverse = true;
+            }
+            else if(deviceConfiguration.getCursorStyle() == TerminalEmulatorDeviceConfiguration.CursorStyle.FIXED_BACKGROUND) {
+                backgroundColor = deviceConfiguration.getCursorColor();
+            }
+        }
+
+        if(reverse) {
+            return colorConfiguration.toAWTColor(foregroundColor, backgroundColor == TextColor.ANSI.DEFAULT, character.isBold());
+        }
+        else {
+            return colorConfiguration.toAWTColor(backgroundColor, false, false);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal.swing;
+
+import com.googlecode.lanterna.TerminalPosition;
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TerminalTextUtils;
+import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.terminal.virtual.DefaultVirtualTerminal;
+import com.googlecode.lanterna.terminal.virtual.DirtyRegion;
+import com.googlecode.lanterna.terminal.virtual.VirtualTerminal;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Paints the screen of a {@link DefaultVirtualTerminal} into a {@link BufferedImage}, without needing any AWT or Swing
+ * component. This can be used to produce thumbnails or recordings of terminal sessions on a server running in headless
+ * mode. Characters are drawn the same way as {@link SwingTerminal} and {@link AWTTerminal} draw them, with the given
+ * font and color configuration.
+ * <p>
+ * The renderer keeps its image between calls to {@link #render()} and only redraws the cells that the virtual terminal
+ * reports as changed, moving the existing content up when the terminal has scrolled. Since this consumes the dirty
+ * cell information of the virtual terminal, there shouldn't be more than one renderer (or anything else reading the
+ * dirty cells) per virtual terminal. Blinking text and cursors are drawn in their steady state.
+ * <p>
+ * Each renderer can be used from any thread, and many renderers can be updated in parallel through
+ * {@link #renderAll(Collection, ExecutorService)}.
+ * @author Martin
+ */
+public class VirtualTerminalRenderer {
+    private final DefaultVirtualTerminal virtualTerminal;
+    private final TerminalCellPainter cellPainter;
+    private final DirtyRegion dirtyRegion;
+    private final RowPainter rowPainter;
+    private final int fontWidth;
+    private final int fontHeight;
+
+    private BufferedImage image;
+    private TerminalSize lastTerminalSize;
+    private long lastScreenTopLine;
+    private long lastCursorLine;
+    private int lastCursorColumn;
+
+    /**
+     * Creates a new renderer for a virtual terminal, using the default device configuration
+     * @param virtualTerminal Virtual terminal to paint
+     * @param fontConfiguration Fonts to draw the text with, this also decides the size of each cell
+     * @param colorConfiguration Colors to draw the text with
+     */
+    public VirtualTerminalRenderer(
+            DefaultVirtualTerminal virtualTerminal,
+            AWTTerminalFontConfiguration fontConfiguration,
+            TerminalEmulatorColorConfiguration colorConfiguration) {
+
+        this(virtualTerminal, fontConfiguration, colorConfiguration, TerminalEmulatorDeviceConfiguration.getDefault());
+    }
+
+    /**
+     * Creates a new renderer for a virtual terminal
+     * @param virtualTerminal Virtual terminal to paint
+     * @param fontConfiguration Fonts to draw the text with, this also decides the size of each cell
+     * @param colorConfiguration Colors to draw the text with
+     * @param deviceConfiguration Device configuration, which decides how the cursor is drawn
+     */
+    public VirtualTerminalRenderer(
+            DefaultVirtualTerminal virtualTerminal,
+            final AWTTerminalFontConfiguration fontConfiguration,
+            TerminalEmulatorColorConfiguration colorConfiguration,
+            TerminalEmulatorDeviceConfiguration deviceConfiguration) {
+
+        this.virtualTerminal = virtualTerminal;
+        this.cellPainter = new TerminalCellPainter(deviceConfiguration, colorConfiguration, new GlyphAtlas() {
+            @Override
+            AWTTerminalFontConfiguration getFontConfiguration() {
+                return fontConfiguration;
+            }
+        });
+        this.dirtyRegion = new DirtyRegion();
+        this.rowPainter = new RowPainter();
+        this.fontWidth = fontConfiguration.getFontWidth();
+        this.fontHeight = fontConfiguration.getFontHeight();
+        this.image = null;
+        this.lastTerminalSize = null;
+        this.lastScreenTopLine = 0;
+        this.lastCursorLine = -1;
+        this.lastCursorColumn = 0;
+    }
+
+    /**
+     * Brings the image up to date with the content of the virtual terminal and returns it. The same image object is
+     * returned every time, unless the terminal has been resized, and it will be modified by the next call to this
+     * method, so take a copy of it if it needs to be kept.
+     * @return Image of the virtual terminal's screen
+     */
+    public synchronized BufferedImage render() {
+        // Hold the terminal lock so nothing changes half-way through
+        synchronized(virtualTerminal) {
+            TerminalSize terminalSize = virtualTerminal.getTerminalSize();
+            int rows = terminalSize.getRows();
+            int columns = terminalSize.getColumns();
+            int screenTopRow = Math.max(0, virtualTerminal.getBufferLineCount() - rows);
+            long screenTopLine = virtualTerminal.getDiscardedLineCount() + screenTopRow;
+
+            dirtyRegion.clear();
+            boolean fullRedraw = virtualTerminal.isWholeBufferDirtyThenReset();
+            virtualTerminal.getAndResetDirtyRegion(dirtyRegion);
+            if(image == null || !terminalSize.equals(lastTerminalSize)) {
+                image = new BufferedImage(
+                        Math.max(1, columns * fontWidth), Math.max(1, rows * fontHeight), BufferedImage.TYPE_INT_RGB);
+                fullRedraw = true;
+            }
+
+            Graphics2D g = image.createGraphics();
+            try {
+                long scrolledLines = screenTopLine - lastScreenTopLine;
+                if(!fullRedraw && scrolledLines != 0) {
+                    if(scrolledLines > 0 && scrolledLines < rows) {
+                        int gap = (int)scrolledLines * fontHeight;
+                        g.copyArea(0, gap, image.getWidth(), image.getHeight() - gap, 0, -gap);
+                        for(int row = screenTopRow + rows - (int)scrolledLines; row < screenTopRow + rows; row++) {
+                            dirtyRegion.mark(row, 0, columns);
+                        }
+                    }
+                    else {
+                        fullRedraw = true;
+                    }
+                }
+
+                // Repaint where the cursor was and where it is now, including a double-width character next to it
+                TerminalPosition cursorPosition = virtualTerminal.getCursorBufferPosition();
+                long cursorLine = virtualTerminal.getDiscardedLineCount() + cursorPosition.getRow();
+                if(lastCursorLine != -1) {
+                    long lastCursorRow = lastCursorLine - virtualTerminal.getDiscardedLineCount();
+                    if(lastCursorRow >= screenTopRow && lastCursorRow < screenTopRow + rows) {
+                        dirtyRegion.mark((int)lastCursorRow, Math.max(0, lastCursorColumn - 1), lastCursorColumn + 2);
+                    }
+                }
+                dirtyRegion.mark(cursorPosition.getRow(), Math.max(0, cursorPosition.getColumn() - 1), cursorPosition.getColumn() + 2);
+
+                rowPainter.prepare(g, cursorPosition, virtualTerminal.isCursorVisible(), screenTopRow, columns, fullRedraw);
+                if(fullRedraw) {
+                    virtualTerminal.forEachLine(screenTopRow, screenTopRow + rows - 1, rowPainter);
+                }
+                else {
+                    for(int row = dirtyRegion.getNextDirtyRow(screenTopRow);
+                        row != -1 && row < screenTopRow + rows;
+                        row = dirtyRegion.getNextDirtyRow(row + 1)) {
+
+                        virtualTerminal.forEachLine(row, row, rowPainter);
+                    }
+                }
+
+                this.lastTerminalSize = terminalSize;
+                this.lastScreenTopLine = screenTopLine;
+                this.lastCursorLine = cursorLine;
+                this.lastCursorColumn = cursorPosition.getColumn();
+            }
+            finally {
+                g.dispose();
+            }
+            return image;
+        }
+    }
+
+    /**
+     * Returns the image as it was drawn by the last call to {@link #render()}, without updating it
+     * @return Last rendered image, or {@code null} if {@link #render()} hasn't been called yet
+     */
+    public synchronized BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Makes the next call to {@link #render()} redraw every cell, rather than only the ones that have changed
+     */
+    public synchronized void invalidate() {
+        image = null;
+    }
+
+    /**
+     * Updates a number of renderers in parallel on an executor and waits for all of them to finish
+     * @param renderers Renderers to update
+     * @param executorService Executor to run the rendering on
+     * @return The rendered images, in the same order as the renderers
+     * @throws InterruptedException If the calling thread was interrupted while waiting for the rendering to finish
+     */
+    public static List<BufferedImage> renderAll(
+            Collection<? extends VirtualTerminalRenderer> renderers,
+            ExecutorService executorService) throws InterruptedException {
+
+        List<Callable<BufferedImage>> tasks = new ArrayList<Callable<BufferedImage>>(renderers.size());
+        for(final VirtualTerminalRenderer renderer: renderers) {
+            tasks.add(new Callable<BufferedImage>() {
+                @Override
+                public BufferedImage call() {
+                    return renderer.render();
+                }
+            });
+        }
+        List<BufferedImage> images = new ArrayList<BufferedImage>(tasks.size());
+        for(Future<BufferedImage> future: executorService.invokeAll(tasks)) {
+            try {
+                images.add(future.get());
+            }
+            catch(ExecutionException e) {
+                // render() doesn't throw any checked exceptions
+                if(e.getCause() instanceof Error) {
+                    throw (Error)e.getCause();
+                }
+                throw (RuntimeException)e.getCause();
+            }
+        }
+        return images;
+    }
+
+    private class RowPainter implements VirtualTerminal.BufferWalker {
+        private Graphics2D graphics;
+        private TerminalPosition cursorPosition;
+        private boolean cursorVisible;
+        private int screenTopRow;
+        private int columns;
+        private boolean fullRedraw;
+
+        void prepare(Graphics2D graphics, TerminalPosition cursorPosition, boolean cursorVisible, int screenTopRow, int columns, boolean fullRedraw) {
+            this.graphics = graphics;
+            this.cursorPosition = cursorPosition;
+            this.cursorVisible = cursorVisible;
+            this.screenTopRow = screenTopRow;
+            this.columns = columns;
+            this.fullRedraw = fullRedraw;
+        }
+
+        @Override
+        public void onLine(int rowNumber, VirtualTerminal.BufferLine bufferLine) {
+            int startColumn = 0;
+            int endColumn = columns;
+            if(!fullRedraw) {
+                startColumn = Math.max(0, dirtyRegion.getDirtyStart(rowNumber));
+                endColumn = Math.min(columns, dirtyRegion.getDirtyEnd(rowNumber));
+                // Don't start on the second half of a double-width character
+                if(startColumn > 0 && TerminalTextUtils.isCharCJK(bufferLine.getCharacterAt(startColumn - 1).getCharacter())) {
+                    startColumn--;
+                }
+            }
+            int y = (rowNumber - screenTopRow) * fontHeight;
+            for(int column = startColumn; column < endColumn; column++) {
+                TextCharacter textCharacter = bufferLine.getCharacterAt(column);
+                boolean doubleWidth = TerminalTextUtils.isCharCJK(textCharacter.getCharacter());
+                boolean atCursorLocation = cursorPosition.getRow() == rowNumber &&
+                        (cursorPosition.getColumn() == column || (doubleWidth && cursorPosition.getColumn() == column + 1));
+                Color foregroundColor = cellPainter.deriveTrueForegroundColor(textCharacter, atCursorLocation, cursorVisible, false);
+                Color backgroundColor = cellPainter.deriveTrueBackgroundColor(textCharacter, atCursorLocation, cursorVisible, false);
+                cellPainter.drawCharacter(
+                        graphics,
+                        textCharacter,
+                        column * fontWidth,
+                        y,
+                        foregroundColor,
+                        backgroundColor,
+                        fontWidth * (doubleWidth ? 2 : 1),
+                        fontHeight,
+                        atCursorLocation && cursorVisible);
+                if(doubleWidth) {
+                    column++; //Skip the trailing space after a CJK character
+                }
+            }
+        }
+    }
+}
@@ -32,7 +32,7 @@ import java.util.concurrent.TimeUnit;
 public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualTerminal {
     private final TextBuffer regularTextBuffer;
     private final TextBuffer privateModeTextBuffer;
-    private final TreeSet<TerminalPosition> dirtyTerminalCells;
+    private final DirtyRegion dirtyRegion;
     private final List<VirtualTerminalListener> listeners;
 
     private TextBuffer currentTextBuffer;
@@ -41,11 +41,15 @@ public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualT
     private TerminalSize terminalSize;
     private boolean cursorVisible;
     private int backlogSize;
+    private long backlogMemoryLimit;
+    private boolean compressBacklog;
+    private long discardedLineCount;
 
     private final BlockingQueue<KeyStroke> inputQueue;
     private final EnumSet<SGR> activeModifiers;
     private TextColor activeForegroundColor;
     private TextColor activeBackgroundColor;
+    private TextStyle activeStyle;  // Interned style of the fields above, looked up lazily
 
     // Global coordinates, i.e. relative to the top-left corner of the full buffer
     private TerminalPosition cursorPosition;
@@ -53,6 +57,10 @@ public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualT
     // Used when switching back from private mode, to restore the earlier cursor position
     private TerminalPosition savedCursorPosition;
 
+    // Scrolling region set through VirtualTerminalStreamParser, in screen rows (inclusive); -1 means the last row
+    private int scrollRegionTop;
+    private int scrollRegionBottom;
+
 
     /**
      * Creates a new virtual terminal with an initial size set
@@ -68,7 +76,7 @@ public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualT
     public DefaultVirtualTerminal(TerminalSize initialTerminalSize) {
         this.regularTextBuffer = new TextBuffer();
         this.privateModeTextBuffer = new TextBuffer();
-        this.dirtyTerminalCells = new TreeSet<TerminalPosition>();
+        this.dirtyRegion = new DirtyRegion();
         this.listeners = new ArrayList<VirtualTerminalListener>();
 
         // Terminal state
@@ -84,7 +92,13 @@ public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualT
         this.cursorVisible = true;
         this.cursorPosition = TerminalPosition.TOP_LEFT_CORNER;
         this.savedCursorPosition = TerminalPosition.TOP_LEFT_CORNER;
+        this.scrollRegionTop = 0;
+        this.scrollRegionBottom = -1;
         this.backlogSize = 1000;
+        this.backlogMemoryLimit = Long.MAX_VALUE;
+        this.compressBacklog = false;
+        this.discardedLineCount = 0;
+        updateColdLineStorage();
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -98,6 +112,11 @@ public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualT
     @Override
     public synchronized void setTerminalSize(TerminalSize newSize) {
         this.terminalSize = newSize;
+        if(scrollRegionBottom >= newSize.getRows() || scrollRegionTop >= newSize.getRows()) {
+            scrollRegionTop = 0;
+            scrollRegionBottom = -1;
+        }
+        updateColdLineStorage();
         trimBufferBacklog();
         correctCursor();
         for(VirtualTerminalListener listener: listeners) {
@@ -168,18 +187,23 @@ public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualT
             moveCursorToNextLine();
         }
         else if(TerminalTextUtils.isPrintableCharacter(c)) {
-            putCharacter(new TextCharacter(c, activeForegroundColor, activeBackgroundColor, activeModifiers));
+            if(activeStyle == null) {
+                activeStyle = TextStyle.of(activeForegroundColor, activeBackgroundColor, activeModifiers);
+            }
+            putCharacter(activeStyle.toTextCharacter(c));
         }
     }
 
     @Override
     public synchronized void enableSGR(SGR sgr) {
         activeModifiers.add(sgr);
+        activeStyle = null;
     }
 
     @Override
     public synchronized void disableSGR(SGR sgr) {
         activeModifiers.remove(sgr);
+        activeStyle = null;
     }
 
     @Override
@@ -187,16 +211,19 @@ public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualT
         this.activeModifiers.clear();
         this.activeForegroundColor = TextColor.ANSI.DEFAULT;
         this.activeBackgroundColor = TextColor.ANSI.DEFAULT;
+        this.activeStyle = null;
     }
 
     @Override
     public synchronized void setForegroundColor(TextColor color) {
         this.activeForegroundColor = color;
+        this.activeStyle = null;
     }
 
     @Override
     public synchronized void setBackgroundColor(TextColor color) {
         this.activeBackgroundColor = color;
+        this.activeStyle = null;
     }
 
     @Override
@@ -226,12 +253,13 @@ public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualT
     }
 
     @Override
-    public synchronized KeyStroke pollInput() {
+    public KeyStroke pollInput() {
         return inputQueue.poll();
     }
 
     @Override
-    public synchronized KeyStroke readInput() {
+    public KeyStroke readInput() {
+        //Don't hold the lock while waiting, the input queue is thread-safe and the terminal must stay usable meanwhile
         try {
             return inputQueue.take();
         }
@@ -264,6 +292,38 @@ public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualT
     @Override
     public synchronized void setBacklogSize(int backlogSize) {
         this.backlogSize = backlogSize;
+        trimBufferBacklog();
+    }
+
+    /**
+     * Limits the backlog by the memory it uses rather than by the number of lines. When the lines of the regular mode
+     * buffer are estimated to use more than this number of bytes, lines are dropped from the top of the backlog. The
+     * lines visible on the screen are never dropped. The limit applies together with the one set through
+     * {@code setBacklogSize(..)}, whichever is reached first.
+     * @param backlogMemoryLimit Maximum number of bytes to use for the buffer, or {@code Long.MAX_VALUE} for no limit
+     */
+    public synchronized void setBacklogMemoryLimit(long backlogMemoryLimit) {
+        this.backlogMemoryLimit = backlogMemoryLimit;
+        trimBufferBacklog();
+    }
+
+    /**
+     * Enables or disables compression of the backlog. When enabled, lines that have scrolled well out of view are kept
+     * in a compressed form that usually takes a fraction of the memory; reading them is slightly slower. Combined with
+     * {@code setBacklogMemoryLimit(..)}, this allows a much longer backlog in the same amount of memory.
+     * @param compressBacklog {@code true} to compress old lines of the backlog
+     */
+    public synchronized void setBacklogCompression(boolean compressBacklog) {
+        this.compressBacklog = compressBacklog;
+        updateColdLineStorage();
+    }
+
+    /**
+     * Returns an estimate of the memory used by the regular mode buffer, including the backlog
+     * @return Estimated number of bytes used
+     */
+    public synchronized long getBacklogMemoryUsage() {
+        return regularTextBuffer.getMemoryUsage();
     }
 
     @Override
@@ -276,14 +336,42 @@ public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualT
         inputQueue.add(keyStroke);
     }
 
+    /**
+     * Returns the cells that have changed since the dirty cells were last reset, as buffer positions. This creates an
+     * object for each cell, code that reads the changes often should use {@link #getAndResetDirtyRegion(DirtyRegion)}.
+     * @return Set of the changed cells
+     */
     public synchronized TreeSet<TerminalPosition> getDirtyCells() {
-        return new TreeSet<TerminalPosition>(dirtyTerminalCells);
+        TreeSet<TerminalPosition> dirtyCells = new TreeSet<TerminalPosition>();
+        for(int row = dirtyRegion.getNextDirtyRow(0); row != -1; row = dirtyRegion.getNextDirtyRow(row + 1)) {
+            int end = Math.min(dirtyRegion.getDirtyEnd(row), terminalSize.getColumns());
+            for(int column = dirtyRegion.getDirtyStart(row); column < end; column++) {
+                dirtyCells.add(new TerminalPosition(column, row));
+            }
+        }
+        return dirtyCells;
     }
 
+    /**
+     * Returns the cells that have changed since the dirty cells were last reset and then resets them. This creates an
+     * object for each cell, code that reads the changes often should use {@link #getAndResetDirtyRegion(DirtyRegion)}.
+     * @return Set of the changed cells
+     */
     public synchronized TreeSet<TerminalPosition> getAndResetDirtyCells() {
-        TreeSet<TerminalPosition> copy = new TreeSet<TerminalPosition>(dirtyTerminalCells);
-        dirtyTerminalCells.clear();
-        return copy;
+        TreeSet<TerminalPosition> dirtyCells = getDirtyCells();
+        dirtyRegion.clear();
+        return dirtyCells;
+    }
+
+    /**
+     * Adds the cells that have changed since the dirty cells were last reset to a {@link DirtyRegion}, as buffer rows,
+     * and then resets them. Changes that affect the whole buffer are reported through
+     * {@link #isWholeBufferDirtyThenReset()} instead.
+     * @param target Region to add the changed cells to
+     */
+    public synchronized void getAndResetDirtyRegion(DirtyRegion target) {
+        target.markAll(dirtyRegion);
+        dirtyRegion.clear();
     }
 
     public synchronized boolean isWholeBufferDirtyThenReset() {
@@ -320,31 +408,261 @@ public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualT
         return currentTextBuffer.getLineCount();
     }
 
+    /**
+     * Returns how many lines have been dropped from the top of the buffer, because of the backlog limits, since this
+     * terminal was created. Buffer row numbers shift up when lines are dropped, so adding this number to a buffer row
+     * gives a line number that stays the same for as long as the line is kept. Code that follows the content on screen
+     * can use this to find out how far it has scrolled since the last time it looked.
+     * @return Number of lines that have been dropped from the top of the buffer
+     */
+    public synchronized long getDiscardedLineCount() {
+        return discardedLineCount;
+    }
+
     @Override
     public synchronized void forEachLine(int startRow, int endRow, BufferWalker bufferWalker) {
-        final BufferLine emptyLine = new BufferLine() {
-            @Override
-            public TextCharacter getCharacterAt(int column) {
-                return TextCharacter.DEFAULT_CHARACTER;
-            }
-        };
-        ListIterator<List<TextCharacter>> iterator = currentTextBuffer.getLinesFrom(startRow);
         for(int row = startRow; row <= endRow; row++) {
-            BufferLine bufferLine = emptyLine;
-            if(iterator.hasNext()) {
-                final List<TextCharacter> list = iterator.next();
-                bufferLine = new BufferLine() {
-                    @Override
-                    public TextCharacter getCharacterAt(int column) {
-                        if(column >= list.size()) {
-                            return TextCharacter.DEFAULT_CHARACTER;
-                        }
-                        return list.get(column);
-                    }
-                };
+            final long[] cells = currentTextBuffer.getLineCells(row);
+            final int length = currentTextBuffer.getLineLength(row);
+            bufferWalker.onLine(row, new BufferLine() {
+                @Override
+                public TextCharacter getCharacterAt(int column) {
+                    return TextBuffer.getCharacter(cells, length, column);
+                }
+            });
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // Terminal emulation operations used by VirtualTerminalStreamParser, rows and columns are in screen coordinates
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Sets the rows that scroll when a line feed is done on the bottom row of the region (DECSTBM). Passing rows that
+     * don't make a region of at least two rows resets the region to the whole screen.
+     */
+    synchronized void setScrollingRegion(int top, int bottom) {
+        if(top < 0 || bottom >= terminalSize.getRows() || top >= bottom) {
+            scrollRegionTop = 0;
+            scrollRegionBottom = -1;
+        }
+        else {
+            scrollRegionTop = top;
+            scrollRegionBottom = bottom;
+        }
+    }
+
+    synchronized void carriageReturn() {
+        cursorPosition = cursorPosition.withColumn(0);
+    }
+
+    /**
+     * Moves the cursor down one row without changing the column, scrolling if the cursor is at the bottom of the
+     * scrolling region
+     */
+    synchronized void lineFeed() {
+        moveCursorDown(cursorPosition.getColumn());
+    }
+
+    /**
+     * Moves the cursor up one row, scrolling the region down if the cursor is at the top of the scrolling region
+     */
+    synchronized void reverseLineFeed() {
+        int row = getCursorPosition().getRow();
+        if(row == scrollRegionTop) {
+            scrollRegion(scrollRegionTop, getScrollRegionBottom(), -1);
+        }
+        else if(row > 0) {
+            cursorPosition = cursorPosition.withRelativeRow(-1);
+        }
+    }
+
+    /**
+     * Scrolls the content of the scrolling region up (positive) or down (negative) without moving the cursor
+     */
+    synchronized void scrollLines(int lines) {
+        scrollRegion(scrollRegionTop, getScrollRegionBottom(), lines);
+    }
+
+    /**
+     * Inserts blank lines at the cursor row, pushing the lines below it down and out of the scrolling region
+     */
+    synchronized void insertLines(int count) {
+        int row = getCursorPosition().getRow();
+        if(row >= scrollRegionTop && row <= getScrollRegionBottom()) {
+            scrollRegion(row, getScrollRegionBottom(), -count);
+            cursorPosition = cursorPosition.withColumn(0);
+        }
+    }
+
+    /**
+     * Deletes lines at the cursor row, pulling the lines below it up and inserting blank lines at the bottom of the
+     * scrolling region
+     */
+    synchronized void deleteLines(int count) {
+        int row = getCursorPosition().getRow();
+        if(row >= scrollRegionTop && row <= getScrollRegionBottom()) {
+            scrollRegion(row, getScrollRegionBottom(), count);
+            cursorPosition = cursorPosition.withColumn(0);
+        }
+    }
+
+    /**
+     * Erases part of the screen (ED)
+     * @param mode 0 from the cursor to the end of the screen, 1 from the start of the screen to the cursor, 2 the whole
+     *             screen, 3 the whole screen and the backlog
+     */
+    synchronized void eraseInDisplay(int mode) {
+        TextCharacter blank = getBlankCharacter();
+        int screenTop = getScreenTopBufferRow();
+        int cursorRow = Math.min(cursorPosition.getRow(), screenTop + terminalSize.getRows() - 1);
+        int cursorColumn = Math.min(cursorPosition.getColumn(), terminalSize.getColumns() - 1);
+        int columns = terminalSize.getColumns();
+        if(mode == 0) {
+            currentTextBuffer.fill(cursorRow, cursorColumn, columns, blank);
+            for(int row = cursorRow + 1; row < screenTop + terminalSize.getRows(); row++) {
+                currentTextBuffer.fill(row, 0, columns, blank);
+            }
+        }
+        else if(mode == 1) {
+            for(int row = screenTop; row < cursorRow; row++) {
+                currentTextBuffer.fill(row, 0, columns, blank);
+            }
+            currentTextBuffer.fill(cursorRow, 0, cursorColumn + 1, blank);
+        }
+        else if(mode == 2 || mode == 3) {
+            for(int row = screenTop; row < screenTop + terminalSize.getRows(); row++) {
+                currentTextBuffer.fill(row, 0, columns, blank);
+            }
+            if(mode == 3 && screenTop > 0) {
+                currentTextBuffer.removeTopLines(screenTop);
+                discardedLineCount += screenTop;
+                cursorPosition = cursorPosition.withRelativeRow(-screenTop);
+            }
+        }
+        setWholeBufferDirty();
+    }
+
+    /**
+     * Erases part of the cursor row (EL)
+     * @param mode 0 from the cursor to the end of the row, 1 from the start of the row to the cursor, 2 the whole row
+     */
+    synchronized void eraseInLine(int mode) {
+        int column = Math.min(cursorPosition.getColumn(), terminalSize.getColumns() - 1);
+        if(mode == 0) {
+            fillCursorRow(column, terminalSize.getColumns());
+        }
+        else if(mode == 1) {
+            fillCursorRow(0, column + 1);
+        }
+        else if(mode == 2) {
+            fillCursorRow(0, terminalSize.getColumns());
+        }
+    }
+
+    /**
+     * Erases a number of cells starting at the cursor, without moving the cursor (ECH)
+     */
+    synchronized void eraseCharacters(int count) {
+        int column = Math.min(cursorPosition.getColumn(), terminalSize.getColumns() - 1);
+        fillCursorRow(column, Math.min(terminalSize.getColumns(), column + count));
+    }
+
+    /**
+     * Inserts blank cells at the cursor, shifting the rest of the row to the right (ICH)
+     */
+    synchronized void insertCharacters(int count) {
+        int column = Math.min(cursorPosition.getColumn(), terminalSize.getColumns() - 1);
+        currentTextBuffer.insertCharacters(cursorPosition.getRow(), column, count, terminalSize.getColumns(), getBlankCharacter());
+        markCursorRowDirty(column, terminalSize.getColumns());
+    }
+
+    /**
+     * Deletes cells at the cursor, shifting the rest of the row to the left (DCH)
+     */
+    synchronized void deleteCharacters(int count) {
+        int column = Math.min(cursorPosition.getColumn(), terminalSize.getColumns() - 1);
+        currentTextBuffer.deleteCharacters(cursorPosition.getRow(), column, count, terminalSize.getColumns(), getBlankCharacter());
+        markCursorRowDirty(column, terminalSize.getColumns());
+    }
+
+    private void fillCursorRow(int fromColumn, int toColumn) {
+        currentTextBuffer.fill(cursorPosition.getRow(), fromColumn, toColumn, getBlankCharacter());
+        markCursorRowDirty(fromColumn, toColumn);
+    }
+
+    private void markCursorRowDirty(int fromColumn, int toColumn) {
+        if(wholeBufferDirty) {
+            return;
+        }
+        dirtyRegion.mark(cursorPosition.getRow(), fromColumn, toColumn);
+        if(dirtyRegion.getDirtyCellCount() > (terminalSize.getColumns() * terminalSize.getRows() * 0.9)) {
+            setWholeBufferDirty();
+        }
+    }
+
+    /**
+     * Erased cells get the current background color, like xterm does
+     */
+    private TextCharacter getBlankCharacter() {
+        if(activeBackgroundColor == TextColor.ANSI.DEFAULT) {
+            return TextCharacter.DEFAULT_CHARACTER;
+        }
+        return TextStyle.of(TextColor.ANSI.DEFAULT, activeBackgroundColor, EnumSet.noneOf(SGR.class)).toTextCharacter(' ');
+    }
+
+    private int getScreenTopBufferRow() {
+        return Math.max(0, currentTextBuffer.getLineCount() - terminalSize.getRows());
+    }
+
+    synchronized int getScrollRegionTop() {
+        return scrollRegionTop;
+    }
+
+    synchronized int getScrollRegionBottom() {
+        return scrollRegionBottom == -1 ? terminalSize.getRows() - 1 : scrollRegionBottom;
+    }
+
+    private boolean isScrollRegionSet() {
+        return scrollRegionTop != 0 || (scrollRegionBottom != -1 && scrollRegionBottom != terminalSize.getRows() - 1);
+    }
+
+    /**
+     * Scrolls the lines between two screen rows (inclusive) up for a positive count and down for a negative count.
+     * Lines scrolled out are lost, this doesn't add anything to the backlog.
+     */
+    private void scrollRegion(int top, int bottom, int count) {
+        // Make sure all lines on the screen exist in the buffer, so the indexes below are stable
+        while(currentTextBuffer.getLineCount() < terminalSize.getRows()) {
+            currentTextBuffer.newLine();
+        }
+        int screenTop = getScreenTopBufferRow();
+        int lines = Math.min(Math.abs(count), bottom - top + 1);
+        for(int i = 0; i < lines; i++) {
+            if(count > 0) {
+                currentTextBuffer.removeLine(screenTop + top);
+                currentTextBuffer.insertLine(screenTop + bottom);
+            }
+            else {
+                currentTextBuffer.removeLine(screenTop + bottom);
+                currentTextBuffer.insertLine(screenTop + top);
             }
-            bufferWalker.onLine(row, bufferLine);
         }
+        setWholeBufferDirty();
+    }
+
+    private void moveCursorDown(int column) {
+        if(isScrollRegionSet() && getCursorPosition().getRow() == getScrollRegionBottom()) {
+            scrollRegion(scrollRegionTop, getScrollRegionBottom(), 1);
+            cursorPosition = cursorPosition.withColumn(column);
+            return;
+        }
+        cursorPosition = cursorPosition.withColumn(column).withRelativeRow(1);
+        while(cursorPosition.getRow() >= currentTextBuffer.getLineCount()) {
+            currentTextBuffer.newLine();
+        }
+        trimBufferBacklog();
+        correctCursor();
     }
 
     synchronized void putCharacter(TextCharacter terminalCharacter) {
@@ -369,14 +687,9 @@ public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualT
             // Update the buffer
             int i = currentTextBuffer.setCharacter(cursorPosition.getRow(), cursorPosition.getColumn(), terminalCharacter);
             if(!wholeBufferDirty) {
-                dirtyTerminalCells.add(new TerminalPosition(cursorPosition.getColumn(), cursorPosition.getRow()));
-                if(i == 1) {
-                    dirtyTerminalCells.add(new TerminalPosition(cursorPosition.getColumn() + 1, cursorPosition.getRow()));
-                }
-                else if(i == 2) {
-                    dirtyTerminalCells.add(new TerminalPosition(cursorPosition.getColumn() - 1, cursorPosition.getRow()));
-                }
-                if(dirtyTerminalCells.size() > (terminalSize.getColumns() * terminalSize.getRows() * 0.9)) {
+                int column = cursorPosition.getColumn();
+                dirtyRegion.mark(cursorPosition.getRow(), i == 2 ? column - 1 : column, i == 1 ? column + 2 : column + 1);
+                if(dirtyRegion.getDirtyCellCount() > (terminalSize.getColumns() * terminalSize.getRows() * 0.9)) {
                     setWholeBufferDirty();
                 }
             }
@@ -393,12 +706,7 @@ public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualT
      * Moves the text cursor to the first column of the next line and trims the backlog of necessary
      */
     private void moveCursorToNextLine() {
-        cursorPosition = cursorPosition.withColumn(0).withRelativeRow(1);
-        if(cursorPosition.getRow() >= currentTextBuffer.getLineCount()) {
-            currentTextBuffer.newLine();
-        }
-        trimBufferBacklog();
-        correctCursor();
+        moveCursorDown(0);
     }
 
     /**
@@ -407,7 +715,7 @@ public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualT
      */
     private void setWholeBufferDirty() {
         wholeBufferDirty = true;
-        dirtyTerminalCells.clear();
+        dirtyRegion.clear();
     }
 
     private void trimBufferBacklog() {
@@ -416,27 +724,34 @@ public class DefaultVirtualTerminal extends AbstractTerminal implements VirtualT
         if(currentTextBuffer == privateModeTextBuffer) {
             bufferBacklogSize = 0;
         }
-        int trimBacklogRows = currentTextBuffer.getLineCount() - (bufferBacklogSize + terminalSize.getRows());
+        int trimBacklogRows = Math.max(0, currentTextBuffer.getLineCount() - (bufferBacklogSize + terminalSize.getRows()));
+        currentTextBuffer.removeTopLines(trimBacklogRows);
+        if(currentTextBuffer.getMemoryUsage() > backlogMemoryLimit) {
+            // Go an eighth below the limit, so that we don't have to do this again for every new line
+            long target = backlogMemoryLimit - backlogMemoryLimit / 8;
+            while(currentTextBuffer.getLineCount() > terminalSize.getRows() && currentTextBuffer.getMemoryUsage() > target) {
+                currentTextBuffer.removeTopLines(1);
+                trimBacklogRows++;
+            }
+        }
         if(trimBacklogRows > 0) {
-            currentTextBuffer.removeTopLines(trimBacklogRows);
+            discardedLineCount += trimBacklogRows;
+
             // Adjust cursor position
             cursorPosition = cursorPosition.withRelativeRow(-trimBacklogRows);
             correctCursor();
             if(!wholeBufferDirty) {
                 // Adjust all "dirty" positions
-                TreeSet<TerminalPosition> newDirtySet = new TreeSet<TerminalPosition>();
-                for(TerminalPosition dirtyPosition: dirtyTerminalCells) {
-                    TerminalPosition adjustedPosition = dirtyPosition.withRelativeRow(-trimBacklogRows);
-                    if(adjustedPosition.getRow() >= 0) {
-                        newDirtySet.add(adjustedPosition);
-                    }
-                }
-                dirtyTerminalCells.clear();
-                dirtyTerminalCells.addAll(newDirtySet);
+                dirtyRegion.shiftRows(-trimBacklogRows);
             }
         }
     }
 
+    private void updateColdLineStorage() {
+        // Keep some lines above the screen unpacked as well, they are often read when scrolling back a little
+        regularTextBuffer.setColdLineStorage(terminalSize.getRows() + 100, compressBacklog);
+    }
+
     private void correctCursor() {
         this.cursorPosition = cursorPosition.withColumn(Math.min(cursorPosition.getColumn(), terminalSize.getColumns() - 1));
         this.cursorPosition = cursorPosition.withRow(Math.min(cursorPosition.getRow(), Math.max(terminalSize.getRows(), getBufferLineCount()) - 1));
@@ -0,0 +1,300 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal.virtual;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of which cells in a text buffer have changed, as one span of columns per row. Marking a cell widens the
+ * span of its row to include it, so two changes on the same row also cover the cells in between; in return marking is
+ * just two comparisons and a region takes a few bytes per row no matter how many cells are changed. This is how
+ * {@link DefaultVirtualTerminal} reports changes to the components that draw it, and how those components can collect
+ * the area they need to redraw. {@code MultiWindowTextGUI} uses it in the same way to collect the parts of the screen
+ * that windows have changed.
+ * <p>
+ * Rows are kept in a window that moves and grows to cover the rows that have been marked, which is normally just the
+ * visible part of the buffer. The whole region can also be marked as dirty, in which case the individual rows are
+ * ignored.
+ * <p>
+ * This class is not thread-safe.
+ * @author Martin
+ */
+public class DirtyRegion {
+    private int firstRow;
+    private int[] spanStarts;
+    private int[] spanEnds;
+    private int firstDirtyRow;
+    private int lastDirtyRow;
+    private long dirtyCellCount;
+    private boolean allDirty;
+
+    /**
+     * Creates a new region with nothing marked as dirty
+     */
+    public DirtyRegion() {
+        this.firstRow = 0;
+        this.spanStarts = new int[0];
+        this.spanEnds = new int[0];
+        clear();
+    }
+
+    /**
+     * Marks a single cell as dirty
+     * @param row Row of the cell
+     * @param column Column of the cell
+     */
+    public void mark(int row, int column) {
+        mark(row, column, column + 1);
+    }
+
+    /**
+     * Marks a range of cells on one row as dirty
+     * @param row Row of the cells
+     * @param fromColumn First column to mark
+     * @param toColumn Column after the last one to mark
+     */
+    public void mark(int row, int fromColumn, int toColumn) {
+        if(row < 0 || fromColumn >= toColumn) {
+            return;
+        }
+        fromColumn = Math.max(0, fromColumn);
+        ensureRowInWindow(row);
+        int index = row - firstRow;
+        int start = spanStarts[index];
+        int end = spanEnds[index];
+        if(start >= end) {
+            spanStarts[index] = fromColumn;
+            spanEnds[index] = toColumn;
+            dirtyCellCount += toColumn - fromColumn;
+        }
+        else if(fromColumn < start || toColumn > end) {
+            spanStarts[index] = Math.min(start, fromColumn);
+            spanEnds[index] = Math.max(end, toColumn);
+            dirtyCellCount += (spanEnds[index] - spanStarts[index]) - (end - start);
+        }
+        else {
+            return;
+        }
+        if(firstDirtyRow == -1 || row < firstDirtyRow) {
+            firstDirtyRow = row;
+        }
+        if(row > lastDirtyRow) {
+            lastDirtyRow = row;
+        }
+    }
+
+    /**
+     * Marks everything as dirty
+     */
+    public void markAll() {
+        allDirty = true;
+    }
+
+    /**
+     * Adds everything marked in another region to this one
+     * @param other Region to add
+     */
+    public void markAll(DirtyRegion other) {
+        if(other.allDirty) {
+            allDirty = true;
+        }
+        for(int row = other.firstDirtyRow; row != -1 && row <= other.lastDirtyRow; row++) {
+            mark(row, other.getDirtyStart(row), other.getDirtyEnd(row));
+        }
+    }
+
+    /**
+     * Returns {@code true} if {@code markAll()} has been called since the region was last cleared
+     * @return {@code true} if everything is dirty
+     */
+    public boolean isAllDirty() {
+        return allDirty;
+    }
+
+    /**
+     * Returns {@code true} if nothing is dirty
+     * @return {@code true} if nothing has been marked since the region was last cleared
+     */
+    public boolean isEmpty() {
+        return !allDirty && firstDirtyRow == -1;
+    }
+
+    /**
+     * Checks if a cell is dirty, either through its row's span or because everything is dirty
+     * @param row Row of the cell
+     * @param column Column of the cell
+     * @return {@code true} if the cell is dirty
+     */
+    public boolean isDirty(int row, int column) {
+        return allDirty || (column >= getDirtyStart(row) && column < getDirtyEnd(row));
+    }
+
+    /**
+     * Returns the first row that has a dirty span, not counting {@code markAll()}
+     * @return Index of the first dirty row or -1 if no row is dirty
+     */
+    public int getFirstDirtyRow() {
+        return firstDirtyRow;
+    }
+
+    /**
+     * Returns the last row that has a dirty span, not counting {@code markAll()}
+     * @return Index of the last dirty row or -1 if no row is dirty
+     */
+    public int getLastDirtyRow() {
+        return lastDirtyRow;
+    }
+
+    /**
+     * Finds the next row with a dirty span
+     * @param row Row to start searching from, inclusive
+     * @return The first dirty row at or after {@code row}, or -1 if there are none
+     */
+    public int getNextDirtyRow(int row) {
+        for(row = Math.max(row, firstDirtyRow); firstDirtyRow != -1 && row <= lastDirtyRow; row++) {
+            if(getDirtyStart(row) < getDirtyEnd(row)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the first dirty column of a row
+     * @param row Row to check
+     * @return First dirty column, or 0 if the row has no dirty span (and {@code getDirtyEnd(row)} returns 0 as well)
+     */
+    public int getDirtyStart(int row) {
+        int index = row - firstRow;
+        if(index < 0 || index >= spanStarts.length || spanStarts[index] >= spanEnds[index]) {
+            return 0;
+        }
+        return spanStarts[index];
+    }
+
+    /**
+     * Returns the column after the last dirty column of a row
+     * @param row Row to check
+     * @return Column after the last dirty one, or 0 if the row has no dirty span
+     */
+    public int getDirtyEnd(int row) {
+        int index = row - firstRow;
+        if(index < 0 || index >= spanEnds.length) {
+            return 0;
+        }
+        return spanEnds[index];
+    }
+
+    /**
+     * Returns the total number of cells covered by the dirty spans, not counting {@code markAll()}
+     * @return Number of dirty cells
+     */
+    public long getDirtyCellCount() {
+        return dirtyCellCount;
+    }
+
+    /**
+     * Moves all dirty spans up or down, used when rows are removed from or added to the top of the buffer. Spans that
+     * end up above the first row are dropped.
+     * @param rows Number of rows to move the spans down, negative to move them up
+     */
+    public void shiftRows(int rows) {
+        if(firstDirtyRow == -1 || rows == 0) {
+            return;
+        }
+        if(rows < 0) {
+            // Clear the rows that will move above row 0
+            for(int row = firstDirtyRow; row < Math.min(-rows, lastDirtyRow + 1); row++) {
+                clearRow(row);
+            }
+        }
+        firstRow += rows;
+        firstDirtyRow = Math.max(0, firstDirtyRow + rows);
+        lastDirtyRow += rows;
+        firstDirtyRow = getNextDirtyRow(firstDirtyRow);
+        if(firstDirtyRow == -1) {
+            lastDirtyRow = -1;
+        }
+    }
+
+    /**
+     * Resets the region so that nothing is dirty
+     */
+    public void clear() {
+        for(int row = firstDirtyRow; row != -1 && row <= lastDirtyRow; row++) {
+            clearRow(row);
+        }
+        firstDirtyRow = -1;
+        lastDirtyRow = -1;
+        dirtyCellCount = 0;
+        allDirty = false;
+    }
+
+    private void clearRow(int row) {
+        int index = row - firstRow;
+        if(index >= 0 && index < spanStarts.length) {
+            dirtyCellCount -= Math.max(0, spanEnds[index] - spanStarts[index]);
+            spanStarts[index] = 0;
+            spanEnds[index] = 0;
+        }
+    }
+
+    private void ensureRowInWindow(int row) {
+        int index = row - firstRow;
+        if(index >= 0 && index < spanStarts.length) {
+            return;
+        }
+        // Make a new window covering the dirty rows and the new one, with some room to grow downwards
+        int newFirstRow = firstDirtyRow == -1 ? row : Math.min(row, firstDirtyRow);
+        int newLastRow = firstDirtyRow == -1 ? row : Math.max(row, lastDirtyRow);
+        int capacity = Math.max(spanStarts.length, 16);
+        while(capacity < newLastRow - newFirstRow + 1) {
+            capacity *= 2;
+        }
+        if(capacity == spanStarts.length) {
+            if(firstDirtyRow == -1) {
+                // All rows are clean already, the window can just be moved
+                firstRow = newFirstRow;
+                return;
+            }
+            // Move the dirty spans within the arrays we already have
+            int length = lastDirtyRow - firstDirtyRow + 1;
+            int from = firstDirtyRow - firstRow;
+            int to = firstDirtyRow - newFirstRow;
+            System.arraycopy(spanStarts, from, spanStarts, to, length);
+            System.arraycopy(spanEnds, from, spanEnds, to, length);
+            Arrays.fill(spanStarts, 0, to, 0);
+            Arrays.fill(spanEnds, 0, to, 0);
+            Arrays.fill(spanStarts, to + length, capacity, 0);
+            Arrays.fill(spanEnds, to + length, capacity, 0);
+        }
+        else {
+            int[] newStarts = new int[capacity];
+            int[] newEnds = new int[capacity];
+            if(firstDirtyRow != -1) {
+                int length = lastDirtyRow - firstDirtyRow + 1;
+                System.arraycopy(spanStarts, firstDirtyRow - firstRow, newStarts, firstDirtyRow - newFirstRow, length);
+                System.arraycopy(spanEnds, firstDirtyRow - firstRow, newEnds, firstDirtyRow - newFirstRow, length);
+            }
+            spanStarts = newStarts;
+            spanEnds = newEnds;
+        }
+        firstRow = newFirstRow;
+    }
+}
@@ -18,48 +18,157 @@
  */
 package com.googlecode.lanterna.terminal.virtual;
 
+import com.googlecode.lanterna.PinnedTextStyles;
+import com.googlecode.lanterna.TerminalTextUtils;
 import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.TextStyle;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * This class is used to store lines of text inside of a terminal emulator. As used by {@link DefaultVirtualTerminal}, it keeps
  * two {@link TextBuffer}s, one for private mode and one for normal mode and it can switch between them as needed.
+ * <p>
+ * The lines are kept in a ring buffer so that any line can be reached in constant time and adding a line at the bottom
+ * or dropping lines at the top never moves the others. Each line stores its cells packed into a {@code long[]}, one
+ * {@code long} per cell holding the character and the id of the interned {@link TextStyle}, so a line is two objects no
+ * matter how long it is. The buffer pins the styles it stores the ids of, see {@link PinnedTextStyles}. Lines that have scrolled far enough up can optionally be compressed into a run-length encoded
+ * {@code byte[]}, which usually takes one or two bytes per cell; they are decoded again when read and unpacked when
+ * written to.
+ * <p>
+ * The buffer keeps an estimate of how much memory its lines are using, which {@link DefaultVirtualTerminal} uses to
+ * limit the backlog by size.
  */
 class TextBuffer {
-    private static final TextCharacter DOUBLE_WIDTH_CHAR_PADDING = new TextCharacter(' ');
+    private static final long DEFAULT_CELL = pack(TextCharacter.DEFAULT_CHARACTER);
+    private static final long DOUBLE_WIDTH_CHAR_PADDING = -1L;
+    private static final long[] EMPTY_LINE = new long[0];
+    // Rough size of a Line object with its array headers, used for the memory estimate
+    private static final int LINE_OVERHEAD = 48;
 
-    private final LinkedList<List<TextCharacter>> lines;
+    private Line[] lines;
+    private int firstLine;
+    private int lineCount;
+    private long memoryUsage;
+    private final PinnedTextStyles pinnedStyles;
+
+    // Lines closer to the bottom than this are kept unpacked and with spare capacity, since they are likely written to
+    private int hotLineCount;
+    private boolean compressOldLines;
+
+    // The last compressed line decoded for reading
+    private byte[] decodedSource;
+    private long[] decodedCells;
+    private byte[] encodeBuffer;
+    private final int[] varIntValue;
 
     TextBuffer() {
-        this.lines = new LinkedList<List<TextCharacter>>();
+        this.lines = new Line[64];
+        this.firstLine = 0;
+        this.lineCount = 0;
+        this.memoryUsage = 0;
+        this.pinnedStyles = new PinnedTextStyles();
+        this.hotLineCount = 128;
+        this.compressOldLines = false;
+        this.decodedSource = null;
+        this.decodedCells = EMPTY_LINE;
+        this.encodeBuffer = new byte[256];
+        this.varIntValue = new int[1];
         newLine();
     }
 
     synchronized void newLine() {
-        lines.add(new ArrayList<TextCharacter>(200));
+        if(lineCount == lines.length) {
+            Line[] newLines = new Line[lines.length * 2];
+            for(int i = 0; i < lineCount; i++) {
+                newLines[i] = getLine(i);
+            }
+            lines = newLines;
+            firstLine = 0;
+        }
+        Line line = new Line();
+        lines[(firstLine + lineCount) & (lines.length - 1)] = line;
+        lineCount++;
+        memoryUsage += LINE_OVERHEAD;
+        if(lineCount > hotLineCount) {
+            coolDown(getLine(lineCount - hotLineCount - 1));
+        }
     }
 
     synchronized void removeTopLines(int numberOfLinesToRemove) {
+        numberOfLinesToRemove = Math.min(numberOfLinesToRemove, lineCount);
         for(int i = 0; i < numberOfLinesToRemove; i++) {
-            lines.removeFirst();
+            memoryUsage -= getLine(0).getMemoryUsage();
+            lines[firstLine] = null;
+            firstLine = (firstLine + 1) & (lines.length - 1);
+            lineCount--;
         }
     }
 
-    synchronized void clear() {
-        lines.clear();
+    synchronized void insertLine(int lineNumber) {
+        while(lineNumber > lineCount) {
+            newLine();
+        }
         newLine();
+        // Rotate the new line from the bottom up to its place, this is cheap since lines are inserted near the bottom
+        Line inserted = getLine(lineCount - 1);
+        for(int i = lineCount - 1; i > lineNumber; i--) {
+            setLine(i, getLine(i - 1));
+        }
+        setLine(lineNumber, inserted);
     }
 
-    ListIterator<List<TextCharacter>> getLinesFrom(int rowNumber) {
-        return lines.listIterator(rowNumber);
+    synchronized void removeLine(int lineNumber) {
+        if(lineNumber >= lineCount) {
+            return;
+        }
+        memoryUsage -= getLine(lineNumber).getMemoryUsage();
+        for(int i = lineNumber; i < lineCount - 1; i++) {
+            setLine(i, getLine(i + 1));
+        }
+        setLine(lineCount - 1, null);
+        lineCount--;
+    }
+
+    synchronized void clear() {
+        Arrays.fill(lines, null);
+        firstLine = 0;
+        lineCount = 0;
+        memoryUsage = 0;
+        newLine();
     }
 
     synchronized int getLineCount() {
-        return lines.size();
+        return lineCount;
+    }
+
+    /**
+     * Returns an estimate of the number of bytes used by the lines in this buffer
+     */
+    synchronized long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * Sets how lines that are no longer among the last {@code hotLineCount} lines are stored
+     * @param hotLineCount How many lines at the bottom of the buffer are kept ready for writing
+     * @param compressOldLines If {@code true}, lines above those are compressed, otherwise they are only trimmed to
+     *                         their length
+     */
+    synchronized void setColdLineStorage(int hotLineCount, boolean compressOldLines) {
+        boolean changed = compressOldLines != this.compressOldLines || hotLineCount < this.hotLineCount;
+        this.hotLineCount = Math.max(1, hotLineCount);
+        this.compressOldLines = compressOldLines;
+        if(changed) {
+            for(int i = 0; i < lineCount - this.hotLineCount; i++) {
+                Line line = getLine(i);
+                if(!compressOldLines) {
+                    unpack(line);
+                }
+                coolDown(line);
+            }
+        }
     }
 
     synchronized int setCharacter(int lineNumber, int columnIndex, TextCharacter textCharacter) {
@@ -70,31 +179,32 @@ class TextBuffer {
         if(textCharacter == null) {
             textCharacter = TextCharacter.DEFAULT_CHARACTER;
         }
-        while(lineNumber >= lines.size()) {
-            newLine();
-        }
-        List<TextCharacter> line = lines.get(lineNumber);
-        while(line.size() <= columnIndex) {
-            line.add(TextCharacter.DEFAULT_CHARACTER);
-        }
+        return setCell(getLineForUpdate(lineNumber), columnIndex, packAndPin(textCharacter));
+    }
+
+    private int setCell(Line line, int columnIndex, long cell) {
+        ensureLength(line, columnIndex + 1);
+        long[] cells = line.cells;
 
         // Default
         int returnStyle = 0;
 
         // Check if we are overwriting a double-width character, in that case we need to reset the other half
-        if(line.get(columnIndex).isDoubleWidth()) {
-            line.set(columnIndex + 1, line.get(columnIndex).withCharacter(' '));
+        long previous = cells[columnIndex];
+        if(previous != DOUBLE_WIDTH_CHAR_PADDING && TerminalTextUtils.isCharDoubleWidth(getCharacter(previous))
+                && columnIndex + 1 < line.length) {
+            cells[columnIndex + 1] = withCharacter(previous, ' ');
             returnStyle = 1; // this character and the one to the right
         }
-        else if(line.get(columnIndex) == DOUBLE_WIDTH_CHAR_PADDING) {
-            line.set(columnIndex - 1, TextCharacter.DEFAULT_CHARACTER);
+        else if(previous == DOUBLE_WIDTH_CHAR_PADDING) {
+            cells[columnIndex - 1] = DEFAULT_CELL;
             returnStyle = 2; // this character and the one to the left
         }
-        line.set(columnIndex, textCharacter);
+        cells[columnIndex] = cell;
 
-        if(textCharacter.isDoubleWidth()) {
+        if(cell != DOUBLE_WIDTH_CHAR_PADDING && TerminalTextUtils.isCharDoubleWidth(getCharacter(cell))) {
             // We don't report this column as dirty (yet), it's implied since a double-width character is reported
-            setCharacter(lineNumber, columnIndex + 1, DOUBLE_WIDTH_CHAR_PADDING);
+            setCell(line, columnIndex + 1, DOUBLE_WIDTH_CHAR_PADDING);
         }
         return returnStyle;
     }
@@ -104,17 +214,346 @@ class TextBuffer {
             throw new IllegalArgumentException("Illegal argument to TextBuffer.getCharacter(..), lineNumber = " +
                     lineNumber + ", columnIndex = " + columnIndex);
         }
-        if(lineNumber >= lines.size()) {
+        if(lineNumber >= lineCount) {
+            return TextCharacter.DEFAULT_CHARACTER;
+        }
+        Line line = getLine(lineNumber);
+        if(columnIndex >= line.length) {
+            return TextCharacter.DEFAULT_CHARACTER;
+        }
+        long[] cells = getCellsForReading(line);
+        long cell = cells[columnIndex];
+        if(cell == DOUBLE_WIDTH_CHAR_PADDING) {
+            cell = cells[columnIndex - 1];
+        }
+        return unpack(cell);
+    }
+
+    /**
+     * Returns the packed cells of a line for reading with {@link #getCharacter(long[], int, int)}. For a line that is
+     * compressed, this is a decoded copy.
+     */
+    synchronized long[] getLineCells(int lineNumber) {
+        if(lineNumber < 0 || lineNumber >= lineCount) {
+            return EMPTY_LINE;
+        }
+        Line line = getLine(lineNumber);
+        if(line.compressed == null) {
+            return line.cells;
+        }
+        long[] cells = new long[line.length];
+        decode(line.compressed, cells);
+        return cells;
+    }
+
+    synchronized int getLineLength(int lineNumber) {
+        if(lineNumber < 0 || lineNumber >= lineCount) {
+            return 0;
+        }
+        return getLine(lineNumber).length;
+    }
+
+    /**
+     * Reads a character from the cells returned by {@link #getLineCells(int)}
+     */
+    static TextCharacter getCharacter(long[] cells, int length, int columnIndex) {
+        if(columnIndex >= length || columnIndex >= cells.length) {
             return TextCharacter.DEFAULT_CHARACTER;
         }
-        List<TextCharacter> line = lines.get(lineNumber);
-        if(line.size() <= columnIndex) {
+        long cell = cells[columnIndex];
+        if(cell == DOUBLE_WIDTH_CHAR_PADDING) {
+            cell = cells[columnIndex - 1];
+        }
+        return unpack(cell);
+    }
+
+    synchronized void fill(int lineNumber, int fromColumn, int toColumn, TextCharacter fill) {
+        if(fromColumn >= toColumn) {
+            return;
+        }
+        Line line = getLineForUpdate(lineNumber);
+        long fillCell = packAndPin(fill);
+        if(fillCell == DEFAULT_CELL && toColumn >= line.length) {
+            // Cells past the end of the line are already blank, just cut the line short
+            if(line.length > fromColumn) {
+                Arrays.fill(line.cells, fromColumn, line.length, DEFAULT_CELL);
+                line.length = fromColumn;
+            }
+            return;
+        }
+        ensureLength(line, toColumn);
+        Arrays.fill(line.cells, fromColumn, toColumn, fillCell);
+    }
+
+    synchronized void insertCharacters(int lineNumber, int columnIndex, int count, int lineWidth, TextCharacter fill) {
+        Line line = getLineForUpdate(lineNumber);
+        long fillCell = packAndPin(fill);
+        if(line.length <= columnIndex && fillCell == DEFAULT_CELL) {
+            return;
+        }
+        count = Math.max(0, Math.min(count, lineWidth - columnIndex));
+        int newLength = Math.min(lineWidth, Math.max(line.length, columnIndex) + count);
+        ensureLength(line, newLength);
+        long[] cells = line.cells;
+        int moved = newLength - columnIndex - count;
+        if(moved > 0) {
+            System.arraycopy(cells, columnIndex, cells, columnIndex + count, moved);
+        }
+        Arrays.fill(cells, columnIndex, columnIndex + count, fillCell);
+        if(line.length > newLength) {
+            // Whatever was pushed past the right edge is lost
+            Arrays.fill(cells, newLength, line.length, DEFAULT_CELL);
+            line.length = newLength;
+        }
+    }
+
+    synchronized void deleteCharacters(int lineNumber, int columnIndex, int count, int lineWidth, TextCharacter fill) {
+        Line line = getLineForUpdate(lineNumber);
+        long fillCell = packAndPin(fill);
+        count = Math.max(0, Math.min(count, lineWidth - columnIndex));
+        if(columnIndex < line.length) {
+            int removed = Math.min(count, line.length - columnIndex);
+            long[] cells = line.cells;
+            System.arraycopy(cells, columnIndex + removed, cells, columnIndex, line.length - columnIndex - removed);
+            Arrays.fill(cells, line.length - removed, line.length, DEFAULT_CELL);
+            line.length -= removed;
+        }
+        if(fillCell != DEFAULT_CELL && count > 0) {
+            // Only the cells shifted in at the end of the line get the fill
+            ensureLength(line, lineWidth);
+            Arrays.fill(line.cells, lineWidth - count, lineWidth, fillCell);
+        }
+    }
+
+    private Line getLine(int lineNumber) {
+        return lines[(firstLine + lineNumber) & (lines.length - 1)];
+    }
+
+    private void setLine(int lineNumber, Line line) {
+        lines[(firstLine + lineNumber) & (lines.length - 1)] = line;
+    }
+
+    private Line getLineForUpdate(int lineNumber) {
+        while(lineNumber >= lineCount) {
+            newLine();
+        }
+        Line line = getLine(lineNumber);
+        unpack(line);
+        return line;
+    }
+
+    private void ensureLength(Line line, int length) {
+        if(line.cells.length < length) {
+            long[] newCells = Arrays.copyOf(line.cells, Math.max(length, Math.max(16, line.cells.length * 2)));
+            Arrays.fill(newCells, line.cells.length, newCells.length, DEFAULT_CELL);
+            memoryUsage += (newCells.length - line.cells.length) * 8L;
+            line.cells = newCells;
+        }
+        if(line.length < length) {
+            line.length = length;
+        }
+    }
+
+    /**
+     * Called when a line has scrolled out of the hot area at the bottom of the buffer
+     */
+    private void coolDown(Line line) {
+        if(line.compressed != null) {
+            return;
+        }
+        long before = line.getMemoryUsage();
+        if(compressOldLines) {
+            line.compressed = encode(line.cells, line.length);
+            line.cells = EMPTY_LINE;
+        }
+        else if(line.cells.length > line.length) {
+            line.cells = Arrays.copyOf(line.cells, line.length);
+        }
+        memoryUsage += line.getMemoryUsage() - before;
+    }
+
+    private void unpack(Line line) {
+        if(line.compressed == null) {
+            return;
+        }
+        long before = line.getMemoryUsage();
+        line.cells = Arrays.copyOf(getCellsForReading(line), line.length);
+        line.compressed = null;
+        memoryUsage += line.getMemoryUsage() - before;
+    }
+
+    private long[] getCellsForReading(Line line) {
+        if(line.compressed == null) {
+            return line.cells;
+        }
+        if(decodedSource != line.compressed) {
+            if(decodedCells.length < line.length) {
+                decodedCells = new long[Math.max(line.length, decodedCells.length * 2)];
+            }
+            decode(line.compressed, decodedCells);
+            decodedSource = line.compressed;
+        }
+        return decodedCells;
+    }
+
+    /**
+     * Encodes cells as runs of the same style: the style id plus one (zero for double-width padding), the number of
+     * cells in the run and then the character of each cell, all as variable length integers
+     */
+    private byte[] encode(long[] cells, int length) {
+        int position = 0;
+        int index = 0;
+        while(index < length) {
+            long cell = cells[index];
+            int styleMarker = cell == DOUBLE_WIDTH_CHAR_PADDING ? 0 : (int)(cell >>> 16) + 1;
+            int runEnd = index + 1;
+            while(runEnd < length && getStyleMarker(cells[runEnd]) == styleMarker) {
+                runEnd++;
+            }
+            // Worst case is three bytes for each number
+            ensureEncodeCapacity(position + 6 + (runEnd - index) * 3);
+            position = writeVarInt(styleMarker, position);
+            position = writeVarInt(runEnd - index, position);
+            if(styleMarker != 0) {
+                for(int i = index; i < runEnd; i++) {
+                    position = writeVarInt((char)cells[i], position);
+                }
+            }
+            index = runEnd;
+        }
+        return Arrays.copyOf(encodeBuffer, position);
+    }
+
+    private void decode(byte[] encoded, long[] cells) {
+        int position = 0;
+        int index = 0;
+        int[] value = varIntValue;
+        while(position < encoded.length) {
+            position = readVarInt(encoded, position, value);
+            int styleMarker = value[0];
+            position = readVarInt(encoded, position, value);
+            int runLength = value[0];
+            for(int i = 0; i < runLength; i++) {
+                if(styleMarker == 0) {
+                    cells[index++] = DOUBLE_WIDTH_CHAR_PADDING;
+                }
+                else {
+                    position = readVarInt(encoded, position, value);
+                    cells[index++] = ((long)(styleMarker - 1) << 16) | value[0];
+                }
+            }
+        }
+    }
+
+    private static int getStyleMarker(long cell) {
+        return cell == DOUBLE_WIDTH_CHAR_PADDING ? 0 : (int)(cell >>> 16) + 1;
+    }
+
+    private void ensureEncodeCapacity(int capacity) {
+        if(encodeBuffer.length < capacity) {
+            encodeBuffer = Arrays.copyOf(encodeBuffer, Math.max(capacity, encodeBuffer.length * 2));
+        }
+    }
+
+    private int writeVarInt(int value, int position) {
+        while((value & ~0x7f) != 0) {
+            encodeBuffer[position++] = (byte)((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        encodeBuffer[position++] = (byte)value;
+        return position;
+    }
+
+    private static int readVarInt(byte[] encoded, int position, int[] value) {
+        int result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = encoded[position++];
+            result |= (b & 0x7f) << shift;
+            shift += 7;
+        }
+        while((b & 0x80) != 0);
+        value[0] = result;
+        return position;
+    }
+
+    private static long pack(TextCharacter textCharacter) {
+        return ((long)textCharacter.getStyle().getId() << 16) | textCharacter.getCharacter();
+    }
+
+    private long packAndPin(TextCharacter textCharacter) {
+        if(pinnedStyles.pin(textCharacter.getStyle())) {
+            retainUsedStyles();
+        }
+        return pack(textCharacter);
+    }
+
+    /**
+     * Unpins the styles that are no longer used by any cell in the buffer, so they can be released
+     */
+    private void retainUsedStyles() {
+        BitSet usedIds = new BitSet();
+        int[] value = varIntValue;
+        for(int i = 0; i < lineCount; i++) {
+            Line line = getLine(i);
+            if(line.compressed == null) {
+                for(int index = 0; index < line.length; index++) {
+                    long cell = line.cells[index];
+                    if(cell != DOUBLE_WIDTH_CHAR_PADDING) {
+                        usedIds.set((int)(cell >>> 16));
+                    }
+                }
+                continue;
+            }
+            // Walk through the runs without decoding the characters
+            byte[] encoded = line.compressed;
+            int position = 0;
+            while(position < encoded.length) {
+                position = readVarInt(encoded, position, value);
+                int styleMarker = value[0];
+                position = readVarInt(encoded, position, value);
+                int runLength = value[0];
+                if(styleMarker != 0) {
+                    usedIds.set(styleMarker - 1);
+                    for(int j = 0; j < runLength; j++) {
+                        position = readVarInt(encoded, position, value);
+                    }
+                }
+            }
+        }
+        pinnedStyles.retainOnly(usedIds);
+    }
+
+    private static TextCharacter unpack(long cell) {
+        if(cell == DEFAULT_CELL) {
             return TextCharacter.DEFAULT_CHARACTER;
         }
-        TextCharacter textCharacter = line.get(columnIndex);
-        if(textCharacter == DOUBLE_WIDTH_CHAR_PADDING) {
-            return line.get(columnIndex - 1);
+        return TextStyle.getById((int)(cell >>> 16)).toTextCharacter(getCharacter(cell));
+    }
+
+    private static char getCharacter(long cell) {
+        return (char)cell;
+    }
+
+    private static long withCharacter(long cell, char character) {
+        return (cell & ~0xffffL) | character;
+    }
+
+    private static class Line {
+        // Unpacked cells, only the first length are in use; empty while the line is compressed
+        private long[] cells;
+        private int length;
+        private byte[] compressed;
+
+        Line() {
+            this.cells = EMPTY_LINE;
+            this.length = 0;
+            this.compressed = null;
+        }
+
+        long getMemoryUsage() {
+            return LINE_OVERHEAD + cells.length * 8L + (compressed != null ? compressed.length : 0);
         }
-        return textCharacter;
     }
 }
@@ -0,0 +1,850 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal.virtual;
+
+import com.googlecode.lanterna.SGR;
+import com.googlecode.lanterna.TerminalPosition;
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TextColor;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.BitSet;
+import java.util.EnumSet;
+
+/**
+ * Parses the output of a program written for a VT100/xterm compatible terminal and applies it to a
+ * {@link DefaultVirtualTerminal}, so that the virtual terminal ends up showing what a real terminal would. This makes
+ * it possible to run other terminal programs inside lanterna, for example in a window of the GUI or behind a telnet
+ * server.
+ * <p>
+ * The data is given to the parser in chunks as it arrives; an escape sequence or a multi-byte character may be split
+ * anywhere between two chunks. The parser is a state machine working on a reused decoding buffer, so apart from the
+ * window title and colors outside of the indexed palette, parsing doesn't allocate any memory of its own.
+ * <p>
+ * Supported are the C0 control characters, cursor movement and positioning, erasing, inserting and deleting of
+ * characters and lines, scrolling regions, SGR attributes including 256 color and 24-bit colors, saving and restoring
+ * the cursor, tab stops, the DEC line drawing character set, the alternate screen (modes 47, 1047, 1048 and 1049), the
+ * cursor visibility and auto-wrap modes and setting the window title through OSC 0 and 2. Sequences that ask the
+ * terminal for a reply, such as device attributes and cursor position reports, and anything else not listed are
+ * silently ignored.
+ * <p>
+ * This class is not thread-safe, {@code parse(..)} should be called by one thread at a time.
+ * @author Martin
+ */
+public class VirtualTerminalStreamParser {
+    private static final int GROUND = 0;
+    private static final int ESCAPE = 1;
+    private static final int ESCAPE_INTERMEDIATE = 2;
+    private static final int CSI = 3;
+    private static final int OSC = 4;
+    private static final int IGNORED_STRING = 5;
+
+    private static final int MAX_PARAMETERS = 16;
+    private static final int MAX_PARAMETER_VALUE = 65535;
+    private static final int MAX_OSC_LENGTH = 4096;
+    private static final int INITIAL_TAB_STOPS = 1024;
+
+    // DEC special graphics, replacing the characters 0x5f to 0x7e when selected with ESC ( 0
+    private static final String DEC_SPECIAL_GRAPHICS =
+            " \u25c6\u2592\u2409\u240c\u240d\u240a\u00b0\u00b1\u2424\u240b\u2518\u2510\u250c\u2514\u253c" +
+            "\u23ba\u23bb\u2500\u23bc\u23bd\u251c\u2524\u2534\u252c\u2502\u2264\u2265\u03c0\u2260\u00a3\u00b7";
+
+    private static final TextColor.ANSI[] ANSI_COLORS = TextColor.ANSI.values();
+
+    private final DefaultVirtualTerminal terminal;
+    private final CharsetDecoder decoder;
+    private final CharBuffer decodedCharacters;
+    private final ByteBuffer carryOver;
+    private final TextColor.Indexed[] indexedColors;
+
+    private int state;
+    private final int[] parameters;
+    private int parameterCount;
+    private char privateMarker;
+    private char intermediate;
+    private final StringBuilder oscString;
+    private String title;
+
+    private TextColor foregroundColor;
+    private TextColor backgroundColor;
+    private final EnumSet<SGR> modifiers;
+    private boolean g0LineDrawing;
+    private boolean g1LineDrawing;
+    private boolean shiftOut;
+    private boolean autoWrap;
+    private boolean alternateScreen;
+    private final BitSet tabStops;
+    private char lastPrintedCharacter;
+
+    private TerminalPosition savedCursorPosition;
+    private TextColor savedForegroundColor;
+    private TextColor savedBackgroundColor;
+    private final EnumSet<SGR> savedModifiers;
+    private boolean savedG0LineDrawing;
+    private boolean savedG1LineDrawing;
+    private boolean savedShiftOut;
+
+    /**
+     * Creates a new parser that expects UTF-8 encoded data
+     * @param terminal Virtual terminal to apply the parsed output to
+     */
+    public VirtualTerminalStreamParser(DefaultVirtualTerminal terminal) {
+        this(terminal, Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Creates a new parser
+     * @param terminal Virtual terminal to apply the parsed output to
+     * @param charset Character set the data given to the parser is encoded in
+     */
+    public VirtualTerminalStreamParser(DefaultVirtualTerminal terminal, Charset charset) {
+        this.terminal = terminal;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.decodedCharacters = CharBuffer.allocate(4096);
+        this.carryOver = ByteBuffer.allocate(16);
+        this.indexedColors = new TextColor.Indexed[256];
+        this.parameters = new int[MAX_PARAMETERS];
+        this.oscString = new StringBuilder();
+        this.modifiers = EnumSet.noneOf(SGR.class);
+        this.savedModifiers = EnumSet.noneOf(SGR.class);
+        this.tabStops = new BitSet(INITIAL_TAB_STOPS);
+        this.title = null;
+        this.state = GROUND;
+        resetState();
+    }
+
+    /**
+     * Returns the last window title set through an OSC 0 or OSC 2 sequence
+     * @return The window title or {@code null} if no title has been set
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Parses a chunk of data and applies it to the virtual terminal. All remaining bytes in the buffer are consumed;
+     * an incomplete character or escape sequence at the end is kept and completed by the next call. When the chunk
+     * has been applied, the virtual terminal's listeners are notified with {@code onFlush()}.
+     * @param data Data to parse, from its position to its limit
+     */
+    public void parse(ByteBuffer data) {
+        // Complete a character that was split between the previous chunk and this one
+        while(carryOver.position() > 0 && data.hasRemaining()) {
+            if(!carryOver.hasRemaining()) {
+                // Can't be a character in any supported encoding, throw it away
+                carryOver.clear();
+                break;
+            }
+            carryOver.put(data.get());
+            carryOver.flip();
+            decode(carryOver);
+            carryOver.compact();
+        }
+        decode(data);
+        if(data.hasRemaining()) {
+            carryOver.put(data);
+        }
+        terminal.flush();
+    }
+
+    /**
+     * Parses a chunk of data and applies it to the virtual terminal, see {@link #parse(ByteBuffer)}
+     * @param data Array holding the data
+     * @param offset Index of the first byte to parse
+     * @param length Number of bytes to parse
+     */
+    public void parse(byte[] data, int offset, int length) {
+        parse(ByteBuffer.wrap(data, offset, length));
+    }
+
+    private void decode(ByteBuffer data) {
+        while(true) {
+            CoderResult result = decoder.decode(data, decodedCharacters, false);
+            decodedCharacters.flip();
+            char[] characters = decodedCharacters.array();
+            int end = decodedCharacters.arrayOffset() + decodedCharacters.limit();
+            for(int i = decodedCharacters.arrayOffset() + decodedCharacters.position(); i < end; i++) {
+                process(characters[i]);
+            }
+            decodedCharacters.clear();
+            if(!result.isOverflow()) {
+                return;
+            }
+        }
+    }
+
+    private void process(char c) {
+        // These are handled the same way in all states
+        if(c == 0x1b) {
+            if(state == OSC) {
+                finishOsc();
+            }
+            state = ESCAPE;
+            intermediate = 0;
+            return;
+        }
+        else if(c == 0x18 || c == 0x1a) {
+            state = GROUND;
+            return;
+        }
+
+        switch(state) {
+            case GROUND:
+                if(c < 0x20 || c == 0x7f) {
+                    executeControl(c);
+                }
+                else {
+                    print(c);
+                }
+                break;
+            case ESCAPE:
+                processEscape(c);
+                break;
+            case ESCAPE_INTERMEDIATE:
+                processEscapeIntermediate(c);
+                break;
+            case CSI:
+                processCsi(c);
+                break;
+            case OSC:
+                if(c == 0x07 || c == 0x9c) {
+                    finishOsc();
+                    state = GROUND;
+                }
+                else if(oscString.length() < MAX_OSC_LENGTH) {
+                    oscString.append(c);
+                }
+                break;
+            case IGNORED_STRING:
+                if(c == 0x9c) {
+                    state = GROUND;
+                }
+                break;
+            default:
+                state = GROUND;
+        }
+    }
+
+    private void executeControl(char c) {
+        switch(c) {
+            case 0x07:
+                terminal.bell();
+                break;
+            case 0x08:
+                TerminalPosition position = terminal.getCursorPosition();
+                int column = Math.min(position.getColumn(), terminal.getTerminalSize().getColumns() - 1);
+                if(column > 0) {
+                    terminal.setCursorPosition(column - 1, position.getRow());
+                }
+                break;
+            case 0x09:
+                tab(1);
+                break;
+            case 0x0a:
+            case 0x0b:
+            case 0x0c:
+                terminal.lineFeed();
+                break;
+            case 0x0d:
+                terminal.carriageReturn();
+                break;
+            case 0x0e:
+                shiftOut = true;
+                break;
+            case 0x0f:
+                shiftOut = false;
+                break;
+            default:
+                // Other control characters have no effect
+        }
+    }
+
+    private void print(char c) {
+        if(c >= 0x5f && c <= 0x7e && (shiftOut ? g1LineDrawing : g0LineDrawing)) {
+            c = DEC_SPECIAL_GRAPHICS.charAt(c - 0x5f);
+        }
+        lastPrintedCharacter = c;
+        terminal.putCharacter(c);
+        if(!autoWrap) {
+            // Keep overwriting the last column instead of wrapping to the next line
+            TerminalPosition position = terminal.getCursorPosition();
+            int lastColumn = terminal.getTerminalSize().getColumns() - 1;
+            if(position.getColumn() > lastColumn) {
+                terminal.setCursorPosition(lastColumn, position.getRow());
+            }
+        }
+    }
+
+    private void processEscape(char c) {
+        state = GROUND;
+        if(c >= 0x20 && c <= 0x2f) {
+            intermediate = c;
+            state = ESCAPE_INTERMEDIATE;
+            return;
+        }
+        switch(c) {
+            case '[':
+                parameterCount = 0;
+                privateMarker = 0;
+                intermediate = 0;
+                state = CSI;
+                break;
+            case ']':
+                oscString.setLength(0);
+                state = OSC;
+                break;
+            case 'P':
+            case 'X':
+            case '^':
+            case '_':
+                state = IGNORED_STRING;
+                break;
+            case '7':
+                saveCursor();
+                break;
+            case '8':
+                restoreCursor();
+                break;
+            case 'D':
+                terminal.lineFeed();
+                break;
+            case 'E':
+                terminal.carriageReturn();
+                terminal.lineFeed();
+                break;
+            case 'M':
+                terminal.reverseLineFeed();
+                break;
+            case 'H':
+                tabStops.set(getCursorColumn());
+                break;
+            case 'c':
+                reset();
+                break;
+            default:
+                // ESC \ (string terminator), keypad modes and anything unknown
+        }
+    }
+
+    private void processEscapeIntermediate(char c) {
+        if(c >= 0x20 && c <= 0x2f) {
+            return;
+        }
+        state = GROUND;
+        if(intermediate == '(') {
+            g0LineDrawing = c == '0';
+        }
+        else if(intermediate == ')') {
+            g1LineDrawing = c == '0';
+        }
+    }
+
+    private void processCsi(char c) {
+        if(c >= '0' && c <= '9') {
+            if(parameterCount == 0) {
+                parameters[0] = 0;
+                parameterCount = 1;
+            }
+            int value = parameters[parameterCount - 1] * 10 + (c - '0');
+            parameters[parameterCount - 1] = Math.min(value, MAX_PARAMETER_VALUE);
+        }
+        else if(c == ';' || c == ':') {
+            // Sub-parameters (38:2:r:g:b) are treated like regular parameters
+            if(parameterCount == 0) {
+                parameters[0] = 0;
+                parameterCount = 1;
+            }
+            if(parameterCount < MAX_PARAMETERS) {
+                parameters[parameterCount++] = 0;
+            }
+        }
+        else if(c >= '<' && c <= '?') {
+            privateMarker = c;
+        }
+        else if(c >= 0x20 && c <= 0x2f) {
+            intermediate = c;
+        }
+        else if(c >= 0x40 && c <= 0x7e) {
+            state = GROUND;
+            executeCsi(c);
+        }
+        else if(c < 0x20) {
+            // Control characters are executed in the middle of a sequence
+            executeControl(c);
+        }
+        else {
+            state = GROUND;
+        }
+    }
+
+    private void executeCsi(char c) {
+        if(intermediate != 0) {
+            if(intermediate == '!' && c == 'p') {
+                softReset();
+            }
+            return;
+        }
+        if(privateMarker == '?') {
+            if(c == 'h' || c == 'l') {
+                for(int i = 0; i < parameterCount; i++) {
+                    setPrivateMode(parameters[i], c == 'h');
+                }
+            }
+            else if(c == 'J') {
+                terminal.eraseInDisplay(getParameter(0, 0));
+            }
+            else if(c == 'K') {
+                terminal.eraseInLine(getParameter(0, 0));
+            }
+            return;
+        }
+        else if(privateMarker != 0) {
+            return;
+        }
+
+        TerminalSize size = terminal.getTerminalSize();
+        TerminalPosition position = terminal.getCursorPosition();
+        int column = Math.min(position.getColumn(), size.getColumns() - 1);
+        int row = position.getRow();
+        int count = getParameter(0, 1);
+        switch(c) {
+            case '@':
+                terminal.insertCharacters(count);
+                break;
+            case 'A':
+                moveCursor(column, Math.max(row - count, row >= terminal.getScrollRegionTop() ? terminal.getScrollRegionTop() : 0));
+                break;
+            case 'B':
+            case 'e':
+                moveCursor(column, Math.min(row + count, row <= terminal.getScrollRegionBottom() ? terminal.getScrollRegionBottom() : size.getRows() - 1));
+                break;
+            case 'C':
+            case 'a':
+                moveCursor(column + count, row);
+                break;
+            case 'D':
+                moveCursor(column - count, row);
+                break;
+            case 'E':
+                moveCursor(0, row + count);
+                break;
+            case 'F':
+                moveCursor(0, row - count);
+                break;
+            case 'G':
+            case '`':
+                moveCursor(count - 1, row);
+                break;
+            case 'H':
+            case 'f':
+                moveCursor(getParameter(1, 1) - 1, count - 1);
+                break;
+            case 'd':
+                moveCursor(column, count - 1);
+                break;
+            case 'I':
+                tab(count);
+                break;
+            case 'Z':
+                backTab(count);
+                break;
+            case 'J':
+                terminal.eraseInDisplay(getParameter(0, 0));
+                break;
+            case 'K':
+                terminal.eraseInLine(getParameter(0, 0));
+                break;
+            case 'L':
+                terminal.insertLines(count);
+                break;
+            case 'M':
+                terminal.deleteLines(count);
+                break;
+            case 'P':
+                terminal.deleteCharacters(count);
+                break;
+            case 'X':
+                terminal.eraseCharacters(count);
+                break;
+            case 'S':
+                terminal.scrollLines(count);
+                break;
+            case 'T':
+                // With more than one parameter, this is the start of mouse highlight tracking
+                if(parameterCount <= 1) {
+                    terminal.scrollLines(-count);
+                }
+                break;
+            case 'b':
+                if(lastPrintedCharacter != 0) {
+                    for(int i = 0; i < Math.min(count, size.getColumns() * size.getRows()); i++) {
+                        print(lastPrintedCharacter);
+                    }
+                }
+                break;
+            case 'g':
+                if(getParameter(0, 0) == 0) {
+                    tabStops.clear(column);
+                }
+                else if(getParameter(0, 0) == 3) {
+                    tabStops.clear();
+                }
+                break;
+            case 'm':
+                selectGraphicRendition();
+                break;
+            case 'r':
+                terminal.setScrollingRegion(getParameter(0, 1) - 1, getParameter(1, size.getRows()) - 1);
+                moveCursor(0, 0);
+                break;
+            case 's':
+                saveCursor();
+                break;
+            case 'u':
+                restoreCursor();
+                break;
+            default:
+                // Modes without '?', device status requests and others are not supported
+        }
+    }
+
+    private void setPrivateMode(int mode, boolean enabled) {
+        switch(mode) {
+            case 7:
+                autoWrap = enabled;
+                break;
+            case 25:
+                terminal.setCursorVisible(enabled);
+                break;
+            case 47:
+            case 1047:
+                setAlternateScreen(enabled, false);
+                break;
+            case 1048:
+                if(enabled) {
+                    saveCursor();
+                }
+                else {
+                    restoreCursor();
+                }
+                break;
+            case 1049:
+                if(enabled) {
+                    saveCursor();
+                    setAlternateScreen(true, true);
+                }
+                else {
+                    setAlternateScreen(false, false);
+                    restoreCursor();
+                }
+                break;
+            default:
+                // Mouse reporting, bracketed paste and other modes only change what the terminal sends back
+        }
+    }
+
+    private void setAlternateScreen(boolean enabled, boolean clear) {
+        if(enabled && !alternateScreen) {
+            terminal.enterPrivateMode();
+            alternateScreen = true;
+        }
+        else if(!enabled && alternateScreen) {
+            terminal.exitPrivateMode();
+            alternateScreen = false;
+        }
+        if(enabled && clear) {
+            terminal.clearScreen();
+        }
+    }
+
+    private void selectGraphicRendition() {
+        if(parameterCount == 0) {
+            resetGraphicRendition();
+            return;
+        }
+        for(int i = 0; i < parameterCount; i++) {
+            int code = parameters[i];
+            if(code >= 30 && code <= 37) {
+                setForegroundColor(ANSI_COLORS[code - 30]);
+            }
+            else if(code >= 40 && code <= 47) {
+                setBackgroundColor(ANSI_COLORS[code - 40]);
+            }
+            else if(code >= 90 && code <= 97) {
+                setForegroundColor(getIndexedColor(code - 90 + 8));
+            }
+            else if(code >= 100 && code <= 107) {
+                setBackgroundColor(getIndexedColor(code - 100 + 8));
+            }
+            else if(code == 38 || code == 48) {
+                TextColor color = null;
+                if(i + 2 < parameterCount && parameters[i + 1] == 5) {
+                    color = getIndexedColor(Math.min(parameters[i + 2], 255));
+                    i += 2;
+                }
+                else if(i + 4 < parameterCount && parameters[i + 1] == 2) {
+                    color = new TextColor.RGB(
+                            Math.min(parameters[i + 2], 255),
+                            Math.min(parameters[i + 3], 255),
+                            Math.min(parameters[i + 4], 255));
+                    i += 4;
+                }
+                else {
+                    // Malformed, the rest of the parameters can't be trusted
+                    return;
+                }
+                if(code == 38) {
+                    setForegroundColor(color);
+                }
+                else {
+                    setBackgroundColor(color);
+                }
+            }
+            else {
+                switch(code) {
+                    case 0:
+                        resetGraphicRendition();
+                        break;
+                    case 1:
+                        setModifier(SGR.BOLD, true);
+                        break;
+                    case 3:
+                        setModifier(SGR.ITALIC, true);
+                        break;
+                    case 4:
+                        setModifier(SGR.UNDERLINE, true);
+                        break;
+                    case 5:
+                    case 6:
+                        setModifier(SGR.BLINK, true);
+                        break;
+                    case 7:
+                        setModifier(SGR.REVERSE, true);
+                        break;
+                    case 9:
+                        setModifier(SGR.CROSSED_OUT, true);
+                        break;
+                    case 20:
+                        setModifier(SGR.FRAKTUR, true);
+                        break;
+                    case 21:
+                    case 22:
+                        setModifier(SGR.BOLD, false);
+                        break;
+                    case 23:
+                        setModifier(SGR.ITALIC, false);
+                        setModifier(SGR.FRAKTUR, false);
+                        break;
+                    case 24:
+                        setModifier(SGR.UNDERLINE, false);
+                        break;
+                    case 25:
+                        setModifier(SGR.BLINK, false);
+                        break;
+                    case 27:
+                        setModifier(SGR.REVERSE, false);
+                        break;
+                    case 29:
+                        setModifier(SGR.CROSSED_OUT, false);
+                        break;
+                    case 39:
+                        setForegroundColor(TextColor.ANSI.DEFAULT);
+                        break;
+                    case 49:
+                        setBackgroundColor(TextColor.ANSI.DEFAULT);
+                        break;
+                    case 51:
+                        setModifier(SGR.BORDERED, true);
+                        break;
+                    case 52:
+                        setModifier(SGR.CIRCLED, true);
+                        break;
+                    case 54:
+                        setModifier(SGR.BORDERED, false);
+                        setModifier(SGR.CIRCLED, false);
+                        break;
+                    default:
+                        // Not supported
+                }
+            }
+        }
+    }
+
+    private TextColor.Indexed getIndexedColor(int index) {
+        if(indexedColors[index] == null) {
+            indexedColors[index] = new TextColor.Indexed(index);
+        }
+        return indexedColors[index];
+    }
+
+    private void setForegroundColor(TextColor color) {
+        if(foregroundColor != color) {
+            foregroundColor = color;
+            terminal.setForegroundColor(color);
+        }
+    }
+
+    private void setBackgroundColor(TextColor color) {
+        if(backgroundColor != color) {
+            backgroundColor = color;
+            terminal.setBackgroundColor(color);
+        }
+    }
+
+    private void setModifier(SGR sgr, boolean enabled) {
+        if(enabled && modifiers.add(sgr)) {
+            terminal.enableSGR(sgr);
+        }
+        else if(!enabled && modifiers.remove(sgr)) {
+            terminal.disableSGR(sgr);
+        }
+    }
+
+    private void resetGraphicRendition() {
+        terminal.resetColorAndSGR();
+        foregroundColor = TextColor.ANSI.DEFAULT;
+        backgroundColor = TextColor.ANSI.DEFAULT;
+        modifiers.clear();
+    }
+
+    private void saveCursor() {
+        savedCursorPosition = terminal.getCursorPosition();
+        savedForegroundColor = foregroundColor;
+        savedBackgroundColor = backgroundColor;
+        savedModifiers.clear();
+        savedModifiers.addAll(modifiers);
+        savedG0LineDrawing = g0LineDrawing;
+        savedG1LineDrawing = g1LineDrawing;
+        savedShiftOut = shiftOut;
+    }
+
+    private void restoreCursor() {
+        moveCursor(savedCursorPosition.getColumn(), savedCursorPosition.getRow());
+        resetGraphicRendition();
+        setForegroundColor(savedForegroundColor);
+        setBackgroundColor(savedBackgroundColor);
+        for(SGR sgr: savedModifiers) {
+            setModifier(sgr, true);
+        }
+        g0LineDrawing = savedG0LineDrawing;
+        g1LineDrawing = savedG1LineDrawing;
+        shiftOut = savedShiftOut;
+    }
+
+    private void tab(int count) {
+        int lastColumn = terminal.getTerminalSize().getColumns() - 1;
+        int column = getCursorColumn();
+        for(int i = 0; i < count && column < lastColumn; i++) {
+            column = tabStops.nextSetBit(column + 1);
+            if(column == -1 || column > lastColumn) {
+                column = lastColumn;
+            }
+        }
+        moveCursor(column, terminal.getCursorPosition().getRow());
+    }
+
+    private void backTab(int count) {
+        int column = getCursorColumn();
+        for(int i = 0; i < count && column > 0; i++) {
+            column--;
+            while(column > 0 && !tabStops.get(column)) {
+                column--;
+            }
+        }
+        moveCursor(column, terminal.getCursorPosition().getRow());
+    }
+
+    private int getCursorColumn() {
+        return Math.min(terminal.getCursorPosition().getColumn(), terminal.getTerminalSize().getColumns() - 1);
+    }
+
+    private void moveCursor(int column, int row) {
+        TerminalSize size = terminal.getTerminalSize();
+        column = Math.max(0, Math.min(column, size.getColumns() - 1));
+        row = Math.max(0, Math.min(row, size.getRows() - 1));
+        terminal.setCursorPosition(column, row);
+    }
+
+    private int getParameter(int index, int defaultValue) {
+        if(index >= parameterCount || parameters[index] == 0) {
+            return defaultValue;
+        }
+        return parameters[index];
+    }
+
+    private void finishOsc() {
+        // Only the title is interesting, the format is <number>;<text>
+        int separator = oscString.indexOf(";");
+        if(separator > 0) {
+            String command = oscString.substring(0, separator);
+            if(command.equals("0") || command.equals("2")) {
+                title = oscString.substring(separator + 1);
+            }
+        }
+        oscString.setLength(0);
+    }
+
+    private void softReset() {
+        resetGraphicRendition();
+        terminal.setCursorVisible(true);
+        terminal.setScrollingRegion(0, -1);
+        autoWrap = true;
+        g0LineDrawing = false;
+        g1LineDrawing = false;
+        shiftOut = false;
+        savedCursorPosition = TerminalPosition.TOP_LEFT_CORNER;
+    }
+
+    private void reset() {
+        setAlternateScreen(false, false);
+        softReset();
+        resetState();
+        terminal.clearScreen();
+    }
+
+    private void resetState() {
+        foregroundColor = TextColor.ANSI.DEFAULT;
+        backgroundColor = TextColor.ANSI.DEFAULT;
+        modifiers.clear();
+        g0LineDrawing = false;
+        g1LineDrawing = false;
+        shiftOut = false;
+        autoWrap = true;
+        alternateScreen = false;
+        lastPrintedCharacter = 0;
+        tabStops.clear();
+        for(int column = 0; column < INITIAL_TAB_STOPS; column += 8) {
+            tabStops.set(column);
+        }
+        savedCursorPosition = TerminalPosition.TOP_LEFT_CORNER;
+        savedForegroundColor = TextColor.ANSI.DEFAULT;
+        savedBackgroundColor = TextColor.ANSI.DEFAULT;
+        savedModifiers.clear();
+        savedG0LineDrawing = false;
+        savedG1LineDrawing = false;
+        savedShiftOut = false;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna;
+
+import com.googlecode.lanterna.graphics.PackedTextImage;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.EnumSet;
+
+import static org.junit.Assert.*;
+
+public class TextStyleTest {
+    private static final EnumSet<SGR> NO_MODIFIERS = EnumSet.noneOf(SGR.class);
+
+    @Test
+    public void sameCombinationGivesSameInstance() {
+        TextStyle style = TextStyle.of(new TextColor.RGB(1, 2, 3), TextColor.ANSI.BLUE, EnumSet.of(SGR.BOLD));
+        assertSame(style, TextStyle.of(new TextColor.RGB(1, 2, 3), TextColor.ANSI.BLUE, EnumSet.of(SGR.BOLD)));
+        assertSame(style, TextStyle.getById(style.getId()));
+        assertSame(style, style.withModifier(SGR.ITALIC).withoutModifier(SGR.ITALIC));
+        assertEquals(0, TextStyle.DEFAULT.getId());
+    }
+
+    @Test(timeout = 10000)
+    public void creatingManyStylesIsCheap() {
+        for(int i = 0; i < 200000; i++) {
+            TextStyle style = TextStyle.of(new TextColor.RGB(i & 0xff, (i >> 8) & 0xff, i >> 16), null, NO_MODIFIERS);
+            assertSame(style, TextStyle.getById(style.getId()));
+        }
+    }
+
+    @Test
+    public void unreferencedStylesAreReleased() {
+        TextStyle style = TextStyle.of(new TextColor.RGB(10, 20, 30), new TextColor.RGB(40, 50, 60), NO_MODIFIERS);
+        int id = style.getId();
+        WeakReference<TextStyle> reference = new WeakReference<TextStyle>(style);
+        style = null;
+        assertTrue("Style was not released", collect(reference));
+        try {
+            TextStyle other = TextStyle.getById(id);
+            // The id may already have been given to another style
+            assertFalse(other.getForegroundColor().equals(new TextColor.RGB(10, 20, 30)) &&
+                    other.getBackgroundColor().equals(new TextColor.RGB(40, 50, 60)));
+        }
+        catch(IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void packedImageKeepsItsStylesAlive() {
+        PackedTextImage image = new PackedTextImage(new TerminalSize(4, 1));
+        image.setCharacterAt(1, 0, TextStyle.of(new TextColor.RGB(7, 8, 9), null, NO_MODIFIERS).toTextCharacter('x'));
+        WeakReference<TextStyle> churned = null;
+        for(int i = 0; i < 1000; i++) {
+            // Enough other styles to make the image go through its pinned styles a few times
+            TextStyle style = TextStyle.of(new TextColor.RGB(i & 0xff, i >> 8, 200), null, NO_MODIFIERS);
+            image.setCharacterAt(2, 0, style.toTextCharacter('y'));
+            churned = new WeakReference<TextStyle>(TextStyle.of(new TextColor.RGB(i & 0xff, i >> 8, 201), null, NO_MODIFIERS));
+        }
+        collect(churned);
+        for(int i = 0; i < 1000; i++) {
+            TextStyle.of(new TextColor.RGB(i & 0xff, i >> 8, 202), null, NO_MODIFIERS);
+        }
+        TextCharacter character = image.getCharacterAt(1, 0);
+        assertEquals('x', character.getCharacter());
+        assertEquals(new TextColor.RGB(7, 8, 9), character.getForegroundColor());
+        assertEquals(new TextColor.RGB(231, 3, 200), image.getCharacterAt(2, 0).getForegroundColor());
+    }
+
+    @Test
+    public void pinnedStylesAreBounded() {
+        PackedTextImage image = new PackedTextImage(new TerminalSize(2, 1));
+        for(int i = 0; i < 10000; i++) {
+            image.setCharacterAt(0, 0, TextStyle.of(new TextColor.RGB(i & 0xff, i >> 8, 100), null, NO_MODIFIERS).toTextCharacter('z'));
+        }
+        PinnedTextStyles pinned = new PinnedTextStyles();
+        int retains = 0;
+        for(int i = 0; i < 10000; i++) {
+            if(pinned.pin(TextStyle.of(new TextColor.RGB(i & 0xff, i >> 8, 101), null, NO_MODIFIERS))) {
+                // Nothing is in use any more
+                pinned.retainOnly(new BitSet());
+                retains++;
+            }
+        }
+        assertTrue(pinned.size() <= 257);
+        assertTrue(retains > 10);
+    }
+
+    private static boolean collect(WeakReference<?> reference) {
+        for(int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            // Give the collector something to do in case it's lazy about a single weak reference
+            byte[][] garbage = new byte[64][];
+            for(int j = 0; j < garbage.length; j++) {
+                garbage[j] = new byte[64 * 1024];
+            }
+        }
+        return reference.get() == null;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.graphics;
+
+import com.googlecode.lanterna.SGR;
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.TextStyle;
+
+import java.util.EnumSet;
+
+/**
+ * Fills a text image with rows of text over and over, once through a TextGraphics that only implements
+ * {@code setCharacter(..)} (which is how every putString call used to end up) and once each through the bulk row
+ * writers of {@link BasicTextImage} and {@link PackedTextImage}, for ASCII, CJK and mixed strings. Prints the time taken
+ * by each and checks that all three produced the same content. The number of frames can be passed as an argument.
+ * @author Martin
+ */
+public class PutStringBenchmark {
+    private static final TerminalSize SIZE = new TerminalSize(160, 50);
+    private static final String[] SAMPLES = {
+            "The quick brown fox jumps over the lazy dog, 0123456789 times!",
+            "\u65e5\u672c\u8a9e\u306e\u30c6\u30ad\u30b9\u30c8\u3092\u8868\u793a\u3057\u307e\u3059\u3002\u6f22\u5b57\u3068\u304b\u306a",
+            "Name: \u5c71\u7530\u592a\u90ce\tCity: \u6771\u4eac\tStatus: OK \u2713 (\u5b8c\u4e86)"
+    };
+    private static final String[] SAMPLE_NAMES = { "ASCII", "CJK", "mixed" };
+
+    public static void main(String[] args) {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        TextStyle style = TextStyle.of(TextColor.ANSI.WHITE, TextColor.ANSI.BLUE, EnumSet.of(SGR.BOLD));
+
+        for(int round = 0; round < 2; round++) {
+            System.out.println("Round " + (round + 1) + ", " + frames + " frames of " + SIZE.getRows() + " rows:");
+            for(int sample = 0; sample < SAMPLES.length; sample++) {
+                String line = repeatToWidth(SAMPLES[sample]);
+
+                final BasicTextImage perCharacterImage = new BasicTextImage(SIZE);
+                AbstractTextGraphics perCharacter = new AbstractTextGraphics() {
+                    @Override
+                    public TextGraphics setCharacter(int columnIndex, int rowIndex, TextCharacter textCharacter) {
+                        perCharacterImage.setCharacterAt(columnIndex, rowIndex, textCharacter);
+                        return this;
+                    }
+
+                    @Override
+                    public TextCharacter getCharacter(int column, int row) {
+                        return perCharacterImage.getCharacterAt(column, row);
+                    }
+
+                    @Override
+                    public TerminalSize getSize() {
+                        return SIZE;
+                    }
+                };
+                BasicTextImage basicImage = new BasicTextImage(SIZE);
+                PackedTextImage packedImage = new PackedTextImage(SIZE);
+
+                long perCharacterTime = run(perCharacter, line, style, frames);
+                long basicTime = run((AbstractTextGraphics)basicImage.newTextGraphics(), line, style, frames);
+                long packedTime = run((AbstractTextGraphics)packedImage.newTextGraphics(), line, style, frames);
+
+                System.out.println("  " + SAMPLE_NAMES[sample] + ": per character " + (perCharacterTime / 1000000) + " ms, " +
+                        "BasicTextImage " + (basicTime / 1000000) + " ms, PackedTextImage " + (packedTime / 1000000) + " ms" +
+                        (isSameContent(perCharacterImage, basicImage) && isSameContent(perCharacterImage, packedImage) ? "" : " (CONTENT DIFFERS!)"));
+            }
+        }
+    }
+
+    private static long run(AbstractTextGraphics textGraphics, String line, TextStyle style, int frames) {
+        long startTime = System.nanoTime();
+        for(int frame = 0; frame < frames; frame++) {
+            //Shift the text a bit every frame so that double width characters land on both even and odd columns
+            int offset = frame % 3;
+            for(int row = 0; row < SIZE.getRows(); row++) {
+                textGraphics.putString(offset, row, line, 0, line.length(), style);
+            }
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    private static String repeatToWidth(String sample) {
+        StringBuilder builder = new StringBuilder();
+        while(builder.length() < SIZE.getColumns()) {
+            builder.append(sample).append(' ');
+        }
+        return builder.toString();
+    }
+
+    private static boolean isSameContent(TextImage first, TextImage second) {
+        for(int row = 0; row < SIZE.getRows(); row++) {
+            for(int column = 0; column < SIZE.getColumns(); column++) {
+                if(!first.getCharacterAt(column, row).equals(second.getCharacterAt(column, row))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.graphics;
+
+import com.googlecode.lanterna.SGR;
+import com.googlecode.lanterna.TerminalPosition;
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TerminalTextUtils;
+import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.TextStyle;
+import org.junit.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class SpanFillTest {
+    private static final TextCharacter CJK = TextCharacter.DEFAULT_CHARACTER.withCharacter('こ');
+    private static final TerminalSize SIZE = new TerminalSize(10, 4);
+
+    @Test
+    public void fillingASpanMatchesSettingEachCell() {
+        TextCharacter[] fillers = new TextCharacter[] {
+                TextCharacter.DEFAULT_CHARACTER.withCharacter('x').withForegroundColor(TextColor.ANSI.RED),
+                CJK.withBackgroundColor(TextColor.ANSI.BLUE)
+        };
+        for(TextCharacter filler: fillers) {
+            for(int fromColumn = -2; fromColumn < 12; fromColumn++) {
+                for(int toColumn = fromColumn; toColumn < 12; toColumn++) {
+                    BasicTextImage expected = newImageWithDoubleWidthCharacters();
+                    for(int column = fromColumn; column <= toColumn; column++) {
+                        expected.setCharacterAt(column, 1, filler);
+                    }
+                    BasicTextImage basic = newImageWithDoubleWidthCharacters();
+                    basic.fillSpan(1, fromColumn, toColumn, filler);
+                    PackedTextImage packed = new PackedTextImage(SIZE);
+                    newImageWithDoubleWidthCharacters().copyTo(packed);
+                    packed.fillSpan(1, fromColumn, toColumn, filler);
+                    assertSameContent(expected, basic);
+                    assertSameContent(expected, packed);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void puttingAStringRangeMatchesPuttingEachCharacter() {
+        String text = "<ab\u3053c\u3093\u306b>";
+        TextStyle style = TextStyle.of(TextColor.ANSI.GREEN, TextColor.ANSI.DEFAULT, EnumSet.noneOf(SGR.class));
+        for(int column = -4; column < 12; column++) {
+            BasicTextImage expected = newImageWithDoubleWidthCharacters();
+            int offset = 0;
+            for(int i = 1; i < text.length() - 1; i++) {
+                char character = text.charAt(i);
+                expected.setCharacterAt(column + offset, 1, style.toTextCharacter(character));
+                offset += TerminalTextUtils.isCharDoubleWidth(character) ? 2 : 1;
+            }
+            BasicTextImage basic = newImageWithDoubleWidthCharacters();
+            ((AbstractTextGraphics)basic.newTextGraphics()).putString(column, 1, text, 1, text.length() - 1, style);
+            PackedTextImage packed = new PackedTextImage(SIZE);
+            newImageWithDoubleWidthCharacters().copyTo(packed);
+            ((AbstractTextGraphics)packed.newTextGraphics()).putString(column, 1, text, 1, text.length() - 1, style);
+            assertSameContent(expected, basic);
+            assertSameContent(expected, packed);
+        }
+    }
+
+    @Test
+    public void putStringStopsAtNewlinesAndExpandsTabs() {
+        BasicTextImage image = new BasicTextImage(SIZE);
+        AbstractTextGraphics textGraphics = (AbstractTextGraphics)image.newTextGraphics();
+        textGraphics.putString(0, 0, "a\tb\nc");
+        textGraphics.putString(1, 1, new StringBuilder("xyz\rw"), 1, 5, textGraphics.getCharacter(0, 0).getStyle());
+        assertEquals("a   b", rowOf(image, 0));
+        assertEquals(" yz", rowOf(image, 1));
+    }
+
+    @Test
+    public void subGraphicsClipsSpansToItsArea() {
+        BasicTextImage image = new BasicTextImage(SIZE);
+        TextGraphics subGraphics = image.newTextGraphics().newTextGraphics(new TerminalPosition(2, 1), new TerminalSize(3, 2));
+        subGraphics.fill('#');
+        subGraphics.drawLine(-5, 1, 20, 1, 'o');
+        subGraphics.putString(-2, 0, "12345678");
+        assertEquals("", rowOf(image, 0));
+        assertEquals("  345", rowOf(image, 1));
+        assertEquals("  ooo", rowOf(image, 2));
+        assertEquals("", rowOf(image, 3));
+    }
+
+    @Test
+    public void shapesDrawnThroughSpansMatchDrawingCellByCell() {
+        TerminalPosition[] corners = new TerminalPosition[] {
+                new TerminalPosition(6, 3), new TerminalPosition(0, 0), new TerminalPosition(9, 1),
+                new TerminalPosition(-3, 2), new TerminalPosition(12, 5), new TerminalPosition(4, -1)
+        };
+        for(TerminalPosition p1: corners) {
+            for(TerminalPosition p2: corners) {
+                for(TerminalPosition p3: corners) {
+                    for(TextCharacter character: new TextCharacter[] { TextCharacter.DEFAULT_CHARACTER.withCharacter('*'), CJK }) {
+                        final BasicTextImage expected = newImageWithDoubleWidthCharacters();
+                        TextGraphics cellByCell = new AbstractTextGraphics() {
+                            @Override
+                            public TextGraphics setCharacter(int columnIndex, int rowIndex, TextCharacter textCharacter) {
+                                expected.setCharacterAt(columnIndex, rowIndex, textCharacter);
+                                return this;
+                            }
+
+                            @Override
+                            public TextCharacter getCharacter(int column, int row) {
+                                return expected.getCharacterAt(column, row);
+                            }
+
+                            @Override
+                            public TerminalSize getSize() {
+                                return SIZE;
+                            }
+                        };
+                        BasicTextImage actual = newImageWithDoubleWidthCharacters();
+                        cellByCell.fillTriangle(p1, p2, p3, character);
+                        cellByCell.drawRectangle(p2, new TerminalSize(p3.getColumn() & 7, p3.getRow() & 3), character);
+                        actual.newTextGraphics().fillTriangle(p1, p2, p3, character);
+                        actual.newTextGraphics().drawRectangle(p2, new TerminalSize(p3.getColumn() & 7, p3.getRow() & 3), character);
+                        assertSameContent(expected, actual);
+                    }
+                }
+            }
+        }
+    }
+
+    private static BasicTextImage newImageWithDoubleWidthCharacters() {
+        BasicTextImage image = new BasicTextImage(SIZE);
+        for(int column = 0; column < SIZE.getColumns(); column += 3) {
+            image.setCharacterAt(column, 1, CJK);
+        }
+        return image;
+    }
+
+    private static void assertSameContent(TextImage expected, TextImage actual) {
+        for(int row = 0; row < SIZE.getRows(); row++) {
+            for(int column = 0; column < SIZE.getColumns(); column++) {
+                assertEquals(expected.getCharacterAt(column, row), actual.getCharacterAt(column, row));
+            }
+        }
+    }
+
+    private static String rowOf(TextImage image, int row) {
+        StringBuilder builder = new StringBuilder();
+        for(int column = 0; column < image.getSize().getColumns(); column++) {
+            builder.append(image.getCharacterAt(column, row).getCharacter());
+        }
+        return builder.toString().replaceAll(" +$", "");
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.gui2;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.graphics.BasicTextImage;
+import com.googlecode.lanterna.graphics.TextImage;
+import com.googlecode.lanterna.gui2.table.DefaultTableRenderer;
+import com.googlecode.lanterna.gui2.table.Table;
+import com.googlecode.lanterna.gui2.table.TableModel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Lives in this package rather than next to the renderer so it can draw without a text GUI
+ */
+public class DefaultTableRendererTest {
+
+    @Test
+    public void columnSizesKeptUpToDateMatchMeasuringFromScratch() {
+        Random random = new Random(1);
+        Table<String> table = new Table<String>("A", "Bee", "C");
+        TableModel<String> model = table.getTableModel();
+        for(int i = 0; i < 20; i++) {
+            model.addRow(randomCell(random), randomCell(random), randomCell(random));
+        }
+        DefaultTableRenderer<String> renderer = new DefaultTableRenderer<String>();
+        table.setRenderer(renderer);
+        table.setVisibleRows(10);
+
+        for(int step = 0; step < 1000; step++) {
+            int changes = 1 + random.nextInt(4);
+            for(int i = 0; i < changes; i++) {
+                changeRandomly(model, random);
+            }
+            if(model.getRowCount() > 0) {
+                table.setSelectedRow(random.nextInt(model.getRowCount()));
+            }
+            table.invalidate();
+            String drawn = draw(table, renderer);
+
+            DefaultTableRenderer<String> freshRenderer = new DefaultTableRenderer<String>();
+            freshRenderer.setViewTopRow(renderer.getViewTopRow());
+            assertEquals("Step " + step, draw(table, freshRenderer), drawn);
+        }
+    }
+
+    private static void changeRandomly(TableModel<String> model, Random random) {
+        int rowCount = model.getRowCount();
+        int change = random.nextInt(20);
+        if(change < 8 && rowCount > 0) {
+            model.setCell(random.nextInt(model.getColumnCount()), random.nextInt(rowCount), randomCell(random));
+        }
+        else if(change < 12) {
+            List<String> row = new ArrayList<String>();
+            for(int column = 0; column < model.getColumnCount(); column++) {
+                row.add(randomCell(random));
+            }
+            model.insertRow(random.nextInt(rowCount + 1), row);
+        }
+        else if(change < 16 && rowCount > 0) {
+            model.removeRow(random.nextInt(rowCount));
+        }
+        else if(change == 16) {
+            model.setColumnLabel(random.nextInt(model.getColumnCount()), randomCell(random) + "H");
+        }
+        else if(change == 17 && model.getColumnCount() < 5) {
+            model.addColumn("N", null);
+        }
+        else if(change == 18 && model.getColumnCount() > 1) {
+            model.removeColumn(random.nextInt(model.getColumnCount()));
+        }
+        else if(change == 19 && random.nextInt(20) == 0) {
+            model.clear();
+        }
+    }
+
+    private static String randomCell(Random random) {
+        StringBuilder cell = new StringBuilder();
+        int length = random.nextInt(12);
+        for(int i = 0; i < length; i++) {
+            cell.append((char)('a' + random.nextInt(26)));
+        }
+        if(random.nextInt(10) == 0) {
+            cell.append("\nsecond line");
+        }
+        return cell.toString();
+    }
+
+    private static String draw(Table<String> table, DefaultTableRenderer<String> renderer) {
+        TextImage image = new BasicTextImage(new TerminalSize(120, 60));
+        TerminalSize preferredSize = renderer.getPreferredSize(table);
+        renderer.drawComponent(new DefaultTextGUIGraphics(null, image.newTextGraphics()), table);
+        return preferredSize + "\n" + image;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.gui2;
+
+import com.googlecode.lanterna.input.KeyStroke;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ListItemSourceTest {
+
+    @Test
+    public void itemsAreFetchedInBlocks() {
+        CountingItemSource itemSource = new CountingItemSource(1050);
+        CheckBoxList<String> listBox = new CheckBoxList<String>().setItemSource(itemSource);
+        assertEquals(1050, listBox.getItemCount());
+        itemSource.fetches.clear();
+
+        assertEquals("x150", listBox.getItemAt(150));
+        assertEquals(Arrays.asList("100-200"), itemSource.fetches);
+        // The rest of the block is served from the cache
+        assertEquals("x100", listBox.getItemAt(100));
+        assertEquals("x199", listBox.getItemAt(199));
+        assertEquals(1, itemSource.fetches.size());
+
+        // The last block stops at the end of the items
+        assertEquals("x1049", listBox.getItemAt(1049));
+        assertEquals(Arrays.asList("100-200", "1000-1050"), itemSource.fetches);
+    }
+
+    @Test
+    public void leastRecentlyUsedItemsAreEvicted() {
+        CountingItemSource itemSource = new CountingItemSource(2000);
+        CheckBoxList<String> listBox = new CheckBoxList<String>().setItemSource(itemSource);
+        itemSource.fetches.clear();
+        // Fills the cache of 1000 items
+        for(int index = 0; index < 1000; index += 100) {
+            listBox.getItemAt(index);
+        }
+        assertEquals(10, itemSource.fetches.size());
+        // Used again, so it's kept when the next block pushes out the oldest items
+        listBox.getItemAt(0);
+        listBox.getItemAt(1000);
+        assertEquals(11, itemSource.fetches.size());
+
+        listBox.getItemAt(0);
+        listBox.getItemAt(101);
+        listBox.getItemAt(1099);
+        assertEquals(11, itemSource.fetches.size());
+        listBox.getItemAt(50);
+        assertEquals(12, itemSource.fetches.size());
+    }
+
+    @Test
+    public void refreshItemsDropsTheCacheAndKeepsTheSelectionInRange() {
+        CountingItemSource itemSource = new CountingItemSource(1000);
+        CheckBoxList<String> listBox = new CheckBoxList<String>().setItemSource(itemSource);
+        assertEquals(0, listBox.getSelectedIndex());
+        listBox.setSelectedIndex(800);
+        assertEquals("x800", listBox.getSelectedItem());
+        itemSource.fetches.clear();
+
+        itemSource.itemCount = 500;
+        listBox.refreshItems();
+        assertEquals(499, listBox.getSelectedIndex());
+        assertEquals("x499", listBox.getSelectedItem());
+        assertEquals(Arrays.asList("400-500"), itemSource.fetches);
+
+        itemSource.itemCount = 0;
+        listBox.refreshItems();
+        assertEquals(-1, listBox.getSelectedIndex());
+        assertNull(listBox.getSelectedItem());
+        assertTrue(listBox.isEmpty());
+    }
+
+    @Test
+    public void itemSourceReturningTooFewItemsGivesAClearError() {
+        CountingItemSource itemSource = new CountingItemSource(1000);
+        itemSource.itemsReturned = 10;
+        CheckBoxList<String> listBox = new CheckBoxList<String>().setItemSource(itemSource);
+        assertEquals("x5", listBox.getItemAt(5));
+        try {
+            listBox.getItemAt(50);
+            fail("Item missing from the item source was returned");
+        }
+        catch(IndexOutOfBoundsException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("ListItemSource returned 10 items"));
+        }
+        try {
+            listBox.getItemAt(1000);
+            fail("Item after the last one was returned");
+        }
+        catch(IndexOutOfBoundsException expected) {
+        }
+    }
+
+    @Test
+    public void listBoxBackedByItemSourceCannotBeModified() {
+        CheckBoxList<String> listBox = new CheckBoxList<String>().setItemSource(new CountingItemSource(10));
+        List<Runnable> modifications = Arrays.<Runnable>asList(
+                new Modification(listBox) { void modify() { listBox.addItem("a"); } },
+                new Modification(listBox) { void modify() { listBox.addItem("a", true); } },
+                new Modification(listBox) { void modify() { listBox.removeItem(0); } },
+                new Modification(listBox) { void modify() { listBox.clearItems(); } });
+        for(Runnable modification: modifications) {
+            modification.run();
+        }
+        assertEquals(10, listBox.getItemCount());
+        assertEquals("x0", listBox.getItemAt(0));
+
+        // Going back to a list box without an item source makes it modifiable again
+        listBox.setItemSource(null);
+        listBox.addItem("a");
+        assertEquals(Arrays.asList("a"), listBox.getItems());
+    }
+
+    @Test
+    public void selectingByCharacterOnlyLoadsTheItemsUpToTheMatch() {
+        CountingItemSource itemSource = new CountingItemSource(5000);
+        itemSource.matchingIndex = 1050;
+        CheckBoxList<String> listBox = new CheckBoxList<String>().setItemSource(itemSource);
+        itemSource.fetches.clear();
+
+        listBox.handleKeyStroke(new KeyStroke('q', false, false));
+        assertEquals(1050, listBox.getSelectedIndex());
+        assertEquals(11, itemSource.fetches.size());
+
+        // Going all the way around to the same item indexes the rest of the items, but only once
+        listBox.handleKeyStroke(new KeyStroke('q', false, false));
+        assertEquals(1050, listBox.getSelectedIndex());
+        assertEquals(50, itemSource.fetches.size());
+        listBox.handleKeyStroke(new KeyStroke('Q', false, false));
+        assertEquals(1050, listBox.getSelectedIndex());
+        assertEquals(50, itemSource.fetches.size());
+
+        // After a refresh, the index is built again
+        itemSource.matchingIndex = 10;
+        listBox.refreshItems();
+        listBox.handleKeyStroke(new KeyStroke('q', false, false));
+        assertEquals(10, listBox.getSelectedIndex());
+    }
+
+    @Test
+    public void removingAnItemMovesTheCheckedStateOfTheFollowingItems() {
+        CheckBoxList<String> listBox = new CheckBoxList<String>();
+        listBox.addItem("a", false);
+        listBox.addItem("b", true);
+        listBox.addItem("c", false);
+        listBox.addItem("d", true);
+
+        assertEquals("a", listBox.removeItem(0));
+        assertEquals(Arrays.asList("b", "c", "d"), listBox.getItems());
+        assertEquals(Boolean.TRUE, listBox.isChecked(0));
+        assertEquals(Boolean.FALSE, listBox.isChecked(1));
+        assertEquals(Boolean.TRUE, listBox.isChecked(2));
+        assertNull(listBox.isChecked(3));
+
+        assertEquals("d", listBox.removeItem(2));
+        assertEquals(Arrays.asList("b"), listBox.getCheckedItems());
+        listBox.addItem("e");
+        assertEquals(Boolean.FALSE, listBox.isChecked(2));
+    }
+
+    private static abstract class Modification implements Runnable {
+        final CheckBoxList<String> listBox;
+
+        Modification(CheckBoxList<String> listBox) {
+            this.listBox = listBox;
+        }
+
+        abstract void modify();
+
+        @Override
+        public void run() {
+            try {
+                modify();
+                fail("List box backed by an item source was modified");
+            }
+            catch(UnsupportedOperationException expected) {
+            }
+        }
+    }
+
+    private static class CountingItemSource implements ListItemSource<String> {
+        private final List<String> fetches;
+        private int itemCount;
+        private int itemsReturned;
+        private int matchingIndex;
+
+        CountingItemSource(int itemCount) {
+            this.fetches = new ArrayList<String>();
+            this.itemCount = itemCount;
+            this.itemsReturned = Integer.MAX_VALUE;
+            this.matchingIndex = -1;
+        }
+
+        @Override
+        public int getItemCount() {
+            return itemCount;
+        }
+
+        @Override
+        public List<String> getItems(int fromIndex, int toIndex) {
+            fetches.add(fromIndex + "-" + toIndex);
+            List<String> items = new ArrayList<String>();
+            for(int index = fromIndex; index < toIndex && items.size() < itemsReturned; index++) {
+                items.add((index == matchingIndex ? "q" : "x") + index);
+            }
+            return items;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.gui2;
+
+import com.googlecode.lanterna.TerminalPosition;
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.screen.TerminalScreen;
+import com.googlecode.lanterna.terminal.virtual.DefaultVirtualTerminal;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MultiWindowTextGUITest {
+    private static final TerminalSize TERMINAL_SIZE = new TerminalSize(60, 20);
+
+    @Test
+    public void drawingOnlyWhatChangedMatchesDrawingEverything() throws IOException {
+        Random random = new Random(7);
+        Desktop desktop = new Desktop();
+        List<WindowState> windows = new ArrayList<WindowState>();
+
+        for(int step = 0; step < 400; step++) {
+            int change = random.nextInt(10);
+            if(windows.isEmpty() || (change == 0 && windows.size() < 5)) {
+                WindowState state = new WindowState("W" + step, random);
+                windows.add(state);
+                desktop.add(state);
+            }
+            else {
+                WindowState state = windows.get(random.nextInt(windows.size()));
+                if(change == 1 && windows.size() > 1) {
+                    windows.remove(state);
+                    desktop.remove(state);
+                }
+                else if(change == 2) {
+                    // The active window is always on top, both here and when building the desktop from scratch
+                    windows.remove(state);
+                    windows.add(state);
+                    desktop.activate(state);
+                }
+                else if(change == 3) {
+                    state.visible = !state.visible;
+                    desktop.update(state);
+                }
+                else if(change <= 5) {
+                    state.position = randomPosition(random);
+                    desktop.update(state);
+                }
+                else if(change == 6) {
+                    // Only shows up through Panel.isInvalid(), nothing is invalidated
+                    state.spacing = random.nextInt(3);
+                    desktop.update(state);
+                }
+                else {
+                    state.texts[random.nextInt(state.texts.length)] = randomText(random);
+                    desktop.update(state);
+                }
+            }
+            // Like the GUI thread, only draw if the GUI says something has changed
+            if(desktop.gui.isPendingUpdate()) {
+                desktop.gui.updateScreen();
+            }
+            assertFalse("Step " + step + " still has something to draw", desktop.gui.isPendingUpdate());
+
+            Desktop redrawn = new Desktop();
+            for(WindowState state: windows) {
+                redrawn.add(state);
+            }
+            redrawn.gui.updateScreen();
+            assertEquals("Step " + step, redrawn.contents(), desktop.contents());
+        }
+    }
+
+    private static TerminalPosition randomPosition(Random random) {
+        return new TerminalPosition(random.nextInt(30), random.nextInt(8));
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(16);
+        for(int i = 0; i < length; i++) {
+            text.append((char)('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+
+    private static class WindowState {
+        final String title;
+        final String[] texts;
+        TerminalPosition position;
+        int spacing;
+        boolean visible;
+
+        WindowState(String title, Random random) {
+            this.title = title;
+            this.texts = new String[] { randomText(random), randomText(random) };
+            this.position = randomPosition(random);
+            this.spacing = 0;
+            this.visible = true;
+        }
+    }
+
+    /**
+     * A text GUI on a virtual terminal, with one window for every {@code WindowState}
+     */
+    private static class Desktop {
+        final DefaultVirtualTerminal terminal;
+        final MultiWindowTextGUI gui;
+        final List<WindowState> states;
+        final List<BasicWindow> windows;
+        final List<Label[]> labels;
+
+        Desktop() throws IOException {
+            terminal = new DefaultVirtualTerminal(TERMINAL_SIZE);
+            TerminalScreen screen = new TerminalScreen(terminal);
+            screen.startScreen();
+            gui = new MultiWindowTextGUI(screen);
+            states = new ArrayList<WindowState>();
+            windows = new ArrayList<BasicWindow>();
+            labels = new ArrayList<Label[]>();
+        }
+
+        void add(WindowState state) {
+            BasicWindow window = new BasicWindow(state.title);
+            window.setHints(Collections.singletonList(Window.Hint.FIXED_POSITION));
+            Panel panel = new Panel(new LinearLayout(Direction.VERTICAL));
+            Label[] windowLabels = new Label[state.texts.length];
+            for(int i = 0; i < windowLabels.length; i++) {
+                windowLabels[i] = new Label(state.texts[i]);
+                panel.addComponent(windowLabels[i]);
+            }
+            window.setComponent(panel);
+            states.add(state);
+            windows.add(window);
+            labels.add(windowLabels);
+            update(state);
+            gui.addWindow(window);
+        }
+
+        void remove(WindowState state) {
+            int index = states.indexOf(state);
+            gui.removeWindow(windows.remove(index));
+            labels.remove(index);
+            states.remove(index);
+        }
+
+        void activate(WindowState state) {
+            gui.setActiveWindow(windows.get(states.indexOf(state)));
+        }
+
+        void update(WindowState state) {
+            int index = states.indexOf(state);
+            BasicWindow window = windows.get(index);
+            window.setPosition(state.position);
+            window.setVisible(state.visible);
+            LinearLayout layout = (LinearLayout)((Panel)window.getComponent()).getLayoutManager();
+            if(layout.getSpacing() != state.spacing) {
+                layout.setSpacing(state.spacing);
+            }
+            for(int i = 0; i < state.texts.length; i++) {
+                Label label = labels.get(index)[i];
+                if(!label.getText().equals(state.texts[i])) {
+                    label.setText(state.texts[i]);
+                }
+            }
+        }
+
+        String contents() {
+            StringBuilder contents = new StringBuilder();
+            for(int row = 0; row < TERMINAL_SIZE.getRows(); row++) {
+                for(int column = 0; column < TERMINAL_SIZE.getColumns(); column++) {
+                    TextCharacter character = terminal.getCharacter(column, row);
+                    contents.append(character.getCharacter());
+                    contents.append(character.getForegroundColor()).append(character.getBackgroundColor());
+                    contents.append(character.getModifiers()).append('\n');
+                }
+            }
+            return contents.toString();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.gui2;
+
+import com.googlecode.lanterna.TerminalTextUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TextBoxDocumentTest {
+
+    @Test
+    public void linesAreSplitOnLineBreaks() {
+        TextBoxDocument document = new TextBoxDocument("first\n\nthird line");
+        assertEquals(3, document.getLineCount());
+        assertEquals("first", document.getLine(0));
+        assertEquals("", document.getLine(1));
+        assertEquals("third line", document.getLine(2));
+        assertEquals(10, document.getLongestLineWidth());
+        assertEquals("first\n\nthird line", document.getText());
+    }
+
+    @Test
+    public void longestWidthFollowsEdits() {
+        TextBoxDocument document = new TextBoxDocument("short\na much longer line");
+        assertEquals(18, document.getLongestLineWidth());
+        document.delete(1, 0, 9);
+        assertEquals(9, document.getLongestLineWidth());
+        // Double-width characters count twice
+        document.insert(0, 0, "\u3053\u3093\u306b\u3061\u306f");
+        assertEquals(15, document.getLongestLineWidth());
+        document.joinWithNext(0);
+        assertEquals(1, document.getLineCount());
+        assertEquals(24, document.getLongestLineWidth());
+    }
+
+    @Test
+    public void linesOutsideTheDocumentAreRejected() {
+        TextBoxDocument document = new TextBoxDocument("a\nb");
+        try {
+            document.getLine(2);
+            fail("Expected IndexOutOfBoundsException");
+        }
+        catch(IndexOutOfBoundsException ignored) {
+        }
+        try {
+            document.joinWithNext(1);
+            fail("Expected IndexOutOfBoundsException");
+        }
+        catch(IndexOutOfBoundsException ignored) {
+        }
+    }
+
+    @Test
+    public void randomEditsMatchAListOfStrings() {
+        Random random = new Random(5);
+        for(int round = 0; round < 100; round++) {
+            String initialText = randomText(random, true) + randomText(random, true) + randomText(random, true);
+            TextBoxDocument document = new TextBoxDocument(initialText);
+            List<String> expected = new ArrayList<String>(Arrays.asList(initialText.split("\n", -1)));
+            assertMatches(expected, document);
+
+            for(int step = 0; step < 200; step++) {
+                int line = random.nextInt(expected.size());
+                String lineText = expected.get(line);
+                int operation = random.nextInt(4);
+                if(operation <= 1) {
+                    int column = random.nextInt(lineText.length() + 1);
+                    String text = randomText(random, operation == 1);
+                    document.insert(line, column, text);
+                    String newText = lineText.substring(0, column) + text + lineText.substring(column);
+                    expected.remove(line);
+                    expected.addAll(line, Arrays.asList(newText.split("\n", -1)));
+                }
+                else if(operation == 2 && lineText.length() > 0) {
+                    int column = random.nextInt(lineText.length());
+                    int length = 1 + random.nextInt(lineText.length() - column);
+                    document.delete(line, column, length);
+                    expected.set(line, lineText.substring(0, column) + lineText.substring(column + length));
+                }
+                else if(operation == 3 && line < expected.size() - 1) {
+                    document.joinWithNext(line);
+                    expected.set(line, lineText + expected.remove(line + 1));
+                }
+                assertMatches(expected, document);
+            }
+        }
+    }
+
+    private static String randomText(Random random, boolean withLineBreaks) {
+        int length = random.nextInt(6);
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < length; i++) {
+            int kind = random.nextInt(20);
+            if(kind == 0 && withLineBreaks) {
+                builder.append('\n');
+            }
+            else if(kind == 1) {
+                builder.append('\u3053');
+            }
+            else {
+                builder.append((char)('a' + random.nextInt(26)));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void assertMatches(List<String> expected, TextBoxDocument document) {
+        StringBuilder text = new StringBuilder();
+        int longestWidth = 0;
+        assertEquals(expected.size(), document.getLineCount());
+        for(int i = 0; i < expected.size(); i++) {
+            String line = expected.get(i);
+            if(i > 0) {
+                text.append('\n');
+            }
+            text.append(line);
+            assertEquals(line, document.getLine(i));
+            assertEquals(line.length(), document.getLineLength(i));
+            assertEquals(TerminalTextUtils.getColumnWidth(line), document.getLineWidth(i));
+            longestWidth = Math.max(longestWidth, TerminalTextUtils.getColumnWidth(line));
+        }
+        assertEquals(longestWidth, document.getLongestLineWidth());
+        assertEquals(text.length(), document.getLength());
+        assertEquals(text.toString(), document.getText());
+    }
+}
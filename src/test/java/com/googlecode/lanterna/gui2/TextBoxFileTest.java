@@ -0,0 +1,247 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.gui2;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TextBoxFileTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void linesAreIndexedAndDecoded() throws IOException {
+        List<String> expected = new ArrayList<String>();
+        StringBuilder content = new StringBuilder();
+        for(int i = 0; i < 5000; i++) {
+            String line = lineFor(i);
+            expected.add(line);
+            content.append(line).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        content.append("last\tline");
+        expected.add("lastline");
+        File file = createFile(content.toString());
+        try {
+            // Small regions so that plenty of lines cross from one region to the next
+            TextBoxFile textBoxFile = new TextBoxFile(file, UTF8, 4096);
+            indexCompletely(textBoxFile);
+            assertEquals(expected.size(), textBoxFile.getLineCount());
+            Random random = new Random(4);
+            for(int i = 0; i < 20000; i++) {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.get(index), textBoxFile.getLine(index));
+            }
+            // In order, which goes through the remembered position of the next line instead of the checkpoints
+            for(int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i), textBoxFile.getLine(i));
+            }
+            assertEquals(join(expected), textBoxFile.getText());
+            int longest = 0;
+            for(String line: expected) {
+                longest = Math.max(longest, line.getBytes(UTF8).length);
+            }
+            assertTrue(textBoxFile.getLongestLineWidth() >= longest);
+            textBoxFile.close();
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void indexingIsDoneInSlices() throws IOException {
+        File file = createFile("a\nb\nc\nd\n");
+        try {
+            TextBoxFile textBoxFile = new TextBoxFile(file, UTF8);
+            assertTrue(textBoxFile.update(3));
+            assertFalse(textBoxFile.isFullyIndexed());
+            assertEquals(2, textBoxFile.getLineCount());
+            assertEquals("a", textBoxFile.getLine(0));
+            assertEquals("b", textBoxFile.getLine(1));
+            indexCompletely(textBoxFile);
+            assertEquals(5, textBoxFile.getLineCount());
+            assertEquals("d", textBoxFile.getLine(3));
+            assertEquals("", textBoxFile.getLine(4));
+            assertFalse(textBoxFile.update(100));
+            textBoxFile.close();
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void appendedContentIsPickedUp() throws IOException {
+        File file = createFile("first\nsecond");
+        try {
+            TextBoxFile textBoxFile = new TextBoxFile(file, UTF8);
+            indexCompletely(textBoxFile);
+            assertEquals("second", textBoxFile.getLine(1));
+            append(file, " half\nthird\n");
+            assertTrue(textBoxFile.update(Long.MAX_VALUE));
+            assertEquals(4, textBoxFile.getLineCount());
+            assertEquals("second half", textBoxFile.getLine(1));
+            assertEquals("third", textBoxFile.getLine(2));
+            textBoxFile.close();
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void truncatedFileDoesNotBreakReading() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for(int i = 0; i < 100000; i++) {
+            content.append(lineFor(i)).append('\n');
+        }
+        File file = createFile(content.toString());
+        try {
+            TextBoxFile textBoxFile = new TextBoxFile(file, UTF8);
+            indexCompletely(textBoxFile);
+            assertEquals(lineFor(10), textBoxFile.getLine(10));
+            truncate(file, 0);
+            assertEquals("", textBoxFile.getLine(90000));
+            assertTrue(textBoxFile.getLineCount() <= 1);
+            append(file, "new\n");
+            indexCompletely(textBoxFile);
+            assertEquals(2, textBoxFile.getLineCount());
+            assertEquals("new", textBoxFile.getLine(0));
+            textBoxFile.close();
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void fileReplacedWithLongerContentIsIndexedAgain() throws IOException {
+        File file = createFile("one\ntwo\n");
+        try {
+            TextBoxFile textBoxFile = new TextBoxFile(file, UTF8);
+            indexCompletely(textBoxFile);
+            assertEquals(3, textBoxFile.getLineCount());
+            // Truncated and written again between two updates, ending up longer than before
+            truncate(file, 0);
+            append(file, "uno\ndos\ntres\ncuatro\n");
+            indexCompletely(textBoxFile);
+            assertEquals(5, textBoxFile.getLineCount());
+            assertEquals("uno", textBoxFile.getLine(0));
+            assertEquals("cuatro", textBoxFile.getLine(3));
+            textBoxFile.close();
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void indexIsKeptWhenReopened() throws IOException {
+        File file = createFile("x\ny\n");
+        try {
+            TextBoxFile textBoxFile = new TextBoxFile(file, UTF8);
+            indexCompletely(textBoxFile);
+            textBoxFile.close();
+            assertFalse(textBoxFile.isOpen());
+            append(file, "z\n");
+            textBoxFile.open();
+            assertTrue(textBoxFile.update(Long.MAX_VALUE));
+            assertEquals(4, textBoxFile.getLineCount());
+            assertEquals("y", textBoxFile.getLine(1));
+            assertEquals("z", textBoxFile.getLine(2));
+            textBoxFile.close();
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void charsetsWithMultiByteLineBreaksAreRejected() throws IOException {
+        File file = createFile("");
+        try {
+            new TextBoxFile(file, Charset.forName("UTF-16"));
+            fail("UTF-16 was accepted");
+        }
+        catch(IllegalArgumentException expected) {
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    private static String lineFor(int index) {
+        StringBuilder line = new StringBuilder("line ").append(index).append(' ');
+        for(int i = 0; i < index % 37; i++) {
+            line.append(i % 5 == 0 ? "å中" : "x");
+        }
+        return line.toString();
+    }
+
+    private static String join(List<String> lines) {
+        StringBuilder text = new StringBuilder();
+        for(String line: lines) {
+            if(text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(line);
+        }
+        return text.toString();
+    }
+
+    private static void indexCompletely(TextBoxFile textBoxFile) throws IOException {
+        textBoxFile.update(Long.MAX_VALUE);
+        assertTrue(textBoxFile.isFullyIndexed());
+    }
+
+    private static File createFile(String content) throws IOException {
+        File file = File.createTempFile("lanterna", ".txt");
+        append(file, content);
+        return file;
+    }
+
+    private static void append(File file, String content) throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(file, true);
+        try {
+            outputStream.write(content.getBytes(UTF8));
+        }
+        finally {
+            outputStream.close();
+        }
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(length);
+        }
+        finally {
+            randomAccessFile.close();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.gui2.table;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TableModelTest {
+
+    @Test
+    public void rowsAreFetchedInBlocks() {
+        CountingDataSource dataSource = new CountingDataSource(1050);
+        TableModel<String> model = new TableModel<String>(dataSource, "Row", "Column");
+        assertEquals(1050, model.getRowCount());
+
+        assertEquals(Arrays.asList("r150", "c150"), model.getRow(150));
+        assertEquals(Arrays.asList("100-200"), dataSource.fetches);
+        // The rest of the block is served from the cache
+        assertEquals("r100", model.getCell(0, 100));
+        assertEquals("c199", model.getCell(1, 199));
+        assertEquals(1, dataSource.fetches.size());
+
+        // The last block stops at the end of the data
+        assertEquals("r1049", model.getCell(0, 1049));
+        assertEquals(Arrays.asList("100-200", "1000-1050"), dataSource.fetches);
+        // A range that spans blocks fetches each of them once
+        assertEquals(30, model.getRows(180, 210).size());
+        assertEquals(Arrays.asList("100-200", "1000-1050", "200-300"), dataSource.fetches);
+    }
+
+    @Test
+    public void leastRecentlyUsedRowsAreEvicted() {
+        CountingDataSource dataSource = new CountingDataSource(1000);
+        TableModel<String> model = new TableModel<String>(dataSource, 200, "Row", "Column");
+        model.getRow(0);
+        model.getRow(100);
+        // Used again, so it's kept when the next block pushes out the oldest rows
+        model.getRow(0);
+        model.getRow(200);
+        assertEquals(3, dataSource.fetches.size());
+
+        model.getRow(0);
+        model.getRow(150);
+        model.getRow(250);
+        assertEquals(3, dataSource.fetches.size());
+        model.getRow(50);
+        assertEquals(4, dataSource.fetches.size());
+
+        model.refresh();
+        model.getRow(250);
+        assertEquals(5, dataSource.fetches.size());
+    }
+
+    @Test
+    public void shortRowsAreFilledWithNull() {
+        TableModel<String> model = new TableModel<String>(new TableDataSource<String>() {
+            @Override
+            public int getRowCount() {
+                return 1;
+            }
+
+            @Override
+            public List<List<String>> getRows(int fromRow, int toRow) {
+                List<List<String>> rows = new ArrayList<List<String>>();
+                rows.add(Arrays.asList("only"));
+                return rows;
+            }
+        }, "A", "B");
+        assertEquals("only", model.getCell(0, 0));
+        assertNull(model.getCell(1, 0));
+    }
+
+    @Test
+    public void dataSourceReturningTooFewRowsGivesAClearError() {
+        CountingDataSource dataSource = new CountingDataSource(1000);
+        dataSource.rowsReturned = 10;
+        TableModel<String> model = new TableModel<String>(dataSource, "Row", "Column");
+        assertEquals("r5", model.getCell(0, 5));
+        try {
+            model.getRow(50);
+            fail("Row missing from the data source was returned");
+        }
+        catch(IndexOutOfBoundsException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("TableDataSource returned 10 rows"));
+        }
+    }
+
+    @Test
+    public void modelBackedByDataSourceCannotBeModified() {
+        TableModel<String> model = new TableModel<String>(new CountingDataSource(10), "Row", "Column");
+        List<Runnable> modifications = Arrays.<Runnable>asList(
+                new Modification(model) { void modify() { model.addRow("a", "b"); } },
+                new Modification(model) { void modify() { model.insertRow(0, Arrays.asList("a", "b")); } },
+                new Modification(model) { void modify() { model.removeRow(0); } },
+                new Modification(model) { void modify() { model.clear(); } },
+                new Modification(model) { void modify() { model.addColumn("New", null); } },
+                new Modification(model) { void modify() { model.removeColumn(0); } },
+                new Modification(model) { void modify() { model.setCell(0, 0, "a"); } });
+        for(Runnable modification: modifications) {
+            modification.run();
+        }
+        assertEquals(10, model.getRowCount());
+        assertEquals(2, model.getColumnCount());
+        assertEquals("r0", model.getCell(0, 0));
+
+        // The column labels belong to the model, not the data source
+        model.setColumnLabel(0, "Renamed");
+        assertEquals("Renamed", model.getColumnLabel(0));
+    }
+
+    private static abstract class Modification implements Runnable {
+        final TableModel<String> model;
+
+        Modification(TableModel<String> model) {
+            this.model = model;
+        }
+
+        abstract void modify();
+
+        @Override
+        public void run() {
+            try {
+                modify();
+                fail("Model backed by a data source was modified");
+            }
+            catch(UnsupportedOperationException expected) {
+            }
+        }
+    }
+
+    private static class CountingDataSource implements TableDataSource<String> {
+        private final int rowCount;
+        private final List<String> fetches;
+        private int rowsReturned;
+
+        CountingDataSource(int rowCount) {
+            this.rowCount = rowCount;
+            this.fetches = new ArrayList<String>();
+            this.rowsReturned = Integer.MAX_VALUE;
+        }
+
+        @Override
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        @Override
+        public List<List<String>> getRows(int fromRow, int toRow) {
+            fetches.add(fromRow + "-" + toRow);
+            List<List<String>> rows = new ArrayList<List<String>>();
+            for(int row = fromRow; row < toRow && rows.size() < rowsReturned; row++) {
+                rows.add(Arrays.asList("r" + row, "c" + row));
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.screen;
+
+import com.googlecode.lanterna.SGR;
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.terminal.ansi.ANSITerminal;
+import com.googlecode.lanterna.terminal.virtual.DefaultVirtualTerminal;
+import com.googlecode.lanterna.terminal.virtual.VirtualTerminalStreamParser;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class CostBasedCursorMovementOptimizerTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final TerminalSize SIZE = new TerminalSize(80, 24);
+    private static final Pattern ERASE_SEQUENCE = Pattern.compile("\u001b\\[[0-9]*[XK]");
+    private static final TextColor[] COLORS = {
+            TextColor.ANSI.DEFAULT,
+            TextColor.ANSI.DEFAULT,
+            TextColor.ANSI.RED,
+            TextColor.ANSI.BLUE,
+            new TextColor.Indexed(130),
+            new TextColor.RGB(40, 80, 160)
+    };
+
+    private final ByteArrayOutputStream output;
+    private final ANSITerminal terminal;
+    private final DefaultVirtualTerminal virtualTerminal;
+    private final VirtualTerminalStreamParser parser;
+    private final DeltaRefreshEngine engine;
+    private final ScreenBuffer backBuffer;
+    private final ScreenBuffer frontBuffer;
+
+    public CostBasedCursorMovementOptimizerTest() {
+        this.output = new ByteArrayOutputStream();
+        this.terminal = new ANSITerminal(new ByteArrayInputStream(new byte[0]), output, UTF8) {};
+        this.virtualTerminal = new DefaultVirtualTerminal(SIZE);
+        this.parser = new VirtualTerminalStreamParser(virtualTerminal, UTF8);
+        this.engine = new DeltaRefreshEngine(new CostBasedCursorMovementOptimizer());
+        this.backBuffer = new ScreenBuffer(SIZE, TextCharacter.DEFAULT_CHARACTER);
+        this.frontBuffer = new ScreenBuffer(SIZE, TextCharacter.DEFAULT_CHARACTER);
+    }
+
+    @Test
+    public void outputReproducesTheBackBuffer() throws IOException {
+        drawRandomFrames(1);
+    }
+
+    @Test
+    public void outputReproducesTheBackBufferWithBackgroundColorErase() throws IOException {
+        terminal.setBackgroundColorErase(true);
+        drawRandomFrames(2);
+    }
+
+    @Test
+    public void blanksInTheDefaultBackgroundColorAreErased() throws IOException {
+        fill(0, 5, 70, new TextCharacter('x'));
+        refresh();
+        fill(10, 5, 30, TextCharacter.DEFAULT_CHARACTER);
+        fill(50, 5, 30, TextCharacter.DEFAULT_CHARACTER);
+        assertTrue(ERASE_SEQUENCE.matcher(refresh()).find());
+        assertScreenMatches();
+    }
+
+    @Test
+    public void blanksInOtherBackgroundColorsAreOnlyErasedWithBackgroundColorErase() throws IOException {
+        TextCharacter blueBlank = new TextCharacter(' ', TextColor.ANSI.DEFAULT, TextColor.ANSI.BLUE);
+        fill(0, 5, 70, new TextCharacter('x'));
+        refresh();
+        fill(10, 5, 30, blueBlank);
+        fill(50, 5, 30, blueBlank);
+        assertFalse(ERASE_SEQUENCE.matcher(refresh()).find());
+        assertScreenMatches();
+
+        terminal.setBackgroundColorErase(true);
+        fill(0, 6, 70, new TextCharacter('x'));
+        refresh();
+        fill(10, 6, 30, blueBlank);
+        fill(50, 6, 30, blueBlank);
+        assertTrue(ERASE_SEQUENCE.matcher(refresh()).find());
+        assertScreenMatches();
+    }
+
+    private void drawRandomFrames(long seed) throws IOException {
+        Random random = new Random(seed);
+        for(int frame = 0; frame < 200; frame++) {
+            for(int i = 0; i < 1 + random.nextInt(20); i++) {
+                TextCharacter style = new TextCharacter(
+                        ' ',
+                        COLORS[random.nextInt(COLORS.length)],
+                        COLORS[random.nextInt(COLORS.length)],
+                        random.nextInt(5) == 0 ? EnumSet.of(SGR.BOLD) : EnumSet.noneOf(SGR.class));
+                int row = random.nextInt(SIZE.getRows());
+                int column = random.nextInt(SIZE.getColumns());
+                int length = 1 + random.nextInt(random.nextBoolean() ? 10 : SIZE.getColumns());
+                boolean blank = random.nextInt(3) == 0;
+                for(int x = column; x < Math.min(column + length, SIZE.getColumns()); x++) {
+                    char character = blank ? ' ' : (char)('a' + random.nextInt(26));
+                    backBuffer.setCharacterAt(x, row, style.withCharacter(character));
+                }
+            }
+            refresh();
+            assertScreenMatches();
+        }
+    }
+
+    private void fill(int column, int row, int length, TextCharacter character) {
+        for(int x = column; x < Math.min(column + length, SIZE.getColumns()); x++) {
+            backBuffer.setCharacterAt(x, row, character);
+        }
+    }
+
+    private String refresh() throws IOException {
+        output.reset();
+        if(engine.findRuns(backBuffer, frontBuffer) > 0) {
+            engine.drawRuns(backBuffer, terminal);
+        }
+        terminal.flush();
+        byte[] data = output.toByteArray();
+        parser.parse(data, 0, data.length);
+        backBuffer.copyTo(frontBuffer);
+        return new String(data, UTF8);
+    }
+
+    private void assertScreenMatches() {
+        for(int row = 0; row < SIZE.getRows(); row++) {
+            for(int column = 0; column < SIZE.getColumns(); column++) {
+                TextCharacter expected = backBuffer.getCharacterAt(column, row);
+                TextCharacter actual = virtualTerminal.getCharacter(column, row);
+                String where = "at " + column + "x" + row;
+                assertEquals(where, expected.getCharacter(), actual.getCharacter());
+                assertEquals(where, expected.getBackgroundColor(), actual.getBackgroundColor());
+                assertEquals(where, expected.getModifiers(), actual.getModifiers());
+                //The foreground color of a blank cell can't be seen
+                if(expected.getCharacter() != ' ') {
+                    assertEquals(where, expected.getForegroundColor(), actual.getForegroundColor());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.screen;
+
+import com.googlecode.lanterna.SGR;
+import com.googlecode.lanterna.TerminalPosition;
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TerminalTextUtils;
+import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.TextStyle;
+import com.googlecode.lanterna.graphics.TextImage;
+import com.googlecode.lanterna.terminal.Terminal;
+import com.googlecode.lanterna.terminal.ansi.ANSITerminal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Compares the run-based delta refresh in {@code DeltaRefreshEngine} against the previous map-based implementation.
+ * Both are fed the same sequence of frames on a 300x100 screen where a portion of the cells change every frame, the
+ * terminal output is verified to be byte-identical and then the average time per frame is printed. Finally the amount of
+ * output per frame is compared between plain absolute cursor positioning and {@code CostBasedCursorMovementOptimizer}.
+ * <p>
+ * Run with an optional argument for the number of frames to measure.
+ */
+public class DeltaRefreshBenchmark {
+    private static final TerminalSize SIZE = new TerminalSize(300, 100);
+    private static final TextColor[] COLORS = {
+            TextColor.ANSI.DEFAULT,
+            TextColor.ANSI.RED,
+            TextColor.ANSI.GREEN,
+            TextColor.ANSI.BLUE,
+            new TextColor.Indexed(130),
+            new TextColor.RGB(40, 80, 160)
+    };
+
+    public static void main(String[] args) throws IOException {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Terminal terminal = new ANSITerminal(new ByteArrayInputStream(new byte[0]), output, Charset.forName("UTF-8")) {};
+
+        verifyIdenticalOutput(terminal, output);
+
+        //Warm-up
+        runFrames(terminal, output, 500, true);
+        runFrames(terminal, output, 500, false);
+
+        long legacyTime = runFrames(terminal, output, frames, true);
+        long engineTime = runFrames(terminal, output, frames, false);
+        System.out.println("Map-based delta refresh: " + (legacyTime / frames) + " ns/frame");
+        System.out.println("Run-based delta refresh: " + (engineTime / frames) + " ns/frame");
+
+        long absoluteBytes = countBytes(terminal, output, frames, new AbsoluteCursorMovementOptimizer());
+        CostBasedCursorMovementOptimizer costBasedOptimizer = new CostBasedCursorMovementOptimizer();
+        long costBasedBytes = countBytes(terminal, output, frames, costBasedOptimizer);
+        System.out.println("Absolute cursor movement: " + (absoluteBytes / frames) + " bytes/frame");
+        System.out.println("Cost-based cursor movement: " + (costBasedBytes / frames) + " bytes/frame (" +
+                (costBasedOptimizer.getBytesSaved() / frames) + " bytes/frame saved on movement)");
+    }
+
+    private static void verifyIdenticalOutput(Terminal terminal, ByteArrayOutputStream output) throws IOException {
+        FrameGenerator generator = new FrameGenerator(1);
+        DeltaRefreshEngine engine = new DeltaRefreshEngine(new AbsoluteCursorMovementOptimizer());
+        for(int i = 0; i < 100; i++) {
+            generator.nextFrame();
+            output.reset();
+            legacyRefreshByDelta(generator.backBuffer, generator.frontBuffer, terminal);
+            terminal.flush();
+            byte[] legacyOutput = output.toByteArray();
+            output.reset();
+            engine.findRuns(generator.backBuffer, generator.frontBuffer);
+            engine.drawRuns(generator.backBuffer, terminal);
+            terminal.flush();
+            if(legacyOutput.length == 0 || !Arrays.equals(legacyOutput, output.toByteArray())) {
+                throw new IllegalStateException("Output differs in frame " + i);
+            }
+            generator.backBuffer.copyTo(generator.frontBuffer);
+        }
+        System.out.println("Verified identical output over 100 frames");
+    }
+
+    private static long runFrames(Terminal terminal, ByteArrayOutputStream output, int frames, boolean legacy) throws IOException {
+        FrameGenerator generator = new FrameGenerator(2);
+        DeltaRefreshEngine engine = new DeltaRefreshEngine(new AbsoluteCursorMovementOptimizer());
+        long totalTime = 0;
+        for(int i = 0; i < frames; i++) {
+            generator.nextFrame();
+            output.reset();
+            long startTime = System.nanoTime();
+            if(legacy) {
+                legacyRefreshByDelta(generator.backBuffer, generator.frontBuffer, terminal);
+            }
+            else {
+                engine.findRuns(generator.backBuffer, generator.frontBuffer);
+                engine.drawRuns(generator.backBuffer, terminal);
+            }
+            terminal.flush();
+            totalTime += System.nanoTime() - startTime;
+            generator.backBuffer.copyTo(generator.frontBuffer);
+        }
+        return totalTime;
+    }
+
+    private static long countBytes(Terminal terminal, ByteArrayOutputStream output, int frames, CursorMovementOptimizer optimizer) throws IOException {
+        FrameGenerator generator = new FrameGenerator(3);
+        DeltaRefreshEngine engine = new DeltaRefreshEngine(optimizer);
+        long totalBytes = 0;
+        for(int i = 0; i < frames; i++) {
+            generator.nextFrame();
+            output.reset();
+            engine.findRuns(generator.backBuffer, generator.frontBuffer);
+            engine.drawRuns(generator.backBuffer, terminal);
+            terminal.flush();
+            totalBytes += output.size();
+            generator.backBuffer.copyTo(generator.frontBuffer);
+        }
+        return totalBytes;
+    }
+
+    /**
+     * Moves the cursor the way {@code TerminalScreen} used to, always with absolute positioning
+     */
+    private static class AbsoluteCursorMovementOptimizer implements CursorMovementOptimizer {
+        @Override
+        public void moveCursor(Terminal terminal, TextImage content, TextStyle currentStyle, int fromColumn, int fromRow, int toColumn, int toRow) throws IOException {
+            terminal.setCursorPosition(toColumn, toRow);
+        }
+
+        @Override
+        public int eraseBlankCells(Terminal terminal, TextStyle currentStyle, int column, int row, int count, int terminalColumns) {
+            return -1;
+        }
+    }
+
+    private static class FrameGenerator {
+        private final Random random;
+        private final ScreenBuffer backBuffer;
+        private final ScreenBuffer frontBuffer;
+
+        FrameGenerator(long seed) {
+            this.random = new Random(seed);
+            this.backBuffer = new ScreenBuffer(SIZE, TextCharacter.DEFAULT_CHARACTER);
+            this.frontBuffer = new ScreenBuffer(SIZE, TextCharacter.DEFAULT_CHARACTER);
+        }
+
+        void nextFrame() {
+            //Update a number of horizontal segments, like a dashboard updating its values
+            for(int i = 0; i < 150; i++) {
+                int row = random.nextInt(SIZE.getRows());
+                int column = random.nextInt(SIZE.getColumns());
+                int length = 1 + random.nextInt(12);
+                TextCharacter style = new TextCharacter(
+                        ' ',
+                        COLORS[random.nextInt(COLORS.length)],
+                        COLORS[random.nextInt(COLORS.length)],
+                        random.nextInt(4) == 0 ? EnumSet.of(SGR.BOLD) : EnumSet.noneOf(SGR.class));
+                for(int x = column; x < column + length; x++) {
+                    char c = random.nextInt(20) == 0 ? '中' : (char)('a' + random.nextInt(26));
+                    backBuffer.setCharacterAt(x, row, style.withCharacter(c));
+                    if(TerminalTextUtils.isCharCJK(c)) {
+                        x++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * This is how {@code TerminalScreen} used to perform a delta refresh
+     */
+    private static void legacyRefreshByDelta(ScreenBuffer backBuffer, ScreenBuffer frontBuffer, Terminal terminal) throws IOException {
+        Map<TerminalPosition, TextCharacter> updateMap = new TreeMap<TerminalPosition, TextCharacter>(new ScreenPointComparator());
+        TerminalSize terminalSize = backBuffer.getSize();
+
+        for(int y = 0; y < terminalSize.getRows(); y++) {
+            for(int x = 0; x < terminalSize.getColumns(); x++) {
+                TextCharacter backBufferCharacter = backBuffer.getCharacterAt(x, y);
+                if(!backBufferCharacter.equals(frontBuffer.getCharacterAt(x, y))) {
+                    updateMap.put(new TerminalPosition(x, y), backBufferCharacter);
+                }
+                if(TerminalTextUtils.isCharCJK(backBufferCharacter.getCharacter())) {
+                    x++;    //Skip the trailing padding
+                }
+            }
+        }
+
+        if(updateMap.isEmpty()) {
+            return;
+        }
+        TerminalPosition currentPosition = updateMap.keySet().iterator().next();
+        terminal.setCursorPosition(currentPosition.getColumn(), currentPosition.getRow());
+
+        TextCharacter firstScreenCharacterToUpdate = updateMap.values().iterator().next();
+        EnumSet<SGR> currentSGR = firstScreenCharacterToUpdate.getModifiers();
+        terminal.resetColorAndSGR();
+        for(SGR sgr: currentSGR) {
+            terminal.enableSGR(sgr);
+        }
+        TextColor currentForegroundColor = firstScreenCharacterToUpdate.getForegroundColor();
+        TextColor currentBackgroundColor = firstScreenCharacterToUpdate.getBackgroundColor();
+        terminal.setForegroundColor(currentForegroundColor);
+        terminal.setBackgroundColor(currentBackgroundColor);
+        for(TerminalPosition position: updateMap.keySet()) {
+            if(!position.equals(currentPosition)) {
+                terminal.setCursorPosition(position.getColumn(), position.getRow());
+                currentPosition = position;
+            }
+            TextCharacter newCharacter = updateMap.get(position);
+            if(!currentForegroundColor.equals(newCharacter.getForegroundColor())) {
+                terminal.setForegroundColor(newCharacter.getForegroundColor());
+                currentForegroundColor = newCharacter.getForegroundColor();
+            }
+            if(!currentBackgroundColor.equals(newCharacter.getBackgroundColor())) {
+                terminal.setBackgroundColor(newCharacter.getBackgroundColor());
+                currentBackgroundColor = newCharacter.getBackgroundColor();
+            }
+            for(SGR sgr: SGR.values()) {
+                if(currentSGR.contains(sgr) && !newCharacter.getModifiers().contains(sgr)) {
+                    terminal.disableSGR(sgr);
+                    currentSGR.remove(sgr);
+                }
+                else if(!currentSGR.contains(sgr) && newCharacter.getModifiers().contains(sgr)) {
+                    terminal.enableSGR(sgr);
+                    currentSGR.add(sgr);
+                }
+            }
+            terminal.putCharacter(newCharacter.getCharacter());
+            if(TerminalTextUtils.isCharCJK(newCharacter.getCharacter())) {
+                currentPosition = currentPosition.withRelativeColumn(2);
+            }
+            else {
+                currentPosition = currentPosition.withRelativeColumn(1);
+            }
+        }
+    }
+
+    private static class ScreenPointComparator implements Comparator<TerminalPosition> {
+        @Override
+        public int compare(TerminalPosition o1, TerminalPosition o2) {
+            if(o1.getRow() == o2.getRow()) {
+                return o1.getColumn() < o2.getColumn() ? -1 : (o1.getColumn() == o2.getColumn() ? 0 : 1);
+            }
+            return o1.getRow() < o2.getRow() ? -1 : 1;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.input.KeyStroke;
+import com.googlecode.lanterna.terminal.ansi.NIOTelnetTerminalServer;
+import com.googlecode.lanterna.terminal.ansi.TelnetTerminal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connects many loopback clients to a {@code NIOTelnetTerminalServer} and checks that each of them gets its own input,
+ * resize notification and output through the shared event loops. The number of clients and event loops can be passed
+ * as arguments.
+ * @author Martin
+ */
+public class NIOTelnetLoopbackTest {
+    private static final byte IAC = (byte)255;
+    private static final byte SB = (byte)250;
+    private static final byte SE = (byte)240;
+    private static final byte NAWS = (byte)31;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int eventLoopCount = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        Charset charset = Charset.forName("UTF-8");
+        NIOTelnetTerminalServer server = new NIOTelnetTerminalServer(0, charset, eventLoopCount);
+        int port = server.getServerSocketChannel().socket().getLocalPort();
+        int threadsBefore = Thread.activeCount();
+        long startTime = System.currentTimeMillis();
+
+        List<Socket> clients = new ArrayList<Socket>();
+        List<TelnetTerminal> terminals = new ArrayList<TelnetTerminal>();
+        final CountDownLatch resizes = new CountDownLatch(clientCount);
+        for(int i = 0; i < clientCount; i++) {
+            Socket client = new Socket(InetAddress.getLoopbackAddress(), port);
+            client.setSoTimeout(10000);
+            clients.add(client);
+            TelnetTerminal terminal = server.acceptConnection();
+            terminal.addResizeListener(new TerminalResizeListener() {
+                @Override
+                public void onResized(Terminal terminal, TerminalSize newSize) {
+                    if(newSize.getColumns() == 100 && newSize.getRows() == 30) {
+                        resizes.countDown();
+                    }
+                }
+            });
+            terminals.add(terminal);
+        }
+        System.out.println("Connected " + clientCount + " clients in " + (System.currentTimeMillis() - startTime) + " ms");
+
+        //Send a resize notification split in the middle, followed by two characters, one of them multi-byte
+        for(Socket client: clients) {
+            OutputStream output = client.getOutputStream();
+            output.write(new byte[] { IAC, SB, NAWS, 0, 100 });
+            output.flush();
+            output.write(new byte[] { 0, 30, IAC, SE, 'a' });
+            output.write("é".getBytes(charset));
+            output.flush();
+        }
+        int failures = 0;
+        for(TelnetTerminal terminal: terminals) {
+            KeyStroke first = terminal.readInput();
+            KeyStroke second = terminal.readInput();
+            if(first.getCharacter() != 'a' || second.getCharacter() != 'é') {
+                System.out.println("Unexpected input: " + first + ", " + second);
+                failures++;
+            }
+        }
+        if(!resizes.await(10, TimeUnit.SECONDS)) {
+            System.out.println("Missing resize notifications: " + resizes.getCount());
+            failures++;
+        }
+
+        for(int i = 0; i < clientCount; i++) {
+            TelnetTerminal terminal = terminals.get(i);
+            String message = "Hello client " + i + "!";
+            for(char c: message.toCharArray()) {
+                terminal.putCharacter(c);
+            }
+            terminal.flush();
+        }
+        for(int i = 0; i < clientCount; i++) {
+            if(!readUntil(clients.get(i).getInputStream(), "Hello client " + i + "!", charset)) {
+                System.out.println("Client " + i + " didn't get its output");
+                failures++;
+            }
+        }
+
+        System.out.println("Threads added for " + clientCount + " clients: " + (Thread.activeCount() - threadsBefore));
+        System.out.println("Finished in " + (System.currentTimeMillis() - startTime) + " ms with " + failures + " failures");
+        for(Socket client: clients) {
+            client.close();
+        }
+        server.close();
+    }
+
+    private static boolean readUntil(InputStream input, String expected, Charset charset) throws IOException {
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        while(!new String(received.toByteArray(), charset).contains(expected)) {
+            int readBytes = input.read(buffer);
+            if(readBytes == -1) {
+                return false;
+            }
+            received.write(buffer, 0, readBytes);
+        }
+        return true;
+    }
+}
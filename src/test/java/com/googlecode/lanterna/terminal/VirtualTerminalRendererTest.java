@@ -0,0 +1,134 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.terminal.swing.AWTTerminalFontConfiguration;
+import com.googlecode.lanterna.terminal.swing.TerminalEmulatorColorConfiguration;
+import com.googlecode.lanterna.terminal.swing.TerminalEmulatorPalette;
+import com.googlecode.lanterna.terminal.swing.VirtualTerminalRenderer;
+import com.googlecode.lanterna.terminal.virtual.DefaultVirtualTerminal;
+import com.googlecode.lanterna.terminal.virtual.VirtualTerminalStreamParser;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders a number of virtual terminals to images in parallel, headless, while feeding them random output through
+ * {@link VirtualTerminalStreamParser}. After every round the incrementally updated images are compared with images
+ * rendered from scratch. If a directory is passed as the second argument, the final images are written there as PNG
+ * files. Run with {@code -Djava.awt.headless=true} to make sure no display is needed.
+ * @author Martin
+ */
+public class VirtualTerminalRendererTest {
+    private static final String[] SAMPLES = {
+            "$ ls -l\r\n",
+            "\u001b[1;34mdirectory\u001b[0m  \u001b[32mexecutable\u001b[0m  file.txt\r\n",
+            "\u001b[7m reversed \u001b[27m and \u001b[4munderlined\u001b[24m text\r\n",
+            "\u001b[38;5;208mindexed\u001b[0m \u001b[48;2;40;40;120mtrue color\u001b[0m\r\n",
+            "こんにちは 世界\r\n",
+            "progress: 42%\r",
+            "\u001b[5;10H\u001b[Kcursor movement",
+            "no newline, ",
+    };
+    private static final String CLEAR = "\u001b[2J\u001b[H";
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int terminalCount = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        File outputDirectory = args.length > 1 ? new File(args[1]) : null;
+        AWTTerminalFontConfiguration fontConfiguration =
+                AWTTerminalFontConfiguration.newInstance(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        TerminalEmulatorColorConfiguration colorConfiguration =
+                TerminalEmulatorColorConfiguration.newInstance(TerminalEmulatorPalette.GNOME_TERMINAL);
+        Charset charset = Charset.forName("UTF-8");
+        Random random = new Random(4711);
+
+        List<DefaultVirtualTerminal> terminals = new ArrayList<DefaultVirtualTerminal>();
+        List<VirtualTerminalStreamParser> parsers = new ArrayList<VirtualTerminalStreamParser>();
+        List<VirtualTerminalRenderer> renderers = new ArrayList<VirtualTerminalRenderer>();
+        for(int i = 0; i < terminalCount; i++) {
+            DefaultVirtualTerminal terminal = new DefaultVirtualTerminal(new TerminalSize(80, 24));
+            terminal.setBacklogSize(50);
+            terminals.add(terminal);
+            parsers.add(new VirtualTerminalStreamParser(terminal));
+            renderers.add(new VirtualTerminalRenderer(terminal, fontConfiguration, colorConfiguration));
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        long renderTime = 0;
+        int mismatches = 0;
+        int rounds = 50;
+        for(int round = 0; round < rounds; round++) {
+            for(VirtualTerminalStreamParser parser: parsers) {
+                if(random.nextInt(20) == 0) {
+                    byte[] data = CLEAR.getBytes(charset);
+                    parser.parse(data, 0, data.length);
+                }
+                for(int i = random.nextInt(20); i >= 0; i--) {
+                    byte[] data = SAMPLES[random.nextInt(SAMPLES.length)].getBytes(charset);
+                    parser.parse(data, 0, data.length);
+                }
+            }
+            long startTime = System.nanoTime();
+            List<BufferedImage> images = VirtualTerminalRenderer.renderAll(renderers, executorService);
+            renderTime += System.nanoTime() - startTime;
+
+            for(int i = 0; i < terminalCount; i++) {
+                VirtualTerminalRenderer reference = new VirtualTerminalRenderer(terminals.get(i), fontConfiguration, colorConfiguration);
+                if(!isSameImage(images.get(i), reference.render())) {
+                    System.out.println("Terminal " + i + " differs from a full redraw after round " + round);
+                    mismatches++;
+                }
+            }
+        }
+        executorService.shutdown();
+
+        if(outputDirectory != null) {
+            outputDirectory.mkdirs();
+            for(int i = 0; i < terminalCount; i++) {
+                ImageIO.write(renderers.get(i).getImage(), "png", new File(outputDirectory, "terminal-" + i + ".png"));
+            }
+        }
+        System.out.println("Rendered " + terminalCount + " terminals " + rounds + " times in " + (renderTime / 1000000) + " ms, " +
+                mismatches + " mismatches");
+    }
+
+    private static boolean isSameImage(BufferedImage first, BufferedImage second) {
+        if(first.getWidth() != second.getWidth() || first.getHeight() != second.getHeight()) {
+            return false;
+        }
+        for(int y = 0; y < first.getHeight(); y++) {
+            for(int x = 0; x < first.getWidth(); x++) {
+                if(first.getRGB(x, y) != second.getRGB(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
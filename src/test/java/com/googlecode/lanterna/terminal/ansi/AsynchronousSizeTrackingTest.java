@@ -0,0 +1,173 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal.ansi;
+
+import com.googlecode.lanterna.TerminalPosition;
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.input.KeyStroke;
+import com.googlecode.lanterna.terminal.Terminal;
+import com.googlecode.lanterna.terminal.TerminalResizeListener;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AsynchronousSizeTrackingTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SIZE_REQUEST = "\u001b[s\u001b[5000;5000H\u001b[6n\u001b[u";
+
+    private final QueueInputStream terminalInput;
+    private final ByteArrayOutputStream terminalOutput;
+    private final ANSITerminal terminal;
+    private final BlockingQueue<TerminalSize> resizes;
+
+    public AsynchronousSizeTrackingTest() throws IOException {
+        this.terminalInput = new QueueInputStream();
+        this.terminalOutput = new ByteArrayOutputStream();
+        this.terminal = new ANSITerminal(terminalInput, terminalOutput, UTF8) {};
+        this.resizes = new LinkedBlockingQueue<TerminalSize>();
+        terminal.addResizeListener(new TerminalResizeListener() {
+            @Override
+            public void onResized(Terminal terminal, TerminalSize newSize) {
+                resizes.add(newSize);
+            }
+        });
+    }
+
+    @Test
+    public void sizeIsUpdatedFromTheReportWithoutBlocking() throws Exception {
+        terminal.setAsynchronousSizeTracking(true);
+        assertEquals(SIZE_REQUEST, new String(terminalOutput.toByteArray(), UTF8));
+
+        sendInput("\u001b[30;100R");
+        assertEquals(new TerminalSize(100, 30), pollInputUntilResized());
+        assertEquals(new TerminalSize(100, 30), terminal.getTerminalSize());
+    }
+
+    @Test
+    public void requestsAreCoalescedWhileWaitingForTheAnswer() throws Exception {
+        terminal.setAsynchronousSizeTracking(true);
+        terminal.requestTerminalSizeUpdate();
+        terminal.requestTerminalSizeUpdate();
+        assertEquals(SIZE_REQUEST, new String(terminalOutput.toByteArray(), UTF8));
+
+        terminalOutput.reset();
+        sendInput("\u001b[30;100R");
+        assertEquals(new TerminalSize(100, 30), pollInputUntilResized());
+        // One more request is sent for the calls that came in while waiting
+        assertEquals(SIZE_REQUEST, new String(terminalOutput.toByteArray(), UTF8));
+        // The last known size is returned while that request is waiting for its answer
+        assertEquals(new TerminalSize(100, 30), terminal.getTerminalSize());
+
+        sendInput("\u001b[40;120R");
+        assertEquals(new TerminalSize(120, 40), pollInputUntilResized());
+    }
+
+    @Test
+    public void otherInputIsPassedThrough() throws Exception {
+        terminal.setAsynchronousSizeTracking(true);
+        sendInput("a\u001b[30;100Rb");
+        assertEquals(Character.valueOf('a'), terminal.readInput().getCharacter());
+        KeyStroke keyStroke = terminal.readInput();
+        assertEquals(Character.valueOf('b'), keyStroke.getCharacter());
+        assertEquals(new TerminalSize(100, 30), resizes.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cursorPositionQueryWaitsForTheSizeAnswer() throws Exception {
+        terminal.setAsynchronousSizeTracking(true);
+        terminalOutput.reset();
+        BlockingQueue<TerminalPosition> positions = queryCursorPositionInBackground();
+        Thread.sleep(100);
+        // Nothing is asked until the size request has been answered, or the answers would get mixed up
+        assertEquals("", new String(terminalOutput.toByteArray(), UTF8));
+
+        sendInput("\u001b[30;100R");
+        waitForOutput("\u001b[6n");
+        sendInput("\u001b[5;10R");
+        assertEquals(new TerminalPosition(9, 4), positions.poll(5, TimeUnit.SECONDS));
+        assertEquals(new TerminalSize(100, 30), resizes.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void sizeRequestWaitsForTheCursorPositionAnswer() throws Exception {
+        BlockingQueue<TerminalPosition> positions = queryCursorPositionInBackground();
+        waitForOutput("\u001b[6n");
+        terminalOutput.reset();
+        terminal.requestTerminalSizeUpdate();
+        assertEquals("", new String(terminalOutput.toByteArray(), UTF8));
+
+        sendInput("\u001b[5;10R");
+        assertEquals(new TerminalPosition(9, 4), positions.poll(5, TimeUnit.SECONDS));
+        // The size request that was held back goes out once the position has been answered
+        waitForOutput(SIZE_REQUEST);
+        sendInput("\u001b[30;100R");
+        assertEquals(new TerminalSize(100, 30), pollInputUntilResized());
+    }
+
+    private BlockingQueue<TerminalPosition> queryCursorPositionInBackground() {
+        final BlockingQueue<TerminalPosition> positions = new LinkedBlockingQueue<TerminalPosition>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    positions.add(terminal.getCursorPosition());
+                }
+                catch(IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        return positions;
+    }
+
+    private void waitForOutput(String expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(!new String(terminalOutput.toByteArray(), UTF8).contains(expected)) {
+            assertTrue("Timed out waiting for " + expected, System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private TerminalSize pollInputUntilResized() throws Exception {
+        // This is what an application's input loop would be doing
+        long deadline = System.currentTimeMillis() + 5000;
+        while(System.currentTimeMillis() < deadline) {
+            assertNull(terminal.pollInput());
+            TerminalSize size = resizes.poll(10, TimeUnit.MILLISECONDS);
+            if(size != null) {
+                return size;
+            }
+        }
+        return null;
+    }
+
+    private void sendInput(String input) {
+        terminalInput.add(input.getBytes(UTF8));
+    }
+
+}
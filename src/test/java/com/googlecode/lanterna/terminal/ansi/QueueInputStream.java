@@ -0,0 +1,77 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal.ansi;
+
+import java.io.InputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Input stream that returns the bytes added to it by the test. Unlike {@code PipedInputStream}, it doesn't mind being
+ * read by threads that have since finished.
+ */
+class QueueInputStream extends InputStream {
+    private final BlockingQueue<Integer> bytes = new LinkedBlockingQueue<Integer>();
+
+    void add(byte[] data) {
+        for(byte b: data) {
+            bytes.add(b & 0xff);
+        }
+    }
+
+    @Override
+    public int read() {
+        //Like a read from System.in, this can't be interrupted
+        boolean interrupted = false;
+        try {
+            while(true) {
+                try {
+                    return bytes.take();
+                }
+                catch(InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        finally {
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        if(length == 0) {
+            return 0;
+        }
+        buffer[offset] = (byte)read();
+        int count = 1;
+        Integer next;
+        while(count < length && (next = bytes.poll()) != null) {
+            buffer[offset + count++] = (byte)next.intValue();
+        }
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return bytes.size();
+    }
+}
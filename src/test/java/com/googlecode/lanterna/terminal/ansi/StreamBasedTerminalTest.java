@@ -0,0 +1,76 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal.ansi;
+
+import com.googlecode.lanterna.input.KeyStroke;
+import com.googlecode.lanterna.input.KeyType;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+public class StreamBasedTerminalTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final QueueInputStream inputStream;
+    private final ANSITerminal terminal;
+
+    public StreamBasedTerminalTest() {
+        this.inputStream = new QueueInputStream();
+        this.terminal = new ANSITerminal(inputStream, new ByteArrayOutputStream(), UTF8) {};
+    }
+
+    @Test
+    public void inputIsOnlyReadWhenAskedFor() throws Exception {
+        sendInput("a");
+        assertEquals(Character.valueOf('a'), terminal.readInput().getCharacter());
+        assertNull(terminal.pollInput());
+        terminal.close();
+
+        // Whoever uses the stream after the terminal has been closed gets everything that comes after
+        sendInput("bc");
+        assertEquals('b', inputStream.read());
+        assertEquals('c', inputStream.read());
+    }
+
+    @Test
+    public void inputThatWasNeverAskedForStaysInTheStream() throws Exception {
+        sendInput("x");
+        terminal.close();
+        assertEquals('x', inputStream.read());
+        assertEquals(KeyType.EOF, terminal.readInput().getKeyType());
+    }
+
+    @Test
+    public void escapeIsToldApartFromEscapeSequencesWithATimeout() throws Exception {
+        terminal.getInputDecoder().setTimeoutMillis(20);
+        sendInput("\u001b");
+        assertEquals(KeyType.Escape, terminal.readInput().getKeyType());
+        sendInput("\u001b[A");
+        KeyStroke keyStroke = terminal.readInput();
+        assertEquals(KeyType.ArrowUp, keyStroke.getKeyType());
+    }
+
+    private void sendInput(String input) {
+        inputStream.add(input.getBytes(UTF8));
+    }
+}
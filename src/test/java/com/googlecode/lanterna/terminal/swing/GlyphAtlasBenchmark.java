@@ -0,0 +1,145 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal.swing;
+
+import com.googlecode.lanterna.SGR;
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.terminal.virtual.DefaultVirtualTerminal;
+import com.googlecode.lanterna.terminal.virtual.VirtualTerminal;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Renders the content of a {@link DefaultVirtualTerminal} into an offscreen image over and over, once by calling
+ * {@code drawString(..)} for every cell like the terminal emulator used to do and once through the {@link GlyphAtlas},
+ * then prints the time taken by each and how many pixels differ between the two images. Runs fine headless
+ * ({@code -Djava.awt.headless=true}). The number of frames can be passed as an argument.
+ * @author Martin
+ */
+public class GlyphAtlasBenchmark {
+    private static final TextColor[] COLORS = {
+            TextColor.ANSI.DEFAULT, TextColor.ANSI.RED, TextColor.ANSI.GREEN, TextColor.ANSI.YELLOW,
+            TextColor.ANSI.BLUE, TextColor.ANSI.MAGENTA, TextColor.ANSI.CYAN, TextColor.ANSI.WHITE };
+
+    public static void main(String[] args) {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        final AWTTerminalFontConfiguration fontConfiguration =
+                AWTTerminalFontConfiguration.newInstance(new Font(Font.MONOSPACED, Font.PLAIN, 14));
+        final TerminalEmulatorColorConfiguration colorConfiguration = TerminalEmulatorColorConfiguration.getDefault();
+        DefaultVirtualTerminal virtualTerminal = new DefaultVirtualTerminal(new TerminalSize(120, 40));
+        fillTerminal(virtualTerminal);
+
+        final int fontWidth = fontConfiguration.getFontWidth();
+        final int fontHeight = fontConfiguration.getFontHeight();
+        final GlyphAtlas glyphAtlas = new GlyphAtlas() {
+            @Override
+            AWTTerminalFontConfiguration getFontConfiguration() {
+                return fontConfiguration;
+            }
+        };
+        BufferedImage stringImage = new BufferedImage(120 * fontWidth, 40 * fontHeight, BufferedImage.TYPE_INT_RGB);
+        BufferedImage atlasImage = new BufferedImage(120 * fontWidth, 40 * fontHeight, BufferedImage.TYPE_INT_RGB);
+
+        for(int round = 0; round < 2; round++) {
+            long startTime = System.nanoTime();
+            for(int frame = 0; frame < frames; frame++) {
+                final Graphics2D g = createGraphics(stringImage, fontConfiguration);
+                virtualTerminal.forEachLine(0, 39, new VirtualTerminal.BufferWalker() {
+                    @Override
+                    public void onLine(int rowNumber, VirtualTerminal.BufferLine bufferLine) {
+                        for(int column = 0; column < 120; column++) {
+                            TextCharacter character = bufferLine.getCharacterAt(column);
+                            int x = column * fontWidth;
+                            int y = rowNumber * fontHeight;
+                            g.setColor(colorConfiguration.toAWTColor(character.getBackgroundColor(), false, false));
+                            g.setClip(x, y, fontWidth, fontHeight);
+                            g.fillRect(x, y, fontWidth, fontHeight);
+                            g.setColor(colorConfiguration.toAWTColor(character.getForegroundColor(), true, character.isBold()));
+                            g.setFont(fontConfiguration.getFontForCharacter(character));
+                            FontMetrics fontMetrics = g.getFontMetrics();
+                            g.drawString(Character.toString(character.getCharacter()), x, y + fontHeight - fontMetrics.getDescent() + 1);
+                        }
+                    }
+                });
+                g.dispose();
+            }
+            long stringTime = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            for(int frame = 0; frame < frames; frame++) {
+                final Graphics2D g = createGraphics(atlasImage, fontConfiguration);
+                virtualTerminal.forEachLine(0, 39, new VirtualTerminal.BufferWalker() {
+                    @Override
+                    public void onLine(int rowNumber, VirtualTerminal.BufferLine bufferLine) {
+                        for(int column = 0; column < 120; column++) {
+                            TextCharacter character = bufferLine.getCharacterAt(column);
+                            Color foregroundColor = colorConfiguration.toAWTColor(character.getForegroundColor(), true, character.isBold());
+                            Color backgroundColor = colorConfiguration.toAWTColor(character.getBackgroundColor(), false, false);
+                            g.drawImage(glyphAtlas.getTile(character, foregroundColor, backgroundColor, fontWidth, fontHeight),
+                                    column * fontWidth, rowNumber * fontHeight, null);
+                        }
+                    }
+                });
+                g.dispose();
+            }
+            long atlasTime = System.nanoTime() - startTime;
+
+            System.out.println("Round " + (round + 1) + ": " + frames + " frames with drawString in " + (stringTime / 1000000) + " ms, " +
+                    "with glyph atlas in " + (atlasTime / 1000000) + " ms (" + glyphAtlas.getTileCount() + " tiles)");
+        }
+
+        int differentPixels = 0;
+        for(int y = 0; y < stringImage.getHeight(); y++) {
+            for(int x = 0; x < stringImage.getWidth(); x++) {
+                if(stringImage.getRGB(x, y) != atlasImage.getRGB(x, y)) {
+                    differentPixels++;
+                }
+            }
+        }
+        System.out.println("Pixels that differ: " + differentPixels + " of " + (stringImage.getWidth() * stringImage.getHeight()));
+    }
+
+    private static void fillTerminal(DefaultVirtualTerminal virtualTerminal) {
+        for(int row = 0; row < 40; row++) {
+            virtualTerminal.setCursorPosition(0, row);
+            for(int column = 0; column < 120; column++) {
+                virtualTerminal.setForegroundColor(COLORS[(row + column / 10) % COLORS.length]);
+                if(column % 30 == 0) {
+                    virtualTerminal.enableSGR(SGR.BOLD);
+                }
+                else if(column % 30 == 15) {
+                    virtualTerminal.disableSGR(SGR.BOLD);
+                }
+                virtualTerminal.putCharacter((char)(' ' + (row * 120 + column) % 95));
+            }
+        }
+    }
+
+    private static Graphics2D createGraphics(BufferedImage image, AWTTerminalFontConfiguration fontConfiguration) {
+        Graphics2D g = image.createGraphics();
+        if(fontConfiguration.isAntiAliased()) {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        }
+        return g;
+    }
+}
@@ -335,6 +335,44 @@ public class DefaultVirtualTerminalTest {
         assertEquals(new TerminalPosition(0, 2), virtualTerminal.getCursorPosition());
     }
 
+    @Test
+    public void compressedBacklogReadsBackTheSame() {
+        virtualTerminal.setTerminalSize(new TerminalSize(20, 3));
+        virtualTerminal.setBacklogSize(1000);
+        virtualTerminal.setBacklogCompression(true);
+        for(int i = 0; i < 500; i++) {
+            virtualTerminal.setForegroundColor(i % 2 == 0 ? TextColor.ANSI.RED : TextColor.ANSI.DEFAULT);
+            putString("Line " + i + " こ\n");
+        }
+        virtualTerminal.resetColorAndSGR();
+        assertEquals(501, virtualTerminal.getBufferLineCount());
+        assertBufferLineEquals("Line 1 こ", 1);
+        assertEquals(TextColor.ANSI.RED, virtualTerminal.getBufferCharacter(0, 0).getForegroundColor());
+        assertEquals(TextColor.ANSI.RED, virtualTerminal.getBufferCharacter(7, 0).getForegroundColor());
+        assertEquals('こ', virtualTerminal.getBufferCharacter(8, 0).getCharacter());
+        long compressedUsage = virtualTerminal.getBacklogMemoryUsage();
+
+        virtualTerminal.setBacklogCompression(false);
+        assertBufferLineEquals("Line 1 こ", 1);
+        assertBufferLineEquals("Line 499 こ", 499);
+        assertTrue(virtualTerminal.getBacklogMemoryUsage() > compressedUsage);
+    }
+
+    @Test
+    public void backlogIsLimitedByMemory() {
+        virtualTerminal.setTerminalSize(new TerminalSize(20, 3));
+        virtualTerminal.setBacklogSize(100000);
+        virtualTerminal.setBacklogMemoryLimit(10000);
+        for(int i = 0; i < 1000; i++) {
+            putString("Line " + i + "\n");
+        }
+        assertTrue(virtualTerminal.getBacklogMemoryUsage() <= 10000);
+        assertTrue(virtualTerminal.getBufferLineCount() < 1000);
+        assertLineEquals("Line 998", 0);
+        assertLineEquals("Line 999", 1);
+        assertEquals(new TerminalPosition(0, 2), virtualTerminal.getCursorPosition());
+    }
+
     @Test
     public void testPrivateMode() throws Exception {
         final int ROWS = 5;
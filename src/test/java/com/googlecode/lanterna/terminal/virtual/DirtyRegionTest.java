@@ -0,0 +1,100 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal.virtual;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DirtyRegionTest {
+    private final DirtyRegion dirtyRegion;
+
+    public DirtyRegionTest() {
+        this.dirtyRegion = new DirtyRegion();
+    }
+
+    @Test
+    public void newRegionIsEmpty() {
+        assertTrue(dirtyRegion.isEmpty());
+        assertFalse(dirtyRegion.isAllDirty());
+        assertEquals(-1, dirtyRegion.getFirstDirtyRow());
+        assertEquals(-1, dirtyRegion.getNextDirtyRow(0));
+        assertFalse(dirtyRegion.isDirty(0, 0));
+    }
+
+    @Test
+    public void markingWidensTheSpanOfTheRow() {
+        dirtyRegion.mark(5, 10);
+        dirtyRegion.mark(5, 3);
+        dirtyRegion.mark(7, 1, 4);
+        assertEquals(5, dirtyRegion.getFirstDirtyRow());
+        assertEquals(7, dirtyRegion.getLastDirtyRow());
+        assertEquals(3, dirtyRegion.getDirtyStart(5));
+        assertEquals(11, dirtyRegion.getDirtyEnd(5));
+        assertTrue(dirtyRegion.isDirty(5, 7));
+        assertFalse(dirtyRegion.isDirty(6, 7));
+        assertEquals(7, dirtyRegion.getNextDirtyRow(6));
+        assertEquals(8 + 3, dirtyRegion.getDirtyCellCount());
+    }
+
+    @Test
+    public void rowsFarApartAreKept() {
+        dirtyRegion.mark(1000, 1);
+        dirtyRegion.mark(2, 2);
+        dirtyRegion.mark(100000, 3);
+        assertTrue(dirtyRegion.isDirty(1000, 1));
+        assertTrue(dirtyRegion.isDirty(2, 2));
+        assertTrue(dirtyRegion.isDirty(100000, 3));
+        assertEquals(2, dirtyRegion.getFirstDirtyRow());
+        assertEquals(100000, dirtyRegion.getLastDirtyRow());
+        dirtyRegion.clear();
+        assertTrue(dirtyRegion.isEmpty());
+        assertFalse(dirtyRegion.isDirty(1000, 1));
+        dirtyRegion.mark(50, 0);
+        assertEquals(1, dirtyRegion.getDirtyCellCount());
+    }
+
+    @Test
+    public void shiftingRowsDropsRowsAboveTheTop() {
+        dirtyRegion.mark(0, 0);
+        dirtyRegion.mark(1, 1);
+        dirtyRegion.mark(4, 4);
+        dirtyRegion.shiftRows(-2);
+        assertEquals(2, dirtyRegion.getFirstDirtyRow());
+        assertEquals(2, dirtyRegion.getLastDirtyRow());
+        assertTrue(dirtyRegion.isDirty(2, 4));
+        assertFalse(dirtyRegion.isDirty(0, 0));
+        assertEquals(1, dirtyRegion.getDirtyCellCount());
+    }
+
+    @Test
+    public void regionsCanBeMerged() {
+        DirtyRegion other = new DirtyRegion();
+        other.mark(3, 2, 5);
+        dirtyRegion.mark(3, 8);
+        dirtyRegion.markAll(other);
+        assertEquals(2, dirtyRegion.getDirtyStart(3));
+        assertEquals(9, dirtyRegion.getDirtyEnd(3));
+        assertFalse(dirtyRegion.isAllDirty());
+        other.markAll();
+        dirtyRegion.markAll(other);
+        assertTrue(dirtyRegion.isAllDirty());
+        assertTrue(dirtyRegion.isDirty(100, 100));
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * This file is part of lanterna (http://code.google.com/p/lanterna/).
+ *
+ * lanterna is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2010-2019 Martin Berglund
+ */
+package com.googlecode.lanterna.terminal.virtual;
+
+import com.googlecode.lanterna.*;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+public class VirtualTerminalStreamParserTest {
+    private static final TextCharacter DEFAULT_CHARACTER = TextCharacter.DEFAULT_CHARACTER;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private final DefaultVirtualTerminal virtualTerminal;
+    private final VirtualTerminalStreamParser parser;
+
+    public VirtualTerminalStreamParserTest() {
+        this.virtualTerminal = new DefaultVirtualTerminal(new TerminalSize(20, 5));
+        this.parser = new VirtualTerminalStreamParser(virtualTerminal);
+    }
+
+    @Test
+    public void plainTextAndControlCharacters() {
+        parse("Hello\r\nWorld\r\n\tX\bY");
+        assertLineEquals("Hello", 0);
+        assertLineEquals("World", 1);
+        assertLineEquals("        Y", 2);
+        assertEquals(new TerminalPosition(9, 2), virtualTerminal.getCursorPosition());
+    }
+
+    @Test
+    public void lineFeedKeepsTheColumn() {
+        parse("ab\ncd");
+        assertLineEquals("ab", 0);
+        assertLineEquals("  cd", 1);
+    }
+
+    @Test
+    public void cursorMovementAndErasing() {
+        parse("0123456789\r\nabcdefghij");
+        parse("\u001b[1;5H\u001b[K");
+        assertLineEquals("0123", 0);
+        parse("\u001b[2;3H\u001b[1K");
+        assertLineEquals("   defghij", 1);
+        parse("\u001b[A\u001b[2C");
+        assertEquals(new TerminalPosition(4, 0), virtualTerminal.getCursorPosition());
+        parse("\u001b[2J");
+        assertLineEquals("", 0);
+        assertLineEquals("", 1);
+    }
+
+    @Test
+    public void insertAndDeleteCharacters() {
+        parse("abcdef\u001b[1;3H\u001b[2@XY");
+        assertLineEquals("abXYcdef", 0);
+        parse("\u001b[1;1H\u001b[3P");
+        assertLineEquals("Ycdef", 0);
+        parse("\u001b[2X");
+        assertLineEquals("  def", 0);
+    }
+
+    @Test
+    public void graphicRendition() {
+        parse("\u001b[1;31mA\u001b[38;5;200;48;2;1;2;3mB\u001b[0mC\u001b[22;97mD");
+        TextCharacter a = virtualTerminal.getCharacter(0, 0);
+        assertEquals(TextColor.ANSI.RED, a.getForegroundColor());
+        assertTrue(a.getModifiers().contains(SGR.BOLD));
+        TextCharacter b = virtualTerminal.getCharacter(1, 0);
+        assertEquals(new TextColor.Indexed(200), b.getForegroundColor());
+        assertEquals(new TextColor.RGB(1, 2, 3), b.getBackgroundColor());
+        assertTrue(b.getModifiers().contains(SGR.BOLD));
+        assertEquals(DEFAULT_CHARACTER.withCharacter('C'), virtualTerminal.getCharacter(2, 0));
+        assertEquals(new TextColor.Indexed(15), virtualTerminal.getCharacter(3, 0).getForegroundColor());
+    }
+
+    @Test
+    public void sequencesAndCharactersSplitBetweenChunks() {
+        byte[] data = "\u001b[3;4Hhéこ\u001b]2;title\u0007".getBytes(UTF8);
+        for(byte b: data) {
+            parser.parse(ByteBuffer.wrap(new byte[] { b }));
+        }
+        assertEquals(DEFAULT_CHARACTER.withCharacter('h'), virtualTerminal.getCharacter(3, 2));
+        assertEquals(DEFAULT_CHARACTER.withCharacter('é'), virtualTerminal.getCharacter(4, 2));
+        assertEquals(DEFAULT_CHARACTER.withCharacter('こ'), virtualTerminal.getCharacter(5, 2));
+        assertEquals("title", parser.getTitle());
+    }
+
+    @Test
+    public void scrollingRegion() {
+        parse("1\r\n2\r\n3\r\n4\r\n5");
+        parse("\u001b[2;4r\u001b[4;1H\nX");
+        assertLineEquals("1", 0);
+        assertLineEquals("3", 1);
+        assertLineEquals("4", 2);
+        assertLineEquals("X", 3);
+        assertLineEquals("5", 4);
+        parse("\u001b[2;1H\u001bM");
+        assertLineEquals("", 1);
+        assertLineEquals("3", 2);
+        assertLineEquals("4", 3);
+        assertLineEquals("5", 4);
+        parse("\u001b[3;1H\u001b[M");
+        assertLineEquals("", 1);
+        assertLineEquals("4", 2);
+        assertLineEquals("", 3);
+        assertLineEquals("5", 4);
+    }
+
+    @Test
+    public void alternateScreenRestoresTheNormalScreen() {
+        parse("normal\u001b[?1049h");
+        assertLineEquals("", 0);
+        parse("\u001b[3;3Halternate");
+        assertLineEquals("  alternate", 2);
+        parse("\u001b[?1049l!");
+        assertLineEquals("normal!", 0);
+        assertLineEquals("", 2);
+    }
+
+    @Test
+    public void lineDrawingCharacterSet() {
+        parse("\u001b(0lqk\u001b(Bq");
+        assertLineEquals("┌─┐q", 0);
+    }
+
+    @Test
+    public void autoWrapCanBeDisabled() {
+        parse("\u001b[?7l");
+        parse("0123456789012345678901234");
+        assertLineEquals("01234567890123456784", 0);
+        assertLineEquals("", 1);
+    }
+
+    private void parse(String data) {
+        parser.parse(ByteBuffer.wrap(data.getBytes(UTF8)));
+    }
+
+    private void assertLineEquals(String expectedLineContent, int rowNumber) {
+        int column = 0;
+        for(char c: expectedLineContent.toCharArray()) {
+            assertEquals(DEFAULT_CHARACTER.withCharacter(c), virtualTerminal.getCharacter(column++, rowNumber));
+            if(TerminalTextUtils.isCharDoubleWidth(c)) {
+                column++;
+            }
+        }
+        while(column < virtualTerminal.getTerminalSize().getColumns()) {
+            assertEquals(DEFAULT_CHARACTER, virtualTerminal.getCharacter(column++, rowNumber));
+        }
+    }
+}